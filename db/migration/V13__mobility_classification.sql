@@ -0,0 +1,14 @@
+-- The server's classification of Mobility points that were uploaded with
+-- sensor data. The points themselves are stored as observer stream data, and
+-- they are classified in the background after they are uploaded. A point
+-- without a row here, or whose row was made by a different version of the
+-- classifier, has not been classified yet and is classified when it is read.
+CREATE TABLE IF NOT EXISTS mobility_classification (
+  user_id int unsigned NOT NULL,
+  uid varchar(255) NOT NULL,
+  features text NOT NULL,
+  classifier_version varchar(32) NOT NULL,
+  last_modified_timestamp timestamp DEFAULT now() ON UPDATE now(),
+  PRIMARY KEY (user_id, uid),
+  CONSTRAINT FOREIGN KEY (user_id) REFERENCES user (id) ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,6 @@
+-- Reading a stream's data by cursor walks the points in the order they were
+-- taken, continuing after the last point that was returned. This index
+-- gives that order, with the implicit primary key breaking ties, so that
+-- each page is read directly instead of skipping over every earlier point.
+CREATE INDEX observer_stream_data_seek
+  ON observer_stream_data (user_id, observer_stream_link_id, time);
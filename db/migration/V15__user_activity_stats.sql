@@ -0,0 +1,48 @@
+-- Per-user activity statistics that are kept up to date as survey responses
+-- and Mobility points are uploaded, so that user/stats/read does not have to
+-- scan all of a user's data. Counts are kept per hour, where "hour_start" is
+-- the start of the hour in milliseconds since the epoch. Only recent hours
+-- are kept; the statistics are periodically rebuilt from the data itself,
+-- which also removes older hours.
+
+-- The time of each user's most recent Mobility point.
+CREATE TABLE IF NOT EXISTS user_mobility_stats (
+  user_id int unsigned NOT NULL,
+  last_taken bigint NOT NULL,
+  PRIMARY KEY (user_id),
+  CONSTRAINT FOREIGN KEY (user_id) REFERENCES user (id) ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- The number of each user's Mobility points that were taken in each hour and
+-- how many of them had a location.
+CREATE TABLE IF NOT EXISTS user_mobility_stats_hour (
+  user_id int unsigned NOT NULL,
+  hour_start bigint NOT NULL,
+  total int unsigned NOT NULL,
+  with_location int unsigned NOT NULL,
+  PRIMARY KEY (user_id, hour_start),
+  CONSTRAINT FOREIGN KEY (user_id) REFERENCES user (id) ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- The time of each user's most recent survey response in each campaign.
+CREATE TABLE IF NOT EXISTS user_survey_stats (
+  user_id int unsigned NOT NULL,
+  campaign_id int unsigned NOT NULL,
+  last_taken bigint NOT NULL,
+  PRIMARY KEY (user_id, campaign_id),
+  CONSTRAINT FOREIGN KEY (user_id) REFERENCES user (id) ON DELETE CASCADE ON UPDATE CASCADE,
+  CONSTRAINT FOREIGN KEY (campaign_id) REFERENCES campaign (id) ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- The number of each user's survey responses in each campaign that were
+-- uploaded in each hour and how many of them had a location.
+CREATE TABLE IF NOT EXISTS user_survey_stats_hour (
+  user_id int unsigned NOT NULL,
+  campaign_id int unsigned NOT NULL,
+  hour_start bigint NOT NULL,
+  total int unsigned NOT NULL,
+  with_location int unsigned NOT NULL,
+  PRIMARY KEY (user_id, campaign_id, hour_start),
+  CONSTRAINT FOREIGN KEY (user_id) REFERENCES user (id) ON DELETE CASCADE ON UPDATE CASCADE,
+  CONSTRAINT FOREIGN KEY (campaign_id) REFERENCES campaign (id) ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
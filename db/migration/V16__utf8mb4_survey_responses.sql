@@ -0,0 +1,20 @@
+-- Prompt response values, and the values in each survey response's JSON,
+-- used to be MIME-encoded on upload so that characters outside of the Basic
+-- Multilingual Plane, e.g. emoji, could be stored in a 3-byte "utf8" column.
+-- These columns now store 4-byte UTF-8 directly.
+--
+-- The "mime_encoded" marker records which rows may still hold encoded
+-- values. Every existing row is marked, and new rows are not. The server
+-- decodes the marked rows in small batches in the background, clearing the
+-- marker as it goes, and decodes any marked row that is read before then.
+ALTER TABLE prompt_response
+  MODIFY response text CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NOT NULL,
+  ADD COLUMN mime_encoded tinyint(1) NOT NULL DEFAULT 1;
+ALTER TABLE prompt_response
+  ALTER COLUMN mime_encoded SET DEFAULT 0;
+
+ALTER TABLE survey_response
+  MODIFY survey text CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NOT NULL,
+  ADD COLUMN mime_encoded tinyint(1) NOT NULL DEFAULT 1;
+ALTER TABLE survey_response
+  ALTER COLUMN mime_encoded SET DEFAULT 0;
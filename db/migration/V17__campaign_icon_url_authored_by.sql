@@ -0,0 +1,13 @@
+-- campaign/read takes a campaign's icon URL and authored by value from their
+-- columns instead of parsing the campaign's XML. Updating the XML did not
+-- update these columns, so they are refilled from the XML.
+--
+-- ExtractValue() does not decode XML entities, so any value that contains
+-- an entity is left as it is.
+UPDATE campaign
+SET icon_url = NULLIF(TRIM(ExtractValue(xml, '/campaign/iconUrl')), '')
+WHERE ExtractValue(xml, '/campaign/iconUrl') NOT LIKE '%&%';
+
+UPDATE campaign
+SET authored_by = NULLIF(TRIM(ExtractValue(xml, '/campaign/authoredBy')), '')
+WHERE ExtractValue(xml, '/campaign/authoredBy') NOT LIKE '%&%';
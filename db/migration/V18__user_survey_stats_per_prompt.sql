@@ -0,0 +1,12 @@
+-- user/stats/read counts a user's survey locations per prompt response, so
+-- the hourly survey statistics now count prompt responses instead of survey
+-- responses. The old counts are removed; the statistics are not read until
+-- every user's statistics have been rebuilt, which the rebuild records in
+-- the "user_stats_rebuilt" preference.
+DELETE FROM user_survey_stats_hour;
+DELETE FROM preference WHERE p_key = 'user_stats_rebuilt';
+
+-- The past day begins exactly 24 hours ago, so the rest of the hour that
+-- contains its start is counted from a user's survey responses themselves.
+CREATE INDEX survey_response_user_upload
+  ON survey_response (user_id, upload_timestamp);
@@ -114,6 +114,8 @@ public class Annotator {
 		SURVEY_INVALID_SURVEY_PROMPT_MAP ("0630"),
 		SURVEY_DUPLICATE_MEDIA_UUIDS ("0631"), // when media or document uuids are duplicate
 		SURVEY_UPLOAD_INVALID_ARGUMENTS ("0632"),
+		SURVEY_INVALID_CURSOR ("0633"),
+		SURVEY_INVALID_COUNT_TOTAL_VALUE ("0634"),
 
 		CAMPAIGN_INVALID_ID ("0700"),
 		CAMPAIGN_INVALID_NAME ("0701"),
@@ -217,6 +219,7 @@ public class Annotator {
 		OBSERVER_INVALID_COLUMN_LIST ("1514"),
 		OBSERVER_INVALID_CHRONOLOGICAL_VALUE ("1515"),
 		OBSERVER_INVALID_PRESERVE_INVALID_POINTS ("1516"),
+		OBSERVER_INVALID_CURSOR ("1517"),
 		
 		VIDEO_INVALID_ID("1600"),
 
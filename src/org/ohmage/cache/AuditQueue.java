@@ -0,0 +1,455 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.ohmage.domain.AuditEntry;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.service.AuditServices;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * <p>
+ * A bounded queue of request audits that are waiting to be written to the
+ * database. A fixed number of writer threads drain the queue and write the
+ * audits in batches, so a burst of requests results in a few large inserts
+ * instead of one thread and one transaction per request.
+ * </p>
+ *
+ * <p>
+ * When the queue is full, the {@link OverflowPolicy} decides whether new
+ * audits are dropped, sampled, or whether the requesting thread waits for
+ * room.
+ * </p>
+ */
+public final class AuditQueue implements DisposableBean {
+	private static final Logger LOGGER = Logger.getLogger(AuditQueue.class);
+
+	/**
+	 * What to do with a new audit when the queue is full.
+	 */
+	public static enum OverflowPolicy {
+		/**
+		 * Discard the new audit.
+		 */
+		DROP,
+		/**
+		 * Keep one out of every "sample rate" new audits, waiting for room
+		 * for it, and discard the rest.
+		 */
+		SAMPLE,
+		/**
+		 * Wait for room for the new audit.
+		 */
+		BLOCK;
+	}
+
+	/**
+	 * A thread that repeatedly drains a batch of audits from the queue and
+	 * writes them.
+	 */
+	private final class Writer extends Thread {
+		/**
+		 * Creates a new writer.
+		 *
+		 * @param number This writer's number, used to name the thread.
+		 */
+		private Writer(final int number) {
+			super("AuditQueue - Writer " + number);
+			setDaemon(true);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Thread#run()
+		 */
+		@Override
+		public void run() {
+			List<AuditEntry> batch = new ArrayList<AuditEntry>(batchSize);
+
+			while(running || (! queue.isEmpty())) {
+				try {
+					AuditEntry first =
+						queue.poll(
+							MILLISECONDS_BETWEEN_CHECKS,
+							TimeUnit.MILLISECONDS);
+					if(first == null) {
+						continue;
+					}
+
+					batch.add(first);
+					queue.drainTo(batch, batchSize - 1);
+				}
+				catch(InterruptedException e) {
+					// We are being shut down, but we still drain whatever
+					// remains in the queue.
+				}
+
+				if(! batch.isEmpty()) {
+					// Nothing may stop this thread, or the queue would fill
+					// and, with the blocking policy, every request would
+					// wait on it forever.
+					try {
+						flush(batch);
+					}
+					catch(RuntimeException e) {
+						LOGGER.error("Error while writing audits.", e);
+					}
+					finally {
+						batch.clear();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The number of milliseconds a writer waits for an audit before checking
+	 * whether or not it has been shut down.
+	 */
+	private static final long MILLISECONDS_BETWEEN_CHECKS = 1000;
+
+	// The reference to one's self to return to requesters.
+	private static AuditQueue instance;
+
+	private final BlockingQueue<AuditEntry> queue;
+	private final int batchSize;
+	private final OverflowPolicy overflowPolicy;
+	private final int sampleRate;
+	private final List<Writer> writers;
+
+	private volatile boolean running = true;
+
+	private final AtomicLong overflowed = new AtomicLong(0);
+	private final AtomicLong dropped = new AtomicLong(0);
+	private final AtomicLong written = new AtomicLong(0);
+	private final AtomicLong failed = new AtomicLong(0);
+	private final AtomicLong flushes = new AtomicLong(0);
+	private final AtomicLong flushTimeNanos = new AtomicLong(0);
+	private final AtomicLong lastFlushNanos = new AtomicLong(0);
+
+	/**
+	 * Creates the queue and starts its writers. This is done once by Spring.
+	 *
+	 * @param capacity The maximum number of audits that may be waiting to be
+	 * 				   written.
+	 *
+	 * @param batchSize The maximum number of audits written at once.
+	 *
+	 * @param numWriters The number of threads writing audits.
+	 *
+	 * @param overflowPolicy What to do when the queue is full. One of
+	 * 						 {@link OverflowPolicy}, case-insensitive.
+	 *
+	 * @param sampleRate When the overflow policy is
+	 * 					 {@link OverflowPolicy#SAMPLE}, one out of this many
+	 * 					 overflowing audits is kept.
+	 *
+	 * @throws IllegalArgumentException One of the parameters is invalid.
+	 */
+	private AuditQueue(
+			final int capacity,
+			final int batchSize,
+			final int numWriters,
+			final String overflowPolicy,
+			final int sampleRate) {
+
+		if(capacity <= 0) {
+			throw new IllegalArgumentException(
+				"The capacity must be positive.");
+		}
+		else if(batchSize <= 0) {
+			throw new IllegalArgumentException(
+				"The batch size must be positive.");
+		}
+		else if(numWriters <= 0) {
+			throw new IllegalArgumentException(
+				"The number of writers must be positive.");
+		}
+		else if(overflowPolicy == null) {
+			throw new IllegalArgumentException(
+				"The overflow policy is null.");
+		}
+		else if(sampleRate <= 0) {
+			throw new IllegalArgumentException(
+				"The sample rate must be positive.");
+		}
+
+		queue = new ArrayBlockingQueue<AuditEntry>(capacity);
+		this.batchSize = batchSize;
+		this.overflowPolicy =
+			OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase());
+		this.sampleRate = sampleRate;
+
+		LOGGER.info(
+			"Creating the audit queue with a capacity of " +
+				capacity +
+				", batches of " +
+				batchSize +
+				", " +
+				numWriters +
+				" writer(s), and the " +
+				this.overflowPolicy +
+				" overflow policy.");
+
+		writers = new ArrayList<Writer>(numWriters);
+		for(int i = 0; i < numWriters; i++) {
+			Writer writer = new Writer(i);
+			writers.add(writer);
+			writer.start();
+		}
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the one instance of this queue or null if it was not
+	 * configured.
+	 *
+	 * @return The one instance of this queue or null.
+	 */
+	public static AuditQueue instance() {
+		return instance;
+	}
+
+	/**
+	 * Adds an audit to the queue to be written, applying the overflow policy
+	 * if the queue is full.
+	 *
+	 * @param entry The audit to write.
+	 *
+	 * @return Whether or not the audit was queued.
+	 */
+	public boolean enqueue(final AuditEntry entry) {
+		if(entry == null) {
+			return false;
+		}
+
+		if(running && queue.offer(entry)) {
+			return true;
+		}
+
+		long overflowCount = overflowed.incrementAndGet();
+		if(running) {
+			boolean wait =
+				OverflowPolicy.BLOCK.equals(overflowPolicy) ||
+				(OverflowPolicy.SAMPLE.equals(overflowPolicy) &&
+					((overflowCount % sampleRate) == 0));
+
+			if(wait) {
+				try {
+					queue.put(entry);
+					return true;
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		long dropCount = dropped.incrementAndGet();
+		if((dropCount == 1) || ((dropCount % 1000) == 0)) {
+			LOGGER.warn(
+				"The audit queue is full. " +
+					dropCount +
+					" audit(s) have been dropped.");
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of audits waiting to be written.
+	 *
+	 * @return The number of audits waiting to be written.
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns the number of audits that arrived when the queue was full.
+	 *
+	 * @return The number of audits that arrived when the queue was full.
+	 */
+	public long getOverflowCount() {
+		return overflowed.get();
+	}
+
+	/**
+	 * Returns the number of audits that were discarded without being
+	 * written.
+	 *
+	 * @return The number of audits that were discarded.
+	 */
+	public long getDropCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the number of audits that were written.
+	 *
+	 * @return The number of audits that were written.
+	 */
+	public long getWrittenCount() {
+		return written.get();
+	}
+
+	/**
+	 * Returns the number of audits that could not be written, even on their
+	 * own.
+	 *
+	 * @return The number of audits that could not be written.
+	 */
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * Returns the number of batches that have been written.
+	 *
+	 * @return The number of batches that have been written.
+	 */
+	public long getFlushCount() {
+		return flushes.get();
+	}
+
+	/**
+	 * Returns the total time spent writing batches.
+	 *
+	 * @return The total time spent writing batches in milliseconds.
+	 */
+	public long getFlushTimeMillis() {
+		return flushTimeNanos.get() / 1000000;
+	}
+
+	/**
+	 * Returns the time it took to write the most recent batch.
+	 *
+	 * @return The time it took to write the most recent batch in
+	 * 		   milliseconds.
+	 */
+	public long getLastFlushMillis() {
+		return lastFlushNanos.get() / 1000000;
+	}
+
+	/**
+	 * Stops accepting audits, writes the ones that are still queued, and
+	 * stops the writers.
+	 */
+	@Override
+	public void destroy() throws Exception {
+		running = false;
+
+		for(Writer writer : writers) {
+			writer.interrupt();
+		}
+		for(Writer writer : writers) {
+			writer.join();
+		}
+
+		LOGGER.info(
+			"The audit queue has stopped after writing " +
+				getWrittenCount() +
+				" audit(s), failing to write " +
+				getFailedCount() +
+				" audit(s), and dropping " +
+				getDropCount() +
+				" audit(s).");
+	}
+
+	/**
+	 * Writes a batch of audits and records how long it took. If the batch
+	 * cannot be written, its audits are retried one at a time so that only
+	 * the ones that cannot be written are lost.
+	 *
+	 * @param batch The audits to write.
+	 */
+	private void flush(final List<AuditEntry> batch) {
+		long start = System.nanoTime();
+		try {
+			AuditServices.instance().createAudits(batch);
+			written.addAndGet(batch.size());
+		}
+		catch(ServiceException e) {
+			LOGGER.warn(
+				"Error while writing a batch of " +
+					batch.size() +
+					" audits. Retrying them one at a time.",
+				e);
+			flushIndividually(batch);
+		}
+		catch(RuntimeException e) {
+			LOGGER.warn(
+				"Error while writing a batch of " +
+					batch.size() +
+					" audits. Retrying them one at a time.",
+				e);
+			flushIndividually(batch);
+		}
+		long elapsed = System.nanoTime() - start;
+
+		flushes.incrementAndGet();
+		flushTimeNanos.addAndGet(elapsed);
+		lastFlushNanos.set(elapsed);
+
+		if(LOGGER.isDebugEnabled()) {
+			LOGGER.debug(
+				"Wrote " +
+					batch.size() +
+					" audit(s) in " +
+					(elapsed / 1000000) +
+					"ms with " +
+					queue.size() +
+					" still queued.");
+		}
+	}
+
+	/**
+	 * Writes each audit in a batch on its own, counting the ones that cannot
+	 * be written as failed.
+	 *
+	 * @param batch The audits to write.
+	 */
+	private void flushIndividually(final List<AuditEntry> batch) {
+		for(AuditEntry entry : batch) {
+			try {
+				AuditServices.instance().createAudits(
+					Collections.singletonList(entry));
+				written.incrementAndGet();
+			}
+			catch(ServiceException e) {
+				failed.incrementAndGet();
+				LOGGER.error(
+					"Error while writing an audit for: " + entry.getUri(),
+					e);
+			}
+			catch(RuntimeException e) {
+				failed.incrementAndGet();
+				LOGGER.error(
+					"Error while writing an audit for: " + entry.getUri(),
+					e);
+			}
+		}
+	}
+}
@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.joda.time.DateTime;
+import org.ohmage.domain.campaign.Campaign;
+import org.ohmage.domain.campaign.RepeatableSet;
+import org.ohmage.domain.campaign.Survey;
+import org.ohmage.domain.campaign.SurveyItem;
+import org.ohmage.domain.campaign.prompt.CustomChoicePrompt;
+import org.ohmage.exception.DomainException;
+
+/**
+ * <p>
+ * A bounded, in-memory cache of parsed campaigns. Parsing a campaign's XML
+ * and building its surveys is expensive, but campaign definitions rarely
+ * change, so the parsed surveys are kept and re-wrapped in a new
+ * {@link Campaign} object for each request.
+ * </p>
+ *
+ * <p>
+ * Each entry is keyed by the campaign's unique identifier and stamped with
+ * the campaign's creation timestamp, which is reset whenever the XML is
+ * updated. A lookup with a different stamp is a miss.
+ * </p>
+ *
+ * <p>
+ * Campaigns that contain custom choice prompts are never cached because
+ * those prompts collect the custom choices of the responses that are
+ * validated against them.
+ * </p>
+ */
+public final class CampaignCache {
+	private static final Logger LOGGER = Logger.getLogger(CampaignCache.class);
+
+	/**
+	 * A parsed campaign along with the stamp of the definition from which it
+	 * was parsed.
+	 */
+	private static final class CachedCampaign {
+		private final long stamp;
+		private final Campaign campaign;
+
+		/**
+		 * Creates a new cache entry.
+		 *
+		 * @param stamp The campaign's modification stamp.
+		 *
+		 * @param campaign The parsed campaign, which will never be handed
+		 * 				   out directly.
+		 */
+		private CachedCampaign(final long stamp, final Campaign campaign) {
+			this.stamp = stamp;
+			this.campaign = campaign;
+		}
+	}
+
+	// The reference to one's self to return to requesters.
+	private static CampaignCache instance;
+
+	// The campaigns in least-recently-used order.
+	private final Map<String, CachedCampaign> campaigns;
+
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+	private final AtomicLong parses = new AtomicLong(0);
+	private final AtomicLong parseTimeNanos = new AtomicLong(0);
+
+	/**
+	 * Creates the cache. This is done once by Spring.
+	 *
+	 * @param maxSize The maximum number of campaigns to cache.
+	 *
+	 * @throws IllegalArgumentException The maximum size is not positive.
+	 */
+	private CampaignCache(final int maxSize) {
+		if(maxSize <= 0) {
+			throw new IllegalArgumentException(
+				"The maximum size must be positive.");
+		}
+
+		LOGGER.info("Caching up to " + maxSize + " parsed campaigns.");
+
+		campaigns =
+			new LinkedHashMap<String, CachedCampaign>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						final Map.Entry<String, CachedCampaign> eldest) {
+
+					return size() > maxSize;
+				}
+			};
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the one instance of this cache or null if it was not
+	 * configured.
+	 *
+	 * @return The one instance of this cache or null.
+	 */
+	public static CampaignCache instance() {
+		return instance;
+	}
+
+	/**
+	 * Returns a new campaign built from the cached surveys if the cached
+	 * definition has the given stamp.
+	 *
+	 * @param campaignId The campaign's unique identifier.
+	 *
+	 * @param stamp The campaign's current modification stamp.
+	 *
+	 * @param description The campaign's current description.
+	 *
+	 * @param runningState The campaign's current running state.
+	 *
+	 * @param privacyState The campaign's current privacy state.
+	 *
+	 * @param editable The campaign's current editable state.
+	 *
+	 * @return A new Campaign object or null if the campaign was not cached or
+	 * 		   is out of date.
+	 *
+	 * @throws DomainException The campaign could not be rebuilt.
+	 */
+	public Campaign get(
+			final String campaignId,
+			final long stamp,
+			final String description,
+			final Campaign.RunningState runningState,
+			final Campaign.PrivacyState privacyState,
+			final Boolean editable)
+			throws DomainException {
+
+		CachedCampaign cached;
+		synchronized(campaigns) {
+			cached = campaigns.get(campaignId);
+		}
+
+		if((cached == null) || (cached.stamp != stamp)) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+
+		Campaign template = cached.campaign;
+		return new Campaign(
+			template.getId(),
+			template.getName(),
+			description,
+			template.getIconUrl(),
+			template.getAuthoredBy(),
+			runningState,
+			privacyState,
+			new DateTime(stamp),
+			template.getSurveys(),
+			template.getXml(),
+			editable);
+	}
+
+	/**
+	 * Adds a freshly parsed campaign to the cache, if it can be shared, and
+	 * returns the campaign that should be given to the caller.
+	 *
+	 * @param campaignId The campaign's unique identifier.
+	 *
+	 * @param stamp The campaign's modification stamp.
+	 *
+	 * @param campaign The freshly parsed campaign.
+	 *
+	 * @param parseTimeNanos The number of nanoseconds it took to parse the
+	 * 						 campaign.
+	 *
+	 * @return The campaign to give to the caller, which is never the same
+	 * 		   object as the one that was cached.
+	 *
+	 * @throws DomainException The campaign could not be copied.
+	 */
+	public Campaign put(
+			final String campaignId,
+			final long stamp,
+			final Campaign campaign,
+			final long parseTimeNanos)
+			throws DomainException {
+
+		parses.incrementAndGet();
+		this.parseTimeNanos.addAndGet(parseTimeNanos);
+
+		if(! isShareable(campaign)) {
+			return campaign;
+		}
+
+		synchronized(campaigns) {
+			campaigns.put(campaignId, new CachedCampaign(stamp, campaign));
+		}
+
+		return get(
+			campaignId,
+			stamp,
+			campaign.getDescription(),
+			campaign.getRunningState(),
+			campaign.getPrivacyState(),
+			campaign.getEditable());
+	}
+
+	/**
+	 * Removes a campaign from the cache. This should be called whenever a
+	 * campaign is updated or deleted.
+	 *
+	 * @param campaignId The campaign's unique identifier.
+	 */
+	public void invalidate(final String campaignId) {
+		synchronized(campaigns) {
+			campaigns.remove(campaignId);
+		}
+	}
+
+	/**
+	 * Returns the number of lookups that were answered from the cache.
+	 *
+	 * @return The number of cache hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of lookups that were not answered from the cache.
+	 *
+	 * @return The number of cache misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of campaigns that were parsed.
+	 *
+	 * @return The number of campaigns that were parsed.
+	 */
+	public long getParses() {
+		return parses.get();
+	}
+
+	/**
+	 * Returns the total time spent parsing campaigns.
+	 *
+	 * @return The total time spent parsing campaigns in milliseconds.
+	 */
+	public long getParseTimeMillis() {
+		return parseTimeNanos.get() / 1000000;
+	}
+
+	/**
+	 * Returns the number of campaigns that are currently cached.
+	 *
+	 * @return The number of campaigns that are currently cached.
+	 */
+	public int getSize() {
+		synchronized(campaigns) {
+			return campaigns.size();
+		}
+	}
+
+	/**
+	 * Returns whether or not a campaign's surveys can be shared between
+	 * requests, which is only true if none of them contain custom choice
+	 * prompts.
+	 *
+	 * @param campaign The campaign.
+	 *
+	 * @return Whether or not the campaign can be cached.
+	 *
+	 * @throws DomainException The campaign's surveys could not be read.
+	 */
+	private static boolean isShareable(
+			final Campaign campaign)
+			throws DomainException {
+
+		for(Survey survey : campaign.getSurveys().values()) {
+			if(! isShareable(survey.getSurveyItems())) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns whether or not a group of survey items can be shared between
+	 * requests.
+	 *
+	 * @param surveyItems The survey items.
+	 *
+	 * @return Whether or not the survey items can be shared.
+	 */
+	private static boolean isShareable(
+			final Map<Integer, SurveyItem> surveyItems) {
+
+		for(SurveyItem surveyItem : surveyItems.values()) {
+			if(surveyItem instanceof CustomChoicePrompt) {
+				return false;
+			}
+			else if(surveyItem instanceof RepeatableSet) {
+				if(! isShareable(
+						((RepeatableSet) surveyItem).getSurveyItems())) {
+
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+}
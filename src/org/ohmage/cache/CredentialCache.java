@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * A short-lived, bounded cache of passwords that were recently verified with
+ * BCrypt. BCrypt is deliberately expensive, and clients that authenticate
+ * with a username and password do so on every upload, so a successful
+ * verification is remembered for a short while.
+ * </p>
+ *
+ * <p>
+ * The plaintext password is never stored. Each entry holds a keyed hash of
+ * the username and password, where the key is random and never leaves this
+ * process, along with the stored BCrypt hash that it was verified against.
+ * A lookup only succeeds if both still match, so changing the stored hash
+ * invalidates an entry even if {@link #invalidate(String)} is not called.
+ * </p>
+ */
+public final class CredentialCache {
+	private static final Logger LOGGER =
+		Logger.getLogger(CredentialCache.class);
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+
+	/**
+	 * A verified credential.
+	 */
+	private static final class Verification {
+		private final byte[] digest;
+		private final String storedHash;
+		private final long expiration;
+
+		/**
+		 * Creates a new verification.
+		 *
+		 * @param digest The keyed hash of the username and password.
+		 *
+		 * @param storedHash The stored BCrypt hash that the password was
+		 * 					 verified against.
+		 *
+		 * @param expiration The time after which this verification is no
+		 * 					 longer trusted.
+		 */
+		private Verification(
+				final byte[] digest,
+				final String storedHash,
+				final long expiration) {
+
+			this.digest = digest;
+			this.storedHash = storedHash;
+			this.expiration = expiration;
+		}
+	}
+
+	// The reference to one's self to return to requesters.
+	private static CredentialCache instance;
+
+	// The verifications in least-recently-used order.
+	private final Map<String, Verification> verifications;
+	private final long lifetimeMillis;
+
+	// The key for the keyed hash, which is unique to this process.
+	private final SecretKeySpec key;
+	private final ThreadLocal<Mac> macs;
+
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong verifies = new AtomicLong(0);
+
+	/**
+	 * Creates the cache. This is done once by Spring.
+	 *
+	 * @param maxSize The maximum number of users whose credentials are
+	 * 				  cached.
+	 *
+	 * @param lifetimeMillis The number of milliseconds for which a
+	 * 						 verification is trusted.
+	 *
+	 * @throws IllegalArgumentException One of the parameters is not
+	 * 									positive.
+	 */
+	private CredentialCache(final int maxSize, final long lifetimeMillis) {
+		if(maxSize <= 0) {
+			throw new IllegalArgumentException(
+				"The maximum size must be positive.");
+		}
+		else if(lifetimeMillis <= 0) {
+			throw new IllegalArgumentException(
+				"The lifetime must be positive.");
+		}
+
+		LOGGER.info(
+			"Caching up to " +
+				maxSize +
+				" verified credentials for " +
+				lifetimeMillis +
+				" milliseconds.");
+
+		verifications =
+			new LinkedHashMap<String, Verification>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						final Map.Entry<String, Verification> eldest) {
+
+					return size() > maxSize;
+				}
+			};
+		this.lifetimeMillis = lifetimeMillis;
+
+		byte[] keyBytes = new byte[32];
+		new SecureRandom().nextBytes(keyBytes);
+		key = new SecretKeySpec(keyBytes, MAC_ALGORITHM);
+		macs = new ThreadLocal<Mac>() {
+			@Override
+			protected Mac initialValue() {
+				try {
+					Mac mac = Mac.getInstance(MAC_ALGORITHM);
+					mac.init(key);
+					return mac;
+				}
+				catch(GeneralSecurityException e) {
+					throw new IllegalStateException(
+						"The keyed hash could not be created.",
+						e);
+				}
+			}
+		};
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the one instance of this cache or null if it was not
+	 * configured.
+	 *
+	 * @return The one instance of this cache or null.
+	 */
+	public static CredentialCache instance() {
+		return instance;
+	}
+
+	/**
+	 * Returns whether or not a password was recently verified against a
+	 * user's stored hash.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param password The plaintext password.
+	 *
+	 * @param storedHash The user's current, stored BCrypt hash.
+	 *
+	 * @return True if the password was recently verified against this exact
+	 * 		   hash; false, otherwise, in which case the caller must verify it
+	 * 		   with BCrypt.
+	 */
+	public boolean isVerified(
+			final String username,
+			final String password,
+			final String storedHash) {
+
+		if((username == null) || (password == null) || (storedHash == null)) {
+			return false;
+		}
+
+		Verification verification;
+		synchronized(verifications) {
+			verification = verifications.get(username);
+		}
+
+		if((verification != null) &&
+			(verification.expiration > System.currentTimeMillis()) &&
+			verification.storedHash.equals(storedHash) &&
+			MessageDigest.isEqual(
+				verification.digest,
+				digest(username, password))) {
+
+			hits.incrementAndGet();
+			return true;
+		}
+
+		verifies.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Records that a password was successfully verified with BCrypt.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param password The plaintext password.
+	 *
+	 * @param storedHash The stored BCrypt hash that the password matched.
+	 */
+	public void putVerified(
+			final String username,
+			final String password,
+			final String storedHash) {
+
+		if((username == null) || (password == null) || (storedHash == null)) {
+			return;
+		}
+
+		Verification verification =
+			new Verification(
+				digest(username, password),
+				storedHash,
+				System.currentTimeMillis() + lifetimeMillis);
+
+		synchronized(verifications) {
+			verifications.put(username, verification);
+		}
+	}
+
+	/**
+	 * Removes a user's verified credentials. This should be called whenever
+	 * a user's password is changed or their account is disabled or deleted.
+	 *
+	 * @param username The user's username.
+	 */
+	public void invalidate(final String username) {
+		synchronized(verifications) {
+			verifications.remove(username);
+		}
+	}
+
+	/**
+	 * Returns the number of verifications that were answered from the cache.
+	 *
+	 * @return The number of cache hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of verifications that had to be done with BCrypt.
+	 *
+	 * @return The number of BCrypt verifications.
+	 */
+	public long getBcryptVerifications() {
+		return verifies.get();
+	}
+
+	/**
+	 * Returns the number of users whose credentials are currently cached.
+	 *
+	 * @return The number of users whose credentials are currently cached.
+	 */
+	public int getSize() {
+		synchronized(verifications) {
+			return verifications.size();
+		}
+	}
+
+	/**
+	 * Computes the keyed hash of a username and password.
+	 *
+	 * @param username The username.
+	 *
+	 * @param password The plaintext password.
+	 *
+	 * @return The keyed hash.
+	 */
+	private byte[] digest(final String username, final String password) {
+		Mac mac = macs.get();
+		mac.update(username.getBytes(CHARSET));
+		mac.update((byte) 0);
+		return mac.doFinal(password.getBytes(CHARSET));
+	}
+}
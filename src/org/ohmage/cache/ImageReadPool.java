@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * <p>
+ * The threads that read images ahead of the one being written by every image
+ * export, shared so that the number of threads does not grow with the number
+ * of concurrent exports.
+ * </p>
+ *
+ * <p>
+ * The number of reads waiting for a thread is bounded. When it is reached,
+ * the export that asked for another read does it itself, which slows that
+ * export down instead of queuing more images in memory.
+ * </p>
+ */
+public final class ImageReadPool implements DisposableBean {
+	private static final Logger LOGGER = Logger.getLogger(ImageReadPool.class);
+
+	// The reference to one's self to return to requesters.
+	private static ImageReadPool instance;
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Creates the pool and starts its threads. This is done once by Spring.
+	 *
+	 * @param numThreads The number of threads reading images.
+	 *
+	 * @param maxWaiting The maximum number of reads waiting for a thread.
+	 *
+	 * @throws IllegalArgumentException One of the parameters is invalid.
+	 */
+	private ImageReadPool(final int numThreads, final int maxWaiting) {
+		if(numThreads <= 0) {
+			throw new IllegalArgumentException(
+				"The number of threads must be positive.");
+		}
+		else if(maxWaiting <= 0) {
+			throw new IllegalArgumentException(
+				"The maximum number of waiting reads must be positive.");
+		}
+
+		LOGGER.info(
+			"Creating the image read pool with " +
+				numThreads +
+				" thread(s) and at most " +
+				maxWaiting +
+				" waiting read(s).");
+
+		final AtomicInteger threadNumber = new AtomicInteger(0);
+		executor =
+			new ThreadPoolExecutor(
+				numThreads,
+				numThreads,
+				0,
+				TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(maxWaiting),
+				new ThreadFactory() {
+					/*
+					 * (non-Javadoc)
+					 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+					 */
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						Thread thread =
+							new Thread(
+								runnable,
+								"ImageReadPool - Reader " +
+									threadNumber.getAndIncrement());
+						thread.setDaemon(true);
+						return thread;
+					}
+				},
+				new RejectedExecutionHandler() {
+					/**
+					 * Reads the image on the calling thread. This is also
+					 * done once the pool has been stopped, so that no read is
+					 * left waiting forever.
+					 */
+					@Override
+					public void rejectedExecution(
+							final Runnable read,
+							final ThreadPoolExecutor pool) {
+
+						read.run();
+					}
+				});
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the one instance of this pool or null if it was not
+	 * configured.
+	 *
+	 * @return The one instance of this pool or null.
+	 */
+	public static ImageReadPool instance() {
+		return instance;
+	}
+
+	/**
+	 * Reads an image on one of the pool's threads or, if too many reads are
+	 * already waiting, on the calling thread before returning.
+	 *
+	 * @param read The read.
+	 *
+	 * @return The result of the read, which should be cancelled if it is no
+	 * 		   longer wanted.
+	 */
+	public <T> Future<T> submit(final Callable<T> read) {
+		return executor.submit(read);
+	}
+
+	/**
+	 * Stops the pool's threads, interrupting any reads in progress.
+	 */
+	@Override
+	public void destroy() throws Exception {
+		executor.shutdownNow();
+	}
+}
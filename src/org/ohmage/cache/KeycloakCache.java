@@ -73,6 +73,7 @@ public class KeycloakCache {
 		}
 
 		realm = map.get(KEY_KEYCLOAK_REALM);
+		PublicKey previousPublicKey = realmPublicKey;
 		realmPublicKey = parseKey(map.get(KEY_KEYCLOAK_REALM_PUBLIC_KEY));
 		authServerUrl = map.get(KEY_KEYCLOAK_AUTH_SERVER_URL);
 		sslRequired = map.get(KEY_KEYCLOAK_SSL_REQUIRED);
@@ -85,6 +86,15 @@ public class KeycloakCache {
 		 * bearer.
 		 */
 		validConfig = validKeycloakServer(map.get(KEY_KEYCLOAK_REALM_PUBLIC_KEY));
+		
+		// Any token verified with a different key is no longer trusted.
+		KeycloakTokenCache tokenCache = KeycloakTokenCache.instance();
+		if((tokenCache != null) && 
+				((realmPublicKey == null) || 
+					(! realmPublicKey.equals(previousPublicKey)))) {
+			
+			tokenCache.invalidateAll();
+		}
 	}
 
 	public static String getRealm() {
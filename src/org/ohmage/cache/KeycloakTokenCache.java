@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.apache.log4j.Logger;
+import org.jose4j.jwt.consumer.JwtContext;
+
+/**
+ * <p>
+ * A bounded cache of Keycloak bearer tokens whose signatures have already
+ * been verified. Each token is keyed by its SHA-256 hash and is only trusted
+ * until the expiration time in its "exp" claim and only while the realm's
+ * public key is the one that verified it.
+ * </p>
+ */
+public final class KeycloakTokenCache {
+	private static final Logger LOGGER =
+		Logger.getLogger(KeycloakTokenCache.class);
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final String HASH_ALGORITHM = "SHA-256";
+
+	/**
+	 * A verified token.
+	 */
+	private static final class VerifiedToken {
+		private final JwtContext context;
+		private final long expiration;
+		private final PublicKey publicKey;
+
+		/**
+		 * Creates a new verified token.
+		 *
+		 * @param context The parsed and verified token.
+		 *
+		 * @param expiration The token's expiration time in milliseconds.
+		 *
+		 * @param publicKey The public key that verified the token.
+		 */
+		private VerifiedToken(
+				final JwtContext context,
+				final long expiration,
+				final PublicKey publicKey) {
+
+			this.context = context;
+			this.expiration = expiration;
+			this.publicKey = publicKey;
+		}
+	}
+
+	// The reference to one's self to return to requesters.
+	private static KeycloakTokenCache instance;
+
+	// The tokens in least-recently-used order.
+	private final Map<String, VerifiedToken> tokens;
+
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+
+	/**
+	 * Creates the cache. This is done once by Spring.
+	 *
+	 * @param maxSize The maximum number of tokens to cache.
+	 *
+	 * @throws IllegalArgumentException The maximum size is not positive.
+	 */
+	private KeycloakTokenCache(final int maxSize) {
+		if(maxSize <= 0) {
+			throw new IllegalArgumentException(
+				"The maximum size must be positive.");
+		}
+
+		LOGGER.info("Caching up to " + maxSize + " verified bearer tokens.");
+
+		tokens =
+			new LinkedHashMap<String, VerifiedToken>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						final Map.Entry<String, VerifiedToken> eldest) {
+
+					return size() > maxSize;
+				}
+			};
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the one instance of this cache or null if it was not
+	 * configured.
+	 *
+	 * @return The one instance of this cache or null.
+	 */
+	public static KeycloakTokenCache instance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the already verified token if it has not expired and the realm
+	 * public key has not changed since it was verified.
+	 *
+	 * @param bearerToken The bearer token.
+	 *
+	 * @param publicKey The realm's current public key.
+	 *
+	 * @return The verified token or null if it must be verified again.
+	 */
+	public JwtContext get(
+			final String bearerToken,
+			final PublicKey publicKey) {
+
+		if(bearerToken == null) {
+			return null;
+		}
+
+		String key = hash(bearerToken);
+		VerifiedToken verifiedToken;
+		synchronized(tokens) {
+			verifiedToken = tokens.get(key);
+		}
+
+		if(verifiedToken == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		if((publicKey == null) ||
+			(! publicKey.equals(verifiedToken.publicKey)) ||
+			(verifiedToken.expiration <= System.currentTimeMillis())) {
+
+			synchronized(tokens) {
+				tokens.remove(key);
+			}
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return verifiedToken.context;
+	}
+
+	/**
+	 * Adds a token whose signature and claims were just verified.
+	 *
+	 * @param bearerToken The bearer token.
+	 *
+	 * @param context The parsed and verified token.
+	 *
+	 * @param expiration The time at which the token expires, in
+	 * 					 milliseconds.
+	 *
+	 * @param publicKey The public key that verified the token.
+	 */
+	public void put(
+			final String bearerToken,
+			final JwtContext context,
+			final long expiration,
+			final PublicKey publicKey) {
+
+		if((bearerToken == null) || (context == null)) {
+			return;
+		}
+
+		VerifiedToken verifiedToken =
+			new VerifiedToken(context, expiration, publicKey);
+		String key = hash(bearerToken);
+		synchronized(tokens) {
+			tokens.put(key, verifiedToken);
+		}
+	}
+
+	/**
+	 * Removes every token. This is called
+	 * whenever the realm's public key changes.
+	 */
+	public void invalidateAll() {
+		synchronized(tokens) {
+			tokens.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of tokens that did not have to be verified again.
+	 *
+	 * @return The number of cache hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of tokens that had to be verified.
+	 *
+	 * @return The number of cache misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Computes the fixed-length key under which a token is stored.
+	 *
+	 * @param bearerToken The bearer token.
+	 *
+	 * @return The token's hash.
+	 */
+	private static String hash(final String bearerToken) {
+		try {
+			return
+				DatatypeConverter.printBase64Binary(
+					MessageDigest
+						.getInstance(HASH_ALGORITHM)
+						.digest(bearerToken.getBytes(CHARSET)));
+		}
+		catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException(
+				"The hash algorithm is unknown: " + HASH_ALGORITHM,
+				e);
+		}
+	}
+}
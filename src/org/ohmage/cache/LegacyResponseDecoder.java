@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.log4j.Logger;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.service.SurveyResponseServices;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Decodes the survey and prompt responses that were MIME-encoded before they
+ * were stored as 4-byte UTF-8. Each run decodes one small batch of each, so
+ * the tables are never locked for long, and the task stops itself once there
+ * are none left. Until then, the responses that have not yet been decoded are
+ * decoded as they are read.
+ */
+public final class LegacyResponseDecoder extends TimerTask implements DisposableBean {
+	private static final Logger LOGGER =
+		Logger.getLogger(LegacyResponseDecoder.class);
+
+	/**
+	 * The task that is periodically run to decode the responses.
+	 */
+	private static final Timer DECODER =
+		new Timer(
+			"LegacyResponseDecoder - Decoding the legacy responses.",
+			true);
+
+	/**
+	 * The number of milliseconds to wait after starting before the first
+	 * batch.
+	 */
+	private static final long MILLISECONDS_BEFORE_FIRST_BATCH = 1000 * 60;
+
+	/**
+	 * The number of milliseconds between each batch.
+	 */
+	private static final long MILLISECONDS_BETWEEN_BATCHES = 1000;
+
+	/**
+	 * The maximum number of rows from each table that are decoded in a batch.
+	 */
+	private static final int BATCH_SIZE = 500;
+
+	// The last ID decoded from each table or -1 once the table is done.
+	private long lastPromptResponseId = 0;
+	private long lastSurveyResponseId = 0;
+
+	/**
+	 * Default constructor that will be called by Spring via reflection.
+	 */
+	private LegacyResponseDecoder() {
+		LOGGER.info("Creating the legacy response decoder, periodic task.");
+
+		// Create the task that will be run periodically.
+		DECODER.schedule(
+			this,
+			MILLISECONDS_BEFORE_FIRST_BATCH,
+			MILLISECONDS_BETWEEN_BATCHES);
+	}
+
+	/**
+	 * Calls to the survey response services layer to decode the next batch
+	 * from each table.
+	 */
+	@Override
+	public void run() {
+		SurveyResponseServices surveyResponseServices =
+			SurveyResponseServices.instance();
+		if(surveyResponseServices == null) {
+			return;
+		}
+
+		try {
+			if(lastPromptResponseId != -1) {
+				lastPromptResponseId =
+					surveyResponseServices.decodeLegacyPromptResponses(
+						lastPromptResponseId,
+						BATCH_SIZE);
+			}
+
+			if(lastSurveyResponseId != -1) {
+				lastSurveyResponseId =
+					surveyResponseServices.decodeLegacySurveyResponses(
+						lastSurveyResponseId,
+						BATCH_SIZE);
+			}
+		}
+		catch(ServiceException e) {
+			LOGGER.error("Failed to decode a batch of legacy responses.", e);
+			return;
+		}
+
+		if((lastPromptResponseId == -1) && (lastSurveyResponseId == -1)) {
+			LOGGER.info("All of the legacy responses have been decoded.");
+			cancel();
+		}
+	}
+
+	/**
+	 * Stops the decoding task.
+	 */
+	@Override
+	public void destroy() throws Exception {
+		DECODER.cancel();
+	}
+}
@@ -0,0 +1,450 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.ohmage.domain.MobilityPoint;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.service.MobilityServices;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * <p>
+ * A queue of uploaded Mobility points that are waiting to be classified,
+ * bounded by the total number of points it holds. The points are already
+ * stored when they are queued, so the upload is acknowledged without waiting
+ * for the classifier. A fixed number of worker threads classify each
+ * upload's points and store the results.
+ * </p>
+ *
+ * <p>
+ * When an upload would put more points in the queue than it may hold, the
+ * upload is not queued. Its points are classified when they are read, as are
+ * any points whose classification could not be stored.
+ * </p>
+ */
+public final class MobilityClassificationQueue implements DisposableBean {
+	private static final Logger LOGGER =
+		Logger.getLogger(MobilityClassificationQueue.class);
+
+	/**
+	 * One upload's points.
+	 */
+	private static final class Batch {
+		private final String username;
+		private final List<MobilityPoint> mobilityPoints;
+		private final long enqueuedNanos;
+
+		/**
+		 * Creates a new batch.
+		 *
+		 * @param username The username of the user that uploaded the points.
+		 *
+		 * @param mobilityPoints The points, in the order they were taken.
+		 */
+		private Batch(
+				final String username,
+				final List<MobilityPoint> mobilityPoints) {
+
+			this.username = username;
+			this.mobilityPoints = mobilityPoints;
+			enqueuedNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * A thread that repeatedly takes a batch from the queue, classifies it,
+	 * and stores the results.
+	 */
+	private final class Worker extends Thread {
+		/**
+		 * Creates a new worker.
+		 *
+		 * @param number This worker's number, used to name the thread.
+		 */
+		private Worker(final int number) {
+			super("MobilityClassificationQueue - Worker " + number);
+			setDaemon(true);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Thread#run()
+		 */
+		@Override
+		public void run() {
+			while(running) {
+				Batch batch;
+				try {
+					batch =
+						queue.poll(
+							MILLISECONDS_BETWEEN_CHECKS,
+							TimeUnit.MILLISECONDS);
+				}
+				catch(InterruptedException e) {
+					// We are being shut down. Anything left in the queue is
+					// classified when it is read.
+					break;
+				}
+
+				if(batch != null) {
+					// Nothing may stop this thread, or the queue would fill
+					// and every later upload would be left unclassified.
+					try {
+						process(batch);
+					}
+					catch(RuntimeException e) {
+						LOGGER.error("Error while classifying points.", e);
+					}
+					finally {
+						backlog.addAndGet(-batch.mobilityPoints.size());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The number of milliseconds a worker waits for a batch before checking
+	 * whether or not it has been shut down.
+	 */
+	private static final long MILLISECONDS_BETWEEN_CHECKS = 1000;
+
+	/**
+	 * The number of milliseconds to wait before the first retry of a failed
+	 * batch. Each following retry waits this much longer.
+	 */
+	private static final long RETRY_DELAY_MILLIS = 1000;
+
+	// The reference to one's self to return to requesters.
+	private static MobilityClassificationQueue instance;
+
+	private final BlockingQueue<Batch> queue;
+	private final long maxPoints;
+	private final int maxRetries;
+	private final List<Worker> workers;
+
+	private volatile boolean running = true;
+
+	private final AtomicLong backlog = new AtomicLong(0);
+	private final AtomicLong dropped = new AtomicLong(0);
+	private final AtomicLong classified = new AtomicLong(0);
+	private final AtomicLong retries = new AtomicLong(0);
+	private final AtomicLong failed = new AtomicLong(0);
+	private final AtomicLong classificationTimeNanos = new AtomicLong(0);
+	private final AtomicLong latencyNanos = new AtomicLong(0);
+
+	/**
+	 * Creates the queue and starts its workers. This is done once by Spring.
+	 *
+	 * @param maxPoints The maximum number of points, across all uploads, that
+	 * 					may be waiting to be classified.
+	 *
+	 * @param numWorkers The number of threads classifying points.
+	 *
+	 * @param maxRetries The number of times a batch is retried if it cannot
+	 * 					 be classified or stored.
+	 *
+	 * @throws IllegalArgumentException One of the parameters is invalid.
+	 */
+	private MobilityClassificationQueue(
+			final long maxPoints,
+			final int numWorkers,
+			final int maxRetries) {
+
+		if(maxPoints <= 0) {
+			throw new IllegalArgumentException(
+				"The maximum number of points must be positive.");
+		}
+		else if(numWorkers <= 0) {
+			throw new IllegalArgumentException(
+				"The number of workers must be positive.");
+		}
+		else if(maxRetries < 0) {
+			throw new IllegalArgumentException(
+				"The number of retries cannot be negative.");
+		}
+
+		// Each upload holds all of its points, so the queue is bounded by 
+		// the number of points rather than the number of uploads.
+		queue = new LinkedBlockingQueue<Batch>();
+		this.maxPoints = maxPoints;
+		this.maxRetries = maxRetries;
+
+		LOGGER.info(
+			"Creating the Mobility classification queue with a capacity of " +
+				maxPoints +
+				" points, " +
+				numWorkers +
+				" worker(s), and " +
+				maxRetries +
+				" retries.");
+
+		workers = new ArrayList<Worker>(numWorkers);
+		for(int i = 0; i < numWorkers; i++) {
+			Worker worker = new Worker(i);
+			workers.add(worker);
+			worker.start();
+		}
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the one instance of this queue or null if it was not
+	 * configured.
+	 *
+	 * @return The one instance of this queue or null.
+	 */
+	public static MobilityClassificationQueue instance() {
+		return instance;
+	}
+
+	/**
+	 * Queues one upload's points to be classified. This never waits; if the
+	 * queue cannot hold that many more points, they are left to be classified
+	 * when they are read.
+	 *
+	 * @param username The username of the user that uploaded the points.
+	 *
+	 * @param mobilityPoints The points, which must already be stored.
+	 *
+	 * @return Whether or not the points were queued.
+	 */
+	public boolean enqueue(
+			final String username,
+			final List<MobilityPoint> mobilityPoints) {
+
+		if((username == null) ||
+			(mobilityPoints == null) ||
+			mobilityPoints.isEmpty()) {
+
+			return false;
+		}
+
+		int numPoints = mobilityPoints.size();
+		if(running && reserve(numPoints)) {
+			if(queue.offer(new Batch(username, mobilityPoints))) {
+				return true;
+			}
+			backlog.addAndGet(-numPoints);
+		}
+
+		long dropCount = dropped.addAndGet(mobilityPoints.size());
+		if((dropCount == mobilityPoints.size()) ||
+			((dropCount / 1000) !=
+				((dropCount - mobilityPoints.size()) / 1000))) {
+
+			LOGGER.warn(
+				"The Mobility classification queue is full. " +
+					dropCount +
+					" point(s) have been left to be classified when read.");
+		}
+		return false;
+	}
+
+	/**
+	 * Adds points to the backlog if doing so does not exceed the maximum 
+	 * number of points.
+	 * 
+	 * @param numPoints The number of points.
+	 * 
+	 * @return Whether or not the points were added to the backlog.
+	 */
+	private boolean reserve(final int numPoints) {
+		while(true) {
+			long current = backlog.get();
+			if(current + numPoints > maxPoints) {
+				return false;
+			}
+			else if(backlog.compareAndSet(current, current + numPoints)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of points waiting to be classified.
+	 *
+	 * @return The number of points waiting to be classified.
+	 */
+	public long getBacklog() {
+		return backlog.get();
+	}
+
+	/**
+	 * Returns the number of uploads waiting to be classified.
+	 *
+	 * @return The number of uploads waiting to be classified.
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns the number of points that were not queued because the queue
+	 * was full.
+	 *
+	 * @return The number of points that were not queued.
+	 */
+	public long getDropCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the number of points that were classified and stored.
+	 *
+	 * @return The number of points that were classified and stored.
+	 */
+	public long getClassifiedCount() {
+		return classified.get();
+	}
+
+	/**
+	 * Returns the number of times a batch was retried.
+	 *
+	 * @return The number of retries.
+	 */
+	public long getRetryCount() {
+		return retries.get();
+	}
+
+	/**
+	 * Returns the number of points that could not be classified or stored
+	 * even after retrying.
+	 *
+	 * @return The number of points that failed.
+	 */
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * Returns the average time spent classifying and storing each point.
+	 *
+	 * @return The average time per point in microseconds.
+	 */
+	public long getAverageClassificationMicros() {
+		long count = classified.get();
+		return (count == 0) ? 0 : (classificationTimeNanos.get() / count / 1000);
+	}
+
+	/**
+	 * Returns the average time between a point being queued and its
+	 * classification being stored.
+	 *
+	 * @return The average latency per point in milliseconds.
+	 */
+	public long getAverageLatencyMillis() {
+		long count = classified.get();
+		return (count == 0) ? 0 : (latencyNanos.get() / count / 1000000);
+	}
+
+	/**
+	 * Stops accepting uploads and stops the workers. Uploads that are still
+	 * queued are classified when they are read.
+	 */
+	@Override
+	public void destroy() throws Exception {
+		running = false;
+
+		for(Worker worker : workers) {
+			worker.interrupt();
+		}
+		for(Worker worker : workers) {
+			worker.join();
+		}
+
+		if(! queue.isEmpty()) {
+			LOGGER.info(
+				"Stopping with " +
+					backlog.get() +
+					" point(s) left to be classified when read.");
+		}
+	}
+
+	/**
+	 * Classifies a batch and stores the results, retrying if either fails.
+	 *
+	 * @param batch The batch.
+	 */
+	private void process(final Batch batch) {
+		int numPoints = batch.mobilityPoints.size();
+
+		for(int attempt = 0; attempt <= maxRetries; attempt++) {
+			if(attempt > 0) {
+				retries.incrementAndGet();
+				try {
+					Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+
+			long start = System.nanoTime();
+			try {
+				MobilityServices services = MobilityServices.instance();
+				services.classifyData(batch.username, batch.mobilityPoints);
+				services.storeClassifications(
+					batch.username,
+					batch.mobilityPoints);
+			}
+			catch(ServiceException e) {
+				LOGGER.warn(
+					"Could not classify " +
+						numPoints +
+						" point(s) for user '" +
+						batch.username +
+						"' on attempt " +
+						(attempt + 1) +
+						".",
+					e);
+				continue;
+			}
+			// The classifier may fail on data it does not expect, which 
+			// counts as a failed attempt rather than stopping the worker.
+			catch(RuntimeException e) {
+				LOGGER.error(
+					"Error while classifying " +
+						numPoints +
+						" point(s) for user '" +
+						batch.username +
+						"' on attempt " +
+						(attempt + 1) +
+						".",
+					e);
+				continue;
+			}
+
+			long end = System.nanoTime();
+			classified.addAndGet(numPoints);
+			classificationTimeNanos.addAndGet(end - start);
+			latencyNanos.addAndGet((end - batch.enqueuedNanos) * numPoints);
+			return;
+		}
+
+		failed.addAndGet(numPoints);
+	}
+}
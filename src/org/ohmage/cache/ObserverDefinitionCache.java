@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.ohmage.domain.Observer;
+
+/**
+ * <p>
+ * A bounded cache of the observer and stream definitions that have been read
+ * from the database. Creating a stream validates its schema with
+ * Concordia.js, which is far more expensive than reading it, so each
+ * definition is created once and then shared.
+ * </p>
+ *
+ * <p>
+ * Observers are keyed by their ID and version and streams by their
+ * observer's ID and their own ID and version, none of which change once they
+ * have been stored. Everything for an observer is removed whenever the
+ * observer is updated.
+ * </p>
+ */
+public final class ObserverDefinitionCache {
+	private static final Logger LOGGER =
+		Logger.getLogger(ObserverDefinitionCache.class);
+
+	// Separates the parts of a key. This cannot appear in an ID.
+	private static final char KEY_SEPARATOR = '\u0000';
+
+	// The reference to one's self to return to requesters.
+	private static ObserverDefinitionCache instance;
+
+	// The observers in least-recently-used order.
+	private final Map<String, Observer> observers;
+
+	// The streams in least-recently-used order.
+	private final Map<String, Observer.Stream> streams;
+
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+
+	/**
+	 * Creates the cache. This is done once by Spring.
+	 *
+	 * @param maxSize The maximum number of observers and, separately, the
+	 * 				  maximum number of streams to cache.
+	 *
+	 * @throws IllegalArgumentException The maximum size is not positive.
+	 */
+	private ObserverDefinitionCache(final int maxSize) {
+		if(maxSize <= 0) {
+			throw new IllegalArgumentException(
+				"The maximum size must be positive.");
+		}
+
+		LOGGER.info(
+			"Caching up to " +
+				maxSize +
+				" observer and stream definitions.");
+
+		observers =
+			new LinkedHashMap<String, Observer>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						final Map.Entry<String, Observer> eldest) {
+
+					return size() > maxSize;
+				}
+			};
+		streams =
+			new LinkedHashMap<String, Observer.Stream>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						final Map.Entry<String, Observer.Stream> eldest) {
+
+					return size() > maxSize;
+				}
+			};
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the one instance of this cache or null if it was not
+	 * configured.
+	 *
+	 * @return The one instance of this cache or null.
+	 */
+	public static ObserverDefinitionCache instance() {
+		return instance;
+	}
+
+	/**
+	 * Returns an observer's definition.
+	 *
+	 * @param observerId The observer's ID.
+	 *
+	 * @param observerVersion The observer's version.
+	 *
+	 * @return The observer or null if it is not cached.
+	 */
+	public Observer getObserver(
+			final String observerId,
+			final long observerVersion) {
+
+		Observer result;
+		String key = observerId + KEY_SEPARATOR + observerVersion;
+		synchronized(observers) {
+			result = observers.get(key);
+		}
+
+		count(result);
+		return result;
+	}
+
+	/**
+	 * Adds an observer's definition.
+	 *
+	 * @param observer The observer as it was stored.
+	 */
+	public void putObserver(final Observer observer) {
+		String key = observer.getId() + KEY_SEPARATOR + observer.getVersion();
+		synchronized(observers) {
+			observers.put(key, observer);
+		}
+	}
+
+	/**
+	 * Returns a stream's definition.
+	 *
+	 * @param observerId The ID of the observer to which the stream belongs.
+	 *
+	 * @param streamId The stream's ID.
+	 *
+	 * @param streamVersion The stream's version.
+	 *
+	 * @return The stream or null if it is not cached.
+	 */
+	public Observer.Stream getStream(
+			final String observerId,
+			final String streamId,
+			final long streamVersion) {
+
+		Observer.Stream result;
+		String key = streamKey(observerId, streamId, streamVersion);
+		synchronized(streams) {
+			result = streams.get(key);
+		}
+
+		count(result);
+		return result;
+	}
+
+	/**
+	 * Adds a stream's definition.
+	 *
+	 * @param observerId The ID of the observer to which the stream belongs.
+	 *
+	 * @param stream The stream as it was stored.
+	 */
+	public void putStream(
+			final String observerId,
+			final Observer.Stream stream) {
+
+		String key =
+			streamKey(observerId, stream.getId(), stream.getVersion());
+		synchronized(streams) {
+			streams.put(key, stream);
+		}
+	}
+
+	/**
+	 * Removes every version of an observer and all of its streams. This
+	 * should be called whenever the observer is updated.
+	 *
+	 * @param observerId The observer's ID.
+	 */
+	public void invalidateObserver(final String observerId) {
+		String prefix = observerId + KEY_SEPARATOR;
+		synchronized(observers) {
+			removeKeys(observers, prefix);
+		}
+		synchronized(streams) {
+			removeKeys(streams, prefix);
+		}
+	}
+
+	/**
+	 * Returns the number of definitions that were answered from the cache.
+	 *
+	 * @return The number of cache hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of definitions that had to be created.
+	 *
+	 * @return The number of cache misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Records whether a lookup was a hit or a miss.
+	 *
+	 * @param result The result of the lookup.
+	 */
+	private void count(final Object result) {
+		if(result == null) {
+			misses.incrementAndGet();
+		}
+		else {
+			hits.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Removes every key with some prefix. The caller must hold the map's
+	 * lock.
+	 *
+	 * @param map The map from which to remove the keys.
+	 *
+	 * @param prefix The prefix.
+	 */
+	private static void removeKeys(
+			final Map<String, ?> map,
+			final String prefix) {
+
+		Iterator<String> keys = map.keySet().iterator();
+		while(keys.hasNext()) {
+			if(keys.next().startsWith(prefix)) {
+				keys.remove();
+			}
+		}
+	}
+
+	/**
+	 * Builds the key for a stream.
+	 *
+	 * @param observerId The ID of the observer to which the stream belongs.
+	 *
+	 * @param streamId The stream's ID.
+	 *
+	 * @param streamVersion The stream's version.
+	 *
+	 * @return The key.
+	 */
+	private static String streamKey(
+			final String observerId,
+			final String streamId,
+			final long streamVersion) {
+
+		return
+			observerId +
+				KEY_SEPARATOR +
+				streamId +
+				KEY_SEPARATOR +
+				streamVersion;
+	}
+}
@@ -0,0 +1,309 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * A bounded cache of the database IDs needed to store stream data: the ID of
+ * the link between an observer version and a stream version, and the ID of
+ * the user that uploaded the data. Both are the same for every point in an
+ * upload and rarely change, so they are resolved once instead of with
+ * sub-selects for every point.
+ * </p>
+ *
+ * <p>
+ * An observer's links are removed whenever the observer is updated, and a
+ * user's ID is removed whenever the user is deleted.
+ * </p>
+ *
+ * <p>
+ * The database compares usernames and observer and stream IDs without regard
+ * to case, so the keys are lower-cased. Otherwise, removing one spelling
+ * would leave the others cached.
+ * </p>
+ */
+public final class ObserverStreamLinkCache {
+	private static final Logger LOGGER =
+		Logger.getLogger(ObserverStreamLinkCache.class);
+
+	// Separates the parts of a link's key. This cannot appear in an ID.
+	private static final char KEY_SEPARATOR = '\u0000';
+
+	// The reference to one's self to return to requesters.
+	private static ObserverStreamLinkCache instance;
+
+	// The link IDs in least-recently-used order.
+	private final Map<String, Long> linkIds;
+
+	// The user IDs in least-recently-used order.
+	private final Map<String, Long> userIds;
+
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+
+	/**
+	 * Creates the cache. This is done once by Spring.
+	 *
+	 * @param maxSize The maximum number of links and, separately, the maximum
+	 * 				  number of users to cache.
+	 *
+	 * @throws IllegalArgumentException The maximum size is not positive.
+	 */
+	private ObserverStreamLinkCache(final int maxSize) {
+		if(maxSize <= 0) {
+			throw new IllegalArgumentException(
+				"The maximum size must be positive.");
+		}
+
+		LOGGER.info(
+			"Caching up to " +
+				maxSize +
+				" observer-stream links and user IDs.");
+
+		linkIds =
+			new LinkedHashMap<String, Long>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						final Map.Entry<String, Long> eldest) {
+
+					return size() > maxSize;
+				}
+			};
+		userIds =
+			new LinkedHashMap<String, Long>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						final Map.Entry<String, Long> eldest) {
+
+					return size() > maxSize;
+				}
+			};
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the one instance of this cache or null if it was not
+	 * configured.
+	 *
+	 * @return The one instance of this cache or null.
+	 */
+	public static ObserverStreamLinkCache instance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the database ID of the link between an observer and a stream.
+	 *
+	 * @param observerId The observer's ID.
+	 *
+	 * @param observerVersion The observer's version.
+	 *
+	 * @param streamId The stream's ID.
+	 *
+	 * @param streamVersion The stream's version.
+	 *
+	 * @return The link's database ID or null if it is not cached.
+	 */
+	public Long getLinkId(
+			final String observerId,
+			final long observerVersion,
+			final String streamId,
+			final long streamVersion) {
+
+		Long result;
+		String key =
+			linkKey(observerId, observerVersion, streamId, streamVersion);
+		synchronized(linkIds) {
+			result = linkIds.get(key);
+		}
+
+		count(result);
+		return result;
+	}
+
+	/**
+	 * Adds the database ID of the link between an observer and a stream.
+	 *
+	 * @param observerId The observer's ID.
+	 *
+	 * @param observerVersion The observer's version.
+	 *
+	 * @param streamId The stream's ID.
+	 *
+	 * @param streamVersion The stream's version.
+	 *
+	 * @param linkId The link's database ID.
+	 */
+	public void putLinkId(
+			final String observerId,
+			final long observerVersion,
+			final String streamId,
+			final long streamVersion,
+			final long linkId) {
+
+		String key =
+			linkKey(observerId, observerVersion, streamId, streamVersion);
+		synchronized(linkIds) {
+			linkIds.put(key, linkId);
+		}
+	}
+
+	/**
+	 * Returns the database ID of a user.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @return The user's database ID or null if it is not cached.
+	 */
+	public Long getUserId(final String username) {
+		Long result;
+		synchronized(userIds) {
+			result = userIds.get(userKey(username));
+		}
+
+		count(result);
+		return result;
+	}
+
+	/**
+	 * Adds the database ID of a user.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param userId The user's database ID.
+	 */
+	public void putUserId(final String username, final long userId) {
+		synchronized(userIds) {
+			userIds.put(userKey(username), userId);
+		}
+	}
+
+	/**
+	 * Removes every link for every version of an observer. This should be
+	 * called whenever the observer is updated.
+	 *
+	 * @param observerId The observer's ID.
+	 */
+	public void invalidateObserver(final String observerId) {
+		String prefix = (observerId + KEY_SEPARATOR).toLowerCase(Locale.ENGLISH);
+		synchronized(linkIds) {
+			Iterator<String> keys = linkIds.keySet().iterator();
+			while(keys.hasNext()) {
+				if(keys.next().startsWith(prefix)) {
+					keys.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes a user's database ID. This should be called whenever the user
+	 * is deleted.
+	 *
+	 * @param username The user's username.
+	 */
+	public void invalidateUser(final String username) {
+		synchronized(userIds) {
+			userIds.remove(userKey(username));
+		}
+	}
+
+	/**
+	 * Returns the number of IDs that were answered from the cache.
+	 *
+	 * @return The number of cache hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of IDs that had to be read from the database.
+	 *
+	 * @return The number of cache misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Records whether a lookup was a hit or a miss.
+	 *
+	 * @param result The result of the lookup.
+	 */
+	private void count(final Long result) {
+		if(result == null) {
+			misses.incrementAndGet();
+		}
+		else {
+			hits.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Builds the key for a link.
+	 *
+	 * @param observerId The observer's ID.
+	 *
+	 * @param observerVersion The observer's version.
+	 *
+	 * @param streamId The stream's ID.
+	 *
+	 * @param streamVersion The stream's version.
+	 *
+	 * @return The key.
+	 */
+	private static String linkKey(
+			final String observerId,
+			final long observerVersion,
+			final String streamId,
+			final long streamVersion) {
+
+		return
+			(observerId +
+				KEY_SEPARATOR +
+				observerVersion +
+				KEY_SEPARATOR +
+				streamId +
+				KEY_SEPARATOR +
+				streamVersion)
+					.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Builds the key for a user.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @return The key.
+	 */
+	private static String userKey(final String username) {
+		return username.toLowerCase(Locale.ENGLISH);
+	}
+}
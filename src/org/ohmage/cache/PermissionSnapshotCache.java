@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.ohmage.domain.campaign.PermissionSnapshot;
+
+/**
+ * <p>
+ * A short-lived, bounded cache of users' permissions in campaigns. A single
+ * request may check a user's permissions in a campaign several times, and
+ * clients upload to and read from the same campaigns over and over, so each
+ * snapshot is shared for a short while.
+ * </p>
+ *
+ * <p>
+ * A campaign's snapshots are removed whenever the campaign is changed, a
+ * user's whenever the user is changed, and all of them whenever a class is
+ * changed, as that may change the roles of any of its users in any of its
+ * campaigns.
+ * </p>
+ */
+public final class PermissionSnapshotCache {
+	private static final Logger LOGGER =
+		Logger.getLogger(PermissionSnapshotCache.class);
+
+	// Separates the parts of a key. This cannot appear in a username or a
+	// campaign ID.
+	private static final char KEY_SEPARATOR = '\u0000';
+
+	/**
+	 * A cached snapshot.
+	 */
+	private static final class Entry {
+		private final PermissionSnapshot snapshot;
+		private final long expiration;
+
+		/**
+		 * Creates a new entry.
+		 *
+		 * @param snapshot The snapshot.
+		 *
+		 * @param expiration The time after which the snapshot is no longer
+		 * 					 trusted.
+		 */
+		private Entry(
+				final PermissionSnapshot snapshot,
+				final long expiration) {
+
+			this.snapshot = snapshot;
+			this.expiration = expiration;
+		}
+	}
+
+	// The reference to one's self to return to requesters.
+	private static PermissionSnapshotCache instance;
+
+	// The snapshots in least-recently-used order.
+	private final Map<String, Entry> snapshots;
+	private final long lifetimeMillis;
+
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+
+	/**
+	 * Creates the cache. This is done once by Spring.
+	 *
+	 * @param maxSize The maximum number of snapshots to cache.
+	 *
+	 * @param lifetimeMillis The number of milliseconds for which a snapshot
+	 * 						 is trusted.
+	 *
+	 * @throws IllegalArgumentException One of the parameters is not
+	 * 									positive.
+	 */
+	private PermissionSnapshotCache(
+			final int maxSize,
+			final long lifetimeMillis) {
+
+		if(maxSize <= 0) {
+			throw new IllegalArgumentException(
+				"The maximum size must be positive.");
+		}
+		else if(lifetimeMillis <= 0) {
+			throw new IllegalArgumentException(
+				"The lifetime must be positive.");
+		}
+
+		LOGGER.info(
+			"Caching up to " +
+				maxSize +
+				" campaign permission snapshots for " +
+				lifetimeMillis +
+				" milliseconds.");
+
+		snapshots =
+			new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						final Map.Entry<String, Entry> eldest) {
+
+					return size() > maxSize;
+				}
+			};
+		this.lifetimeMillis = lifetimeMillis;
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the one instance of this cache or null if it was not
+	 * configured.
+	 *
+	 * @return The one instance of this cache or null.
+	 */
+	public static PermissionSnapshotCache instance() {
+		return instance;
+	}
+
+	/**
+	 * Returns a user's permissions in a campaign.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param campaignId The campaign's unique identifier.
+	 *
+	 * @return The snapshot or null if it is not cached or has expired.
+	 */
+	public PermissionSnapshot get(
+			final String username,
+			final String campaignId) {
+
+		String key = key(username, campaignId);
+		Entry entry;
+		synchronized(snapshots) {
+			entry = snapshots.get(key);
+			if((entry != null) &&
+				(entry.expiration <= System.currentTimeMillis())) {
+
+				snapshots.remove(key);
+				entry = null;
+			}
+		}
+
+		if(entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return entry.snapshot;
+	}
+
+	/**
+	 * Adds a user's permissions in a campaign.
+	 *
+	 * @param snapshot The snapshot.
+	 */
+	public void put(final PermissionSnapshot snapshot) {
+		Entry entry =
+			new Entry(
+				snapshot,
+				System.currentTimeMillis() + lifetimeMillis);
+
+		String key = key(snapshot.getUsername(), snapshot.getCampaignId());
+		synchronized(snapshots) {
+			snapshots.put(key, entry);
+		}
+	}
+
+	/**
+	 * Removes all of a user's snapshots. This should be called whenever the
+	 * user is changed or deleted.
+	 *
+	 * @param username The user's username.
+	 */
+	public void invalidateUser(final String username) {
+		String prefix = username + KEY_SEPARATOR;
+		synchronized(snapshots) {
+			Iterator<String> keys = snapshots.keySet().iterator();
+			while(keys.hasNext()) {
+				if(keys.next().startsWith(prefix)) {
+					keys.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all of a campaign's snapshots. This should be called whenever
+	 * the campaign, including its users and classes, is created, changed, or
+	 * deleted.
+	 *
+	 * @param campaignId The campaign's unique identifier.
+	 */
+	public void invalidateCampaign(final String campaignId) {
+		String suffix = KEY_SEPARATOR + campaignId;
+		synchronized(snapshots) {
+			Iterator<String> keys = snapshots.keySet().iterator();
+			while(keys.hasNext()) {
+				if(keys.next().endsWith(suffix)) {
+					keys.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes every snapshot. This should be called whenever a class is
+	 * changed or deleted.
+	 */
+	public void invalidateAll() {
+		synchronized(snapshots) {
+			snapshots.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of snapshots that were answered from the cache.
+	 *
+	 * @return The number of cache hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of snapshots that had to be read from the database.
+	 *
+	 * @return The number of cache misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Builds the key for a snapshot.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param campaignId The campaign's unique identifier.
+	 *
+	 * @return The key.
+	 */
+	private static String key(
+			final String username,
+			final String campaignId) {
+
+		return username + KEY_SEPARATOR + campaignId;
+	}
+}
@@ -0,0 +1,532 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * A bounded cache of Bloom filters over the point IDs that a user has stored
+ * for each observer's stream. Clients re-send overlapping windows of data, so
+ * most uploaded IDs are checked for duplicates even though they are new. A
+ * filter answers "definitely new" for most of them, and only the IDs it
+ * might contain have to be checked against the database.
+ * </p>
+ *
+ * <p>
+ * A filter is created empty and registered before it is warmed from the
+ * database, so that IDs stored while it is warming are added to it. It is
+ * only used once it is warm. Every ID that is stored must be added with
+ * {@link #add(String, String, String, Collection)}. Deleted IDs are never
+ * removed; they only cause a database check that finds nothing.
+ * </p>
+ *
+ * <p>
+ * A filter is sized for the IDs that existed when it was warmed plus room to
+ * grow. Once more IDs have been added than it was sized for, it is removed
+ * so that it is rebuilt, larger, on the next upload.
+ * </p>
+ */
+public final class StreamDuplicateFilter {
+	private static final Logger LOGGER =
+		Logger.getLogger(StreamDuplicateFilter.class);
+
+	// Separates the parts of a filter's key. This cannot appear in an ID.
+	private static final char KEY_SEPARATOR = '\u0000';
+
+	/**
+	 * A Bloom filter over one stream's point IDs.
+	 */
+	public static final class IdFilter {
+		private final String key;
+		private final long[] bits;
+		private final int numBits;
+		private final int numHashes;
+		private final long capacity;
+
+		private long size = 0;
+		private volatile boolean warm = false;
+
+		/**
+		 * Creates an empty filter.
+		 *
+		 * @param key The key under which the filter is cached.
+		 *
+		 * @param capacity The number of IDs for which the filter is sized.
+		 *
+		 * @param falsePositiveRate The desired false positive rate when the
+		 * 							filter holds its capacity.
+		 */
+		private IdFilter(
+				final String key,
+				final long capacity,
+				final double falsePositiveRate) {
+
+			this.key = key;
+			this.capacity = capacity;
+
+			double ln2 = Math.log(2);
+			long optimalBits =
+				(long) Math.ceil(
+					(-capacity * Math.log(falsePositiveRate)) / (ln2 * ln2));
+			numBits =
+				(int) Math.max(
+					Long.SIZE,
+					Math.min(Integer.MAX_VALUE - Long.SIZE, optimalBits));
+			numHashes =
+				(int) Math.max(
+					1,
+					Math.round(((double) numBits / capacity) * ln2));
+			bits = new long[(numBits + Long.SIZE - 1) / Long.SIZE];
+		}
+
+		/**
+		 * Adds an ID to this filter.
+		 *
+		 * @param id The ID.
+		 */
+		public synchronized void put(final String id) {
+			int hash1 = id.hashCode();
+			int hash2 = secondHash(id);
+			for(int i = 0; i < numHashes; i++) {
+				int bit = index(hash1, hash2, i);
+				bits[bit / Long.SIZE] |= (1L << (bit % Long.SIZE));
+			}
+			size++;
+		}
+
+		/**
+		 * Returns whether or not this filter might contain an ID.
+		 *
+		 * @param id The ID.
+		 *
+		 * @return False if the ID was definitely never added; true if it
+		 * 		   might have been.
+		 */
+		public synchronized boolean mightContain(final String id) {
+			int hash1 = id.hashCode();
+			int hash2 = secondHash(id);
+			for(int i = 0; i < numHashes; i++) {
+				int bit = index(hash1, hash2, i);
+				if((bits[bit / Long.SIZE] & (1L << (bit % Long.SIZE))) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns whether or not more IDs have been added than this filter was
+		 * sized for.
+		 *
+		 * @return Whether or not this filter is over its capacity.
+		 */
+		private synchronized boolean isFull() {
+			return size > capacity;
+		}
+
+		/**
+		 * Combines the two hashes into the index of one of the bits.
+		 *
+		 * @param hash1 The first hash.
+		 *
+		 * @param hash2 The second hash.
+		 *
+		 * @param i The number of the hash function.
+		 *
+		 * @return The bit's index.
+		 */
+		private int index(final int hash1, final int hash2, final int i) {
+			int combined = hash1 + (i * hash2);
+			return (combined & Integer.MAX_VALUE) % numBits;
+		}
+
+		/**
+		 * Computes a 32-bit FNV-1a hash of an ID, which is independent of
+		 * {@link String#hashCode()}.
+		 *
+		 * @param id The ID.
+		 *
+		 * @return The hash.
+		 */
+		private static int secondHash(final String id) {
+			int hash = 0x811C9DC5;
+			for(int i = 0; i < id.length(); i++) {
+				hash ^= id.charAt(i);
+				hash *= 0x01000193;
+			}
+			return hash | 1;
+		}
+	}
+
+	// The reference to one's self to return to requesters.
+	private static StreamDuplicateFilter instance;
+
+	// The filters in least-recently-used order.
+	private final Map<String, IdFilter> filters;
+	private final long minimumCapacity;
+	private final double falsePositiveRate;
+
+	private final AtomicLong checked = new AtomicLong(0);
+	private final AtomicLong definitelyNew = new AtomicLong(0);
+	private final AtomicLong possibleDuplicates = new AtomicLong(0);
+	private final AtomicLong falsePositives = new AtomicLong(0);
+	private final AtomicLong unfiltered = new AtomicLong(0);
+	private final AtomicLong warmed = new AtomicLong(0);
+
+	/**
+	 * Creates the cache. This is done once by Spring.
+	 *
+	 * @param maxStreams The maximum number of user, observer, and stream
+	 * 					 combinations whose filters are cached.
+	 *
+	 * @param minimumCapacity The fewest IDs for which a filter is sized.
+	 *
+	 * @param falsePositiveRate The desired false positive rate of a full
+	 * 							filter, between 0 and 1, exclusive.
+	 *
+	 * @throws IllegalArgumentException One of the parameters is invalid.
+	 */
+	private StreamDuplicateFilter(
+			final int maxStreams,
+			final long minimumCapacity,
+			final double falsePositiveRate) {
+
+		if(maxStreams <= 0) {
+			throw new IllegalArgumentException(
+				"The maximum number of streams must be positive.");
+		}
+		else if(minimumCapacity <= 0) {
+			throw new IllegalArgumentException(
+				"The minimum capacity must be positive.");
+		}
+		else if((falsePositiveRate <= 0) || (falsePositiveRate >= 1)) {
+			throw new IllegalArgumentException(
+				"The false positive rate must be between 0 and 1.");
+		}
+
+		LOGGER.info(
+			"Caching duplicate filters for up to " +
+				maxStreams +
+				" streams with a false positive rate of " +
+				falsePositiveRate +
+				".");
+
+		filters =
+			new LinkedHashMap<String, IdFilter>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						final Map.Entry<String, IdFilter> eldest) {
+
+					return size() > maxStreams;
+				}
+			};
+		this.minimumCapacity = minimumCapacity;
+		this.falsePositiveRate = falsePositiveRate;
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the one instance of this cache or null if it was not
+	 * configured.
+	 *
+	 * @return The one instance of this cache or null.
+	 */
+	public static StreamDuplicateFilter instance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the warm filter for a user's stream.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param observerId The observer's ID.
+	 *
+	 * @param streamId The stream's ID.
+	 *
+	 * @return The filter or null if there is none or it is still warming.
+	 */
+	public IdFilter get(
+			final String username,
+			final String observerId,
+			final String streamId) {
+
+		IdFilter filter;
+		synchronized(filters) {
+			filter = filters.get(key(username, observerId, streamId));
+		}
+
+		return ((filter == null) || (! filter.warm)) ? null : filter;
+	}
+
+	/**
+	 * Creates and registers an empty filter for a user's stream, which the
+	 * caller must then warm and pass to {@link #setWarm(IdFilter)} or
+	 * {@link #remove(IdFilter)}.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param observerId The observer's ID.
+	 *
+	 * @param streamId The stream's ID.
+	 *
+	 * @param numExistingIds The number of IDs the user has already stored for
+	 * 						 the stream, used to size the filter.
+	 *
+	 * @return The new filter or null if a filter already exists, in which
+	 * 		   case another thread is warming it.
+	 */
+	public IdFilter create(
+			final String username,
+			final String observerId,
+			final String streamId,
+			final long numExistingIds) {
+
+		String key = key(username, observerId, streamId);
+		IdFilter filter =
+			new IdFilter(
+				key,
+				Math.max(minimumCapacity, 2 * numExistingIds),
+				falsePositiveRate);
+
+		synchronized(filters) {
+			if(filters.containsKey(key)) {
+				return null;
+			}
+			filters.put(key, filter);
+		}
+		return filter;
+	}
+
+	/**
+	 * Marks a filter as warm, meaning it contains every stored ID.
+	 *
+	 * @param filter The filter.
+	 */
+	public void setWarm(final IdFilter filter) {
+		filter.warm = true;
+		warmed.incrementAndGet();
+	}
+
+	/**
+	 * Removes a filter, e.g. because it could not be warmed.
+	 *
+	 * @param filter The filter.
+	 */
+	public void remove(final IdFilter filter) {
+		synchronized(filters) {
+			if(filters.get(filter.key) == filter) {
+				filters.remove(filter.key);
+			}
+		}
+	}
+
+	/**
+	 * Adds stored IDs to a user's stream's filter, whether it is warm or
+	 * still warming. This must be called after every store.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param observerId The observer's ID.
+	 *
+	 * @param streamId The stream's ID.
+	 *
+	 * @param ids The IDs that were stored.
+	 */
+	public void add(
+			final String username,
+			final String observerId,
+			final String streamId,
+			final Collection<String> ids) {
+
+		IdFilter filter;
+		synchronized(filters) {
+			filter = filters.get(key(username, observerId, streamId));
+		}
+		if(filter == null) {
+			return;
+		}
+
+		for(String id : ids) {
+			filter.put(id);
+		}
+		if(filter.isFull()) {
+			remove(filter);
+		}
+	}
+
+	/**
+	 * Returns the IDs that might be duplicates according to a filter, all of
+	 * which must be checked against the database.
+	 *
+	 * @param filter The user's stream's filter or null if there is none, in
+	 * 				 which case every ID is returned.
+	 *
+	 * @param ids The uploaded IDs.
+	 *
+	 * @return The IDs that might be duplicates.
+	 */
+	public Collection<String> getPossibleDuplicates(
+			final IdFilter filter,
+			final Collection<String> ids) {
+
+		checked.addAndGet(ids.size());
+		if(filter == null) {
+			unfiltered.addAndGet(ids.size());
+			return ids;
+		}
+
+		List<String> result = new ArrayList<String>();
+		for(String id : ids) {
+			if(filter.mightContain(id)) {
+				result.add(id);
+			}
+		}
+		definitelyNew.addAndGet(ids.size() - result.size());
+		possibleDuplicates.addAndGet(result.size());
+		return result;
+	}
+
+	/**
+	 * Records how many of the possible duplicates were not duplicates.
+	 *
+	 * @param numPossible The number of possible duplicates that were checked.
+	 *
+	 * @param numDuplicates The number that were duplicates.
+	 */
+	public void recordFalsePositives(
+			final int numPossible,
+			final int numDuplicates) {
+
+		falsePositives.addAndGet(numPossible - numDuplicates);
+	}
+
+	/**
+	 * Returns the number of IDs that were checked.
+	 *
+	 * @return The number of IDs that were checked.
+	 */
+	public long getCheckedCount() {
+		return checked.get();
+	}
+
+	/**
+	 * Returns the number of IDs that a filter showed were new without a
+	 * database query.
+	 *
+	 * @return The number of filter hits.
+	 */
+	public long getDefinitelyNewCount() {
+		return definitelyNew.get();
+	}
+
+	/**
+	 * Returns the number of IDs that a filter might have contained and so
+	 * were checked against the database.
+	 *
+	 * @return The number of possible duplicates.
+	 */
+	public long getPossibleDuplicateCount() {
+		return possibleDuplicates.get();
+	}
+
+	/**
+	 * Returns the number of possible duplicates that were not duplicates.
+	 *
+	 * @return The number of false positives.
+	 */
+	public long getFalsePositiveCount() {
+		return falsePositives.get();
+	}
+
+	/**
+	 * Returns the number of IDs that were checked against the database
+	 * because there was no warm filter.
+	 *
+	 * @return The number of unfiltered IDs.
+	 */
+	public long getUnfilteredCount() {
+		return unfiltered.get();
+	}
+
+	/**
+	 * Returns the number of filters that have been warmed.
+	 *
+	 * @return The number of filters that have been warmed.
+	 */
+	public long getWarmedCount() {
+		return warmed.get();
+	}
+
+	/**
+	 * Returns the share of checked IDs that did not need a database query.
+	 *
+	 * @return The hit rate, between 0 and 1.
+	 */
+	public double getHitRate() {
+		long count = checked.get();
+		return (count == 0) ? 0 : ((double) definitelyNew.get() / count);
+	}
+
+	/**
+	 * Returns the share of filtered IDs that were wrongly reported as
+	 * possible duplicates.
+	 *
+	 * @return The observed false positive rate, between 0 and 1.
+	 */
+	public double getFalsePositiveRate() {
+		long count = definitelyNew.get() + falsePositives.get();
+		return (count == 0) ? 0 : ((double) falsePositives.get() / count);
+	}
+
+	/**
+	 * Builds the key for a filter. The database compares usernames, observer
+	 * IDs, and stream IDs without regard to case, so the key is lower-cased.
+	 * Otherwise, IDs stored under one spelling would never be added to the
+	 * filter for another, and that filter would report them as new. Streams
+	 * that differ only in case share a filter, which can only cause false
+	 * positives.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param observerId The observer's ID.
+	 *
+	 * @param streamId The stream's ID.
+	 *
+	 * @return The key.
+	 */
+	private static String key(
+			final String username,
+			final String observerId,
+			final String streamId) {
+
+		return 
+			(username + KEY_SEPARATOR + observerId + KEY_SEPARATOR + streamId)
+				.toLowerCase(Locale.ENGLISH);
+	}
+}
@@ -15,13 +15,14 @@
  ******************************************************************************/
 package org.ohmage.cache;
 
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.log4j.Logger;
 import org.ohmage.domain.User;
@@ -33,6 +34,10 @@ import org.springframework.beans.factory.DisposableBean;
  * JEE session management. The lifetime param set on construction controls how
  * long User objects stay active.
  * 
+ * None of the operations take a lock. A token is checked for expiration
+ * whenever it is read, so an expired token is never returned, and the
+ * periodic sweep only reclaims the tokens that are no longer being used.
+ * 
  * @author Joshua Selsky
  */
 public final class UserBin extends TimerTask implements DisposableBean {
@@ -43,6 +48,13 @@ public final class UserBin extends TimerTask implements DisposableBean {
 	 */
 	public static final int LIFETIME = 1000 * 60 * 15;
 	private static final int EXECUTION_PERIOD = 60000;
+	
+	/**
+	 * The last access time is only updated when it is at least this old,
+	 * which keeps concurrent requests with the same token from all writing
+	 * to it.
+	 */
+	private static final long REFRESH_GRANULARITY = 1000;
 
 	/**
 	 * A class for associating users to the time their token expires.
@@ -51,7 +63,7 @@ public final class UserBin extends TimerTask implements DisposableBean {
 	 */
 	private static final class UserTime {
 		private final User user;
-		private long time;
+		private volatile long time;
 
 		/**
 		 * Convenience constructor.
@@ -66,11 +78,26 @@ public final class UserBin extends TimerTask implements DisposableBean {
 			this.user = user;
 			this.time = time;
 		}
+		
+		/**
+		 * Returns whether or not this token has expired.
+		 * 
+		 * @param currentTime
+		 *        The current time.
+		 * 
+		 * @return Whether or not this token has expired.
+		 */
+		private boolean isExpired(long currentTime) {
+			return (currentTime - time) > LIFETIME;
+		}
 	}
 
 	// A map of tokens to USERS and the time that their token expires.
 	private static final Map<String, UserTime> USERS =
 		new ConcurrentHashMap<String, UserTime>();
+	// A map of usernames to all of their tokens.
+	private static final ConcurrentMap<String, Set<String>> TOKENS =
+		new ConcurrentHashMap<String, Set<String>>();
 	// An EXECUTIONER thread to purge those whose tokens have expired.
 	private static final Timer EXECUTIONER = new Timer(
 		"UserBin - User expiration process.",
@@ -78,7 +105,7 @@ public final class UserBin extends TimerTask implements DisposableBean {
 
 	// Whether or not the constructor has run which will bootstrap this
 	// Singleton class.
-	private static boolean initialized = false;
+	private static volatile boolean initialized = false;
 
 	/**
 	 * @param lifetime
@@ -112,12 +139,10 @@ public final class UserBin extends TimerTask implements DisposableBean {
 	 * If the user is already resident in the bin, their old token is removed
 	 * and a new one is generated and returned.
 	 */
-	public static synchronized String addUser(User user)
+	public static String addUser(User user)
 		throws DomainException {
 
-		if(!initialized) {
-			new UserBin();
-		}
+		initialize();
 
 		if(LOGGER.isDebugEnabled()) {
 			LOGGER.debug("adding user to bin");
@@ -129,6 +154,7 @@ public final class UserBin extends TimerTask implements DisposableBean {
 		if(USERS.put(uuid, ut) != null) {
 			throw new DomainException("UUID collision: " + uuid);
 		}
+		index(user.getUsername(), uuid);
 
 		return uuid;
 	}
@@ -139,10 +165,8 @@ public final class UserBin extends TimerTask implements DisposableBean {
 	 * @param authToken
 	 *        The authentication token to remove from the user bin.
 	 */
-	public static synchronized void expireUser(String authToken) {
-		if(!initialized) {
-			new UserBin();
-		}
+	public static void expireUser(String authToken) {
+		initialize();
 
 		if(authToken == null) {
 			throw new IllegalArgumentException("The token cannot be null.");
@@ -152,7 +176,7 @@ public final class UserBin extends TimerTask implements DisposableBean {
 			LOGGER.debug("Removing user from bin.");
 		}
 
-		USERS.remove(authToken);
+		remove(authToken);
 	}
 
 	/**
@@ -161,10 +185,8 @@ public final class UserBin extends TimerTask implements DisposableBean {
 	 * @param username
 	 *        The user's username.
 	 */
-	public static synchronized void removeUser(String username) {
-		if(!initialized) {
-			new UserBin();
-		}
+	public static void removeUser(String username) {
+		initialize();
 
 		if(username == null) {
 			throw new IllegalArgumentException("The username cannot be null.");
@@ -174,29 +196,37 @@ public final class UserBin extends TimerTask implements DisposableBean {
 			LOGGER.debug("Removing the user from the bin.");
 		}
 
-		Set<String> userTokens = new HashSet<String>();
-		for(String token : USERS.keySet()) {
-			UserTime userTime = USERS.get(token);
-			if(userTime.user.getUsername().equals(username)) {
-				userTokens.add(token);
+		Set<String> userTokens = TOKENS.remove(username);
+		if(userTokens != null) {
+			for(String token : userTokens) {
+				USERS.remove(token);
 			}
 		}
-
-		for(String token : userTokens) {
-			USERS.remove(token);
-		}
 	}
 
 	/**
 	 * Returns the User bound to the provided Id or null if Id does not exist
-	 * in the bin.
+	 * in the bin or has expired.
 	 */
-	public static synchronized User getUser(String id) {
+	public static User getUser(String id) {
+		if(id == null) {
+			return null;
+		}
+		
 		UserTime ut = USERS.get(id);
 		if(null != ut) {
+			long currentTime = System.currentTimeMillis();
+			if(ut.isExpired(currentTime)) {
+				remove(id);
+				return null;
+			}
+			
 			User u = ut.user;
 			if(null != u) {
-				ut.time = System.currentTimeMillis(); // refresh the time
+				// refresh the time
+				if((currentTime - ut.time) >= REFRESH_GRANULARITY) {
+					ut.time = currentTime;
+				}
 				try {
 					return new User(u);
 				}
@@ -217,14 +247,14 @@ public final class UserBin extends TimerTask implements DisposableBean {
 	 * 
 	 * @return The number of milliseconds until 'Id' expires.
 	 */
-	public static synchronized long getTokenRemainingLifetimeInMillis(String id) {
+	public static long getTokenRemainingLifetimeInMillis(String id) {
 		UserTime ut = USERS.get(id);
 		if(ut == null) {
 			return 0;
 		}
 		else {
 			return Math.max(
-				(System.currentTimeMillis() + LIFETIME - ut.time),
+				(ut.time + LIFETIME - System.currentTimeMillis()),
 				0);
 		}
 	}
@@ -236,33 +266,100 @@ public final class UserBin extends TimerTask implements DisposableBean {
 	public void run() {
 		expire();
 	}
+	
+	/**
+	 * Bootstraps this class if Spring has not yet done so.
+	 */
+	private static void initialize() {
+		if(! initialized) {
+			synchronized(UserBin.class) {
+				if(! initialized) {
+					new UserBin();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds a token to the set of tokens for a user.
+	 * 
+	 * @param username
+	 *        The user's username.
+	 * 
+	 * @param token
+	 *        The user's new token.
+	 */
+	private static void index(String username, String token) {
+		while(true) {
+			Set<String> userTokens = TOKENS.get(username);
+			if(userTokens == null) {
+				Set<String> newTokens =
+					Collections.newSetFromMap(
+						new ConcurrentHashMap<String, Boolean>());
+				userTokens = TOKENS.putIfAbsent(username, newTokens);
+				if(userTokens == null) {
+					userTokens = newTokens;
+				}
+			}
+			userTokens.add(token);
+			
+			// If the set was concurrently emptied and discarded, add the
+			// token to a new one.
+			if(TOKENS.get(username) == userTokens) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Removes a token from the bin and from the set of its user's tokens.
+	 * 
+	 * @param token
+	 *        The token to remove.
+	 */
+	private static void remove(String token) {
+		UserTime ut = USERS.remove(token);
+		if(ut == null) {
+			return;
+		}
+		
+		String username = ut.user.getUsername();
+		Set<String> userTokens = TOKENS.get(username);
+		if(userTokens != null) {
+			userTokens.remove(token);
+			if(userTokens.isEmpty() && TOKENS.remove(username, userTokens)) {
+				// A token may have been added just before the set was
+				// discarded, so move any stragglers to a new set.
+				for(String straggler : userTokens) {
+					index(username, straggler);
+				}
+			}
+		}
+	}
 
 	/**
 	 * Checks every bin location and removes Users whose tokens have expired.
 	 */
-	private static synchronized void expire() {
+	private static void expire() {
 		if(LOGGER.isDebugEnabled()) {
 			LOGGER.debug("Beginning user expiration process");
 		}
 
-		Set<String> keySet = USERS.keySet();
-
 		if(LOGGER.isDebugEnabled()) {
 			LOGGER
-				.debug("Number of users before expiration: " + keySet.size());
+				.debug("Number of users before expiration: " + USERS.size());
 		}
 
 		long currentTime = System.currentTimeMillis();
 
-		for(String key : keySet) {
-			UserTime ut = USERS.get(key);
-			if(currentTime - ut.time > LIFETIME) {
+		for(Map.Entry<String, UserTime> entry : USERS.entrySet()) {
+			if(entry.getValue().isExpired(currentTime)) {
 
 				if(LOGGER.isDebugEnabled()) {
-					LOGGER.debug("Removing user with Id " + key);
+					LOGGER.debug("Removing user with Id " + entry.getKey());
 				}
 
-				USERS.remove(key);
+				remove(entry.getKey());
 			}
 		}
 
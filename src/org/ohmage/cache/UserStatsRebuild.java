@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.log4j.Logger;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.service.UserStatsServices;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Periodically rebuilds the per-user activity statistics from the data
+ * themselves. The first rebuild backfills the statistics with the data that
+ * were uploaded before they were kept; later rebuilds correct for data that
+ * were deleted or updated since and discard old hourly counts.
+ */
+public final class UserStatsRebuild extends TimerTask implements DisposableBean {
+	private static final Logger LOGGER =
+		Logger.getLogger(UserStatsRebuild.class);
+
+	/**
+	 * The task that is periodically run to rebuild the statistics.
+	 */
+	private static final Timer REBUILD =
+		new Timer(
+			"UserStatsRebuild - Rebuilding the user statistics.",
+			true);
+
+	/**
+	 * The number of milliseconds to wait after starting before the first
+	 * rebuild.
+	 */
+	private static final long MILLISECONDS_BEFORE_FIRST_REBUILD = 1000 * 60;
+
+	/**
+	 * The number of milliseconds between each rebuild.
+	 */
+	private static final long MILLISECONDS_BETWEEN_REBUILDS =
+		1000 * 60 * 60 * 24;
+
+	/**
+	 * Default constructor that will be called by Spring via reflection.
+	 */
+	private UserStatsRebuild() {
+		LOGGER.info("Creating the user statistics rebuild, periodic task.");
+
+		// Create the task that will be run periodically.
+		REBUILD.schedule(
+			this,
+			MILLISECONDS_BEFORE_FIRST_REBUILD,
+			MILLISECONDS_BETWEEN_REBUILDS);
+	}
+
+	/**
+	 * Calls to the user stats services layer to rebuild the statistics.
+	 */
+	@Override
+	public void run() {
+		UserStatsServices userStatsServices = UserStatsServices.instance();
+		if(userStatsServices == null) {
+			return;
+		}
+
+		try {
+			LOGGER.info("Rebuilding the user statistics.");
+			userStatsServices.rebuildStats();
+		}
+		catch(ServiceException e) {
+			LOGGER.error("Failed to rebuild the user statistics.", e);
+		}
+	}
+
+	/**
+	 * Stops the rebuild task.
+	 */
+	@Override
+	public void destroy() throws Exception {
+		REBUILD.cancel();
+	}
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.domain;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * The activity from one upload that is added to a user's statistics: the
+ * time of the most recent point and, for each hour, how many points were
+ * counted in that hour and how many of them had a location.
+ * </p>
+ *
+ * <p>
+ * Hours are identified by their start, in milliseconds since the epoch.
+ * </p>
+ */
+public class ActivityCounts {
+	/**
+	 * The number of milliseconds in an hour.
+	 */
+	public static final long MILLIS_PER_HOUR = 60 * 60 * 1000;
+
+	private Long lastTaken = null;
+
+	// For each hour, the number of points and the number with a location.
+	private final SortedMap<Long, long[]> hours = new TreeMap<Long, long[]>();
+
+	/**
+	 * Creates a new, empty set of counts.
+	 */
+	public ActivityCounts() {
+		// Do nothing.
+	}
+
+	/**
+	 * Returns the start of the hour that contains some time.
+	 *
+	 * @param millis The time in milliseconds since the epoch.
+	 *
+	 * @return The start of the hour in milliseconds since the epoch.
+	 */
+	public static long getHour(final long millis) {
+		return millis - (((millis % MILLIS_PER_HOUR) + MILLIS_PER_HOUR) % MILLIS_PER_HOUR);
+	}
+
+	/**
+	 * Adds a point.
+	 *
+	 * @param takenMillis The time the point was taken.
+	 *
+	 * @param countedMillis The time that decides in which hour the point is
+	 * 						counted, e.g. when it was taken or when it was
+	 * 						uploaded.
+	 *
+	 * @param hasLocation Whether or not the point had a location.
+	 */
+	public void add(
+			final long takenMillis,
+			final long countedMillis,
+			final boolean hasLocation) {
+
+		if((lastTaken == null) || (takenMillis > lastTaken)) {
+			lastTaken = takenMillis;
+		}
+
+		long hour = getHour(countedMillis);
+		long[] counts = hours.get(hour);
+		if(counts == null) {
+			counts = new long[2];
+			hours.put(hour, counts);
+		}
+		counts[0]++;
+		if(hasLocation) {
+			counts[1]++;
+		}
+	}
+
+	/**
+	 * Adds the counts of several points taken in the same hour, e.g. as they
+	 * were counted by the database.
+	 *
+	 * @param hour The start of the hour.
+	 *
+	 * @param total The number of points.
+	 *
+	 * @param withLocation The number of those points that had a location.
+	 */
+	public void addHour(
+			final long hour,
+			final long total,
+			final long withLocation) {
+
+		long[] counts = hours.get(hour);
+		if(counts == null) {
+			counts = new long[2];
+			hours.put(hour, counts);
+		}
+		counts[0] += total;
+		counts[1] += withLocation;
+	}
+
+	/**
+	 * Records the time a point was taken without counting it in any hour,
+	 * e.g. because its hour is no longer kept.
+	 *
+	 * @param takenMillis The time the point was taken.
+	 */
+	public void addLastTaken(final long takenMillis) {
+		if((lastTaken == null) || (takenMillis > lastTaken)) {
+			lastTaken = takenMillis;
+		}
+	}
+
+	/**
+	 * Returns whether or not any points were added.
+	 *
+	 * @return Whether or not any points were added.
+	 */
+	public boolean isEmpty() {
+		return lastTaken == null;
+	}
+
+	/**
+	 * Returns the time the most recent point was taken.
+	 *
+	 * @return The time the most recent point was taken or null if no points
+	 * 		   were added.
+	 */
+	public Long getLastTaken() {
+		return lastTaken;
+	}
+
+	/**
+	 * Returns the hours in which points were counted.
+	 *
+	 * @return The start of each hour, in ascending order.
+	 */
+	public Collection<Long> getHours() {
+		return Collections.unmodifiableSet(hours.keySet());
+	}
+
+	/**
+	 * Returns the number of points counted in an hour.
+	 *
+	 * @param hour The start of the hour.
+	 *
+	 * @return The number of points counted in that hour.
+	 */
+	public long getTotal(final long hour) {
+		long[] counts = hours.get(hour);
+		return (counts == null) ? 0 : counts[0];
+	}
+
+	/**
+	 * Returns the number of points counted in an hour that had a location.
+	 *
+	 * @param hour The start of the hour.
+	 *
+	 * @return The number of points with a location counted in that hour.
+	 */
+	public long getWithLocation(final long hour) {
+		long[] counts = hours.get(hour);
+		return (counts == null) ? 0 : counts[1];
+	}
+}
@@ -1,5 +1,6 @@
 package org.ohmage.domain;
 
+import java.io.File;
 import java.net.URL;
 import java.util.UUID;
 
@@ -41,6 +42,27 @@ public class Audio extends Media {
 	
 		super(id, contentType, fileName, content);
 	}
+	
+	/**
+	 * Constructs a new audio object whose content was staged on disk.
+	 * 
+	 * @param id
+	 *        The audio's unique identifier.
+	 * 
+	 * @param contentType
+	 *        The media content-type.
+	 * 
+	 * @param fileName 
+	 * 		  The media file name. 
+	 * 
+	 * @param content
+	 *        The staged file that holds the audio data.
+	 */
+	public Audio(UUID id, String contentType, String fileName,
+			File content) throws DomainException {
+		
+		super(id, contentType, fileName, content);
+	}
 
 	
 	/**
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.domain;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.ohmage.jee.servlet.RequestServlet;
+
+/**
+ * All of the information needed to write a single audit.
+ */
+public final class AuditEntry {
+	private final RequestServlet.RequestType requestType;
+	private final String uri;
+	private final String client;
+	private final String requestId;
+	private final String deviceId;
+	private final String response;
+	private final Map<String, String[]> parameters;
+	private final Map<String, String[]> extras;
+	private final long receivedMillis;
+	private final long respondMillis;
+
+	/**
+	 * Creates a new audit entry.
+	 *
+	 * @param requestType The RequestType of the request. Required.
+	 *
+	 * @param uri The URI of the request. Required.
+	 *
+	 * @param client The value of the client parameter. Not required.
+	 *
+	 * @param requestId The unique identifier for the request.
+	 *
+	 * @param deviceId An unique identifier for each device. Not
+	 * 				   required.
+	 *
+	 * @param response The, possibly truncated, JSON response to the
+	 * 				   request. Required.
+	 *
+	 * @param parameters A map of parameter keys to all of their values.
+	 * 					 Not required.
+	 *
+	 * @param extras A map of HTTP header keys to all of their values. Not
+	 * 				 required.
+	 *
+	 * @param receivedMillis The time at which the request was received.
+	 *
+	 * @param respondMillis The time at which the request was responded
+	 * 						to.
+	 *
+	 * @throws IllegalArgumentException A required parameter is null.
+	 */
+	public AuditEntry(
+			final RequestServlet.RequestType requestType,
+			final String uri,
+			final String client,
+			final String requestId,
+			final String deviceId,
+			final String response,
+			final Map<String, String[]> parameters,
+			final Map<String, String[]> extras,
+			final long receivedMillis,
+			final long respondMillis) {
+
+		if(requestType == null) {
+			throw new IllegalArgumentException(
+				"The request type is required and cannot be null.");
+		}
+		else if(uri == null) {
+			throw new IllegalArgumentException(
+				"The request URI is required and cannot be null.");
+		}
+		else if(response == null) {
+			throw new IllegalArgumentException(
+				"The response is required and cannot be null.");
+		}
+
+		this.requestType = requestType;
+		this.uri = uri;
+		this.client = client;
+		this.requestId = requestId;
+		this.deviceId = deviceId;
+		this.response = response;
+		this.parameters =
+			(parameters == null) ?
+				Collections.<String, String[]>emptyMap() :
+				parameters;
+		this.extras =
+			(extras == null) ?
+				Collections.<String, String[]>emptyMap() :
+				extras;
+		this.receivedMillis = receivedMillis;
+		this.respondMillis = respondMillis;
+	}
+
+	/**
+	 * @return The request's HTTP method.
+	 */
+	public RequestServlet.RequestType getRequestType() {
+		return requestType;
+	}
+
+	/**
+	 * @return The request's URI.
+	 */
+	public String getUri() {
+		return uri;
+	}
+
+	/**
+	 * @return The request's client value, which may be null.
+	 */
+	public String getClient() {
+		return client;
+	}
+
+	/**
+	 * @return The request's unique identifier, which may be null.
+	 */
+	public String getRequestId() {
+		return requestId;
+	}
+
+	/**
+	 * @return The request's device ID, which may be null.
+	 */
+	public String getDeviceId() {
+		return deviceId;
+	}
+
+	/**
+	 * @return The response to the request.
+	 */
+	public String getResponse() {
+		return response;
+	}
+
+	/**
+	 * @return The request's parameters, which is never null.
+	 */
+	public Map<String, String[]> getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * @return The request's headers and extra audit information, which
+	 * 		   is never null.
+	 */
+	public Map<String, String[]> getExtras() {
+		return extras;
+	}
+
+	/**
+	 * @return The time at which the request was received.
+	 */
+	public long getReceivedMillis() {
+		return receivedMillis;
+	}
+
+	/**
+	 * @return The time at which the request was responded to.
+	 */
+	public long getRespondMillis() {
+		return respondMillis;
+	}
+}
@@ -0,0 +1,631 @@
+package org.ohmage.domain;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.exception.DomainException;
+
+/**
+ * <p>
+ * A native implementation of the data-validation half of Concordia. A schema
+ * is compiled once into an immutable tree of type nodes which can then
+ * validate any number of Jackson {@link JsonNode}s without entering a
+ * JavaScript interpreter or re-parsing the schema.
+ * </p>
+ *
+ * <p>
+ * The accept/reject behavior is intended to be identical to that of
+ * {@code Concordia.validateData(data)} in Concordia.js. Schema validation is
+ * still performed by Concordia.js when a {@link Observer.Stream} is created,
+ * so this class assumes that it is only ever given valid schemas and will
+ * refuse to compile anything it does not recognize.
+ * </p>
+ *
+ * <p>
+ * This class is immutable and, therefore, thread-safe.
+ * </p>
+ */
+public class ConcordiaValidator {
+	/**
+	 * The name of the system property that, when set to "true", forces all
+	 * stream data to be validated through the original Rhino/Concordia.js
+	 * path instead of the compiled validators.
+	 */
+	public static final String PROPERTY_USE_RHINO = "ohmage.concordia.rhino";
+
+	/**
+	 * The maximum number of compiled validators that will be kept in the
+	 * cache before it is flushed.
+	 */
+	public static final int MAX_CACHE_SIZE = 1024;
+
+	private static final String KEYWORD_TYPE = "type";
+	private static final String KEYWORD_OPTIONAL = "optional";
+	private static final String KEYWORD_FIELDS = "fields";
+	private static final String KEYWORD_CONST_TYPE = "constType";
+	private static final String KEYWORD_CONST_LENGTH = "constLength";
+	private static final String KEYWORD_NAME = "name";
+
+	private static final String TYPE_BOOLEAN = "boolean";
+	private static final String TYPE_NUMBER = "number";
+	private static final String TYPE_STRING = "string";
+	private static final String TYPE_OBJECT = "object";
+	private static final String TYPE_ARRAY = "array";
+
+	/**
+	 * The mapper used to parse the schemas.
+	 */
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * The cache of compiled validators keyed by their observer and stream
+	 * IDs and versions, which are immutable once they have been stored.
+	 */
+	private static final Map<String, ConcordiaValidator> CACHE =
+		new ConcurrentHashMap<String, ConcordiaValidator>();
+
+	/**
+	 * Whether or not the Rhino validation path should be used.
+	 */
+	private static volatile boolean useRhino =
+		Boolean.getBoolean(PROPERTY_USE_RHINO);
+
+	private static final AtomicLong CACHE_HITS = new AtomicLong(0);
+	private static final AtomicLong CACHE_MISSES = new AtomicLong(0);
+
+	/**
+	 * The base class for all of the compiled types.
+	 */
+	private abstract static class Type {
+		private final boolean optional;
+
+		/**
+		 * Creates a new type.
+		 *
+		 * @param optional Whether or not the data may be missing or null.
+		 */
+		private Type(final boolean optional) {
+			this.optional = optional;
+		}
+
+		/**
+		 * Validates the data, which may be null if it was missing.
+		 *
+		 * @param data The data to validate.
+		 *
+		 * @throws DomainException The data is invalid.
+		 */
+		protected abstract void validate(
+			final JsonNode data)
+			throws DomainException;
+
+		/**
+		 * Returns whether or not the data is missing or JSON null.
+		 *
+		 * @param data The data to check.
+		 *
+		 * @return Whether or not the data is missing or JSON null.
+		 */
+		protected static boolean isMissing(final JsonNode data) {
+			return (data == null) || data.isNull();
+		}
+	}
+
+	/**
+	 * A boolean, number, or string type.
+	 */
+	private static final class PrimitiveType extends Type {
+		private final String type;
+
+		/**
+		 * Creates a new primitive type.
+		 *
+		 * @param type One of the boolean, number, or string type names.
+		 *
+		 * @param optional Whether or not the data may be missing or null.
+		 */
+		private PrimitiveType(final String type, final boolean optional) {
+			super(optional);
+
+			this.type = type;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see org.ohmage.domain.ConcordiaValidator.Type#validate(org.codehaus.jackson.JsonNode)
+		 */
+		@Override
+		protected void validate(final JsonNode data) throws DomainException {
+			if(isMissing(data)) {
+				if(! super.optional) {
+					throw new DomainException(
+						"The data is null and not optional.");
+				}
+				return;
+			}
+
+			boolean valid;
+			if(TYPE_BOOLEAN.equals(type)) {
+				valid = data.isBoolean();
+			}
+			else if(TYPE_NUMBER.equals(type)) {
+				valid = data.isNumber();
+			}
+			else {
+				valid = data.isTextual();
+			}
+
+			if(! valid) {
+				throw new DomainException(
+					"The value is not a " + type + ": " + data.toString());
+			}
+		}
+	}
+
+	/**
+	 * An object type with a fixed list of named fields.
+	 */
+	private static final class ObjectType extends Type {
+		private final String[] names;
+		private final Type[] fields;
+
+		/**
+		 * Creates a new object type.
+		 *
+		 * @param names The field names.
+		 *
+		 * @param fields The field types, parallel to the names.
+		 *
+		 * @param optional Whether or not the data may be missing or null.
+		 */
+		private ObjectType(
+				final String[] names,
+				final Type[] fields,
+				final boolean optional) {
+
+			super(optional);
+
+			this.names = names;
+			this.fields = fields;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see org.ohmage.domain.ConcordiaValidator.Type#validate(org.codehaus.jackson.JsonNode)
+		 */
+		@Override
+		protected void validate(final JsonNode data) throws DomainException {
+			if(isMissing(data)) {
+				if(! super.optional) {
+					throw new DomainException(
+						"The object data is not optional.");
+				}
+				return;
+			}
+
+			if(! data.isObject()) {
+				throw new DomainException(
+					"The data is not a JSON object: " + data.toString());
+			}
+
+			for(int i = 0; i < fields.length; i++) {
+				fields[i].validate(data.get(names[i]));
+			}
+		}
+	}
+
+	/**
+	 * An array type whose elements all share the same type.
+	 */
+	private static final class ConstTypeArrayType extends Type {
+		private final Type element;
+
+		/**
+		 * Creates a new constant-type array type.
+		 *
+		 * @param element The type of every element in the array.
+		 *
+		 * @param optional Whether or not the data may be missing or null.
+		 */
+		private ConstTypeArrayType(
+				final Type element,
+				final boolean optional) {
+
+			super(optional);
+
+			this.element = element;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see org.ohmage.domain.ConcordiaValidator.Type#validate(org.codehaus.jackson.JsonNode)
+		 */
+		@Override
+		protected void validate(final JsonNode data) throws DomainException {
+			if(isMissing(data)) {
+				if(! super.optional) {
+					throw new DomainException(
+						"The array data is not optional.");
+				}
+				return;
+			}
+
+			if(! data.isArray()) {
+				throw new DomainException(
+					"The data is not a JSON array: " + data.toString());
+			}
+
+			int size = data.size();
+			for(int i = 0; i < size; i++) {
+				element.validate(data.get(i));
+			}
+		}
+	}
+
+	/**
+	 * An array type with a fixed length.
+	 *
+	 * Concordia.js only compares the length of the data against the length
+	 * of the schema for these arrays and never validates the individual
+	 * elements, so neither does this, in order to accept and reject exactly
+	 * the same data.
+	 */
+	private static final class ConstLengthArrayType extends Type {
+		private final int length;
+
+		/**
+		 * Creates a new constant-length array type.
+		 *
+		 * @param length The required length of the array.
+		 *
+		 * @param optional Whether or not the data may be missing or null.
+		 */
+		private ConstLengthArrayType(
+				final int length,
+				final boolean optional) {
+
+			super(optional);
+
+			this.length = length;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see org.ohmage.domain.ConcordiaValidator.Type#validate(org.codehaus.jackson.JsonNode)
+		 */
+		@Override
+		protected void validate(final JsonNode data) throws DomainException {
+			if(isMissing(data)) {
+				if(! super.optional) {
+					throw new DomainException(
+						"The array data is not optional.");
+				}
+				return;
+			}
+
+			if(! data.isArray()) {
+				throw new DomainException(
+					"The data is not a JSON array: " + data.toString());
+			}
+
+			if(data.size() != length) {
+				throw new DomainException(
+					"The schema array and the data array are of different " +
+						"lengths: " +
+						data.toString());
+			}
+		}
+	}
+
+	private final Type root;
+
+	/**
+	 * Creates a new validator around a compiled root type.
+	 *
+	 * @param root The root type.
+	 */
+	private ConcordiaValidator(final Type root) {
+		this.root = root;
+	}
+
+	/**
+	 * Compiles a Concordia schema into a validator.
+	 *
+	 * @param schema The schema as a JSON string.
+	 *
+	 * @return The compiled validator.
+	 *
+	 * @throws DomainException The schema was not valid JSON or contained a
+	 * 						   definition that cannot be compiled.
+	 */
+	public static ConcordiaValidator compile(
+			final String schema)
+			throws DomainException {
+
+		if(schema == null) {
+			throw new DomainException("The schema is null.");
+		}
+
+		JsonNode schemaNode;
+		try {
+			schemaNode = MAPPER.readTree(schema);
+		}
+		catch(JsonParseException e) {
+			throw new DomainException(
+				ErrorCode.OBSERVER_INVALID_STREAM_DEFINITION,
+				"A stream definition is not valid JSON.",
+				e);
+		}
+		catch(IOException e) {
+			throw new DomainException("Could not read the schema.", e);
+		}
+
+		if((schemaNode == null) || (! schemaNode.isObject())) {
+			throw new DomainException(
+				ErrorCode.OBSERVER_INVALID_STREAM_DEFINITION,
+				"The schema must be a JSON object.");
+		}
+
+		return new ConcordiaValidator(compileType(schemaNode));
+	}
+
+	/**
+	 * Validates that some data conforms to this schema.
+	 *
+	 * @param data The data to validate.
+	 *
+	 * @return The data as it was given.
+	 *
+	 * @throws DomainException The data does not conform to the schema.
+	 */
+	public JsonNode validateData(final JsonNode data) throws DomainException {
+		if((data == null) || ((! data.isObject()) && (! data.isArray()))) {
+			throw new DomainException(
+				ErrorCode.OBSERVER_INVALID_STREAM_DATA,
+				"The data does not conform to the schema: " +
+					"The data must either be a JSON object or a JSON array.");
+		}
+
+		try {
+			root.validate(data);
+		}
+		catch(DomainException e) {
+			throw new DomainException(
+				ErrorCode.OBSERVER_INVALID_STREAM_DATA,
+				"The data does not conform to the schema: " + e.getMessage(),
+				e);
+		}
+
+		return data;
+	}
+
+	/**
+	 * Returns the compiled validator for some stream, compiling and caching
+	 * it if it has not yet been compiled.
+	 *
+	 * @param observerId The observer's ID.
+	 *
+	 * @param observerVersion The observer's version.
+	 *
+	 * @param streamId The stream's ID.
+	 *
+	 * @param streamVersion The stream's version.
+	 *
+	 * @param schema The stream's schema, which is only used if the validator
+	 * 				 is not already cached.
+	 *
+	 * @return The compiled validator.
+	 *
+	 * @throws DomainException The schema could not be compiled.
+	 */
+	public static ConcordiaValidator getValidator(
+			final String observerId,
+			final long observerVersion,
+			final String streamId,
+			final long streamVersion,
+			final String schema)
+			throws DomainException {
+
+		String key =
+			getCacheKey(observerId, observerVersion) +
+				streamId +
+				'/' +
+				streamVersion;
+
+		ConcordiaValidator result = CACHE.get(key);
+		if(result == null) {
+			CACHE_MISSES.incrementAndGet();
+
+			result = compile(schema);
+
+			// Stream definitions are small and few, so rather than tracking
+			// their usage, the cache is simply flushed if it ever grows too
+			// large.
+			if(CACHE.size() >= MAX_CACHE_SIZE) {
+				CACHE.clear();
+			}
+			CACHE.put(key, result);
+		}
+		else {
+			CACHE_HITS.incrementAndGet();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Removes all of the cached validators for every version of an observer.
+	 *
+	 * @param observerId The observer's ID.
+	 */
+	public static void invalidate(final String observerId) {
+		String prefix = observerId + '/';
+
+		Iterator<String> keys = CACHE.keySet().iterator();
+		while(keys.hasNext()) {
+			if(keys.next().startsWith(prefix)) {
+				keys.remove();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether or not data should be validated through the original
+	 * Rhino/Concordia.js path.
+	 *
+	 * @return Whether or not the Rhino path should be used.
+	 */
+	public static boolean useRhino() {
+		return useRhino;
+	}
+
+	/**
+	 * Sets whether or not data should be validated through the original
+	 * Rhino/Concordia.js path instead of the compiled validators.
+	 *
+	 * @param useRhino Whether or not to use the Rhino path.
+	 */
+	public static void setUseRhino(final boolean useRhino) {
+		ConcordiaValidator.useRhino = useRhino;
+	}
+
+	/**
+	 * Returns the number of times a compiled validator was found in the
+	 * cache.
+	 *
+	 * @return The number of cache hits.
+	 */
+	public static long getCacheHits() {
+		return CACHE_HITS.get();
+	}
+
+	/**
+	 * Returns the number of times a validator had to be compiled.
+	 *
+	 * @return The number of cache misses.
+	 */
+	public static long getCacheMisses() {
+		return CACHE_MISSES.get();
+	}
+
+	/**
+	 * Builds the prefix of the cache key for some observer.
+	 *
+	 * @param observerId The observer's ID.
+	 *
+	 * @param observerVersion The observer's version.
+	 *
+	 * @return The cache key prefix.
+	 */
+	private static String getCacheKey(
+			final String observerId,
+			final long observerVersion) {
+
+		return observerId + '/' + observerVersion + '/';
+	}
+
+	/**
+	 * Compiles a single type definition.
+	 *
+	 * @param definition The JSON object defining the type.
+	 *
+	 * @return The compiled type.
+	 *
+	 * @throws DomainException The definition could not be compiled.
+	 */
+	private static Type compileType(
+			final JsonNode definition)
+			throws DomainException {
+
+		JsonNode typeNode = definition.get(KEYWORD_TYPE);
+		if((typeNode == null) || (! typeNode.isTextual())) {
+			throw new DomainException(
+				ErrorCode.OBSERVER_INVALID_STREAM_DEFINITION,
+				"The '" +
+					KEYWORD_TYPE +
+					"' field is missing or not a string: " +
+					definition.toString());
+		}
+		String type = typeNode.getTextValue();
+
+		JsonNode optionalNode = definition.get(KEYWORD_OPTIONAL);
+		boolean optional =
+			(optionalNode != null) && optionalNode.getBooleanValue();
+
+		if(TYPE_BOOLEAN.equals(type)) {
+			return new PrimitiveType(TYPE_BOOLEAN, optional);
+		}
+		else if(TYPE_NUMBER.equals(type)) {
+			return new PrimitiveType(TYPE_NUMBER, optional);
+		}
+		else if(TYPE_STRING.equals(type)) {
+			return new PrimitiveType(TYPE_STRING, optional);
+		}
+		else if(TYPE_OBJECT.equals(type)) {
+			JsonNode fields = definition.get(KEYWORD_FIELDS);
+			if((fields == null) || (! fields.isArray())) {
+				throw new DomainException(
+					ErrorCode.OBSERVER_INVALID_STREAM_DEFINITION,
+					"The '" +
+						KEYWORD_FIELDS +
+						"' field must be a JSON array: " +
+						definition.toString());
+			}
+
+			int numFields = fields.size();
+			String[] names = new String[numFields];
+			Type[] types = new Type[numFields];
+			for(int i = 0; i < numFields; i++) {
+				JsonNode field = fields.get(i);
+				JsonNode name = field.get(KEYWORD_NAME);
+				if((name == null) || (! name.isTextual())) {
+					throw new DomainException(
+						ErrorCode.OBSERVER_INVALID_STREAM_DEFINITION,
+						"The '" +
+							KEYWORD_NAME +
+							"' field for the JSON object at index " +
+							i +
+							" is missing or not a string: " +
+							definition.toString());
+				}
+
+				names[i] = name.getTextValue();
+				types[i] = compileType(field);
+			}
+
+			return new ObjectType(names, types, optional);
+		}
+		else if(TYPE_ARRAY.equals(type)) {
+			JsonNode constType = definition.get(KEYWORD_CONST_TYPE);
+			JsonNode constLength = definition.get(KEYWORD_CONST_LENGTH);
+
+			if((constType != null) && constType.isObject()) {
+				return new ConstTypeArrayType(
+					compileType(constType),
+					optional);
+			}
+			else if((constLength != null) && constLength.isArray()) {
+				return new ConstLengthArrayType(constLength.size(), optional);
+			}
+			else {
+				throw new DomainException(
+					ErrorCode.OBSERVER_INVALID_STREAM_DEFINITION,
+					"An array's definition did not define a constant-type " +
+						"or a constant-length sub-schema: " +
+						definition.toString());
+			}
+		}
+		else {
+			throw new DomainException(
+				ErrorCode.OBSERVER_INVALID_STREAM_DEFINITION,
+				"Type unknown: " + type);
+		}
+	}
+}
@@ -1,10 +1,13 @@
 package org.ohmage.domain;
 
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.MappingJsonFactory;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.ohmage.domain.Observer.Stream;
@@ -353,9 +356,26 @@ public class DataStream {
 	private final Stream stream;
 	
 	/**
-	 * The data in its Jackson object representation.
+	 * The factory used to parse stored data when it is first requested.
 	 */
-	private final JsonNode data;
+	private static final JsonFactory JSON_FACTORY = new MappingJsonFactory();
+	
+	/**
+	 * The data in its Jackson object representation. If the data was read as
+	 * raw JSON, this is null until it is first requested.
+	 */
+	private JsonNode data;
+	
+	/**
+	 * The data as it was stored or null if it was given as a JsonNode.
+	 */
+	private final String rawData;
+	
+	/**
+	 * The position of this point in the stream's stored data or null if it 
+	 * was not read from the database.
+	 */
+	private final DataStreamCursor cursor;
 
 	/**
 	 * Creates a new DataStream from JSON data encoded as a JsonNode.
@@ -390,6 +410,46 @@ public class DataStream {
 		
 		// Decode the data from the stream.
 		this.data = data;
+		
+		rawData = null;
+		cursor = null;
+	}
+	
+	/**
+	 * Creates a new DataStream from stored JSON data, which is not parsed
+	 * unless {@link #getData()} is called.
+	 * 
+	 * @param stream The stream that contains the definition on how to decode
+	 *				 the data.
+	 *
+	 * @param metaData The meta-data.
+	 * 
+	 * @param rawData The data as JSON text, which must be valid.
+	 * 
+	 * @param cursor The position of this point in the stream's stored data.
+	 * 
+	 * @throws DomainException The stream or data is null.
+	 */
+	public DataStream(
+			final Stream stream,
+			final MetaData metaData,
+			final String rawData,
+			final DataStreamCursor cursor)
+			throws DomainException {
+		
+		if(stream == null) {
+			throw new DomainException("The stream is null.");
+		}
+		else if(rawData == null) {
+			throw new DomainException("The data is null.");
+		}
+		
+		this.stream = stream;
+		this.metaData = metaData;
+		this.rawData = rawData;
+		this.cursor = cursor;
+		
+		data = null;
 	}
 
 	/**
@@ -411,11 +471,43 @@ public class DataStream {
 	}
 	
 	/**
-	 * Returns a JsonNode for the data.
+	 * Returns a JsonNode for the data, parsing it if it was read as raw JSON.
 	 * 
 	 * @return A JsonNode for the data.
+	 * 
+	 * @throws IllegalStateException The raw JSON could not be parsed.
 	 */
-	public JsonNode getData() {
+	public synchronized JsonNode getData() {
+		if(data == null) {
+			try {
+				data = JSON_FACTORY.createJsonParser(rawData).readValueAsTree();
+			}
+			catch(IOException e) {
+				throw new IllegalStateException(
+					"The stored data is invalid: " + 
+						((metaData == null) ? null : metaData.getId()),
+					e);
+			}
+		}
 		return data;
 	}
+	
+	/**
+	 * Returns the data as it was stored.
+	 * 
+	 * @return The data as JSON text or null if it was given as a JsonNode.
+	 */
+	public String getRawData() {
+		return rawData;
+	}
+	
+	/**
+	 * Returns the position of this point in the stream's stored data.
+	 * 
+	 * @return The position of this point or null if it was not read from the
+	 * 		   database.
+	 */
+	public DataStreamCursor getCursor() {
+		return cursor;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.domain;
+
+import java.nio.charset.Charset;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.ohmage.exception.DomainException;
+
+/**
+ * <p>
+ * A position in the ordering of a stream's stored data points, which is by
+ * the time the point was taken and then by the order in which it was stored.
+ * A cursor refers to the last point that was returned, and the next page
+ * begins with the point that follows it, so a page is found without
+ * skipping over all of the points before it.
+ * </p>
+ *
+ * <p>
+ * Cursors are given to and received from clients as opaque, URL-safe
+ * strings.
+ * </p>
+ */
+public class DataStreamCursor {
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final char SEPARATOR = ',';
+
+	private final Long time;
+	private final long databaseId;
+
+	/**
+	 * Creates a new cursor.
+	 *
+	 * @param time The time the last point was taken or null if it has no
+	 * 			   time.
+	 *
+	 * @param databaseId The last point's database ID, which orders points
+	 * 					 that were taken at the same time.
+	 */
+	public DataStreamCursor(final Long time, final long databaseId) {
+		this.time = time;
+		this.databaseId = databaseId;
+	}
+
+	/**
+	 * Decodes a cursor that was previously given to a client.
+	 *
+	 * @param token The cursor as given by {@link #toString()}.
+	 *
+	 * @return The decoded cursor.
+	 *
+	 * @throws DomainException The token is not a valid cursor.
+	 */
+	public static DataStreamCursor decode(
+			final String token)
+			throws DomainException {
+
+		if(token == null) {
+			throw new DomainException("The cursor is null.");
+		}
+
+		// Restore the characters and padding that were removed to make it
+		// URL-safe.
+		StringBuilder encoded =
+			new StringBuilder(token.replace('-', '+').replace('_', '/'));
+		while((encoded.length() % 4) != 0) {
+			encoded.append('=');
+		}
+
+		String decoded;
+		try {
+			decoded =
+				new String(
+					DatatypeConverter.parseBase64Binary(encoded.toString()),
+					CHARSET);
+		}
+		catch(IllegalArgumentException e) {
+			throw new DomainException("The cursor is not valid.", e);
+		}
+
+		int separatorIndex = decoded.indexOf(SEPARATOR);
+		if(separatorIndex == -1) {
+			throw new DomainException("The cursor is not valid.");
+		}
+
+		try {
+			String time = decoded.substring(0, separatorIndex);
+			return
+				new DataStreamCursor(
+					time.isEmpty() ? null : Long.parseLong(time),
+					Long.parseLong(decoded.substring(separatorIndex + 1)));
+		}
+		catch(NumberFormatException e) {
+			throw new DomainException("The cursor is not valid.", e);
+		}
+	}
+
+	/**
+	 * Returns the time the last point was taken.
+	 *
+	 * @return The number of milliseconds since the epoch or null if the
+	 * 		   point has no time.
+	 */
+	public Long getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns the last point's database ID.
+	 *
+	 * @return The last point's database ID.
+	 */
+	public long getDatabaseId() {
+		return databaseId;
+	}
+
+	/**
+	 * Returns the opaque, URL-safe representation of this cursor.
+	 *
+	 * @return The opaque representation of this cursor.
+	 */
+	@Override
+	public String toString() {
+		String encoded =
+			DatatypeConverter.printBase64Binary(
+				(((time == null) ? "" : time.toString()) +
+					SEPARATOR +
+					databaseId)
+					.getBytes(CHARSET));
+
+		// Make it URL-safe.
+		int end = encoded.length();
+		while((end > 0) && (encoded.charAt(end - 1) == '=')) {
+			end--;
+		}
+		return
+			encoded.substring(0, end).replace('+', '-').replace('/', '_');
+	}
+}
@@ -2,12 +2,16 @@ package org.ohmage.domain;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.UUID;
 
 import org.apache.log4j.Logger;
@@ -28,12 +32,24 @@ public class Media implements IMedia {
 	 * The maximum length for a file extension.
 	 */
 	public static final int MAX_EXTENSION_LENGTH = 4;
+	
+	/**
+	 * The protocol of URLs that reference local files.
+	 */
+	private static final String PROTOCOL_FILE = "file";
 
 	private final UUID id;
 	private final InputStream content; 
+	// The file that holds the content, if it was streamed to disk, and
+	// whether or not that file is still only staged.
+	private File file;
+	private boolean staged;
 	private Media.ContentInfo contentInfo; 
 	// The size, in bytes, of the media file.
 	public final long size;
+	// The time the content was last modified, in milliseconds since the
+	// epoch, or -1 if it is unknown.
+	private final long lastModified;
 	/*
 	private String contentType = null;  
 	 private String type = null;
@@ -299,6 +315,7 @@ public class Media implements IMedia {
 		
 		// Validate the size.
 		this.size = content.length;
+		this.lastModified = -1;
 	}
 	
 	/**
@@ -352,9 +369,63 @@ public class Media implements IMedia {
 		
 		// Validate the size. 
 		this.size = fileSize; 
+		this.lastModified = -1;
 	}
 	
 	
+	/**
+	 * Creates a Media object with an ID, type, and a staged file that holds
+	 * its content. This is usually called from survey/upload after the 
+	 * content was streamed to disk. When the content is written, the staged 
+	 * file is moved rather than copied.
+	 * 
+	 * @param id
+	 *        The ID of the Media.
+	 * 
+	 * @param contentType
+	 *        The content type of the media.
+	 * 
+	 * @param fileName
+	 * 		  The filename associated with the media.
+	 * 
+	 * @param content
+	 *        The staged file that holds the content of the media.
+	 * 
+	 * @throws DomainException
+	 *         One of the parameters was invalid.
+	 */
+	public Media(
+		final UUID id, 
+		final String contentType,
+		final String fileName,
+		final File content)
+		throws DomainException {
+		
+		// Validate the ID.
+		if(id == null) {
+			throw new DomainException("The ID is null.");
+		}
+		else {
+			this.id = id;
+		}
+		
+		this.contentInfo = new ContentInfo(contentType, fileName);
+		
+		// Validate the content.
+		if ((content == null) || (content.length() == 0)) {
+			throw new DomainException(ErrorCode.MEDIA_INVALID_DATA, "The media content is empty.");
+		}
+		else {
+			this.content = null;
+			this.file = content;
+			this.staged = true;
+		}
+		
+		// Validate the size.
+		this.size = content.length();
+		this.lastModified = content.lastModified();
+	}
+	
 	/**
 	 * Creates a Media object with an ID and a URL referencing the data.
 	 * 
@@ -381,9 +452,24 @@ public class Media implements IMedia {
 		if (url == null)
 			throw new DomainException("[MediaID " + id.toString() + "] URL is null.");
 		
-		// Create a connection to the stream.
+		// Create a connection to the stream. Local files are opened directly
+		// so that readers can use the file's channel.
 		try {
-			this.content = url.openStream();
+			if(PROTOCOL_FILE.equals(url.getProtocol())) {
+				File localFile = new File(url.getPath());
+				this.content = new FileInputStream(localFile);
+				this.size = localFile.length();
+				this.lastModified = localFile.lastModified();
+			}
+			else {
+				this.content = url.openStream();
+				URLConnection connection = url.openConnection();
+				this.size = connection.getContentLength();
+				this.lastModified = 
+					(connection.getLastModified() == 0) ? 
+						-1 : 
+						connection.getLastModified();
+			}
 		} 
 		catch(MalformedURLException e) {
 			throw new DomainException("The URL is invalid.", e);
@@ -394,14 +480,6 @@ public class Media implements IMedia {
 					"The media file does not exist.",
 					e);
 		}
-
-		// Get the size of the data.
-		try {
-			this.size = url.openConnection().getContentLength();
-		}
-		catch(IOException e) {
-			throw new DomainException("Could not connect to the file.", e);
-		}
 		
 		// extract contentInfo from metadata
 		contentInfo = ContentInfo.createContentInfoFromUrl(url, info);
@@ -425,6 +503,18 @@ public class Media implements IMedia {
 	 * @return An input stream connected to the data.
 	 */
 	public InputStream getContentStream() throws DomainException {
+		if(file != null) {
+			try {
+				return new FileInputStream(file);
+			}
+			catch(FileNotFoundException e) {
+				throw new DomainException(
+						ErrorCode.SYSTEM_GENERAL_ERROR,
+						"The media file does not exist.",
+						e);
+			}
+		}
+		
 		return content;
 	}
 	
@@ -437,6 +527,16 @@ public class Media implements IMedia {
 		return size;
 	}
 	
+	/**
+	 * Returns the time the media's content was last modified.
+	 * 
+	 * @return The time the content was last modified, in milliseconds since
+	 * 		   the epoch, or -1 if it is unknown.
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+	
 	/**
 	 * Returns ContentInfo object associated with this media.
 	 * 
@@ -499,10 +599,42 @@ public class Media implements IMedia {
 			throw new DomainException("Directory to write the content file is null");
 		
 		File mediaFile = new File(directory.getAbsolutePath() + "/" + id.toString());
-		writeFile(mediaFile);
+		if(staged) {
+			// The content is already on disk, so just move it.
+			try {
+				Files.move(
+					file.toPath(), 
+					mediaFile.toPath(), 
+					StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch(IOException e) {
+				throw new DomainException("Could not move the staged file.", e);
+			}
+			file = mediaFile;
+			staged = false;
+		}
+		else {
+			writeFile(mediaFile);
+		}
 		return mediaFile;
 	}
 	
+	/**
+	 * Deletes the staged file that holds this media's content if it was
+	 * never written to its final location. This should be called once a
+	 * request that staged the content is finished with it.
+	 */
+	public void deleteStagedContent() {
+		if(staged) {
+			if(! file.delete()) {
+				LOGGER.warn(
+					"Could not delete the staged file: " + 
+						file.getAbsolutePath());
+			}
+			staged = false;
+		}
+	}
+	
 	
 	// ==== End IMedia implementation ======================
 	
@@ -549,6 +681,23 @@ public class Media implements IMedia {
 	public final void writeFile(final File destination)
 		throws DomainException {
 		
+		// If the content is already on disk, copy it directly.
+		if(file != null) {
+			try {
+				Files.copy(
+					file.toPath(), 
+					destination.toPath(), 
+					StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch(IOException e) {
+				throw
+					new DomainException(
+						"Error reading or writing the data.",
+						e);
+			}
+			return;
+		}
+		
 		// Get the image data.
 		InputStream contents = getContentStream();
 		
@@ -3540,6 +3540,25 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 		classifierData = new ClassifierData(mode);
 	}
 	
+	/**
+	 * Sets this Mobility point's classifier data from a previous run of the 
+	 * server's classifier that was stored.
+	 * 
+	 * @param classifierData The stored classifier data as a JSONObject.
+	 * 
+	 * @throws DomainException The classifier data is null or invalid.
+	 */
+	public final void setClassifierData(
+			final JSONObject classifierData)
+			throws DomainException {
+		
+		if(classifierData == null) {
+			throw new DomainException("The classifier data cannot be null.");
+		}
+		
+		this.classifierData = new ClassifierData(mode, classifierData);
+	}
+	
 	/**
 	 * Returns the classifier data that was generated by the server's 
 	 * classifier.
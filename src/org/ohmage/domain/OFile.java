@@ -1,5 +1,6 @@
 package org.ohmage.domain;
 
+import java.io.File;
 import java.net.URL;
 import java.util.UUID;
 
@@ -41,6 +42,27 @@ public class OFile extends Media {
 	
 		super(id, contentType, fileName, content);
 	}
+	
+	/**
+	 * Constructs a new file object whose content was staged on disk.
+	 * 
+	 * @param id
+	 *        The file's unique identifier.
+	 * 
+	 * @param contentType
+	 *        The media content-type.
+	 * 
+	 * @param fileName 
+	 * 		  The media file name. 
+	 * 
+	 * @param content
+	 *        The staged file that holds the file.
+	 */
+	public OFile(UUID id, String contentType, String fileName,
+			File content) throws DomainException {
+		
+		super(id, contentType, fileName, content);
+	}
 
 
 	/**
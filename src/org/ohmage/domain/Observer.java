@@ -166,7 +166,10 @@ public class Observer {
 
 		@XmlElement(name=KEY_JSON_SCHEMA)
 		private final String schemaString;
-		private final JsonParser schema;
+		
+		// The compiled validator for the schema, which is lazily retrieved
+		// the first time data is validated.
+		private volatile ConcordiaValidator validator = null;
 		
 		/**
 		 * Private, default constructor. This should never be used and would
@@ -182,7 +185,6 @@ public class Observer {
 			withTimestamp = null;
 			withLocation = null;
 			schemaString = null;
-			schema = null;
 		}
 
 		/**
@@ -245,7 +247,7 @@ public class Observer {
 			this.withTimestamp = withTimestamp;
 			this.withLocation = withLocation;
 
-			this.schema = validateSchema(schema);
+			validateSchema(schema);
 			this.schemaString = schema;
 		}
 		
@@ -407,7 +409,7 @@ public class Observer {
 			
 			schemaString = 
 				getXmlValue(stream, "schema", "stream, " + id + ", schema");
-			schema = validateSchema(schemaString);
+			validateSchema(schemaString);
 			
 		}
 
@@ -475,12 +477,22 @@ public class Observer {
 		}
 
 		/**
-		 * Returns schema.
+		 * Returns a new parser for the schema. A parser can only be read
+		 * once, so each caller is given its own, and this stream may be
+		 * shared.
 		 * 
 		 * @return The schema.
 		 */
 		public JsonParser getSchema() {
-			return schema;
+			try {
+				return JSON_FACTORY.createJsonParser(schemaString);
+			}
+			catch(IOException e) {
+				// The schema was validated when this stream was created.
+				throw new IllegalStateException(
+					"The schema could not be parsed as JSON.",
+					e);
+			}
 		}
 		
 		/**
@@ -537,7 +549,7 @@ public class Observer {
 				// Add the schema.
 				generator.writeObjectField(
 					KEY_JSON_SCHEMA, 
-					schema.readValueAsTree());
+					getSchema().readValueAsTree());
 			}
 			finally {
 				// Close this observer's object.
@@ -556,6 +568,73 @@ public class Observer {
 		 * @throws DomainException The data does not conform to the schema.
 		 */
 		public JsonNode validateData(JsonNode data) throws DomainException {
+			if(ConcordiaValidator.useRhino()) {
+				return validateDataWithRhino(data);
+			}
+			
+			ConcordiaValidator result = validator;
+			if(result == null) {
+				result = ConcordiaValidator.compile(schemaString);
+				validator = result;
+			}
+			return result.validateData(data);
+		}
+		
+		/**
+		 * Validates that some data conforms to the schema used when creating
+		 * this stream, using the compiled validator that is cached for this
+		 * observer's and stream's ID and version.
+		 * 
+		 * @param observerId The ID of the observer to which this stream
+		 * 					 belongs.
+		 * 
+		 * @param observerVersion The version of the observer to which this
+		 * 						  stream belongs.
+		 * 
+		 * @param data The data to validate.
+		 * 
+		 * @return The JsonNode as passed into this function.
+		 * 
+		 * @throws DomainException The data does not conform to the schema.
+		 */
+		public JsonNode validateData(
+				final String observerId,
+				final long observerVersion,
+				final JsonNode data)
+				throws DomainException {
+			
+			if(ConcordiaValidator.useRhino()) {
+				return validateDataWithRhino(data);
+			}
+			
+			ConcordiaValidator result = validator;
+			if(result == null) {
+				result =
+					ConcordiaValidator.getValidator(
+						observerId, 
+						observerVersion, 
+						id, 
+						version, 
+						schemaString);
+				validator = result;
+			}
+			return result.validateData(data);
+		}
+		
+		/**
+		 * Validates that some data conforms to the schema used when creating
+		 * this stream by evaluating it with Concordia.js.
+		 * 
+		 * @param data The data to validate.
+		 * 
+		 * @return The JsonNode as passed into this function.
+		 * 
+		 * @throws DomainException The data does not conform to the schema.
+		 */
+		public JsonNode validateDataWithRhino(
+				final JsonNode data)
+				throws DomainException {
+			
 			Context context = Context.enter();
 			try {
 				Scriptable scope = context.initStandardObjects();
@@ -1178,7 +1257,7 @@ public class Observer {
 		
 		try {
 			// Validate the data.
-			dataNode = currStream.validateData(dataNode);
+			dataNode = currStream.validateData(id, version, dataNode);
 		}
 		catch(DomainException e) {
 			throw
@@ -1,5 +1,6 @@
 package org.ohmage.domain;
 
+import java.io.File;
 import java.net.URL;
 import java.util.UUID;
 
@@ -40,6 +41,27 @@ public class Video extends Media {
 		super(id, contentType, fileName, content);
 	}
 	
+	/**
+	 * Constructs a new video object whose content was staged on disk.
+	 * 
+	 * @param id
+	 *        The video's unique identifier.
+	 * 
+	 * @param contentType
+	 *        The media content-type.
+	 * 
+	 * @param fileName 
+	 * 		  The media file name. 
+	 * 
+	 * @param content
+	 *        The staged file that holds the video.
+	 */
+	public Video(UUID id, String contentType, String fileName,
+			File content) throws DomainException {
+		
+		super(id, contentType, fileName, content);
+	}
+	
 	/**
 	 * Creates a video file with an ID from the given URL.
 	 * 
@@ -185,10 +185,12 @@ public class Campaign {
 	 * The map of survey unique identifiers to Survey objects for this 
 	 * configuration.
 	 * 
-	 * Note: Under certain situations this may be an empty list. It should 
-	 * never be null, however.
+	 * Note: Under certain situations this may be an empty list. It is only
+	 * null if the campaign was loaded without its surveys, in which case it
+	 * is parsed from the XML the first time it is needed. Therefore, it
+	 * should always be read through {@link #getSurveyMap()}.
 	 */
-	private final Map<String, Survey> surveyMap;
+	private Map<String, Survey> surveyMap;
 	/**
 	 * The XML file as a string that defines this configuration.
 	 */
@@ -753,6 +755,93 @@ public class Campaign {
 		authorList = new LinkedList<String>();
 	}
 	
+	/**
+	 * Creates a Campaign object from the information that is stored alongside
+	 * its XML, without parsing the XML. The surveys are parsed from the XML
+	 * the first time they are needed, so this should only be used for XML
+	 * that was already validated, e.g. XML that was read from the database.
+	 * 
+	 * @param id The campaign's unique identifier.
+	 * 
+	 * @param name The campaign's name.
+	 * 
+	 * @param description The optional description of the configuration.
+	 * 
+	 * @param iconUrl The campaign's icon's URL, which may be null.
+	 * 
+	 * @param authoredBy The campaign's authored by value, which may be null.
+	 * 
+	 * @param runningState The configuration's current running state.
+	 * 
+	 * @param privacyState The configuration's current privacy state.
+	 * 
+	 * @param creationTimestamp The configuration's creation date and time.
+	 * 
+	 * @param xml The configuration defining XML.
+	 * 
+	 * @param editable Whether or not the campaign is editable.
+	 * 
+	 * @throws DomainException If any of the parameters are invalid.
+	 */
+	public Campaign(
+			final String id,
+			final String name,
+			final String description,
+			final URL iconUrl,
+			final String authoredBy,
+			final RunningState runningState, 
+			final PrivacyState privacyState, 
+			final Date creationTimestamp, 
+			final String xml,
+			final Boolean editable)
+			throws DomainException {
+		
+		if(StringUtils.isEmptyOrWhitespaceOnly(id)) {
+			throw new DomainException("The ID is null or whitespace only.");
+		}
+		else if(StringUtils.isEmptyOrWhitespaceOnly(name)) {
+			throw new DomainException("The name is null or whitespace only.");
+		}
+		else if(runningState == null) {
+			throw new DomainException("The running state is null.");
+		}
+		else if(privacyState == null) {
+			throw new DomainException("The privacy state is null.");
+		}
+		else if(creationTimestamp == null) {
+			throw new DomainException("The creation timestamp is null.");
+		}
+		else if(xml == null) {
+			throw new DomainException("The XML is null.");
+		}
+		else if(editable == null) {
+			throw new DomainException("The edtiable state is null.");
+		}
+		
+		this.id = id;
+		this.name = name;
+		this.description = description;
+		
+		this.iconUrl = iconUrl;
+		this.authoredBy = authoredBy;
+		
+		// The surveys are parsed when they are first needed.
+		surveyMap = null;
+		
+		this.runningState = runningState;
+		this.privacyState = privacyState;
+		this.editable = editable;
+		
+		this.creationTimestamp = new DateTime(creationTimestamp);
+		
+		this.xml = xml;
+		
+		requestUserRoles = new LinkedList<Role>();
+		userRoles = new HashMap<String, Collection<Role>>();
+		classes = new LinkedList<String>();
+		authorList = new LinkedList<String>();
+	}
+	
 	/**
 	 * Validates that some XML contains all required components of an ohmage
 	 * XML document and that all values, even optional ones that are given, are
@@ -799,6 +888,68 @@ public class Campaign {
 		result.put(id, name);
 		return result;
 	}
+	
+	/**
+	 * Returns the icon URL from some campaign XML.
+	 * 
+	 * @param xml The XML as a String.
+	 * 
+	 * @return The campaign's icon URL or null if one wasn't present.
+	 * 
+	 * @throws DomainException Thrown if the XML or its icon URL is not valid.
+	 */
+	public static URL getIconUrl(final String xml) throws DomainException {
+		return getIconUrl(getRoot(xml));
+	}
+	
+	/**
+	 * Returns the authored by value from some campaign XML.
+	 * 
+	 * @param xml The XML as a String.
+	 * 
+	 * @return The campaign's authored by value or null if one wasn't present.
+	 * 
+	 * @throws DomainException Thrown if the XML or its authored by value is 
+	 * 						   not valid.
+	 */
+	public static String getAuthoredBy(
+			final String xml) 
+			throws DomainException {
+		
+		return getAuthoredBy(getRoot(xml));
+	}
+	
+	/**
+	 * Parses some campaign XML.
+	 * 
+	 * @param xml The XML as a String.
+	 * 
+	 * @return The root of the XML.
+	 * 
+	 * @throws DomainException Thrown if the XML could not be parsed.
+	 */
+	private static Element getRoot(final String xml) throws DomainException {
+		Document document;
+		try {
+			document = (new Builder()).build(new StringReader(xml));
+		} 
+		catch(IOException e) {
+			// This should only be thrown if it can't read the 'xml', but
+			// given that it is already in memory this should never happen.
+			throw new DomainException("XML was unreadable.", e);
+		}
+		catch(XMLException e) {
+			throw new DomainException("No usable XML parser could be found.", e);
+		}
+		catch(ValidityException e) {
+			throw new DomainException("The XML is invalid.", e);
+		}
+		catch(ParsingException e) {
+			throw new DomainException("The XML is not well formed.", e);
+		}
+		
+		return document.getRootElement();
+	}
 
 	/**
 	 * Returns the configuration's unique identifier.
@@ -1246,13 +1397,41 @@ public class Campaign {
 		}
 	}
 
+	/**
+	 * Returns the map of survey IDs to Survey objects, parsing them from the
+	 * XML if this is the first time they are needed.
+	 * 
+	 * @return The map of survey IDs to Survey objects.
+	 * 
+	 * @throws DomainException The stored XML could not be parsed.
+	 */
+	private synchronized Map<String, Survey> getSurveyMap() 
+			throws DomainException {
+		
+		if(surveyMap == null) {
+			try {
+				surveyMap = getSurveys(parseXml(xml));
+			}
+			catch(DomainException e) {
+				throw new DomainException(
+					"The stored XML for the campaign is invalid: " + id,
+					e);
+			}
+		}
+		
+		return surveyMap;
+	}
+	
 	/**
 	 * Returns the map of survey IDs to Survey objects.
 	 * 
 	 * @return The map of survey IDs to Survey objects.
+	 * 
+	 * @throws DomainException The campaign was loaded without its surveys,
+	 * 						   and its stored XML could not be parsed.
 	 */
-	public Map<String, Survey> getSurveys() {
-		return Collections.unmodifiableMap(surveyMap);
+	public Map<String, Survey> getSurveys() throws DomainException {
+		return Collections.unmodifiableMap(getSurveyMap());
 	}
 
 	/**
@@ -1272,7 +1451,7 @@ public class Campaign {
 			throw new DomainException("The survey ID is null.");
 		}
 		
-		return surveyMap.containsKey(surveyId);
+		return getSurveyMap().containsKey(surveyId);
 	}
 	
 	/**
@@ -1293,7 +1472,7 @@ public class Campaign {
 		}
 		
 		if(surveyIdExists(surveyId)) {
-			return surveyMap.get(surveyId).getTitle();
+			return getSurveyMap().get(surveyId).getTitle();
 		}
 		return null;
 	}
@@ -1316,7 +1495,7 @@ public class Campaign {
 		}
 		
 		if(surveyIdExists(surveyId)) {
-			return surveyMap.get(surveyId).getDescription();
+			return getSurveyMap().get(surveyId).getDescription();
 		}
 		return null;
 	}
@@ -1347,7 +1526,7 @@ public class Campaign {
 			throw new DomainException("The repeatable set ID is null.");
 		}
 		
-		Survey survey = surveyMap.get(surveyId);
+		Survey survey = getSurveyMap().get(surveyId);
 		if(survey == null) {
 			throw new DomainException("The survey ID is unknown.");
 		}
@@ -1396,7 +1575,7 @@ public class Campaign {
 			throw new DomainException("The prompt ID is null.");
 		}
 		
-		Survey survey = surveyMap.get(surveyId);
+		Survey survey = getSurveyMap().get(surveyId);
 		if(survey == null) {
 			throw new DomainException("The survey ID is unknown.");
 		}
@@ -1510,7 +1689,7 @@ public class Campaign {
 			throw new DomainException("The prompt ID is null.");
 		}
 		
-		Survey survey = surveyMap.get(surveyId);
+		Survey survey = getSurveyMap().get(surveyId);
 		if(survey == null) {
 			throw new DomainException("The survey ID is unknown.");
 		}
@@ -1590,7 +1769,7 @@ public class Campaign {
 			throw new DomainException("The survey ID is null.");
 		}
 		
-		Survey survey = surveyMap.get(surveyId);
+		Survey survey = getSurveyMap().get(surveyId);
 		if(survey == null) {
 			throw new DomainException(
 					"There is no survey with the ID: " + surveyId);
@@ -1626,7 +1805,7 @@ public class Campaign {
 			throw new DomainException("The repeatable set ID is null.");
 		}
 		
-		Survey survey = surveyMap.get(surveyId);
+		Survey survey = getSurveyMap().get(surveyId);
 		if(survey == null) {
 			throw new DomainException("There is no survey with the ID: " + surveyId);
 		}
@@ -1659,7 +1838,7 @@ public class Campaign {
 			final String promptId) 
 			throws DomainException {
 		
-		for(Survey survey : surveyMap.values()) {
+		for(Survey survey : getSurveyMap().values()) {
 			if(survey.getSurveyItem(promptId) != null) {
 				return survey.getId();
 			}
@@ -1682,7 +1861,7 @@ public class Campaign {
 			final String promptId) 
 			throws DomainException {
 		
-		for(Survey survey : surveyMap.values()) {
+		for(Survey survey : getSurveyMap().values()) {
 			if(survey.getSurveyItem(promptId) != null) {
 				return survey;
 			}
@@ -2043,7 +2222,7 @@ public class Campaign {
 			}
 			
 			JSONArray surveysArray = new JSONArray();
-			for(Survey survey : surveyMap.values()) {
+			for(Survey survey : getSurveyMap().values()) {
 				// If the campaign is being masked and this survey isn't part
 				// of the mask, skip it.
 				if(
@@ -2218,6 +2397,38 @@ public class Campaign {
 		}
 	}
 	
+	/**
+	 * Parses some XML and returns its root element.
+	 * 
+	 * @param xml The XML as a String.
+	 * 
+	 * @return The root element of the XML.
+	 * 
+	 * @throws DomainException The XML could not be parsed.
+	 */
+	private static Element parseXml(final String xml) throws DomainException {
+		Document document;
+		try {
+			document = (new Builder()).build(new StringReader(xml));
+		} 
+		catch(IOException e) {
+			// This should only be thrown if it can't read the 'xml', but
+			// given that it is already in memory this should never happen.
+			throw new DomainException("XML was unreadable.", e);
+		}
+		catch(XMLException e) {
+			throw new DomainException("No usable XML parser could be found.", e);
+		}
+		catch(ValidityException e) {
+			throw new DomainException("The XML is invalid.", e);
+		}
+		catch(ParsingException e) {
+			throw new DomainException("The XML is not well formed.", e);
+		}
+		
+		return document.getRootElement();
+	}
+	
 	/**
 	 * Checks that the campaign URN exists and is a valid URN as defined by
 	 * us.
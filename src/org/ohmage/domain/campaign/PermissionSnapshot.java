@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.domain.campaign;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * <p>
+ * Everything needed to decide what a user may do with a campaign, read at
+ * once: whether the user is an admin, the user's roles in the campaign, and
+ * the campaign's running state, privacy state, and whether its responses are
+ * editable.
+ * </p>
+ *
+ * <p>
+ * If the campaign does not exist, the user has no roles in it and its states
+ * are null. This class is immutable and, therefore, thread-safe.
+ * </p>
+ */
+public class PermissionSnapshot {
+	private final String username;
+	private final String campaignId;
+	private final boolean admin;
+	private final Set<Campaign.Role> roles;
+	private final Campaign.RunningState runningState;
+	private final Campaign.PrivacyState privacyState;
+	private final boolean editable;
+
+	/**
+	 * Creates a new snapshot.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param campaignId The campaign's unique identifier.
+	 *
+	 * @param admin Whether or not the user is an admin.
+	 *
+	 * @param roles The user's roles in the campaign.
+	 *
+	 * @param runningState The campaign's running state or null if the
+	 * 					   campaign does not exist.
+	 *
+	 * @param privacyState The campaign's privacy state or null if the
+	 * 					   campaign does not exist.
+	 *
+	 * @param editable Whether or not the campaign's responses are editable.
+	 */
+	public PermissionSnapshot(
+			final String username,
+			final String campaignId,
+			final boolean admin,
+			final Collection<Campaign.Role> roles,
+			final Campaign.RunningState runningState,
+			final Campaign.PrivacyState privacyState,
+			final boolean editable) {
+
+		this.username = username;
+		this.campaignId = campaignId;
+		this.admin = admin;
+
+		Set<Campaign.Role> roleSet = EnumSet.noneOf(Campaign.Role.class);
+		if(roles != null) {
+			roleSet.addAll(roles);
+		}
+		this.roles = Collections.unmodifiableSet(roleSet);
+
+		this.runningState = runningState;
+		this.privacyState = privacyState;
+		this.editable = editable;
+	}
+
+	/**
+	 * Returns the user's username.
+	 *
+	 * @return The user's username.
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Returns the campaign's unique identifier.
+	 *
+	 * @return The campaign's unique identifier.
+	 */
+	public String getCampaignId() {
+		return campaignId;
+	}
+
+	/**
+	 * Returns whether or not the user is an admin.
+	 *
+	 * @return Whether or not the user is an admin.
+	 */
+	public boolean isAdmin() {
+		return admin;
+	}
+
+	/**
+	 * Returns whether or not the campaign exists.
+	 *
+	 * @return Whether or not the campaign exists.
+	 */
+	public boolean campaignExists() {
+		return runningState != null;
+	}
+
+	/**
+	 * Returns the user's roles in the campaign.
+	 *
+	 * @return The user's roles in the campaign, which may be empty.
+	 */
+	public Set<Campaign.Role> getRoles() {
+		return roles;
+	}
+
+	/**
+	 * Returns whether or not the user has a role in the campaign.
+	 *
+	 * @param role The role.
+	 *
+	 * @return Whether or not the user has the role in the campaign.
+	 */
+	public boolean hasRole(final Campaign.Role role) {
+		return roles.contains(role);
+	}
+
+	/**
+	 * Returns the campaign's running state.
+	 *
+	 * @return The campaign's running state or null if it does not exist.
+	 */
+	public Campaign.RunningState getRunningState() {
+		return runningState;
+	}
+
+	/**
+	 * Returns the campaign's privacy state.
+	 *
+	 * @return The campaign's privacy state or null if it does not exist.
+	 */
+	public Campaign.PrivacyState getPrivacyState() {
+		return privacyState;
+	}
+
+	/**
+	 * Returns whether or not the campaign's responses are editable.
+	 *
+	 * @return Whether or not the campaign's responses are editable.
+	 */
+	public boolean isEditable() {
+		return editable;
+	}
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.domain.campaign;
+
+import org.ohmage.domain.campaign.SurveyResponse.PrivacyState;
+import org.ohmage.exception.DomainException;
+
+/**
+ * <p>
+ * The number of survey responses that share a privacy state and, optionally,
+ * the date on which they were taken and the survey from which they were
+ * derived. This is the result of the
+ * {@link SurveyResponse.Function#PRIVACY_STATE} function.
+ * </p>
+ *
+ * <p>
+ * The date is the year, month, and day, separated by dashes, in the time
+ * zone of the phone that took the survey.
+ * </p>
+ */
+public class SurveyResponseCount {
+	private final PrivacyState privacyState;
+	private final String date;
+	private final String surveyId;
+
+	private long count;
+
+	/**
+	 * Creates a new, empty count.
+	 *
+	 * @param privacyState The privacy state of the survey responses.
+	 *
+	 * @param date The date of the survey responses or null if they are not
+	 * 			   grouped by date.
+	 *
+	 * @param surveyId The survey ID of the survey responses or null if they
+	 * 				   are not grouped by survey.
+	 *
+	 * @throws DomainException The privacy state is null.
+	 */
+	public SurveyResponseCount(
+			final PrivacyState privacyState,
+			final String date,
+			final String surveyId)
+			throws DomainException {
+
+		if(privacyState == null) {
+			throw new DomainException("The privacy state is null.");
+		}
+
+		this.privacyState = privacyState;
+		this.date = date;
+		this.surveyId = surveyId;
+	}
+
+	/**
+	 * Returns the privacy state of the survey responses.
+	 *
+	 * @return The privacy state of the survey responses.
+	 */
+	public PrivacyState getPrivacyState() {
+		return privacyState;
+	}
+
+	/**
+	 * Returns the date of the survey responses.
+	 *
+	 * @return The date of the survey responses or null if they are not
+	 * 		   grouped by date.
+	 */
+	public String getDate() {
+		return date;
+	}
+
+	/**
+	 * Returns the survey ID of the survey responses.
+	 *
+	 * @return The survey ID of the survey responses or null if they are not
+	 * 		   grouped by survey.
+	 */
+	public String getSurveyId() {
+		return surveyId;
+	}
+
+	/**
+	 * Returns the number of survey responses.
+	 *
+	 * @return The number of survey responses.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Adds to the number of survey responses.
+	 *
+	 * @param amount The number of survey responses to add.
+	 */
+	public void add(final long amount) {
+		count += amount;
+	}
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.domain.campaign;
+
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.ohmage.exception.DomainException;
+
+/**
+ * <p>
+ * A position in the default ordering of survey responses, which is by the
+ * time the survey was taken, newest first, and then by the survey response's
+ * unique identifier. A cursor refers to the last survey response that was
+ * returned, and the next page begins with the survey response that follows
+ * it.
+ * </p>
+ *
+ * <p>
+ * Cursors are given to and received from clients as opaque, URL-safe
+ * strings.
+ * </p>
+ */
+public class SurveyResponseCursor {
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final char SEPARATOR = ',';
+
+	private final long epochMillis;
+	private final UUID surveyResponseId;
+
+	/**
+	 * Creates a new cursor.
+	 *
+	 * @param epochMillis The time the last survey response was taken.
+	 *
+	 * @param surveyResponseId The last survey response's unique identifier.
+	 *
+	 * @throws DomainException The survey response ID is null.
+	 */
+	public SurveyResponseCursor(
+			final long epochMillis,
+			final UUID surveyResponseId)
+			throws DomainException {
+
+		if(surveyResponseId == null) {
+			throw new DomainException("The survey response ID is null.");
+		}
+
+		this.epochMillis = epochMillis;
+		this.surveyResponseId = surveyResponseId;
+	}
+
+	/**
+	 * Creates a cursor that points at a survey response.
+	 *
+	 * @param surveyResponse The survey response.
+	 *
+	 * @throws DomainException The survey response is null.
+	 */
+	public SurveyResponseCursor(
+			final SurveyResponse surveyResponse)
+			throws DomainException {
+
+		if(surveyResponse == null) {
+			throw new DomainException("The survey response is null.");
+		}
+
+		epochMillis = surveyResponse.getTime();
+		surveyResponseId = surveyResponse.getSurveyResponseId();
+	}
+
+	/**
+	 * Decodes a cursor that was previously given to a client.
+	 *
+	 * @param token The cursor as given by {@link #toString()}.
+	 *
+	 * @return The decoded cursor.
+	 *
+	 * @throws DomainException The token is not a valid cursor.
+	 */
+	public static SurveyResponseCursor decode(
+			final String token)
+			throws DomainException {
+
+		if(token == null) {
+			throw new DomainException("The cursor is null.");
+		}
+
+		// Restore the characters and padding that were removed to make it
+		// URL-safe.
+		StringBuilder encoded =
+			new StringBuilder(token.replace('-', '+').replace('_', '/'));
+		while((encoded.length() % 4) != 0) {
+			encoded.append('=');
+		}
+
+		String decoded;
+		try {
+			decoded =
+				new String(
+					DatatypeConverter.parseBase64Binary(encoded.toString()),
+					CHARSET);
+		}
+		catch(IllegalArgumentException e) {
+			throw new DomainException("The cursor is not valid.", e);
+		}
+
+		int separatorIndex = decoded.indexOf(SEPARATOR);
+		if(separatorIndex == -1) {
+			throw new DomainException("The cursor is not valid.");
+		}
+
+		try {
+			return
+				new SurveyResponseCursor(
+					Long.parseLong(decoded.substring(0, separatorIndex)),
+					UUID.fromString(decoded.substring(separatorIndex + 1)));
+		}
+		catch(IllegalArgumentException e) {
+			throw new DomainException("The cursor is not valid.", e);
+		}
+	}
+
+	/**
+	 * Returns the time the last survey response was taken.
+	 *
+	 * @return The number of milliseconds since the epoch.
+	 */
+	public long getEpochMillis() {
+		return epochMillis;
+	}
+
+	/**
+	 * Returns the last survey response's unique identifier.
+	 *
+	 * @return The last survey response's unique identifier.
+	 */
+	public UUID getSurveyResponseId() {
+		return surveyResponseId;
+	}
+
+	/**
+	 * Returns the opaque, URL-safe representation of this cursor.
+	 *
+	 * @return The opaque representation of this cursor.
+	 */
+	@Override
+	public String toString() {
+		String encoded =
+			DatatypeConverter.printBase64Binary(
+				(Long.toString(epochMillis) + SEPARATOR + surveyResponseId)
+					.getBytes(CHARSET));
+
+		// Make it URL-safe.
+		int end = encoded.length();
+		while((end > 0) && (encoded.charAt(end - 1) == '=')) {
+			end--;
+		}
+		return
+			encoded.substring(0, end).replace('+', '-').replace('/', '_');
+	}
+}
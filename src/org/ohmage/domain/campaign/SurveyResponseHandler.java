@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.domain.campaign;
+
+import java.io.IOException;
+
+import org.ohmage.exception.DomainException;
+
+/**
+ * <p>
+ * Receives survey responses one at a time as they are read from the
+ * database, so that they never need to be held in memory all at once.
+ * </p>
+ *
+ * <p>
+ * A handler is given one pass over the survey responses. A reader that
+ * needs something about every survey response before it can use any of them,
+ * e.g. counts that precede the data, may be given several handlers, each of
+ * which is given the same survey responses in the same order.
+ * </p>
+ */
+public interface SurveyResponseHandler {
+	/**
+	 * Handles the next survey response.
+	 *
+	 * @param surveyResponse The survey response.
+	 *
+	 * @throws DomainException The survey response could not be handled.
+	 *
+	 * @throws IOException The survey response could not be written.
+	 */
+	void handle(SurveyResponse surveyResponse)
+			throws DomainException, IOException;
+
+	/**
+	 * Called once every survey response in the pass has been handled.
+	 *
+	 * @param totalCount The total number of survey responses that matched
+	 * 					 the criteria, regardless of paging, or -1 if they
+	 * 					 were not counted.
+	 *
+	 * @throws DomainException The pass could not be completed.
+	 *
+	 * @throws IOException The pass could not be written.
+	 */
+	void finish(long totalCount) throws DomainException, IOException;
+}
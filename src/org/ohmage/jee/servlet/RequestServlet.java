@@ -17,6 +17,7 @@ package org.ohmage.jee.servlet;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -35,6 +36,8 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.AuditQueue;
+import org.ohmage.domain.AuditEntry;
 import org.ohmage.exception.InvalidRequestException;
 import org.ohmage.exception.ServiceException;
 import org.ohmage.jee.filter.Log4jNdcFilter;
@@ -112,190 +115,144 @@ public class RequestServlet extends HttpServlet {
 	public static enum RequestType { POST, GET, OPTIONS, HEAD, PUT, DELETE, TRACE, UNKNOWN };
 	
 	/**
-	 * This will simply insert the audit information as gathered by the 
-	 * constructor into the database. This is being done in a thread to not
-	 * delay the response to the client.
+	 * Builds the audit entry for a request. Any uploaded data, passwords,
+	 * media, and values that are too long for the database are removed from
+	 * the parameters. This is done before the audit is queued so that the
+	 * queue never holds on to the request or any of its uploaded data.
 	 * 
-	 * @author John Jenkins
+	 * @param request The request that was serviced or null if the request
+	 * 				  could not be built.
+	 * 
+	 * @param requestType The RequestType for the request being audited.
+	 * 
+	 * @param uri The URI of the request being audited.
+	 * 
+	 * @param requestId The unique identifier for the request being audited.
+	 * 
+	 * @param parameterMap A map of parameter keys to all values given for
+	 * 					   all of the parameters passed into this request.
+	 * 
+	 * @param headerMap A map of all header keys to all values given for all
+	 * 					of the headers passed into this request.
+	 * 
+	 * @param receivedTimestamp The timestamp at which the request was 
+	 * 							received by the same measure as 
+	 * 							'respondTimestamp'.
+	 * 
+	 * @param respondTimestamp The timestamp at which the request was fully
+	 * 						   responded to by the same measure as
+	 * 						   'receivedTimestamp'.
+	 * 
+	 * @return The audit entry.
 	 */
-	private final class AuditThread extends Thread {
-		private final Request request;
-		
-		private final RequestType requestType;
-		private final String uri;
+	private static AuditEntry createAuditEntry(
+			final Request request,
+			final RequestType requestType,
+			final String uri,
+			final String requestId,
+			final Map<String, String[]> parameterMap,
+			final Map<String, String[]> headerMap,
+			final long receivedTimestamp, 
+			final long respondTimestamp) {
 		
-		private final Map<String, String[]> parameterMap;
-		private final Map<String, String[]> headerMap;
-
-		private final long receivedTimestamp;
-		private final long respondTimestamp;
+		// We remove any uploaded to data to avoid storing personal or
+		// sensitive data in the audit table.
+		parameterMap.remove(InputKeys.DATA);
+		parameterMap.remove(InputKeys.SURVEYS);
 		
-		private final String requestId;
-
-		/**
-		 * Creates an object to hold the information necessary to create an
-		 * audit entry.
-		 * 
-		 * @param requestType The RequestType for the request being audited.
-		 * 
-		 * @param uri The URI of the request being audited.
-		 * 
-		 * @param parameterMap A map of parameter keys to all values given for
-		 * 					   all of the parameters passed into this request.
-		 * 
-		 * @param headerMap A map of all header keys to all values given for
-		 * 					all of the headers passed into this request.
-		 * 
-		 * @param receivedTimestamp The timestamp at which the request was 
-		 * 							received by the same measure as 
-		 * 							'respondTimestamp'.
-		 * 
-		 * @param respondTimestamp The timestamp at which the request was fully
-		 * 						   responded to by the same measure as
-		 * 						   'receivedTimestamp'.
-		 */
-		public AuditThread(
-				final Request request,
-				final RequestType requestType,
-				final String uri,
-				final String requestId,
-				final Map<String, String[]> parameterMap,
-				final Map<String, String[]> headerMap,
-				final long receivedTimestamp, 
-				final long respondTimestamp) {
-			
-			this.request = request;
-			
-			this.requestType = requestType;
-			this.uri = uri;
-			
-			this.requestId = requestId;
+		// Go through the parameters and remove all values that are
+		// greater than 64kB because the database will reject it.
+		for(String key : parameterMap.keySet()) {
+			String[] values = parameterMap.get(key);
 			
-			this.parameterMap = parameterMap;
-			this.headerMap = headerMap;
-			
-			this.receivedTimestamp = receivedTimestamp;
-			this.respondTimestamp = respondTimestamp;
-		}
-		
-		/**
-		 * Creates the entry in the audit table.
-		 */
-		@Override
-		public void run() {
-			try {
-				// We remove any uploaded to data to avoid storing personal or
-				// sensitive data in the audit table.
-				parameterMap.remove(InputKeys.DATA);
-				parameterMap.remove(InputKeys.SURVEYS);
-				
-				// Go through the parameters and remove all values that are
-				// greater than 64kB because the database will reject it.
-				for(String key : parameterMap.keySet()) {
-					String[] values = parameterMap.get(key);
-					
-					// If it is a password or new_password, we mask it to avoid
-					// accidentally storing any passwords in the database,
-					// except in the user table.
-					if(
-						InputKeys.PASSWORD.equals(key) || 
-						InputKeys.NEW_PASSWORD.equals(key)) {
+			// If it is a password or new_password, we mask it to avoid
+			// accidentally storing any passwords in the database,
+			// except in the user table.
+			if(
+				InputKeys.PASSWORD.equals(key) || 
+				InputKeys.NEW_PASSWORD.equals(key)) {
 
-						for(int i = 0; i < values.length; i++) {
-							values[i] = PASSWORD_OMITTED;
-						}
-					}
-					// If it is the list of BASE64-encoded images, then ignore
-					// them.
-					else if(InputKeys.IMAGES.equals(key)) {
-						for(int i = 0; i < values.length; i++) {
-							values[i] = MEDIA_OMITTED;
-						}
-					}
-					else {
-						// If the parameter's key is a UUID, it is probably a
-						// media file and should not be audited.
-						try {
-							UUID.fromString(key);
-							for(int i = 0; i < values.length; i++) {
-								values[i] = MEDIA_OMITTED;
-							}
-						}
-						// If it wasn't a valid UUID, then check every field to
-						// see if it is greater than the database limit.
-						catch(IllegalArgumentException e) { 
-							for(int i = 0; i < values.length; i++) {
-								if(values[i].length() > MAX_DATABASE_LENGTH) {
-									values[i] = LONG_VALUE_OMITTED;
-								}
-							}
-						}
-					}
+				for(int i = 0; i < values.length; i++) {
+					values[i] = PASSWORD_OMITTED;
 				}
-				
-				// Retrieve the device ID. If any number of device IDs exist,
-				// the first one reported will be used.
-				String deviceId = null;
-				String[] deviceIds = parameterMap.get(KEY_DEVICE_ID);
-				if((deviceIds != null) && (deviceIds.length == 1)) {
-					deviceId = deviceIds[0];
-				}
-				
-				// Create a result object based on whether or not the request
-				// succeeded.
-				String responseString = Request.RESPONSE_SUCCESS_JSON_TEXT;
-				if(request == null) {
-					responseString = Request.RESPONSE_ERROR_JSON_TEXT;
+			}
+			// If it is the list of BASE64-encoded images, then ignore
+			// them.
+			else if(InputKeys.IMAGES.equals(key)) {
+				for(int i = 0; i < values.length; i++) {
+					values[i] = MEDIA_OMITTED;
 				}
-				else if(request.isFailed()) {
-					responseString = request.getFailureMessage();
-					
-					if(responseString.length() > MAX_DATABASE_LENGTH) {
-						responseString = responseString.substring(0, MAX_DATABASE_LENGTH - 3) + ELLIPSE;
+			}
+			else {
+				// If the parameter's key is a UUID, it is probably a
+				// media file and should not be audited.
+				try {
+					UUID.fromString(key);
+					for(int i = 0; i < values.length; i++) {
+						values[i] = MEDIA_OMITTED;
 					}
 				}
-				
-				// Generate an 'extras' Map based on the HTTP headers.
-				Map<String, String[]> extras = headerMap;
-				
-				// Get any extras from the request.
-				String client = null;
-				if(request != null) {
-					Map<String, String[]> requestExtras = request.getAuditInformation();
-					if(requestExtras != null) {
-						extras.putAll(requestExtras);
-					}
-					
-					if(request instanceof UserRequest) {
-						client = ((UserRequest) request).getClient();
+				// If it wasn't a valid UUID, then check every field to
+				// see if it is greater than the database limit.
+				catch(IllegalArgumentException e) { 
+					for(int i = 0; i < values.length; i++) {
+						if(values[i].length() > MAX_DATABASE_LENGTH) {
+							values[i] = LONG_VALUE_OMITTED;
+						}
 					}
 				}
-				
-				// Create the audit report.
-				AuditServices
-					.instance()
-					.createAudit(
-						requestType, 
-						uri, 
-						client,
-						requestId,
-						deviceId, 
-						responseString, 
-						parameterMap, 
-						extras, 
-						receivedTimestamp, 
-						respondTimestamp);
 			}
-			catch(IllegalArgumentException e) {
-				LOGGER.error("Error while auditing the request.", e);
+		}
+		
+		// Retrieve the device ID. If any number of device IDs exist,
+		// the first one reported will be used.
+		String deviceId = null;
+		String[] deviceIds = parameterMap.get(KEY_DEVICE_ID);
+		if((deviceIds != null) && (deviceIds.length == 1)) {
+			deviceId = deviceIds[0];
+		}
+		
+		// Create a result object based on whether or not the request
+		// succeeded.
+		String responseString = Request.RESPONSE_SUCCESS_JSON_TEXT;
+		if(request == null) {
+			responseString = Request.RESPONSE_ERROR_JSON_TEXT;
+		}
+		else if(request.isFailed()) {
+			responseString = request.getFailureMessage();
+			
+			if(responseString.length() > MAX_DATABASE_LENGTH) {
+				responseString = responseString.substring(0, MAX_DATABASE_LENGTH - 3) + ELLIPSE;
 			}
-			catch(IllegalStateException e) {
-				LOGGER.error("Error while auditing the request.", e);
+		}
+		
+		// Generate an 'extras' Map based on the HTTP headers.
+		Map<String, String[]> extras = headerMap;
+		
+		// Get any extras from the request.
+		String client = null;
+		if(request != null) {
+			Map<String, String[]> requestExtras = request.getAuditInformation();
+			if(requestExtras != null) {
+				extras.putAll(requestExtras);
 			}
-			catch(ServiceException e) {
-				LOGGER.error("Error while auditing the request.", e);
+			
+			if(request instanceof UserRequest) {
+				client = ((UserRequest) request).getClient();
 			}
 		}
+		
+		return new AuditEntry(
+			requestType, 
+			uri, 
+			client,
+			requestId,
+			deviceId, 
+			responseString, 
+			parameterMap, 
+			extras, 
+			receivedTimestamp, 
+			respondTimestamp);
 	}
 	
 	/**
@@ -361,43 +318,44 @@ public class RequestServlet extends HttpServlet {
 			parameterMap = new HashMap<String, String[]>(httpRequest.getParameterMap());
 		}
 
-		// Create a separate thread with the parameters and start that thread.
-		AuditThread auditThread =
-			new AuditThread(
-				request,
-				requestType,
-				uri,
-				(String) httpRequest.getAttribute(Log4jNdcFilter.ATTRIBUTE_REQUEST_ID),
-				parameterMap,
-				extras,
-				receivedTimestamp,
-				respondedTimestamp);
-		auditThread.start();
+		// Queue the audit to be written in the background.
+		try {
+			AuditEntry auditEntry =
+				createAuditEntry(
+					request,
+					requestType,
+					uri,
+					(String) httpRequest.getAttribute(Log4jNdcFilter.ATTRIBUTE_REQUEST_ID),
+					parameterMap,
+					extras,
+					receivedTimestamp,
+					respondedTimestamp);
+			
+			AuditQueue auditQueue = AuditQueue.instance();
+			if(auditQueue == null) {
+				AuditServices
+					.instance()
+					.createAudits(Collections.singletonList(auditEntry));
+			}
+			else {
+				auditQueue.enqueue(auditEntry);
+			}
+		}
+		catch(IllegalArgumentException e) {
+			LOGGER.error("Error while auditing the request.", e);
+		}
+		catch(ServiceException e) {
+			LOGGER.error("Error while auditing the request.", e);
+		}
 	}
 	
 	/**
-	 * Processes a GET request. Only certain APIs may make a GET request. This
-	 * should be handled in a different way than hard-coding the allowed GET
-	 * APIs. 
+	 * Processes a GET request. Only the APIs that the {@link RequestBuilder}
+	 * allows to be read with a GET may make a GET request.
 	 */
 	@Override
 	protected final void doGet(HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
-		if(RequestBuilder.getInstance().getApiAudioRead().equals(httpRequest.getRequestURI()) ||
-				RequestBuilder.getInstance().getApiConfigRead().equals(httpRequest.getRequestURI()) ||
-				RequestBuilder.getInstance().getApiImageRead().equals(httpRequest.getRequestURI()) ||
-				RequestBuilder.getInstance().getApiImageBatchZipRead().equals(httpRequest.getRequestURI()) ||
-				RequestBuilder.getInstance().getApiDocumentReadContents().equals(httpRequest.getRequestURI()) ||
-				RequestBuilder.getInstance().getApiVisualization().equals(httpRequest.getRequestURI()) |
-				RequestBuilder.getInstance().getApiUserActivate().equals(httpRequest.getRequestURI()) ||
-				RequestBuilder.getInstance().getApiRegistrationRead().equals(httpRequest.getRequestURI()) ||
-				RequestBuilder.getInstance().getApiStreamRead().equals(httpRequest.getRequestURI()) ||
-				RequestBuilder.getInstance().getApiUserWhoAmI().equals(httpRequest.getRequestURI()) ||
-				RequestBuilder.getInstance().getApiOmhRead().equals(httpRequest.getRequestURI()) ||
-				RequestBuilder.getInstance().getApiSurveyResponseRead().equals(httpRequest.getRequestURI()) ||
-				RequestBuilder.getInstance().getApiVideoRead().equals(httpRequest.getRequestURI()) ||
-				RequestBuilder.getInstance().getApiMediaRead().equals(httpRequest.getRequestURI())
-			) {
-			
+		if(RequestBuilder.getInstance().isAllowed(httpRequest.getRequestURI(), RequestType.GET)) {
 			processRequest(httpRequest, httpResponse);
 		}
 		else {
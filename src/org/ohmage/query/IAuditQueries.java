@@ -16,12 +16,14 @@
 package org.ohmage.query;
 
 import java.net.URI;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import org.joda.time.DateTime;
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.domain.Audit;
+import org.ohmage.domain.AuditEntry;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.jee.servlet.RequestServlet;
 import org.ohmage.validator.AuditValidators.ResponseType;
@@ -86,6 +88,20 @@ public interface IAuditQueries {
 		long receivedMillis,
 		long respondMillis) throws DataAccessException;
 
+	/**
+	 * Creates a batch of audit entries in a single transaction. The audits,
+	 * their parameters, and their extras are each inserted with one batched
+	 * statement.
+	 * 
+	 * @param audits The audits to create.
+	 * 
+	 * @throws DataAccessException There was an error creating the audits, in
+	 * 							   which case none of them were created.
+	 */
+	void createAudits(
+		Collection<AuditEntry> audits)
+		throws DataAccessException;
+
 	/**
 	 * Retrieves the unique ID for all audits.
 	 * 
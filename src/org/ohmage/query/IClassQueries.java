@@ -160,6 +160,26 @@ public interface IClassQueries {
 			final String classId)
 			throws DataAccessException;
 
+	/**
+	 * Retrieves, for each of a collection of classes, a map of usernames to
+	 * that user's class role. The class roles in a class will all be null 
+	 * unless the user is an admin or privileged in that class.
+	 * 
+	 * @param username The requesting user's username.
+	 * 
+	 * @param classIds The unique identifiers for the classes.
+	 * 
+	 * @return A map of each class ID to its map of usernames to class role.
+	 * 		   A class that doesn't exist maps to an empty map. The class IDs
+	 * 		   are compared without regard to case.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	Map<String, Map<String, Clazz.Role>> getUserRolePairs(
+			final String username,
+			final Collection<String> classIds)
+			throws DataAccessException;
+
 	/**
 	 * Updates a class' information and adds and removes users from the class
 	 * all as requested.
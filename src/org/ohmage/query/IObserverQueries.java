@@ -5,7 +5,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.joda.time.DateTime;
+import org.ohmage.cache.StreamDuplicateFilter.IdFilter;
 import org.ohmage.domain.DataStream;
+import org.ohmage.domain.DataStreamCursor;
 import org.ohmage.domain.Observer;
 import org.ohmage.domain.Observer.Stream;
 import org.ohmage.exception.DataAccessException;
@@ -168,6 +170,47 @@ public interface IObserverQueries {
 		final Collection<String> idsToCheck)
 		throws DataAccessException;
 	
+	/**
+	 * Returns the number of points a user has stored for any version of an
+	 * observer's stream.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @param observerId The observer's unique identifier.
+	 * 
+	 * @param streamId The stream's unique identifier.
+	 * 
+	 * @return The number of points with an ID.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	public long getStreamIdCount(
+			final String username,
+			final String observerId,
+			final String streamId)
+			throws DataAccessException;
+	
+	/**
+	 * Adds the IDs of every point a user has stored for any version of an
+	 * observer's stream to a duplicate filter.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @param observerId The observer's unique identifier.
+	 * 
+	 * @param streamId The stream's unique identifier.
+	 * 
+	 * @param filter The filter to which the IDs are added.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	public void addStreamIds(
+			final String username,
+			final String observerId,
+			final String streamId,
+			final IdFilter filter)
+			throws DataAccessException;
+	
 	/**
 	 * Stores the data stream data.
 	 * 
@@ -222,6 +265,10 @@ public interface IObserverQueries {
 	 * 						If false, the values will be sorted reverse
 	 * 						chronologically. Required.
 	 * 
+	 * @param cursor The last point of the previous page, after which to
+	 * 				 continue, or null to begin with the first point. 
+	 * 				 Optional.
+	 * 
 	 * @param numToSkip The number of data points to skip. Required.
 	 * 
 	 * @param numToReturn The number of data points to return. Required.
@@ -238,6 +285,7 @@ public interface IObserverQueries {
 		final DateTime startDate,
 		final DateTime endDate,
 		final boolean chronological,
+		final DataStreamCursor cursor,
 		final long numToSkip,
 		final long numToReturn) 
 		throws DataAccessException;
@@ -25,6 +25,9 @@ import org.ohmage.domain.campaign.Campaign;
 import org.ohmage.domain.campaign.SurveyResponse;
 import org.ohmage.domain.campaign.SurveyResponse.ColumnKey;
 import org.ohmage.domain.campaign.SurveyResponse.SortParameter;
+import org.ohmage.domain.campaign.SurveyResponseCount;
+import org.ohmage.domain.campaign.SurveyResponseCursor;
+import org.ohmage.domain.campaign.SurveyResponseHandler;
 import org.ohmage.exception.DataAccessException;
 
 public interface ISurveyResponseQueries {
@@ -133,6 +136,193 @@ public interface ISurveyResponseQueries {
 			List<SurveyResponse> result) 
 			throws DataAccessException;
 
+	/**
+	 * Reads the same survey responses as 
+	 * {@link #retrieveSurveyResponses(Campaign, String, Set, Collection, DateTime, DateTime, org.ohmage.domain.campaign.SurveyResponse.PrivacyState, Collection, Collection, String, Set, Collection, List, long, long, List)},
+	 * but, instead of collecting them, gives each one to a handler as soon as
+	 * it has been read. The rows are streamed from the database, so only one
+	 * survey response is held in memory at a time. If there are multiple 
+	 * passes, each is given the same survey responses in the same order, and
+	 * each is finished before the next begins.
+	 * 
+	 * @param passes The handlers for each pass over the survey responses.
+	 * 
+	 * @return The total number of results that matched the given criteria.
+	 * 
+	 * @throws DataAccessException Thrown if there is an error, including an
+	 * 							   error from one of the handlers.
+	 * 
+	 * @see #retrieveSurveyResponses(Campaign, String, Set, Collection, DateTime, DateTime, org.ohmage.domain.campaign.SurveyResponse.PrivacyState, Collection, Collection, String, Set, Collection, List, long, long, List)
+	 */
+	long handleSurveyResponses(
+			final Campaign campaign,
+			final String username,
+			final Set<UUID> surveyResponseIds,
+			final Collection<String> usernames,
+			final DateTime startDate,
+			final DateTime endDate,
+			final SurveyResponse.PrivacyState privacyState,
+			final Collection<String> surveyIds,
+			final Collection<String> promptIds,
+			final String promptType,
+			final Set<String> promptResponseSearchTokens,
+			final Collection<ColumnKey> columns, 
+			final List<SortParameter> sortOrder,
+			final long surveyResponsesToSkip,
+			final long surveyResponsesToProcess,
+			final List<SurveyResponseHandler> passes) 
+			throws DataAccessException;
+
+	/**
+	 * Retrieves one page of survey responses in the default order, newest 
+	 * first, beginning after a cursor. Unlike 
+	 * {@link #retrieveSurveyResponses(Campaign, String, Set, Collection, DateTime, DateTime, org.ohmage.domain.campaign.SurveyResponse.PrivacyState, Collection, Collection, String, Set, Collection, List, long, long, List)},
+	 * the page is limited in SQL, so only the survey responses on the page
+	 * are read from the database.
+	 * 
+	 * @param campaign The campaign to which the survey responses must belong.
+	 * 
+	 * @param username The username of the user that is making this request.
+	 * 				   This is used by the ACLs to limit who sees what.
+	 * 
+	 * @param surveyResponseIds A set of survey response IDs to which the 
+	 * 							results must belong. Optional.
+	 * 
+	 * @param usernames Limits the results to only those submitted by any one 
+	 * 					of the users in the list. Optional.
+	 * 
+	 * @param startDate Limits the results to only those survey responses that
+	 * 					occurred on or after this date. Optional.
+	 * 
+	 * @param endDate Limits the results to only those survey responses that
+	 * 				  occurred on or before this date. Optional.
+	 * 
+	 * @param privacyState Limits the results to only those survey responses
+	 * 					   with this privacy state. Optional.
+	 * 
+	 * @param surveyIds Limits the results to only those survey responses that 
+	 * 					were derived from a survey in this collection. 
+	 * 					Optional.
+	 * 
+	 * @param promptIds Limits the results to only those survey responses that 
+	 * 					were derived from a prompt in this collection. 
+	 * 					Optional.
+	 * 
+	 * @param promptType Limits the results to only those survey responses that
+	 * 					 are of the given prompt type. Optional.
+	 * 
+	 * @param promptResponseSearchTokens The set of tokens to use against the
+	 * 									 prompt response values. Optional.
+	 * 
+	 * @param cursor The last survey response of the previous page or null to
+	 * 				 get the first page.
+	 * 
+	 * @param surveyResponsesToProcess The maximum number of survey responses
+	 * 								   to return.
+	 * 
+	 * @param countTotal Whether or not to count all of the survey responses 
+	 * 					 that match the criteria, which requires an additional
+	 * 					 query.
+	 * 
+	 * @param result A list of SurveyResponse objects, probably empty, to add
+	 * 				 the results of this query to.
+	 * 
+	 * @return The total number of survey responses that match the criteria
+	 * 		   or -1 if they were not counted.
+	 * 
+	 * @throws DataAccessException Thrown if there is an error.
+	 */
+	long retrieveSurveyResponsesAfter(
+			final Campaign campaign,
+			final String username,
+			final Set<UUID> surveyResponseIds,
+			final Collection<String> usernames,
+			final DateTime startDate,
+			final DateTime endDate,
+			final SurveyResponse.PrivacyState privacyState,
+			final Collection<String> surveyIds,
+			final Collection<String> promptIds,
+			final String promptType,
+			final Set<String> promptResponseSearchTokens,
+			final SurveyResponseCursor cursor,
+			final long surveyResponsesToProcess,
+			final boolean countTotal,
+			List<SurveyResponse> result)
+			throws DataAccessException;
+
+	/**
+	 * Reads the same page of survey responses as 
+	 * {@link #retrieveSurveyResponsesAfter(Campaign, String, Set, Collection, DateTime, DateTime, org.ohmage.domain.campaign.SurveyResponse.PrivacyState, Collection, Collection, String, Set, SurveyResponseCursor, long, boolean, List)},
+	 * but, instead of collecting them, gives each one to a handler as soon as
+	 * it has been read. The rows are streamed from the database, so only one
+	 * survey response is held in memory at a time. If there are multiple 
+	 * passes, each is given the same survey responses in the same order, and
+	 * each is finished before the next begins.
+	 * 
+	 * @param passes The handlers for each pass over the survey responses.
+	 * 
+	 * @return The total number of survey responses that match the criteria
+	 * 		   or -1 if they were not counted.
+	 * 
+	 * @throws DataAccessException Thrown if there is an error, including an
+	 * 							   error from one of the handlers.
+	 * 
+	 * @see #retrieveSurveyResponsesAfter(Campaign, String, Set, Collection, DateTime, DateTime, org.ohmage.domain.campaign.SurveyResponse.PrivacyState, Collection, Collection, String, Set, SurveyResponseCursor, long, boolean, List)
+	 */
+	long handleSurveyResponsesAfter(
+			final Campaign campaign,
+			final String username,
+			final Set<UUID> surveyResponseIds,
+			final Collection<String> usernames,
+			final DateTime startDate,
+			final DateTime endDate,
+			final SurveyResponse.PrivacyState privacyState,
+			final Collection<String> surveyIds,
+			final Collection<String> promptIds,
+			final String promptType,
+			final Set<String> promptResponseSearchTokens,
+			final SurveyResponseCursor cursor,
+			final long surveyResponsesToProcess,
+			final boolean countTotal,
+			final List<SurveyResponseHandler> passes)
+			throws DataAccessException;
+
+	/**
+	 * Counts the survey responses that a user may see in a campaign by their
+	 * privacy state and, optionally, by the date on which they were taken and
+	 * the survey from which they were derived. The prompt responses are never
+	 * read.
+	 * 
+	 * @param campaign The campaign to which the survey responses belong.
+	 * 
+	 * @param username The username of the user that is making this request.
+	 * 				   This is used by the ACLs to limit who sees what.
+	 * 
+	 * @param startDate Limits the results to only those survey responses that
+	 * 					occurred on or after this date.
+	 * 
+	 * @param endDate Limits the results to only those survey responses that
+	 * 				  occurred on or before this date.
+	 * 
+	 * @param groupByDate Whether or not to count the survey responses taken
+	 * 					  on each date separately.
+	 * 
+	 * @param groupBySurvey Whether or not to count the survey responses for
+	 * 						each survey separately.
+	 * 
+	 * @return The counts, none of which are zero.
+	 * 
+	 * @throws DataAccessException Thrown if there is an error.
+	 */
+	List<SurveyResponseCount> countSurveyResponsesByPrivacyState(
+			final Campaign campaign,
+			final String username,
+			final DateTime startDate,
+			final DateTime endDate,
+			final boolean groupByDate,
+			final boolean groupBySurvey)
+			throws DataAccessException;
+
 	/**
 	 * Updates the privacy state on a survey response.
 	 * 
@@ -154,4 +344,40 @@ public interface ISurveyResponseQueries {
 	 */
 	void deleteSurveyResponse(UUID surveyResponseId) throws DataAccessException;
 
+	/**
+	 * Decodes a batch of the prompt responses whose values may still be
+	 * MIME-encoded from before they were stored as 4-byte UTF-8 and clears
+	 * their marker.
+	 * 
+	 * @param afterId Only prompt responses whose database ID is greater than
+	 * 				  this are decoded.
+	 * 
+	 * @param batchSize The maximum number of prompt responses to decode.
+	 * 
+	 * @return The largest database ID of the prompt responses that were
+	 * 		   decoded or -1 if there were none left.
+	 * 
+	 * @throws DataAccessException Thrown if there is an error.
+	 */
+	long decodeLegacyPromptResponses(long afterId, int batchSize)
+			throws DataAccessException;
+	
+	/**
+	 * Decodes the response values in a batch of the survey responses' JSON
+	 * that may still be MIME-encoded from before it was stored as 4-byte
+	 * UTF-8 and clears their marker.
+	 * 
+	 * @param afterId Only survey responses whose database ID is greater than
+	 * 				  this are decoded.
+	 * 
+	 * @param batchSize The maximum number of survey responses to decode.
+	 * 
+	 * @return The largest database ID of the survey responses that were
+	 * 		   decoded or -1 if there were none left.
+	 * 
+	 * @throws DataAccessException Thrown if there is an error.
+	 */
+	long decodeLegacySurveyResponses(long afterId, int batchSize)
+			throws DataAccessException;
+
 }
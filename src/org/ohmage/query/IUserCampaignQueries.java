@@ -25,6 +25,7 @@ import org.ohmage.domain.campaign.Campaign;
 import org.ohmage.domain.campaign.CampaignMask;
 import org.ohmage.domain.campaign.Campaign.Role;
 import org.ohmage.domain.campaign.CampaignMask.MaskId;
+import org.ohmage.domain.campaign.PermissionSnapshot;
 import org.ohmage.exception.DataAccessException;
 
 public interface IUserCampaignQueries {
@@ -63,6 +64,35 @@ public interface IUserCampaignQueries {
 	List<String> getUsersInCampaign(String campaignId)
 		throws DataAccessException;
 
+	/**
+	 * Retrieves the distinct users in any of a collection of campaigns.
+	 * 
+	 * @param campaignIds
+	 *        The unique identifiers for the campaigns.
+	 * 
+	 * @return The usernames of the users in any of the campaigns.
+	 */
+	Set<String> getUsersInCampaigns(Collection<String> campaignIds)
+		throws DataAccessException;
+
+	/**
+	 * Returns the roles in a campaign for each of a collection of users.
+	 * 
+	 * @param campaignId
+	 *        The campaign's unique identifier.
+	 * 
+	 * @param usernames
+	 *        The usernames of the users whose roles are desired.
+	 * 
+	 * @return A map of usernames to their roles in the campaign. Users that
+	 *         don't belong to the campaign are not in the map. The usernames
+	 *         are compared without regard to case.
+	 */
+	Map<String, Set<Campaign.Role>> getUsersCampaignRoles(
+			String campaignId,
+			Collection<String> usernames)
+		throws DataAccessException;
+
 	/**
 	 * Returns a List of roles for this user in this campaign.
 	 * 
@@ -78,6 +108,22 @@ public interface IUserCampaignQueries {
 	List<Campaign.Role> getUserCampaignRoles(String username, String campaignId)
 		throws DataAccessException;
 
+	/**
+	 * Returns whether or not a user is an admin, the user's roles in a
+	 * campaign, and the campaign's states, all read at once.
+	 * 
+	 * @param username
+	 *        The user's username.
+	 * 
+	 * @param campaignId
+	 *        The campaign's unique identifier.
+	 * 
+	 * @return The user's permissions in the campaign. If the user does not
+	 *         exist, they are not an admin and have no roles.
+	 */
+	PermissionSnapshot getPermissionSnapshot(String username, String campaignId)
+		throws DataAccessException;
+
 	
 	/**
 	 * Returns a List of roles for this user in all campaigns that fit the 
@@ -46,6 +46,16 @@ public interface IUserClassQueries {
 	 */
 	List<String> getUsersInClass(String classId) throws DataAccessException;
 
+	/**
+	 * Retrieves the distinct users in any of a collection of classes.
+	 * 
+	 * @param classIds The unique identifiers for the classes.
+	 * 
+	 * @return Returns a Set of usernames of the users in any of the classes.
+	 */
+	Set<String> getUsersInClasses(Collection<String> classIds)
+			throws DataAccessException;
+
 	/**
 	 * Queries the database to get the role of a user in a class. If a user 
 	 * doesn't have a role in a class, null is returned.
@@ -15,12 +15,15 @@
  ******************************************************************************/
 package org.ohmage.query;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
+import org.json.JSONObject;
 import org.ohmage.domain.MobilityAggregatePoint;
 import org.ohmage.domain.MobilityPoint;
 import org.ohmage.domain.MobilityPoint.LocationStatus;
@@ -44,6 +47,60 @@ public interface IUserMobilityQueries {
 	void createMobilityPoint(final String username, final String client,
 			final MobilityPoint mobilityPoint) throws DataAccessException;
 	
+	/**
+	 * Creates many Mobility points for a user in a single transaction. Points
+	 * that already exist are ignored.
+	 * 
+	 * @param username The username of the user to which the points belong.
+	 * 
+	 * @param client The client value given on upload.
+	 * 
+	 * @param mobilityPoints The Mobility points to be created.
+	 * 
+	 * @return The number of points that were created.
+	 * 
+	 * @throws DataAccessException Thrown if there is an error.
+	 */
+	int createMobilityPoints(
+			final String username,
+			final String client,
+			final List<MobilityPoint> mobilityPoints)
+			throws DataAccessException;
+	
+	/**
+	 * Stores the server's classification of Mobility points, replacing any
+	 * that were already stored. Points without classifier data are ignored.
+	 * 
+	 * @param username The username of the user to which the points belong.
+	 * 
+	 * @param mobilityPoints The classified Mobility points.
+	 * 
+	 * @throws DataAccessException Thrown if there is an error.
+	 */
+	void createMobilityClassifications(
+			final String username,
+			final Collection<MobilityPoint> mobilityPoints)
+			throws DataAccessException;
+	
+	/**
+	 * Retrieves the stored classifications that were made by the current
+	 * version of the server's classifier for some of a user's Mobility 
+	 * points.
+	 * 
+	 * @param username The username of the user to which the points belong.
+	 * 
+	 * @param mobilityIds The unique identifiers of the points.
+	 * 
+	 * @return A map of the unique identifiers of the points that have been
+	 * 		   classified to their classifier data.
+	 * 
+	 * @throws DataAccessException Thrown if there is an error.
+	 */
+	Map<UUID, JSONObject> getMobilityClassifications(
+			final String username,
+			final Collection<UUID> mobilityIds)
+			throws DataAccessException;
+	
 	/**
 	 * Retrieves the username of the owner of a Mobility point.
 	 * 
@@ -18,6 +18,7 @@ package org.ohmage.query;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import org.ohmage.domain.UserInformation;
 import org.ohmage.domain.UserInformation.UserPersonal;
@@ -424,6 +425,22 @@ public interface IUserQueries {
 	UserPersonal getPersonalInfoForUser(String username)
 			throws DataAccessException;
 	
+	/**
+	 * Retrieves the personal information for a collection of users at once.
+	 * 
+	 * @param usernames The usernames of the users whose information is being
+	 * 					retrieved.
+	 * 
+	 * @return A map of each of the usernames to their personal information or
+	 * 		   to null if they don't have any personal information. The 
+	 * 		   usernames are compared without regard to case.
+	 * 
+	 * @throws DataAccessException Thrown if there is an error.
+	 */
+	Map<String, UserPersonal> getPersonalInfoForUsers(
+			Collection<String> usernames)
+			throws DataAccessException;
+	
 	/**
 	 * Returns the date and time when the user generated the registration.
 	 * 
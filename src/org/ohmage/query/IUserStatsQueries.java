@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.query;
+
+import org.ohmage.domain.ActivityCounts;
+import org.ohmage.exception.DataAccessException;
+
+public interface IUserStatsQueries {
+	/**
+	 * Adds the activity from a Mobility upload to a user's statistics.
+	 * This must be called in the transaction that stores the upload, so that
+	 * the upload is never counted twice by a rebuild of the statistics.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param counts The points that were stored, counted by the hour in which
+	 * 				 they were taken.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	void addMobilityActivity(
+			final String username,
+			final ActivityCounts counts)
+			throws DataAccessException;
+
+	/**
+	 * Adds the activity from a survey upload to a user's statistics.
+	 * This must be called in the transaction that stores the upload, so that
+	 * the upload is never counted twice by a rebuild of the statistics.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param campaignId The campaign's unique identifier.
+	 *
+	 * @param counts The prompt responses that were stored, counted by the
+	 * 				 hour in which they were uploaded. Each prompt response
+	 * 				 has its survey response's location.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	void addSurveyActivity(
+			final String username,
+			final String campaignId,
+			final ActivityCounts counts)
+			throws DataAccessException;
+
+	/**
+	 * Returns the time that a user's most recent Mobility point was taken.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @return The time in milliseconds or null if the user has no points.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	Long getLastMobilityTime(final String username)
+			throws DataAccessException;
+
+	/**
+	 * Returns the fraction of a user's Mobility points taken since some time
+	 * that had a location.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param since The earliest time to count, in milliseconds since the
+	 * 				epoch.
+	 *
+	 * @return The fraction of the points with a location or null if there
+	 * 		   are no points.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	Double getMobilityLocationPercentage(
+			final String username,
+			final long since)
+			throws DataAccessException;
+
+	/**
+	 * Returns whether or not the requester is a supervisor in every campaign
+	 * in which the user has survey statistics, in which case the requester
+	 * may see all of the user's survey responses and the statistics may be
+	 * given to them as-is.
+	 *
+	 * @param requestersUsername The requesting user's username.
+	 *
+	 * @param usersUsername The username of the user whose statistics are
+	 * 						wanted.
+	 *
+	 * @return Whether or not the requester is a supervisor in all of the
+	 * 		   campaigns.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	boolean isSupervisorForAllSurveyStats(
+			final String requestersUsername,
+			final String usersUsername)
+			throws DataAccessException;
+
+	/**
+	 * Returns the time that a user's most recent survey response was taken.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @return The time in milliseconds or null if the user has no survey
+	 * 		   responses.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	Long getLastSurveyTime(final String username) throws DataAccessException;
+
+	/**
+	 * Returns the fraction of a user's prompt responses uploaded since some
+	 * time whose survey response had a location.
+	 *
+	 * @param username The user's username.
+	 *
+	 * @param since The earliest time to count, in milliseconds since the
+	 * 				epoch.
+	 *
+	 * @return The fraction of the prompt responses with a location or null if
+	 * 		   there are no prompt responses.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	Double getSurveyLocationPercentage(
+			final String username,
+			final long since)
+			throws DataAccessException;
+
+	/**
+	 * Returns whether or not every user's statistics have been rebuilt at
+	 * least once, in which case they are complete. This is kept in the
+	 * database, so it outlives a restart of the server.
+	 *
+	 * @return Whether or not the statistics have been rebuilt.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	boolean isRebuilt() throws DataAccessException;
+
+	/**
+	 * Rebuilds every user's statistics from their survey responses and
+	 * Mobility points, discarding any hours before some hour.
+	 * Each user's statistics are rebuilt in their own transaction. Once all
+	 * of them have been rebuilt, this is recorded for {@link #isRebuilt()}.
+	 *
+	 * @param sinceHour The start of the earliest hour to keep.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	void rebuildStats(final long sinceHour) throws DataAccessException;
+}
@@ -21,6 +21,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -32,12 +33,14 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.domain.Audit;
+import org.ohmage.domain.AuditEntry;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.jee.servlet.RequestServlet;
 import org.ohmage.jee.servlet.RequestServlet.RequestType;
 import org.ohmage.query.IAuditQueries;
 import org.ohmage.validator.AuditValidators.ResponseType;
+import org.springframework.jdbc.core.PreparedStatementCallback;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
@@ -318,6 +321,144 @@ public class AuditQueries extends Query implements IAuditQueries {
 		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see org.ohmage.query.IAuditQueries#createAudits(java.util.Collection)
+	 */
+	@Override
+	public void createAudits(
+			final Collection<AuditEntry> audits)
+			throws DataAccessException {
+		
+		if((audits == null) || audits.isEmpty()) {
+			return;
+		}
+		
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Creating a batch of request audits.");
+		
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager = new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+			
+			// Insert all of the audit entries and retrieve their IDs in the
+			// same order.
+			List<Long> auditIds;
+			try {
+				auditIds = getJdbcTemplate().execute(
+						new PreparedStatementCreator() {
+							@Override
+							public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
+								return connection.prepareStatement(
+									SQL_INSERT_AUDIT, 
+									new String[] {"id"}
+								);
+							}
+						},
+						new PreparedStatementCallback<List<Long>>() {
+							@Override
+							public List<Long> doInPreparedStatement(PreparedStatement ps) throws SQLException {
+								for(AuditEntry audit : audits) {
+									ps.setString(1, audit.getRequestType().name().toLowerCase());
+									ps.setString(2, audit.getUri());
+									ps.setString(3, audit.getClient());
+									ps.setString(4, audit.getRequestId());
+									ps.setString(5, audit.getDeviceId());
+									ps.setString(6, audit.getResponse());
+									ps.setLong(7, audit.getReceivedMillis());
+									ps.setLong(8, audit.getRespondMillis());
+									ps.addBatch();
+								}
+								ps.executeBatch();
+								
+								List<Long> result = new ArrayList<Long>(audits.size());
+								ResultSet keys = ps.getGeneratedKeys();
+								try {
+									while(keys.next()) {
+										result.add(keys.getLong(1));
+									}
+								}
+								finally {
+									keys.close();
+								}
+								return result;
+							}
+						});
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+						"Error while executing SQL '" + SQL_INSERT_AUDIT + "' for a batch of " + audits.size() + " audits.", 
+						e);
+			}
+			
+			if(auditIds.size() != audits.size()) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+						"The database returned " + auditIds.size() + " audit IDs for " + audits.size() + " audits.");
+			}
+			
+			// Gather all of the parameters and extras.
+			List<Object[]> parameterArgs = new ArrayList<Object[]>();
+			List<Object[]> extraArgs = new ArrayList<Object[]>();
+			int auditIndex = 0;
+			for(AuditEntry audit : audits) {
+				Long auditId = auditIds.get(auditIndex++);
+				
+				for(Map.Entry<String, String[]> parameter : audit.getParameters().entrySet()) {
+					for(String value : parameter.getValue()) {
+						parameterArgs.add(new Object[] { auditId, parameter.getKey(), value });
+					}
+				}
+				
+				for(Map.Entry<String, String[]> extra : audit.getExtras().entrySet()) {
+					for(String value : extra.getValue()) {
+						extraArgs.add(new Object[] { auditId, extra.getKey(), value });
+					}
+				}
+			}
+			
+			// Add all of the parameters.
+			if(! parameterArgs.isEmpty()) {
+				try {
+					getJdbcTemplate().batchUpdate(SQL_INSERT_PARAMETER, parameterArgs);
+				}
+				catch(org.springframework.dao.DataAccessException e) {
+					transactionManager.rollback(status);
+					throw new DataAccessException(
+							"Error while executing SQL '" + SQL_INSERT_PARAMETER + "' for a batch of " + parameterArgs.size() + " parameters.", 
+							e);
+				}
+			}
+			
+			// Add all of the extras.
+			if(! extraArgs.isEmpty()) {
+				try {
+					getJdbcTemplate().batchUpdate(SQL_INSERT_EXTRA, extraArgs);
+				}
+				catch(org.springframework.dao.DataAccessException e) {
+					transactionManager.rollback(status);
+					throw new DataAccessException(
+							"Error while executing SQL '" + SQL_INSERT_EXTRA + "' for a batch of " + extraArgs.size() + " extras.", 
+							e);
+				}
+			}
+			
+			// Commit the transaction.
+			try {
+				transactionManager.commit(status);
+			}
+			catch(TransactionException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException("Error while committing the transaction.", e);
+			}
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
+		}
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.ohmage.query.IAuditQueries#getAllAudits()
 	 */
@@ -23,6 +23,7 @@ import javax.sql.DataSource;
 import jbcrypt.BCrypt;
 
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.CredentialCache;
 import org.ohmage.domain.KeycloakUser;
 import org.ohmage.domain.User;
 import org.ohmage.exception.DataAccessException;
@@ -138,7 +139,30 @@ public final class AuthenticationQuery extends Query implements IAuthenticationQ
 					userRequest.setFailed(ErrorCode.AUTHENTICATION_FAILED, "Unknown user or incorrect password.");
 					return null;			
 				}
-				hashedPassword = BCrypt.hashpw(user.getPassword(), actualPassword);
+				// If the password was recently verified against this exact
+				// hash, skip BCrypt. Otherwise, verify it and remember it if
+				// it matched.
+				CredentialCache credentialCache = CredentialCache.instance();
+				if((credentialCache != null) && 
+					credentialCache.isVerified(
+						user.getUsername(), 
+						user.getPassword(), 
+						actualPassword)) {
+					
+					hashedPassword = actualPassword;
+				}
+				else {
+					hashedPassword = BCrypt.hashpw(user.getPassword(), actualPassword);
+					
+					if((credentialCache != null) && 
+						hashedPassword.equals(actualPassword)) {
+						
+						credentialCache.putVerified(
+							user.getUsername(), 
+							user.getPassword(), 
+							actualPassword);
+					}
+				}
 				userRequest.getUser().setHashedPassword(hashedPassword);
 			}
 			catch(org.springframework.dao.IncorrectResultSizeDataAccessException e) {
@@ -34,6 +34,7 @@ import java.util.Set;
 import javax.sql.DataSource;
 
 import org.joda.time.DateTime;
+import org.ohmage.cache.CampaignCache;
 import org.ohmage.domain.Clazz;
 import org.ohmage.domain.campaign.Campaign;
 import org.ohmage.domain.campaign.Prompt;
@@ -139,6 +140,15 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 		"AND c.running_state_id = crs.id " +
 		"AND c.privacy_state_id = cps.id";
 
+	// Returns the information about a campaign that may change without its
+	// XML changing.
+	private static final String SQL_GET_CAMPAIGN_METADATA =
+		"SELECT c.description, c.editable, crs.running_state, cps.privacy_state, c.creation_timestamp " +
+		"FROM campaign c, campaign_running_state crs, campaign_privacy_state cps " +
+		"WHERE c.urn = ? " +
+		"AND c.running_state_id = crs.id " +
+		"AND c.privacy_state_id = cps.id";
+
 	// Returns the unique identifier for all of the campaigns in the system.
 	private static final String SQL_GET_ALL_IDS =
 		"SELECT urn " +
@@ -296,10 +306,10 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 			")" +
 		")";
 	
-	// Updates the campaign's XML.
+	// Updates the campaign's XML and the values that are read from it.
 	private static final String SQL_UPDATE_XML =
 		"UPDATE campaign " +
-		"SET xml = ?, creation_timestamp = now() " +
+		"SET xml = ?, icon_url = ?, authored_by = ?, creation_timestamp = now() " +
 		"WHERE urn = ?";
 	
 	// Updates a campaign's description.
@@ -371,6 +381,32 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 			"FROM user_role " +
 			"WHERE role = ?" +
 		")";
+	
+	/**
+	 * The parts of a campaign that may change without its XML changing along
+	 * with its creation timestamp, which changes whenever the XML does.
+	 */
+	private static final class CampaignMetadata {
+		private final String description;
+		private final Campaign.RunningState runningState;
+		private final Campaign.PrivacyState privacyState;
+		private final long stamp;
+		private final Boolean editable;
+		
+		private CampaignMetadata(
+				final String description,
+				final Campaign.RunningState runningState,
+				final Campaign.PrivacyState privacyState,
+				final long stamp,
+				final Boolean editable) {
+			
+			this.description = description;
+			this.runningState = runningState;
+			this.privacyState = privacyState;
+			this.stamp = stamp;
+			this.editable = editable;
+		}
+	}
 
 	/**
 	 * Creates this object.
@@ -469,7 +505,17 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 			
 			// Loop through all of the surveys and add the survey and prompt
 			// IDs.
-			for(Survey survey : campaign.getSurveys().values()) {
+			Collection<Survey> surveys;
+			try {
+				surveys = campaign.getSurveys().values();
+			}
+			catch(DomainException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"The campaign's surveys could not be read.", 
+					e);
+			}
+			for(Survey survey : surveys) {
 				// Get this survey's ID.
 				surveyIds.add(survey.getId());
 				
@@ -849,6 +895,96 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 	 * @see org.ohmage.query.impl.ICampaignQueries#findCampaignConfiguration(java.lang.String)
 	 */
 	public Campaign findCampaignConfiguration(final String campaignId) throws DataAccessException {
+		CampaignCache cache = CampaignCache.instance();
+		if(cache == null) {
+			return parseCampaignConfiguration(campaignId);
+		}
+		
+		// Get the parts of the campaign that may change without the XML
+		// changing and use the creation timestamp, which is reset whenever
+		// the XML is updated, to check the cache.
+		CampaignMetadata metadata;
+		try {
+			metadata = getJdbcTemplate().queryForObject(
+					SQL_GET_CAMPAIGN_METADATA, 
+					new Object[] { campaignId }, 
+					new RowMapper<CampaignMetadata>() {
+						@Override
+						public CampaignMetadata mapRow(ResultSet rs, int rowNum) 
+								throws SQLException {
+							
+							return new CampaignMetadata(
+									rs.getString("description"),
+									Campaign.RunningState.getValue(
+											rs.getString("running_state")),
+									Campaign.PrivacyState.getValue(
+											rs.getString("privacy_state")),
+									rs.getTimestamp("creation_timestamp").getTime(),
+									rs.getBoolean("editable"));
+						}
+					}
+				);
+		}
+		catch(IncorrectResultSizeDataAccessException e) {
+			if(e.getActualSize() == 0) {
+				return null;
+			}
+			
+			throw new DataAccessException("Multiple campaigns have the same ID: " + campaignId, e);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException("General error executing SQL '" + SQL_GET_CAMPAIGN_METADATA + "' with parameter: " + campaignId, e);
+		}
+		
+		try {
+			Campaign result = 
+					cache.get(
+							campaignId, 
+							metadata.stamp, 
+							metadata.description, 
+							metadata.runningState, 
+							metadata.privacyState, 
+							metadata.editable);
+			if(result != null) {
+				return result;
+			}
+		}
+		catch(DomainException e) {
+			throw new DataAccessException("The cached campaign could not be rebuilt: " + campaignId, e);
+		}
+		
+		long start = System.nanoTime();
+		Campaign campaign = parseCampaignConfiguration(campaignId);
+		long parseTime = System.nanoTime() - start;
+		
+		// The campaign was deleted between the queries.
+		if(campaign == null) {
+			return null;
+		}
+		
+		try {
+			return 
+				cache.put(
+					campaignId, 
+					campaign.getCreationTimestamp().getMillis(), 
+					campaign, 
+					parseTime);
+		}
+		catch(DomainException e) {
+			throw new DataAccessException("The campaign could not be copied: " + campaignId, e);
+		}
+	}
+	
+	/**
+	 * Reads a campaign's information and parses its XML.
+	 * 
+	 * @param campaignId The campaign's unique identifier.
+	 * 
+	 * @return The campaign or null if no such campaign exists.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private Campaign parseCampaignConfiguration(final String campaignId) throws DataAccessException {
 		try {
 			return getJdbcTemplate().queryForObject(
 					SQL_GET_CAMPAIGN_INFORMATION, 
@@ -1368,6 +1504,7 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 		try {
 			builder = new StringBuilder( 
 					"SELECT ca.urn, ca.name, ca.description, " +
+						"ca.icon_url, ca.authored_by, " +
 						"crs.running_state, cps.privacy_state, " +
 						"ca.creation_timestamp, " +
 						"ca.xml, " +
@@ -1399,11 +1536,28 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 										new LinkedList<Campaign>();
 								
 								while(rs.next()) {
+									// The XML is only parsed if the surveys
+									// are needed, so the rest of the
+									// information comes from its columns.
+									URL iconUrl = null;
+									String iconString = rs.getString("icon_url");
+									if(iconString != null) {
+										try {
+											iconUrl = new URL(iconString);
+										}
+										catch(MalformedURLException e) {
+											// This parameter is still 
+											// experimental, so we will leave
+											// this alone for now.
+										}
+									}
 									result.add(
 											new Campaign(
-													null,
-													null,
+													rs.getString("urn"),
+													rs.getString("name"),
 													rs.getString("description"),
+													iconUrl,
+													rs.getString("authored_by"),
 													Campaign.RunningState.valueOf(rs.getString("running_state").toUpperCase()),
 													Campaign.PrivacyState.valueOf(rs.getString("privacy_state").toUpperCase()),
 													new DateTime(rs.getTimestamp("creation_timestamp").getTime()).toDate(),
@@ -1609,12 +1763,26 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 			
 			// Update the XML if it is present.
 			if(xml != null) {
+				// The icon URL and authored by value are read from their 
+				// columns, so they are kept up to date with the XML.
+				String iconUrl;
+				String authoredBy;
+				try {
+					URL tIconUrl = Campaign.getIconUrl(xml);
+					iconUrl = (tIconUrl == null) ? null : tIconUrl.toString();
+					authoredBy = Campaign.getAuthoredBy(xml);
+				}
+				catch(DomainException e) {
+					transactionManager.rollback(status);
+					throw new DataAccessException("The campaign's XML is invalid.", e);
+				}
+				
 				try {
-					getJdbcTemplate().update(SQL_UPDATE_XML, new Object[] { xml, campaignId });
+					getJdbcTemplate().update(SQL_UPDATE_XML, new Object[] { xml, iconUrl, authoredBy, campaignId });
 				}
 				catch(org.springframework.dao.DataAccessException e) {
 					transactionManager.rollback(status);
-					throw new DataAccessException("Error executing SQL '" + SQL_UPDATE_XML + "' with parameters: " + xml + ", " + campaignId, e);
+					throw new DataAccessException("Error executing SQL '" + SQL_UPDATE_XML + "' with parameters: " + xml + ", " + iconUrl + ", " + authoredBy + ", " + campaignId, e);
 				}
 			}
 			
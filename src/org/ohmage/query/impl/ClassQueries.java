@@ -25,12 +25,12 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import javax.sql.DataSource;
 
 import org.apache.log4j.Logger;
 import org.ohmage.domain.Clazz;
-import org.ohmage.domain.Clazz.Role;
 import org.ohmage.domain.campaign.Campaign;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
@@ -42,6 +42,7 @@ import org.ohmage.query.IUserClassQueries;
 import org.ohmage.query.impl.QueryResultsList.QueryResultListBuilder;
 import org.ohmage.util.StringUtils;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -104,6 +105,44 @@ public class ClassQueries extends Query implements IClassQueries {
 		"FROM class " +
 		"WHERE description LIKE ?";
 	
+	// Returns the users in a list of classes and their roles in each class.
+	// The roles are null unless the requesting user, whose username is the
+	// first parameter, is an admin or privileged in the class. The parameter
+	// list for the class IDs must be appended.
+	private static final String SQL_GET_USER_ROLE_PAIRS =
+		"SELECT c.urn, u.username, " +
+			"CASE WHEN (" +
+				"SELECT EXISTS (" +
+					"SELECT ru.id " +
+					"FROM user ru, " +
+						"user_class ruc, user_class_role rucr " +
+					"WHERE ru.username = ? " +
+					"AND (" +
+						"(ru.admin = true)" +
+						" OR " +
+						"(c.id = ruc.class_id " +
+							"AND ru.id = ruc.user_id " +
+							"AND rucr.id = ruc.user_class_role_id " +
+							"AND rucr.role = '" + 
+							Clazz.Role.PRIVILEGED.toString().toLowerCase() + 
+							"'" +
+						")" +
+					")" +
+				")" +
+			") " +
+			"THEN ucr.role " +
+			"ELSE NULL " +
+			"END " +
+			"AS role " +
+		"FROM user u, user_class uc, user_class_role ucr, class c " +
+		"WHERE c.id = uc.class_id " +
+		"AND u.id = uc.user_id " +
+		"AND ucr.id = uc.user_class_role_id " +
+		"AND c.urn IN ";
+	
+	// The most class IDs that are given to a single query.
+	private static final int MAX_CLASS_IDS_PER_QUERY = 1000;
+	
 	// Inserts a new class.
 	private static final String SQL_INSERT_CLASS =
 		"INSERT INTO class(urn, name, description, creation_timestamp) " +
@@ -579,83 +618,93 @@ public class ClassQueries extends Query implements IClassQueries {
 			final String classId) 
 			throws DataAccessException {
 		
-		String sql = 
-				"SELECT u.username, " +
-					"CASE WHEN (" +
-						"SELECT EXISTS (" +
-							"SELECT ru.id " +
-							"FROM user ru, " +
-								"user_class ruc, user_class_role rucr " +
-							"WHERE ru.username = ? " +
-							"AND (" +
-								"(ru.admin = true)" +
-								" OR " +
-								"(c.id = ruc.class_id " +
-									"AND ru.id = ruc.user_id " +
-									"AND rucr.id = ruc.user_class_role_id " +
-									"AND rucr.role = '" + 
-									Clazz.Role.PRIVILEGED.toString().toLowerCase() + 
-									"'" +
-								")" +
-							")" +
-						")" +
-					") " +
-					"THEN ucr.role " +
-					"ELSE NULL " +
-					"END " +
-					"AS role " +
-				"FROM user u, user_class uc, user_class_role ucr, class c " +
-				"WHERE c.urn = ? " +
-				"AND c.id = uc.class_id " +
-				"AND u.id = uc.user_id " +
-				"AND ucr.id = uc.user_class_role_id";
+		return getUserRolePairs(username, Collections.singleton(classId))
+			.get(classId);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.ohmage.query.IClassQueries#getUserRolePairs(java.lang.String, java.util.Collection)
+	 */
+	@Override
+	public Map<String, Map<String, Clazz.Role>> getUserRolePairs(
+			final String username,
+			final Collection<String> classIds)
+			throws DataAccessException {
 		
-		try {
-			return getJdbcTemplate().query(
-					sql, 
-					new Object[] { username, classId }, 
-					new ResultSetExtractor<Map<String, Clazz.Role>>() {
+		// The database compares class IDs without regard to case, so the
+		// class IDs that it returns may differ from the given ones.
+		final Map<String, Map<String, Clazz.Role>> result =
+			new TreeMap<String, Map<String, Clazz.Role>>(
+				String.CASE_INSENSITIVE_ORDER);
+		for(String classId : classIds) {
+			result.put(classId, new HashMap<String, Clazz.Role>());
+		}
+		
+		List<String> allIds = new ArrayList<String>(result.keySet());
+		for(int i = 0; i < allIds.size(); i += MAX_CLASS_IDS_PER_QUERY) {
+			List<String> chunk =
+				allIds.subList(
+					i, 
+					Math.min(i + MAX_CLASS_IDS_PER_QUERY, allIds.size()));
+			
+			String sql =
+				SQL_GET_USER_ROLE_PAIRS +
+					StringUtils.generateStatementPList(chunk.size());
+			
+			List<Object> parameters = new ArrayList<Object>(chunk.size() + 1);
+			parameters.add(username);
+			parameters.addAll(chunk);
+			
+			try {
+				getJdbcTemplate().query(
+					sql,
+					parameters.toArray(),
+					new RowCallbackHandler() {
+						/*
+						 * (non-Javadoc)
+						 * @see org.springframework.jdbc.core.RowCallbackHandler#processRow(java.sql.ResultSet)
+						 */
 						@Override
-						public Map<String, Role> extractData(
+						public void processRow(
 								final ResultSet rs)
-								throws SQLException,
-								org.springframework.dao.DataAccessException {
+								throws SQLException {
 							
-							Map<String, Clazz.Role> result =
-									new HashMap<String, Clazz.Role>();
+							Map<String, Clazz.Role> classResult =
+								result.get(rs.getString("urn"));
+							if(classResult == null) {
+								return;
+							}
 							
-							while(rs.next()) {
-								String role = rs.getString("role");
-								
-								if(role == null) {
-									result.put(rs.getString("username"), null);
+							String role = rs.getString("role");
+							if(role == null) {
+								classResult.put(rs.getString("username"), null);
+							}
+							else {
+								try {
+									classResult.put(
+										rs.getString("username"), 
+										Clazz.Role.getValue(role));
 								}
-								else {
-									try {
-										result.put(
-												rs.getString("username"), 
-												Clazz.Role.getValue(role));
-									}
-									catch(IllegalArgumentException e) {
-										throw new SQLException(
-												"The role is unknown.",
-												e);
-									}
+								catch(IllegalArgumentException e) {
+									throw new SQLException(
+										"The role is unknown.",
+										e);
 								}
 							}
-							
-							return result;
 						}
 					});
-		}
-		catch(org.springframework.dao.DataAccessException e) {
-			throw new DataAccessException(
-					"Error executing SQL_EXISTS_CLASS '" + 
-							sql + 
-							"' with parameter: " + 
-							classId, 
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						sql + 
+						"' with parameters: " + 
+						parameters, 
 					e);
+			}
 		}
+		
+		return result;
 	}
 	
 	
@@ -20,9 +20,13 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -33,6 +37,8 @@ import org.ohmage.domain.Image;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.query.IImageQueries;
+import org.ohmage.util.StringUtils;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -69,6 +75,18 @@ public final class ImageQueries extends Query implements IImageQueries {
 		"AND pr.response = ubr.uuid " +
 		"AND pr.prompt_type = 'photo'";
 	
+	// Retrieves the URLs for many images. The parameter list for the UUIDs
+	// must be appended.
+	private static final String SQL_GET_IMAGE_URLS =
+		"SELECT DISTINCT ubr.uuid, ubr.url " +
+		"FROM url_based_resource ubr, prompt_response pr " +
+		"WHERE pr.response = ubr.uuid " +
+		"AND pr.prompt_type = 'photo' " +
+		"AND ubr.uuid IN ";
+	
+	// The most image UUIDs that are given to a single query.
+	private static final int MAX_IMAGE_IDS_PER_QUERY = 1000;
+	
 	// Deletes an image form the url_based_resource table.
 	private static final String SQL_DELETE_IMAGE =
 		"DELETE FROM url_based_resource " +
@@ -125,6 +143,88 @@ public final class ImageQueries extends Query implements IImageQueries {
 		}
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IImageQueries#getImageUrls(java.util.Collection)
+	 */
+	@Override
+	public Map<UUID, URL> getImageUrls(
+			final Collection<UUID> imageIds)
+			throws DataAccessException {
+		
+		final Map<UUID, URL> urls = new HashMap<UUID, URL>();
+		if((imageIds == null) || imageIds.isEmpty()) {
+			return new LinkedHashMap<UUID, URL>();
+		}
+		
+		// Split the UUIDs into chunks so that no single statement has too
+		// many parameters.
+		List<UUID> allImageIds = new ArrayList<UUID>(imageIds);
+		for(int i = 0; i < allImageIds.size(); i += MAX_IMAGE_IDS_PER_QUERY) {
+			List<UUID> chunk = 
+				allImageIds.subList(
+					i, 
+					Math.min(i + MAX_IMAGE_IDS_PER_QUERY, allImageIds.size()));
+			
+			String sql = 
+				SQL_GET_IMAGE_URLS + 
+					StringUtils.generateStatementPList(chunk.size());
+			List<Object> parameters = new ArrayList<Object>(chunk.size());
+			for(UUID imageId : chunk) {
+				parameters.add(imageId.toString());
+			}
+			
+			try {
+				getJdbcTemplate().query(
+					sql,
+					parameters.toArray(),
+					new RowCallbackHandler() {
+						/*
+						 * (non-Javadoc)
+						 * @see org.springframework.jdbc.core.RowCallbackHandler#processRow(java.sql.ResultSet)
+						 */
+						@Override
+						public void processRow(
+								final ResultSet rs)
+								throws SQLException {
+							
+							UUID imageId = UUID.fromString(rs.getString("uuid"));
+							try {
+								if(urls.put(imageId, new URL(rs.getString("url"))) != null) {
+									throw new SQLException(
+										"Multiple images have the same unique identifier: " +
+											imageId);
+								}
+							}
+							catch(MalformedURLException e) {
+								throw new SQLException(
+									"The URL was not a valid URL.",
+									e);
+							}
+						}
+					});
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						sql + 
+						"' with parameters: " + 
+						parameters,
+					e);
+			}
+		}
+		
+		// Return the URLs in the order in which the images were given.
+		Map<UUID, URL> result = new LinkedHashMap<UUID, URL>();
+		for(UUID imageId : allImageIds) {
+			URL url = urls.get(imageId);
+			if(url != null) {
+				result.put(imageId, url);
+			}
+		}
+		return result;
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see org.ohmage.query.IImageQueries#getUnprocessedImages()
@@ -15,26 +15,29 @@ import java.util.Map;
 
 import javax.sql.DataSource;
 
-import org.codehaus.jackson.JsonFactory;
-import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
-import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.JsonProcessingException;
-import org.codehaus.jackson.map.MappingJsonFactory;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.format.ISODateTimeFormat;
+import org.ohmage.cache.ObserverDefinitionCache;
+import org.ohmage.cache.ObserverStreamLinkCache;
+import org.ohmage.cache.StreamDuplicateFilter.IdFilter;
+import org.ohmage.domain.ActivityCounts;
 import org.ohmage.domain.DataStream;
 import org.ohmage.domain.DataStream.MetaData;
+import org.ohmage.domain.DataStreamCursor;
 import org.ohmage.domain.Location;
 import org.ohmage.domain.Observer;
 import org.ohmage.domain.Observer.Stream;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.query.IObserverQueries;
+import org.ohmage.query.IUserStatsQueries;
 import org.ohmage.service.ObserverServices.InvalidPoint;
 import org.ohmage.util.StringUtils;
 import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
@@ -52,14 +55,106 @@ import org.springframework.transaction.support.DefaultTransactionDefinition;
  * @author John Jenkins
  */
 public class ObserverQueries extends Query implements IObserverQueries {
+	// The observer whose stream data are Mobility points, which are added to
+	// the user's statistics.
+	private static final String MOBILITY_OBSERVER_ID = "edu.ucla.cens.Mobility";
+	
+	// The beginning of a multi-row insert of stream data. One 
+	// SQL_INSERT_STREAM_DATA_ROW must be appended for each point, separated
+	// by commas.
+	private static final String SQL_INSERT_STREAM_DATA =
+		"INSERT INTO observer_stream_data (" +
+			"user_id, " +
+			"observer_stream_link_id, " +
+			"uid, " +
+			"time, " +
+			"time_offset, " +
+			"time_adjusted, " +
+			"time_zone, " +
+			"location_timestamp, " +
+			"location_latitude, " +
+			"location_longitude, " +
+			"location_accuracy, " +
+			"location_provider, " +
+			"data) " +
+		"VALUES ";
+	private static final String SQL_INSERT_STREAM_DATA_ROW =
+		"(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	
+	// The number of parameters in each SQL_INSERT_STREAM_DATA_ROW.
+	private static final int COLUMNS_PER_DATA_POINT = 13;
+	
+	// The most points that are inserted with a single statement.
+	private static final int MAX_POINTS_PER_INSERT = 500;
+	
+	// The tables and conditions that select the points a user has stored for
+	// any version of an observer's stream.
+	private static final String SQL_FROM_STREAM_IDS =
+		"FROM " +
+			"user u, " +
+			"observer o, " +
+			"observer_stream os, " +
+			"observer_stream_link osl, " +
+			"observer_stream_data osd " +
+		"WHERE u.username = ? " +
+		"AND o.observer_id = ? " +
+		"AND o.id = osl.observer_id " +
+		"AND osl.observer_stream_id = os.id " +
+		"AND os.stream_id = ? " +
+		"AND u.id = osd.user_id " +
+		"AND osl.id = osd.observer_stream_link_id " +
+		"AND osd.uid IS NOT NULL";
+	
+	// Counts the points a user has stored for a stream.
+	private static final String SQL_GET_STREAM_ID_COUNT =
+		"SELECT COUNT(osd.id) " + SQL_FROM_STREAM_IDS;
+	
+	// Retrieves the IDs of the points a user has stored for a stream.
+	private static final String SQL_GET_STREAM_IDS =
+		"SELECT osd.uid " + SQL_FROM_STREAM_IDS;
+	
+	// Retrieves a user's database ID.
+	private static final String SQL_GET_USER_ID =
+		"SELECT id FROM user WHERE username = ?";
+	
+	// Retrieves the database ID of the link between an observer and a 
+	// stream.
+	private static final String SQL_GET_STREAM_LINK_ID =
+		"SELECT osl.id " +
+		"FROM " +
+			"observer o, " +
+			"observer_stream os, " +
+			"observer_stream_link osl " +
+		"WHERE o.observer_id = ? " +
+		"AND o.version = ? " +
+		"AND os.stream_id = ? " +
+		"AND os.version = ? " +
+		"AND o.id = osl.observer_id " +
+		"AND os.id = osl.observer_stream_id";
+	
+	private final IUserStatsQueries userStatsQueries;
+	
 	/**
 	 * Creates this object via dependency injection (reflection).
 	 * 
 	 * @param dataSource
 	 *        The DataSource to use when querying the database.
+	 * 
+	 * @param userStatsQueries
+	 *        The queries that add uploaded Mobility points to the user's
+	 *        statistics.
 	 */
-	private ObserverQueries(DataSource dataSource) {
+	private ObserverQueries(
+			DataSource dataSource,
+			IUserStatsQueries userStatsQueries) {
+		
 		super(dataSource);
+		
+		if(userStatsQueries == null) {
+			throw new IllegalArgumentException(
+				"An instance of IUserStatsQueries is a required argument.");
+		}
+		this.userStatsQueries = userStatsQueries;
 	}
 
 	/*
@@ -413,36 +508,59 @@ public class ObserverQueries extends Query implements IObserverQueries {
 		parameters.add(numToSkip);
 		parameters.add(numToReturn);
 		
+		// The observers' definitions never change once they have been
+		// stored, so only those that are not cached need their streams.
+		final ObserverDefinitionCache cache = 
+			ObserverDefinitionCache.instance();
+		final List<Long> observerDbIds = new LinkedList<Long>();
+		final Map<Long, Observer> observers = new HashMap<Long, Observer>();
 		final Map<Long, Observer.Builder> observerBuilders = 
 			new HashMap<Long, Observer.Builder>();
+		final Map<Long, String> observerIds = new HashMap<Long, String>();
 		try {
 			getJdbcTemplate().query(
 				observerSql.toString(),
 				parameters.toArray(),
 				new RowMapper<Object> () {
 					/**
-					 * Maps the row of data to a new observer builder.
+					 * Maps the row of data to a cached observer or a new
+					 * observer builder.
 					 */
 					@Override
 					public Object mapRow(
 							final ResultSet rs, 
 							final int rowNum)
 							throws SQLException {
+						
+						long dbId = rs.getLong("id");
+						String observerId = rs.getString("observer_id");
+						observerDbIds.add(dbId);
+						
+						if(cache != null) {
+							Observer observer =
+								cache.getObserver(
+									observerId, 
+									rs.getLong("version"));
+							
+							if(observer != null) {
+								observers.put(dbId, observer);
+								return null;
+							}
+						}
 					
 						Observer.Builder observerBuilder = 
 							new Observer.Builder();
 						
 						observerBuilder
-							.setId(rs.getString("observer_id"))
+							.setId(observerId)
 							.setVersion(rs.getLong("version"))
 							.setName(rs.getString("name"))
 							.setDescription(rs.getString("description"))
 							.setVersionString(
 								rs.getString("version_string"));
 	
-						observerBuilders.put(
-							rs.getLong("id"), 
-							observerBuilder);
+						observerBuilders.put(dbId, observerBuilder);
+						observerIds.put(dbId, observerId);
 						
 						return null;
 					}
@@ -473,6 +591,7 @@ public class ObserverQueries extends Query implements IObserverQueries {
 			"AND osl.observer_stream_id = os.id";
 		
 		for(Long dbId : observerBuilders.keySet()) {
+			final String observerId = observerIds.get(dbId);
 			try {
 				observerBuilders
 				.get(dbId)
@@ -490,38 +609,7 @@ public class ObserverQueries extends Query implements IObserverQueries {
 									final int rowNum)
 									throws SQLException {
 								
-								// Because the with_* values are optional and
-								// may be null, they must be retrieve in this
-								// special way.
-								Boolean withId, withTimestamp, withLocation;
-								withId = rs.getBoolean("with_id");
-								if(rs.wasNull()) {
-									withId = null;
-								}
-								withTimestamp =
-									rs.getBoolean("with_timestamp");
-								if(rs.wasNull()) {
-									withTimestamp = null;
-								}
-								withLocation = rs.getBoolean("with_location");
-								if(rs.wasNull()) {
-									withLocation = null;
-								}
-								
-								try {
-									return new Observer.Stream(
-										rs.getString("stream_id"), 
-										rs.getLong("version"), 
-										rs.getString("name"), 
-										rs.getString("description"), 
-										withId,
-										withTimestamp, 
-										withLocation, 
-										rs.getString("stream_schema"));
-								}
-								catch(DomainException e) {
-									throw new SQLException(e);
-								}
+								return mapStream(observerId, rs);
 							}
 						}
 					)
@@ -537,17 +625,27 @@ public class ObserverQueries extends Query implements IObserverQueries {
 			}
 		}
 		
-		ArrayList<Observer> result = 
-			new ArrayList<Observer>(observerBuilders.size());
-		for(Observer.Builder observerBuilder : observerBuilders.values()) {
+		for(Long dbId : observerBuilders.keySet()) {
+			Observer observer;
 			try {
-				result.add(observerBuilder.build());
+				observer = observerBuilders.get(dbId).build();
 			}
 			catch(DomainException e) {
 				throw new DataAccessException(
 					"There was a problem building an observer.",
 					e);
 			}
+			
+			if(cache != null) {
+				cache.putObserver(observer);
+			}
+			observers.put(dbId, observer);
+		}
+		
+		ArrayList<Observer> result = 
+			new ArrayList<Observer>(observerDbIds.size());
+		for(Long dbId : observerDbIds) {
+			result.add(observers.get(dbId));
 		}
 		
 		return result;
@@ -706,41 +804,8 @@ public class ObserverQueries extends Query implements IObserverQueries {
 							result.put(observerId, streams);
 						}
 						
-						// Because the with_* values are optional and
-						// may be null, they must be retrieve in this
-						// special way.
-						Boolean withId, withTimestamp, withLocation;
-						withId = rs.getBoolean("with_id");
-						if(rs.wasNull()) {
-							withId = null;
-						}
-						withTimestamp =
-							rs.getBoolean("with_timestamp");
-						if(rs.wasNull()) {
-							withTimestamp = null;
-						}
-						withLocation = rs.getBoolean("with_location");
-						if(rs.wasNull()) {
-							withLocation = null;
-						}
-						
 						// Add the stream to its respective result list.
-						try {
-							streams
-								.add(
-									new Observer.Stream(
-										rs.getString("stream_id"), 
-										rs.getLong("version"), 
-										rs.getString("name"), 
-										rs.getString("description"), 
-										withId,
-										withTimestamp, 
-										withLocation, 
-										rs.getString("stream_schema")));
-						}
-						catch(DomainException e) {
-							throw new SQLException(e);
-						}
+						streams.add(mapStream(observerId, rs));
 						
 						// Return nothing as it will never be used.
 						return null;
@@ -858,6 +923,79 @@ public class ObserverQueries extends Query implements IObserverQueries {
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IObserverQueries#getStreamIdCount(java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public long getStreamIdCount(
+			final String username,
+			final String observerId,
+			final String streamId)
+			throws DataAccessException {
+		
+		try {
+			return
+				getJdbcTemplate().queryForLong(
+					SQL_GET_STREAM_ID_COUNT,
+					username,
+					observerId,
+					streamId);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					SQL_GET_STREAM_ID_COUNT +
+					"' with parameters: " +
+					username + ", " +
+					observerId + ", " +
+					streamId,
+				e);
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IObserverQueries#addStreamIds(java.lang.String, java.lang.String, java.lang.String, org.ohmage.cache.StreamDuplicateFilter.IdFilter)
+	 */
+	@Override
+	public void addStreamIds(
+			final String username,
+			final String observerId,
+			final String streamId,
+			final IdFilter filter)
+			throws DataAccessException {
+		
+		try {
+			getJdbcTemplate().query(
+				SQL_GET_STREAM_IDS,
+				new Object[] { username, observerId, streamId },
+				new RowCallbackHandler() {
+					/*
+					 * (non-Javadoc)
+					 * @see org.springframework.jdbc.core.RowCallbackHandler#processRow(java.sql.ResultSet)
+					 */
+					@Override
+					public void processRow(
+							final ResultSet rs)
+							throws SQLException {
+						
+						filter.put(rs.getString(1));
+					}
+				});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					SQL_GET_STREAM_IDS +
+					"' with parameters: " +
+					username + ", " +
+					observerId + ", " +
+					streamId,
+				e);
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.ohmage.query.IObserverQueries#storeData(java.lang.String, java.util.Collection)
@@ -869,90 +1007,8 @@ public class ObserverQueries extends Query implements IObserverQueries {
 			final Collection<DataStream> data)
 			throws DataAccessException {
 		
-		String sql =
-			"INSERT INTO observer_stream_data (" +
-				"user_id, " +
-				"observer_stream_link_id, " +
-				"uid, " +
-				"time, " +
-				"time_offset, " +
-				"time_adjusted, " +
-				"time_zone, " +
-				"location_timestamp, " +
-				"location_latitude, " +
-				"location_longitude, " +
-				"location_accuracy, " +
-				"location_provider, " +
-				"data) " +
-			"VALUES (" +
-				"(SELECT id FROM user WHERE username = ?), " +
-				"(" +
-					"SELECT osl.id " +
-					"FROM " +
-						"observer o, " +
-						"observer_stream os, " +
-						"observer_stream_link osl " +
-					"WHERE o.observer_id = ? " +
-					"AND o.version = ? " +
-					"AND os.stream_id = ? " +
-					"AND os.version = ? " +
-					"AND o.id = osl.observer_id " +
-					"AND os.id = osl.observer_stream_id" +
-				"), " +
-				"?, " +
-				"?, " +
-				"?, " +
-				"?, " +
-				"?, " +
-				"?, " +
-				"?, " +
-				"?, " +
-				"?, " +
-				"?, " +
-				"?)";
-		
-		List<Object[]> args = new ArrayList<Object[]>(data.size());
-		for(DataStream currData : data) {
-			MetaData metaData = currData.getMetaData();
-			String id = null;
-			DateTime timestamp = null;
-			Location location = null;
-			if(metaData != null) {
-				id = metaData.getId();
-				timestamp = metaData.getTimestamp();
-				location = metaData.getLocation();
-			}
-			
-			Long time = (timestamp == null) ? null : timestamp.getMillis();
-			Integer timeOffset = 
-				(timestamp == null) ? 
-					null : 
-					timestamp.getZone().getOffset(timestamp);
-			Long timeAdjusted =
-				(timestamp == null) ? null : time + timeOffset;
-			String timeZoneId = 
-				(timestamp == null) ? null : timestamp.getZone().getID();
-			
-			args.add(
-				new Object[] {
-					username,
-					observer.getId(),
-					observer.getVersion(),
-					currData.getStream().getId(),
-					currData.getStream().getVersion(),
-					id,
-					time,
-					timeOffset,
-					timeAdjusted,
-					timeZoneId,
-					(location == null) ? null : (new DateTime(location.getTime(), location.getTimeZone())).toString(),
-					(location == null) ? null : location.getLatitude(),
-					(location == null) ? null : location.getLongitude(),
-					(location == null) ? null : location.getAccuracy(),
-					(location == null) ? null : location.getProvider(),
-					currData.getData().toString()
-				}
-			);
+		if((data == null) || data.isEmpty()) {
+			return;
 		}
 		
 		// Create the transaction.
@@ -966,13 +1022,87 @@ public class ObserverQueries extends Query implements IObserverQueries {
 			TransactionStatus status = transactionManager.getTransaction(def);
 			
 			try {
-				getJdbcTemplate().batchUpdate(sql, args);
+				// Resolve the IDs that are the same for every point once.
+				long userId = getUserId(username);
+				Map<Stream, Long> linkIds = new HashMap<Stream, Long>();
+				
+				// Mobility points are counted in the user's statistics.
+				ActivityCounts counts = 
+					MOBILITY_OBSERVER_ID.equals(observer.getId()) ?
+						new ActivityCounts() :
+						null;
+				
+				List<Object> args = 
+					new ArrayList<Object>(
+						Math.min(data.size(), MAX_POINTS_PER_INSERT) * 
+						COLUMNS_PER_DATA_POINT);
+				int numRows = 0;
+				for(DataStream currData : data) {
+					Stream stream = currData.getStream();
+					Long linkId = linkIds.get(stream);
+					if(linkId == null) {
+						linkId = getStreamLinkId(observer, stream);
+						linkIds.put(stream, linkId);
+					}
+					
+					MetaData metaData = currData.getMetaData();
+					String id = null;
+					DateTime timestamp = null;
+					Location location = null;
+					if(metaData != null) {
+						id = metaData.getId();
+						timestamp = metaData.getTimestamp();
+						location = metaData.getLocation();
+					}
+					
+					Long time = (timestamp == null) ? null : timestamp.getMillis();
+					Integer timeOffset = 
+						(timestamp == null) ? 
+							null : 
+							timestamp.getZone().getOffset(timestamp);
+					Long timeAdjusted =
+						(timestamp == null) ? null : time + timeOffset;
+					String timeZoneId = 
+						(timestamp == null) ? null : timestamp.getZone().getID();
+					
+					args.add(userId);
+					args.add(linkId);
+					args.add(id);
+					args.add(time);
+					args.add(timeOffset);
+					args.add(timeAdjusted);
+					args.add(timeZoneId);
+					args.add((location == null) ? null : (new DateTime(location.getTime(), location.getTimeZone())).toString());
+					args.add((location == null) ? null : location.getLatitude());
+					args.add((location == null) ? null : location.getLongitude());
+					args.add((location == null) ? null : location.getAccuracy());
+					args.add((location == null) ? null : location.getProvider());
+					args.add(currData.getData().toString());
+					
+					if((counts != null) && (time != null)) {
+						counts.add(time, time, location != null);
+					}
+					
+					if(++numRows == MAX_POINTS_PER_INSERT) {
+						insertStreamData(numRows, args);
+						args.clear();
+						numRows = 0;
+					}
+				}
+				if(numRows > 0) {
+					insertStreamData(numRows, args);
+				}
+				
+				// The statistics are added to in the same transaction, so 
+				// that a rebuild of the statistics either counts all of 
+				// these points or none of them.
+				if((counts != null) && (! counts.isEmpty())) {
+					userStatsQueries.addMobilityActivity(username, counts);
+				}
 			}
-			catch(org.springframework.dao.DataAccessException e) {
+			catch(DataAccessException e) {
 				transactionManager.rollback(status);
-				throw new DataAccessException(
-					"Error executing SQL '" + sql +"'.", 
-					e);
+				throw e;
 			}
 			
 			// Commit the transaction.
@@ -1091,6 +1221,7 @@ public class ObserverQueries extends Query implements IObserverQueries {
 			final DateTime startDate,
 			final DateTime endDate,
 			final boolean chronological,
+			final DataStreamCursor cursor,
 			final long numToSkip,
 			final long numToReturn) 
 			throws DataAccessException {
@@ -1099,6 +1230,7 @@ public class ObserverQueries extends Query implements IObserverQueries {
 		StringBuilder builder = 
 			new StringBuilder(
 				"SELECT " +
+					"osd.id, " +
 					"osd.uid, " +
 					"osd.time, " +
 					"osd.time_zone, " +
@@ -1109,7 +1241,11 @@ public class ObserverQueries extends Query implements IObserverQueries {
 					"osd.location_provider, " +
 					"osd.data " +
 				"FROM " +
-					"observer_stream_data AS osd FORCE INDEX (observer_stream_data_query)" +
+					"observer_stream_data AS osd FORCE INDEX (" +
+						((cursor == null) ? 
+							"observer_stream_data_query" : 
+							"observer_stream_data_seek") +
+					") " +
 				"WHERE " +
 					"osd.user_id = (" +
 						"SELECT id " +
@@ -1163,21 +1299,59 @@ public class ObserverQueries extends Query implements IObserverQueries {
 			parameters.add(endDate.getMillis());
 		}
 		
+		// If a cursor is given, continue after the point to which it refers.
+		// Points without a time come before all others.
+		if(cursor != null) {
+			Long cursorTime = cursor.getTime();
+			if(chronological) {
+				if(cursorTime == null) {
+					builder.append(
+						" AND (osd.time IS NOT NULL " +
+							"OR osd.id > ?)");
+					parameters.add(cursor.getDatabaseId());
+				}
+				else {
+					builder.append(
+						" AND (osd.time > ? " +
+							"OR (osd.time = ? AND osd.id > ?))");
+					parameters.add(cursorTime);
+					parameters.add(cursorTime);
+					parameters.add(cursor.getDatabaseId());
+				}
+			}
+			else {
+				if(cursorTime == null) {
+					builder.append(
+						" AND osd.time IS NULL " +
+						"AND osd.id < ?");
+					parameters.add(cursor.getDatabaseId());
+				}
+				else {
+					builder.append(
+						" AND (osd.time < ? " +
+							"OR (osd.time = ? AND osd.id < ?) " +
+							"OR osd.time IS NULL)");
+					parameters.add(cursorTime);
+					parameters.add(cursorTime);
+					parameters.add(cursor.getDatabaseId());
+				}
+			}
+		}
+		
 		// Add the ordering based on whether or not these should be 
-		// chronological or reverse chronological.
+		// chronological or reverse chronological. Points taken at the same
+		// time are ordered by when they were stored so that a cursor can
+		// continue between them.
+		String direction = (chronological) ? "ASC" : "DESC";
 		builder
 			.append(
-				" ORDER BY osd.time " + ((chronological) ? "ASC" : "DESC"));
+				" ORDER BY osd.time " + direction + ", osd.id " + direction);
 		
 		// Limit the number of results based on the paging.
 		builder.append(" LIMIT ?, ?");
 		parameters.add(numToSkip);
 		parameters.add(numToReturn);
 		
-		// Create a JSON factory, which will be used by each data point to
-		// deserialize its data into a JsonNode.
-		final JsonFactory jsonFactory = new MappingJsonFactory();
-		
 		try {
 			return
 				getJdbcTemplate().query(
@@ -1202,7 +1376,10 @@ public class ObserverQueries extends Query implements IObserverQueries {
 							}
 							
 							Long time = rs.getLong("osd.time");
-							if(time != null) {
+							if(rs.wasNull()) {
+								time = null;
+							}
+							else {
 								metaDataBuilder.setTimestamp(
 									new DateTime(
 										time,
@@ -1246,32 +1423,16 @@ public class ObserverQueries extends Query implements IObserverQueries {
 								metaDataBuilder.setLocation(location);
 							}
 							
-							JsonNode data;
-							try {
-								JsonParser parser =
-									jsonFactory
-										.createJsonParser(
-											rs.getString("osd.data"));
-								data = parser.readValueAsTree();
-							}
-							catch(JsonParseException e) {
-								throw new SQLException(
-									"The data in the database is invalid: " +
-										id,
-									e);
-							}
-							catch(IOException e) {
-								throw new SQLException(
-									"There was a problem reading the data: " +
-										id,
-									e);
-							}
-							
+							// The data was validated when it was uploaded, so it
+							// is only parsed if it is needed.
 							try {
 								return new DataStream(
 									stream, 
 									metaDataBuilder.build(), 
-									data);
+									rs.getString("osd.data"),
+									new DataStreamCursor(
+										time, 
+										rs.getLong("osd.id")));
 							}
 							catch(DomainException e) {
 								throw new SQLException(
@@ -1664,6 +1825,12 @@ public class ObserverQueries extends Query implements IObserverQueries {
 					"Error while committing the transaction.",
 					e);
 			}
+			
+			// The observer's links have changed.
+			ObserverStreamLinkCache cache = ObserverStreamLinkCache.instance();
+			if(cache != null) {
+				cache.invalidateObserver(observer.getId());
+			}
 		}
 		catch(TransactionException e) {
 			throw new DataAccessException(
@@ -1671,4 +1838,232 @@ public class ObserverQueries extends Query implements IObserverQueries {
 				e);
 		}
 	}
+	
+	/**
+	 * Returns the stream defined by the current row of a result, which must
+	 * contain all of the observer_stream columns. The cached definition is
+	 * used if there is one so that its schema is not validated again.
+	 * 
+	 * @param observerId The ID of the observer to which the stream belongs.
+	 * 
+	 * @param rs The result whose current row defines the stream.
+	 * 
+	 * @return The stream.
+	 * 
+	 * @throws SQLException The row could not be read or did not define a
+	 * 						valid stream.
+	 */
+	private static Observer.Stream mapStream(
+			final String observerId,
+			final ResultSet rs)
+			throws SQLException {
+		
+		ObserverDefinitionCache cache = ObserverDefinitionCache.instance();
+		
+		String streamId = rs.getString("stream_id");
+		long streamVersion = rs.getLong("version");
+		if(cache != null) {
+			Observer.Stream result = 
+				cache.getStream(observerId, streamId, streamVersion);
+			
+			if(result != null) {
+				return result;
+			}
+		}
+		
+		// Because the with_* values are optional and may be null, they must
+		// be retrieve in this special way.
+		Boolean withId, withTimestamp, withLocation;
+		withId = rs.getBoolean("with_id");
+		if(rs.wasNull()) {
+			withId = null;
+		}
+		withTimestamp = rs.getBoolean("with_timestamp");
+		if(rs.wasNull()) {
+			withTimestamp = null;
+		}
+		withLocation = rs.getBoolean("with_location");
+		if(rs.wasNull()) {
+			withLocation = null;
+		}
+		
+		Observer.Stream result;
+		try {
+			result =
+				new Observer.Stream(
+					streamId, 
+					streamVersion, 
+					rs.getString("name"), 
+					rs.getString("description"), 
+					withId,
+					withTimestamp, 
+					withLocation, 
+					rs.getString("stream_schema"));
+		}
+		catch(DomainException e) {
+			throw new SQLException(e);
+		}
+		
+		if(cache != null) {
+			cache.putStream(observerId, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns a user's database ID, from the cache if possible.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @return The user's database ID.
+	 * 
+	 * @throws DataAccessException The user does not exist or there was an
+	 * 							   error.
+	 */
+	private long getUserId(final String username) throws DataAccessException {
+		ObserverStreamLinkCache cache = ObserverStreamLinkCache.instance();
+		if(cache != null) {
+			Long userId = cache.getUserId(username);
+			if(userId != null) {
+				return userId;
+			}
+		}
+		
+		long userId;
+		try {
+			userId = getJdbcTemplate().queryForLong(SQL_GET_USER_ID, username);
+		}
+		catch(org.springframework.dao.IncorrectResultSizeDataAccessException e) {
+			throw new DataAccessException(
+				"The user does not exist: " + username, 
+				e);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					SQL_GET_USER_ID + 
+					"' with parameter: " + 
+					username,
+				e);
+		}
+		
+		if(cache != null) {
+			cache.putUserId(username, userId);
+		}
+		return userId;
+	}
+	
+	/**
+	 * Returns the database ID of the link between an observer and one of its
+	 * streams, from the cache if possible.
+	 * 
+	 * @param observer The observer.
+	 * 
+	 * @param stream The stream.
+	 * 
+	 * @return The link's database ID.
+	 * 
+	 * @throws DataAccessException The link does not exist or there was an
+	 * 							   error.
+	 */
+	private long getStreamLinkId(
+			final Observer observer,
+			final Stream stream)
+			throws DataAccessException {
+		
+		ObserverStreamLinkCache cache = ObserverStreamLinkCache.instance();
+		if(cache != null) {
+			Long linkId = 
+				cache.getLinkId(
+					observer.getId(), 
+					observer.getVersion(), 
+					stream.getId(), 
+					stream.getVersion());
+			if(linkId != null) {
+				return linkId;
+			}
+		}
+		
+		long linkId;
+		try {
+			linkId = 
+				getJdbcTemplate().queryForLong(
+					SQL_GET_STREAM_LINK_ID,
+					observer.getId(),
+					observer.getVersion(),
+					stream.getId(),
+					stream.getVersion());
+		}
+		catch(org.springframework.dao.IncorrectResultSizeDataAccessException e) {
+			throw new DataAccessException(
+				"The stream is not part of the observer: " + 
+					observer.getId() + ", " +
+					observer.getVersion() + ", " +
+					stream.getId() + ", " +
+					stream.getVersion(), 
+				e);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					SQL_GET_STREAM_LINK_ID + 
+					"' with parameters: " + 
+					observer.getId() + ", " +
+					observer.getVersion() + ", " +
+					stream.getId() + ", " +
+					stream.getVersion(),
+				e);
+		}
+		
+		if(cache != null) {
+			cache.putLinkId(
+				observer.getId(), 
+				observer.getVersion(), 
+				stream.getId(), 
+				stream.getVersion(), 
+				linkId);
+		}
+		return linkId;
+	}
+	
+	/**
+	 * Inserts stream data points with a single statement.
+	 * 
+	 * @param numRows The number of points.
+	 * 
+	 * @param args The parameters for every point, in order.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private void insertStreamData(
+			final int numRows,
+			final List<Object> args)
+			throws DataAccessException {
+		
+		StringBuilder sql = 
+			new StringBuilder(
+				SQL_INSERT_STREAM_DATA.length() + 
+				(numRows * (SQL_INSERT_STREAM_DATA_ROW.length() + 2)));
+		sql.append(SQL_INSERT_STREAM_DATA);
+		for(int i = 0; i < numRows; i++) {
+			if(i > 0) {
+				sql.append(", ");
+			}
+			sql.append(SQL_INSERT_STREAM_DATA_ROW);
+		}
+		
+		try {
+			getJdbcTemplate().update(sql.toString(), args.toArray());
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					SQL_INSERT_STREAM_DATA + 
+					SQL_INSERT_STREAM_DATA_ROW + 
+					"...' for " + 
+					numRows + 
+					" points.", 
+				e);
+		}
+	}
 }
\ No newline at end of file
@@ -15,6 +15,9 @@
  ******************************************************************************/
 package org.ohmage.query.impl;
 
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -22,6 +25,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -39,15 +43,22 @@ import org.ohmage.domain.campaign.SurveyResponse;
 import org.ohmage.domain.campaign.SurveyResponse.ColumnKey;
 import org.ohmage.domain.campaign.SurveyResponse.PrivacyState;
 import org.ohmage.domain.campaign.SurveyResponse.SortParameter;
+import org.ohmage.domain.campaign.SurveyResponseCount;
+import org.ohmage.domain.campaign.SurveyResponseCursor;
+import org.ohmage.domain.campaign.SurveyResponseHandler;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.query.ISurveyResponseQueries;
 import org.ohmage.util.DateTimeUtils;
 import org.ohmage.util.StringUtils;
+import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
@@ -134,7 +145,8 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 			"sr.epoch_millis, sr.phone_timezone, " +
 			"sr.survey_id, sr.launch_context, " +
 			"sr.location_status, sr.location, srps.privacy_state, " +
-			"pr.prompt_id, pr.response, pr.repeatable_set_iteration " +
+			"pr.prompt_id, pr.response, pr.mime_encoded, " +
+			"pr.repeatable_set_iteration " +
 			SQL_BASE_FROM +
 			SQL_FROM_WITH_PROMPT_RESPONSE;
 	
@@ -208,7 +220,8 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 			"sr.epoch_millis, sr.phone_timezone, " +
 			"sr.survey_id, sr.launch_context, " +
 			"sr.location_status, sr.location, srps.privacy_state, " +
-			"pr.prompt_id, pr.response, pr.repeatable_set_iteration " +
+			"pr.prompt_id, pr.response, pr.mime_encoded, " +
+			"pr.repeatable_set_iteration " +
 			SQL_BASE_FROM +
 			SQL_FROM_WITH_PROMPT_RESPONSE;
 
@@ -305,6 +318,93 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 	private static final String SQL_WHERE_PROMPT_RESPONSE_SEARCH_TOKEN =
 		" AND pr.response LIKE ?";
 	
+	/**
+	 * Limit the responses to only those that come after a given survey 
+	 * response in the default ordering. The parameters are the epoch 
+	 * milliseconds, the same epoch milliseconds again, and the UUID of the 
+	 * survey response after which the results should begin.
+	 */
+	private static final String SQL_WHERE_AFTER_CURSOR =
+		" AND ((sr.epoch_millis < ?) OR " +
+			"((sr.epoch_millis = ?) AND (sr.uuid > ?)))";
+	
+	/**
+	 * Limit the responses to only those that do not come after a given 
+	 * survey response in the default ordering. The parameters are the epoch
+	 * milliseconds, the same epoch milliseconds again, and the UUID of the 
+	 * last survey response on the page.
+	 */
+	private static final String SQL_WHERE_NOT_AFTER =
+		" AND ((sr.epoch_millis > ?) OR " +
+			"((sr.epoch_millis = ?) AND (sr.uuid <= ?)))";
+	
+	/**
+	 * Retrieves only the keys of the survey responses. This should be 
+	 * followed by a FROM and WHERE clause and then 
+	 * {@link #SQL_ORDER_BY_CURSOR}.
+	 */
+	private static final String SQL_GET_SURVEY_RESPONSE_KEYS =
+		"SELECT DISTINCT sr.epoch_millis, sr.uuid ";
+	
+	/**
+	 * Counts the survey responses that match some criteria. This should be
+	 * followed by a FROM and WHERE clause.
+	 */
+	private static final String SQL_COUNT_SURVEY_RESPONSES =
+		"SELECT COUNT(DISTINCT sr.id) ";
+	
+	/**
+	 * Counts the survey responses by their privacy state. This should be
+	 * followed by a FROM and WHERE clause and then 
+	 * {@link #SQL_GROUP_BY_PRIVACY_STATE}.
+	 */
+	private static final String SQL_COUNT_BY_PRIVACY_STATE =
+		"SELECT srps.privacy_state, COUNT(*) AS count ";
+	
+	/**
+	 * Counts the survey responses by their privacy state and survey. This 
+	 * should be followed by a FROM and WHERE clause and then 
+	 * {@link #SQL_GROUP_BY_PRIVACY_STATE_AND_SURVEY}.
+	 */
+	private static final String SQL_COUNT_BY_PRIVACY_STATE_AND_SURVEY =
+		"SELECT srps.privacy_state, sr.survey_id, COUNT(*) AS count ";
+	
+	/**
+	 * Counts the survey responses by their privacy state, survey, and time 
+	 * zone in 15 minute windows. Every time zone's offset is a multiple of 15
+	 * minutes, so every survey response in a window has the same local date,
+	 * which is computed from the window's earliest time. This should be 
+	 * followed by a FROM and WHERE clause and then 
+	 * {@link #SQL_GROUP_BY_WINDOW}.
+	 */
+	private static final String SQL_COUNT_BY_WINDOW =
+		"SELECT srps.privacy_state, sr.survey_id, sr.phone_timezone, " +
+			"MIN(sr.epoch_millis) AS epoch_millis, COUNT(*) AS count ";
+	
+	private static final String SQL_GROUP_BY_PRIVACY_STATE =
+		" GROUP BY srps.privacy_state";
+	
+	private static final String SQL_GROUP_BY_PRIVACY_STATE_AND_SURVEY =
+		" GROUP BY srps.privacy_state, sr.survey_id";
+	
+	private static final String SQL_GROUP_BY_WINDOW =
+		" GROUP BY srps.privacy_state, sr.survey_id, sr.phone_timezone, " +
+			"FLOOR(sr.epoch_millis / 900000)";
+	
+	/**
+	 * The default ordering limited to the last survey response on a page. 
+	 * The parameter is the number of survey responses on a full page minus 
+	 * one.
+	 */
+	private static final String SQL_ORDER_BY_CURSOR =
+		" ORDER BY sr.epoch_millis DESC, sr.uuid LIMIT 1 OFFSET ?";
+	
+	/**
+	 * The default ordering, newest first.
+	 */
+	private static final String SQL_ORDER_BY_DEFAULT =
+		" ORDER BY epoch_millis DESC, uuid";
+	
 	/**
 	 * Order the results first by the number of milliseconds since the epoch at
 	 * which time the survey was taken and then, if there is a collision, by
@@ -328,6 +428,41 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 	private static final String SQL_DELETE_SURVEY_RESPONSE =
 		"DELETE FROM survey_response " +
 		"WHERE uuid = ?";
+	
+	// Retrieves a batch of the prompt responses that may still be 
+	// MIME-encoded.
+	private static final String SQL_GET_LEGACY_PROMPT_RESPONSES =
+		"SELECT id, response " +
+		"FROM prompt_response " +
+		"WHERE mime_encoded = 1 " +
+		"AND id > ? " +
+		"ORDER BY id " +
+		"LIMIT ?";
+	
+	// Stores a decoded prompt response unless it was updated in the meantime.
+	private static final String SQL_UPDATE_LEGACY_PROMPT_RESPONSE =
+		"UPDATE prompt_response " +
+		"SET response = ?, mime_encoded = 0 " +
+		"WHERE id = ? " +
+		"AND mime_encoded = 1";
+	
+	// Retrieves a batch of the survey responses whose JSON may still be 
+	// MIME-encoded.
+	private static final String SQL_GET_LEGACY_SURVEY_RESPONSES =
+		"SELECT id, survey " +
+		"FROM survey_response " +
+		"WHERE mime_encoded = 1 " +
+		"AND id > ? " +
+		"ORDER BY id " +
+		"LIMIT ?";
+	
+	// Stores a survey response's decoded JSON unless it was updated in the 
+	// meantime.
+	private static final String SQL_UPDATE_LEGACY_SURVEY_RESPONSE =
+		"UPDATE survey_response " +
+		"SET survey = ?, mime_encoded = 0 " +
+		"WHERE id = ? " +
+		"AND mime_encoded = 1";
 
 	/**
 	 * Creates this object.
@@ -418,11 +553,56 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 			final List<SurveyResponse> result)
 			throws DataAccessException {
 		
+		return (int) handleSurveyResponses(
+				campaign,
+				username,
+				surveyResponseIds,
+				usernames, 
+				startDate,
+				endDate, 
+				privacyState,
+				surveyIds,
+				promptIds,
+				promptType,
+				promptResponseSearchTokens,
+				columns,
+				sortOrder,
+				surveyResponsesToSkip,
+				surveyResponsesToProcess,
+				Collections.<SurveyResponseHandler>singletonList(
+					new SurveyResponseCollector(result)));
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.ISurveyResponseQueries#handleSurveyResponses(org.ohmage.domain.campaign.Campaign, java.lang.String, java.util.Set, java.util.Collection, org.joda.time.DateTime, org.joda.time.DateTime, org.ohmage.domain.campaign.SurveyResponse.PrivacyState, java.util.Collection, java.util.Collection, java.lang.String, java.util.Set, java.util.Collection, java.util.List, long, long, java.util.List)
+	 */
+	@Override
+	public long handleSurveyResponses(
+			final Campaign campaign,
+			final String username,
+			final Set<UUID> surveyResponseIds,
+			final Collection<String> usernames, 
+			final DateTime startDate,
+			final DateTime endDate, 
+			final SurveyResponse.PrivacyState privacyState,
+			final Collection<String> surveyIds,
+			final Collection<String> promptIds,
+			final String promptType,
+			final Set<String> promptResponseSearchTokens,
+			final Collection<ColumnKey> columns,
+			final List<SortParameter> sortOrder,
+			final long surveyResponsesToSkip,
+			final long surveyResponsesToProcess,
+			final List<SurveyResponseHandler> passes)
+			throws DataAccessException {
+		
 		if(
 			((surveyIds != null) && (surveyIds.size() == 0)) ||
 			((promptIds != null) && (promptIds.size() == 0)) ||
 			((columns != null) && (columns.size() == 0))) {
 			
+			finishPasses(passes, 0);
 			return 0;
 		}
 		
@@ -442,280 +622,186 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 				columns,
 				sortOrder,
 				parameters);
-
-		// This is necessary to map tiny integers in SQL to Java's integer.
-		final Map<String, Class<?>> typeMapping = new HashMap<String, Class<?>>();
-		typeMapping.put("tinyint", Integer.class);
 		
-		// This is a silly, hacky way to get the total count, but it is the 
-		// only real way I have found thus far.
-		final Collection<Integer> totalCount = new ArrayList<Integer>(1);
+		// A single pass does not need a transaction of its own.
+		if(passes.size() == 1) {
+			return 
+				handlePass(
+					sql, 
+					parameters,
+					new SurveyResponseExtractor(
+						campaign,
+						columns != null,
+						surveyResponsesToSkip,
+						surveyResponsesToProcess,
+						null,
+						passes.get(0)));
+		}
+		
+		// Every pass must see the same survey responses, so they are all
+		// read from the same snapshot.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Reading survey responses.");
+		def.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
 		
 		try {
-			result.addAll(getJdbcTemplate().query(
-				sql,
-				parameters.toArray(),
-				new ResultSetExtractor<List<SurveyResponse>>() {
-					/**
-					 * First, it skips a set of rows based on the parameterized
-					 * number of survey responses to skip. Then, it aggregates  
-					 * the information from the number of desired survey 
-					 * responses.
-					 * 
-					 * There must be some ordering on the results in order for
-					 * subsequent results to skip / process the same rows. The
-					 * agreed upon ordering is by time taken time stamp. 
-					 * Therefore, if a user were viewing results as they were
-					 * being generated and/or uploaded, it could be that
-					 * subsequent calls return the same result as a previous
-					 * call. This is analogous to viewing a page of feed data
-					 * and going to the next page and seeing some feed items
-					 * that you just saw on the previous page. It was decided
-					 * that this is a common and acceptable way to view live
-					 * data.
-					 */
-					@Override
-					public List<SurveyResponse> extractData(ResultSet rs)
-							throws SQLException,
-							org.springframework.dao.DataAccessException {
-						
-						// If the result set is empty, we can simply return an
-						// empty list.
-						if(! rs.next()) {
-							totalCount.add(0);
-							return Collections.emptyList();
-						}
-						
-						// Keep track of the number of survey responses we have
-						// skipped.
-						int surveyResponsesSkipped = 0;
-						// Continue while there are more survey responses to
-						// skip.
-						while(surveyResponsesSkipped < surveyResponsesToSkip) {
-							// Get the ID for the survey response we are 
-							// skipping.
-							String surveyResponseId = rs.getString("uuid");
-							surveyResponsesSkipped++;
-							
-							// Continue to skip rows as long as there are rows
-							// to skip and those rows have the same survey
-							// response ID.
-							while(surveyResponseId.equals(rs.getString("uuid"))) {
-								// We were skipping the last survey response,
-								// therefore, there are no survey responses to
-								// return and we can return an empty list.
-								if(! rs.next()) {
-									totalCount.add(surveyResponsesSkipped);
-									return Collections.emptyList();
-								}
-							}
-						}
-						
-						// Create a list of the results.
-						List<SurveyResponse> result =
-								new LinkedList<SurveyResponse>();
-						
-						// Cycle through the rows until the maximum number of
-						// rows has been processed or there are no more rows to
-						// process.
-						int surveyResponsesProcessed = 0;
-						while(surveyResponsesProcessed < surveyResponsesToProcess) {
-							// We have not yet processed this survey response,
-							// so we need to process it and then continue
-							// processing this and all of its survey responses.
-							
-							// First, create the survey response object.
-							SurveyResponse surveyResponse;
-							try {
-								JSONObject locationJson = null;
-								String locationString = rs.getString("location");
-								if(locationString != null) {
-									locationJson = new JSONObject(locationString);
-								}
-								
-								surveyResponse =
-									new SurveyResponse(
-											rs.getLong("id"),
-											campaign.getSurveys().get(rs.getString("survey_id")),
-											UUID.fromString(rs.getString("uuid")),
-											rs.getString("username"),
-											rs.getString("urn"),
-											rs.getString("client"),
-											rs.getLong("epoch_millis"),
-											DateTimeUtils.getDateTimeZoneFromString(rs.getString("phone_timezone")),
-											new JSONObject(rs.getString("launch_context")),
-											rs.getString("location_status"),
-											locationJson,
-											SurveyResponse.PrivacyState.getValue(rs.getString("privacy_state")));
-								
-								if(columns != null) {
-									surveyResponse.setCount(
-											rs.getLong("count"));
-								}
-							}
-							catch(IllegalArgumentException e) {
-								throw new SQLException("The TimeZone is unknown.", e);
-							}
-							catch(JSONException e) {
-								throw new SQLException("Error creating a JSONObject.", e);
-							}
-							catch(DomainException e) {
-								throw new SQLException("Error creating the survey response information object.", e);
-							}
-							
-							// Add the current survey response to the result
-							// list and increase the number of survey responses
-							// processed.
-							result.add(surveyResponse);
-							surveyResponsesProcessed++;
-							
-							// Get a string representation of the survey
-							// response's unique identifier.
-							String surveyResponseId =
-									surveyResponse.getSurveyResponseId().toString();
-							
-							boolean processPrompts = true;
-							try {
-								String promptId = rs.getString("prompt_id");
-								// in case the survey contains no response
-								if (promptId == null) {
-								    processPrompts = false;
-								}
-							}
-							catch(SQLException e) {
-								processPrompts = false;
-							}
-							
-							if(processPrompts) {
-								// Now, process this prompt response and all 
-								// subsequent prompt responses.
-								do {
-									try {
-										// Retrieve the corresponding prompt 
-										// information from the campaign.
-										Prompt prompt = 
-											campaign.getPrompt(
-													surveyResponse.getSurvey().getId(),
-													rs.getString("prompt_id")
-												);
-										
-										// Generate the prompt response and add it to
-										// the survey response.
-										Object UUU=rs.getObject("response");
-										String UUS=UUU.toString();
-										try{  UUS=MimeUtility.decodeText(UUS);}catch(Exception e){ LOGGER.warn("====EMOJI-FAIL====="+UUS);   };  
-										surveyResponse.addPromptResponse(
-												prompt.createResponse(
-														(Integer) rs.getObject(
-																"repeatable_set_iteration", 
-																typeMapping),
-														UUS
-													)
-											);
-									}
-									catch(DomainException e) {
-										throw new SQLException(
-												"The prompt response value from the database is not a valid response value for this prompt.", 
-												e);
-									}
-								} while(
-										// Get the next prompt response unless we
-										// just read the last prompt response in
-										// the result,
-										rs.next() && 
-										// and continue as long as that prompt 
-										// response pertains to this survey 
-										// response.
-										surveyResponseId.equals(rs.getString("uuid")));
-							}
-							else {
-								rs.next();
-							}
-									
-							// If we exited the loop because we passed the last
-							// record, break out of the survey response 
-							// processing loop.
-							if(rs.isAfterLast()) {
-								break;
-							}
-						}
-						
-						// Now, if we are after the last row, we need to set 
-						// the total count to be the total number skipped plus
-						// the total number processed.
-						if(rs.isAfterLast()) {
-							totalCount.add(
-									surveyResponsesSkipped + 
-									surveyResponsesProcessed);
-						}
-						else {
-							int otherIds = 1;
-							String id = rs.getString("uuid");
-							
-							while(rs.next()) {
-								if(! rs.getString("uuid").equals(id)) {
-									otherIds++;
-									id = rs.getString("uuid");
-								}
-							}
-							
-							totalCount.add(
-									surveyResponsesSkipped + 
-									surveyResponsesProcessed +
-									otherIds);
-						}
-						
-						// Finally, return only the survey responses as a list.
-						return result;
-					}
-				}
-			));
-			
-			return totalCount.iterator().next();
-		}
-		catch(org.springframework.dao.DataAccessException e) {
-			StringBuilder errorBuilder =
-				new StringBuilder(
-					"Error executing SQL '" + sql + "' with parameters: ");
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager = 
+					new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
 			
-			boolean firstPass = true;
-			for(Object parameter : parameters) {
-				if(firstPass) {
-					firstPass = false;
-				}
-				else {
-					errorBuilder.append(", ");
+			long totalCount = 0;
+			try {
+				for(SurveyResponseHandler pass : passes) {
+					totalCount =
+						handlePass(
+							sql, 
+							parameters,
+							new SurveyResponseExtractor(
+								campaign,
+								columns != null,
+								surveyResponsesToSkip,
+								surveyResponsesToProcess,
+								null,
+								pass));
 				}
-				errorBuilder.append(parameter.toString());
+			}
+			catch(DataAccessException e) {
+				transactionManager.rollback(status);
+				throw e;
+			}
+			
+			// Commit the transaction.
+			try {
+				transactionManager.commit(status);
+			}
+			catch(TransactionException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException("Error while committing the transaction.", e);
 			}
 			
-			throw new DataAccessException(errorBuilder.toString(), e);
+			return totalCount;
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
 		}
 	}
 	
-	/* (non-Javadoc)
-	 * @see org.ohmage.query.impl.ISurveyResponseQueries#updateSurveyResponsePrivacyState(java.lang.Long, org.ohmage.domain.campaign.SurveyResponse.PrivacyState)
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.ISurveyResponseQueries#retrieveSurveyResponsesAfter(org.ohmage.domain.campaign.Campaign, java.lang.String, java.util.Set, java.util.Collection, org.joda.time.DateTime, org.joda.time.DateTime, org.ohmage.domain.campaign.SurveyResponse.PrivacyState, java.util.Collection, java.util.Collection, java.lang.String, java.util.Set, org.ohmage.domain.campaign.SurveyResponseCursor, long, boolean, java.util.List)
 	 */
-	public void updateSurveyResponsesPrivacyState(
-			final Set<UUID> surveyResponseIds, 
-			final SurveyResponse.PrivacyState newPrivacyState)
+	@Override
+	public long retrieveSurveyResponsesAfter(
+			final Campaign campaign,
+			final String username,
+			final Set<UUID> surveyResponseIds,
+			final Collection<String> usernames, 
+			final DateTime startDate,
+			final DateTime endDate, 
+			final SurveyResponse.PrivacyState privacyState,
+			final Collection<String> surveyIds,
+			final Collection<String> promptIds,
+			final String promptType,
+			final Set<String> promptResponseSearchTokens,
+			final SurveyResponseCursor cursor,
+			final long surveyResponsesToProcess,
+			final boolean countTotal,
+			final List<SurveyResponse> result)
 			throws DataAccessException {
 		
-		StringBuilder sqlBuilder = 
-				new StringBuilder(SQL_UPDATE_SURVEY_RESPONSES_PRIVACY_STATE);
-		sqlBuilder.append(
-				StringUtils.generateStatementPList(surveyResponseIds.size()));
-
-		List<Object> parameters = 
-				new ArrayList<Object>(surveyResponseIds.size() + 1);
-		parameters.add(newPrivacyState.toString());
-		for(UUID surveyResponseId : surveyResponseIds) {
-			parameters.add(surveyResponseId.toString());
+		return handleSurveyResponsesAfter(
+				campaign,
+				username,
+				surveyResponseIds,
+				usernames, 
+				startDate,
+				endDate, 
+				privacyState,
+				surveyIds,
+				promptIds,
+				promptType,
+				promptResponseSearchTokens,
+				cursor,
+				surveyResponsesToProcess,
+				countTotal,
+				Collections.<SurveyResponseHandler>singletonList(
+					new SurveyResponseCollector(result)));
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.ISurveyResponseQueries#handleSurveyResponsesAfter(org.ohmage.domain.campaign.Campaign, java.lang.String, java.util.Set, java.util.Collection, org.joda.time.DateTime, org.joda.time.DateTime, org.ohmage.domain.campaign.SurveyResponse.PrivacyState, java.util.Collection, java.util.Collection, java.lang.String, java.util.Set, org.ohmage.domain.campaign.SurveyResponseCursor, long, boolean, java.util.List)
+	 */
+	@Override
+	public long handleSurveyResponsesAfter(
+			final Campaign campaign,
+			final String username,
+			final Set<UUID> surveyResponseIds,
+			final Collection<String> usernames, 
+			final DateTime startDate,
+			final DateTime endDate, 
+			final SurveyResponse.PrivacyState privacyState,
+			final Collection<String> surveyIds,
+			final Collection<String> promptIds,
+			final String promptType,
+			final Set<String> promptResponseSearchTokens,
+			final SurveyResponseCursor cursor,
+			final long surveyResponsesToProcess,
+			final boolean countTotal,
+			final List<SurveyResponseHandler> passes)
+			throws DataAccessException {
+		
+		if(
+			((surveyIds != null) && (surveyIds.size() == 0)) ||
+			((promptIds != null) && (promptIds.size() == 0))) {
+			
+			finishPasses(passes, 0);
+			return 0;
 		}
 		
-		// Create the transaction.
+		// Only join the prompt responses if they are being used to filter
+		// the survey responses.
+		String from = SQL_BASE_FROM;
+		if(
+			(promptIds != null) ||
+			(promptType != null) ||
+			(promptResponseSearchTokens != null)) {
+			
+			from += SQL_FROM_WITH_PROMPT_RESPONSE;
+		}
+		
+		List<Object> parameters = new LinkedList<Object>();
+		StringBuilder where = 
+			buildWhereAndParameters(
+				campaign,
+				username,
+				surveyResponseIds,
+				usernames, 
+				startDate,
+				endDate, 
+				privacyState,
+				surveyIds,
+				promptIds,
+				promptType,
+				promptResponseSearchTokens,
+				parameters);
+		
+		// The page begins after the cursor.
+		List<Object> pageParameters = new ArrayList<Object>(parameters);
+		StringBuilder pageWhere = new StringBuilder(where);
+		if(cursor != null) {
+			pageWhere.append(SQL_WHERE_AFTER_CURSOR);
+			pageParameters.add(cursor.getEpochMillis());
+			pageParameters.add(cursor.getEpochMillis());
+			pageParameters.add(cursor.getSurveyResponseId().toString());
+		}
+		
+		// The count, the end of the page, and every pass must see the same 
+		// survey responses, so they are all read from the same snapshot.
 		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
-		def.setName("Updating a survey response.");
+		def.setName("Reading a page of survey responses.");
+		def.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
 		
 		try {
 			// Begin the transaction.
@@ -723,18 +809,753 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 					new DataSourceTransactionManager(getDataSource());
 			TransactionStatus status = transactionManager.getTransaction(def);
 			
+			long totalCount = -1;
 			try {
-				getJdbcTemplate().update(
-						sqlBuilder.toString(), 
-						parameters.toArray());
-			}
-			catch(org.springframework.dao.DataAccessException e) {
-				transactionManager.rollback(status);
-				throw new DataAccessException(
-						"Error executing SQL '" + 
-								sqlBuilder.toString() + 
-							"' with parameters: " + 
-								parameters.toArray(), 
+				// Count all of the survey responses that match the criteria,
+				// if requested.
+				if(countTotal) {
+					String countSql = SQL_COUNT_SURVEY_RESPONSES + from + where;
+					try {
+						totalCount =
+							getJdbcTemplate().queryForLong(
+								countSql,
+								parameters.toArray());
+					}
+					catch(org.springframework.dao.DataAccessException e) {
+						throw new DataAccessException(
+							"Error executing SQL '" + 
+								countSql + 
+								"' with parameters: " + 
+								parameters, 
+							e);
+					}
+				}
+				
+				// Find the last survey response on this page, if the page is
+				// full, and end the page with it.
+				List<Object> readParameters = 
+					new ArrayList<Object>(pageParameters);
+				StringBuilder readWhere = new StringBuilder(pageWhere);
+				if(surveyResponsesToProcess < Long.MAX_VALUE) {
+					List<Object> lastParameters = 
+						new ArrayList<Object>(pageParameters);
+					lastParameters.add(surveyResponsesToProcess - 1);
+					
+					String lastSql = 
+						SQL_GET_SURVEY_RESPONSE_KEYS + 
+							from + 
+							pageWhere + 
+							SQL_ORDER_BY_CURSOR;
+					
+					List<SurveyResponseCursor> last;
+					try {
+						last = 
+							getJdbcTemplate().query(
+								lastSql,
+								lastParameters.toArray(),
+								new RowMapper<SurveyResponseCursor>() {
+									@Override
+									public SurveyResponseCursor mapRow(
+											final ResultSet rs,
+											final int rowNum)
+											throws SQLException {
+										
+										try {
+											return new SurveyResponseCursor(
+												rs.getLong("epoch_millis"),
+												UUID.fromString(
+													rs.getString("uuid")));
+										}
+										catch(IllegalArgumentException e) {
+											throw new SQLException(
+												"The survey response ID is not a UUID.",
+												e);
+										}
+										catch(DomainException e) {
+											throw new SQLException(
+												"The survey response ID is missing.",
+												e);
+										}
+									}
+								});
+					}
+					catch(org.springframework.dao.DataAccessException e) {
+						throw new DataAccessException(
+							"Error executing SQL '" + 
+								lastSql + 
+								"' with parameters: " + 
+								lastParameters, 
+							e);
+					}
+					
+					if(! last.isEmpty()) {
+						SurveyResponseCursor end = last.get(0);
+						
+						readWhere.append(SQL_WHERE_NOT_AFTER);
+						readParameters.add(end.getEpochMillis());
+						readParameters.add(end.getEpochMillis());
+						readParameters.add(end.getSurveyResponseId().toString());
+					}
+				}
+				
+				// Finally, read the survey responses and their prompt 
+				// responses for only this page.
+				String readSql = 
+					SQL_GET_SURVEY_RESPONSES_INDIVIDUAL + 
+						readWhere + 
+						SQL_ORDER_BY_DEFAULT;
+				for(SurveyResponseHandler pass : passes) {
+					handlePass(
+						readSql, 
+						readParameters,
+						new SurveyResponseExtractor(
+							campaign,
+							false,
+							0,
+							Long.MAX_VALUE,
+							totalCount,
+							pass));
+				}
+			}
+			catch(DataAccessException e) {
+				transactionManager.rollback(status);
+				throw e;
+			}
+			
+			// Commit the transaction.
+			try {
+				transactionManager.commit(status);
+			}
+			catch(TransactionException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException("Error while committing the transaction.", e);
+			}
+			
+			return totalCount;
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
+		}
+	}
+	
+	/**
+	 * Runs one pass of a query for survey responses, streaming its rows from
+	 * the database rather than reading them all into memory first.
+	 * 
+	 * @param sql The query.
+	 * 
+	 * @param parameters The query's parameters.
+	 * 
+	 * @param extractor The extractor that gives the survey responses to the
+	 * 					pass' handler.
+	 * 
+	 * @return The total number of survey responses.
+	 * 
+	 * @throws DataAccessException There was an error running the query or 
+	 * 							   handling its results.
+	 */
+	private long handlePass(
+			final String sql,
+			final List<Object> parameters,
+			final SurveyResponseExtractor extractor)
+			throws DataAccessException {
+		
+		try {
+			return getJdbcTemplate().query(
+				new PreparedStatementCreator() {
+					/*
+					 * (non-Javadoc)
+					 * @see org.springframework.jdbc.core.PreparedStatementCreator#createPreparedStatement(java.sql.Connection)
+					 */
+					@Override
+					public PreparedStatement createPreparedStatement(
+							final Connection connection)
+							throws SQLException {
+						
+						PreparedStatement ps = 
+							connection.prepareStatement(
+								sql,
+								ResultSet.TYPE_FORWARD_ONLY,
+								ResultSet.CONCUR_READ_ONLY);
+						
+						// This is how the MySQL driver is told to stream the
+						// rows instead of reading them all at once.
+						ps.setFetchSize(Integer.MIN_VALUE);
+						
+						int index = 1;
+						for(Object parameter : parameters) {
+							StatementCreatorUtils.setParameterValue(
+								ps, 
+								index++, 
+								SqlTypeValue.TYPE_UNKNOWN, 
+								parameter);
+						}
+						
+						return ps;
+					}
+				},
+				extractor);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					sql + 
+					"' with parameters: " + 
+					parameters, 
+				e);
+		}
+	}
+	
+	/**
+	 * Finishes every pass without giving them any survey responses.
+	 * 
+	 * @param passes The passes to finish.
+	 * 
+	 * @param totalCount The total number of survey responses.
+	 * 
+	 * @throws DataAccessException One of the passes could not be finished.
+	 */
+	private static void finishPasses(
+			final List<SurveyResponseHandler> passes,
+			final long totalCount)
+			throws DataAccessException {
+		
+		try {
+			for(SurveyResponseHandler pass : passes) {
+				pass.finish(totalCount);
+			}
+		}
+		catch(DomainException e) {
+			throw new DataAccessException(
+				"The survey responses could not be handled.",
+				e);
+		}
+		catch(IOException e) {
+			throw new DataAccessException(
+				"The survey responses could not be written.",
+				e);
+		}
+	}
+	
+	/**
+	 * Adds every survey response to a list.
+	 */
+	private static final class SurveyResponseCollector
+			implements SurveyResponseHandler {
+		
+		private final List<SurveyResponse> result;
+		
+		/**
+		 * Creates a handler that adds the survey responses to a list.
+		 * 
+		 * @param result The list to add the survey responses to.
+		 */
+		private SurveyResponseCollector(final List<SurveyResponse> result) {
+			this.result = result;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see org.ohmage.domain.campaign.SurveyResponseHandler#handle(org.ohmage.domain.campaign.SurveyResponse)
+		 */
+		@Override
+		public void handle(final SurveyResponse surveyResponse) {
+			result.add(surveyResponse);
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see org.ohmage.domain.campaign.SurveyResponseHandler#finish(long)
+		 */
+		@Override
+		public void finish(final long totalCount) {
+			// Nothing to do.
+		}
+	}
+	
+	/**
+	 * Builds the survey responses from the rows of a query, one survey 
+	 * response and all of its prompt responses at a time, and gives each one
+	 * to a handler as soon as it is complete. The rows must be ordered so 
+	 * that all of the rows for a survey response are together.
+	 * 
+	 * There must be some ordering on the results in order for subsequent 
+	 * results to skip / process the same rows. The agreed upon ordering is by
+	 * time taken time stamp. Therefore, if a user were viewing results as 
+	 * they were being generated and/or uploaded, it could be that subsequent
+	 * calls return the same result as a previous call. This is analogous to 
+	 * viewing a page of feed data and going to the next page and seeing some
+	 * feed items that you just saw on the previous page. It was decided that
+	 * this is a common and acceptable way to view live data.
+	 */
+	private static final class SurveyResponseExtractor
+			implements ResultSetExtractor<Long> {
+		
+		private final Campaign campaign;
+		private final boolean aggregated;
+		private final long surveyResponsesToSkip;
+		private final long surveyResponsesToProcess;
+		private final Long totalCount;
+		private final SurveyResponseHandler handler;
+		
+		// This is necessary to map tiny integers in SQL to Java's integer.
+		private final Map<String, Class<?>> typeMapping;
+		
+		/**
+		 * Creates an extractor for one pass.
+		 * 
+		 * @param campaign The campaign to which the survey responses belong.
+		 * 
+		 * @param aggregated Whether or not the rows were aggregated and, 
+		 * 					 therefore, have a count.
+		 * 
+		 * @param surveyResponsesToSkip The number of survey responses to 
+		 * 								skip.
+		 * 
+		 * @param surveyResponsesToProcess The number of survey responses to
+		 * 								   handle after skipping.
+		 * 
+		 * @param totalCount The total number of survey responses or null if
+		 * 					 they should be counted from the rows.
+		 * 
+		 * @param handler The handler for the survey responses.
+		 */
+		private SurveyResponseExtractor(
+				final Campaign campaign,
+				final boolean aggregated,
+				final long surveyResponsesToSkip,
+				final long surveyResponsesToProcess,
+				final Long totalCount,
+				final SurveyResponseHandler handler) {
+			
+			this.campaign = campaign;
+			this.aggregated = aggregated;
+			this.surveyResponsesToSkip = surveyResponsesToSkip;
+			this.surveyResponsesToProcess = surveyResponsesToProcess;
+			this.totalCount = totalCount;
+			this.handler = handler;
+			
+			typeMapping = new HashMap<String, Class<?>>();
+			typeMapping.put("tinyint", Integer.class);
+		}
+		
+		/**
+		 * First, it skips a set of rows based on the parameterized number of
+		 * survey responses to skip. Then, it aggregates the information from
+		 * the number of desired survey responses and hands each one off. 
+		 * Finally, unless the total was already known, it counts the 
+		 * remaining survey responses.
+		 */
+		@Override
+		public Long extractData(final ResultSet rs)
+				throws SQLException,
+				org.springframework.dao.DataAccessException {
+			
+			boolean hasRow = rs.next();
+			
+			// Keep track of the number of survey responses we have skipped.
+			long surveyResponsesSkipped = 0;
+			// Continue while there are more survey responses to skip.
+			while(hasRow && (surveyResponsesSkipped < surveyResponsesToSkip)) {
+				// Get the ID for the survey response we are skipping.
+				String surveyResponseId = rs.getString("uuid");
+				surveyResponsesSkipped++;
+				
+				// Continue to skip rows as long as there are rows to skip and
+				// those rows have the same survey response ID.
+				do {
+					hasRow = rs.next();
+				} while(hasRow && surveyResponseId.equals(rs.getString("uuid")));
+			}
+			
+			// Cycle through the rows until the maximum number of rows has 
+			// been processed or there are no more rows to process.
+			long surveyResponsesProcessed = 0;
+			while(hasRow && (surveyResponsesProcessed < surveyResponsesToProcess)) {
+				// First, create the survey response object.
+				SurveyResponse surveyResponse;
+				try {
+					JSONObject locationJson = null;
+					String locationString = rs.getString("location");
+					if(locationString != null) {
+						locationJson = new JSONObject(locationString);
+					}
+					
+					surveyResponse =
+						new SurveyResponse(
+								rs.getLong("id"),
+								campaign.getSurveys().get(rs.getString("survey_id")),
+								UUID.fromString(rs.getString("uuid")),
+								rs.getString("username"),
+								rs.getString("urn"),
+								rs.getString("client"),
+								rs.getLong("epoch_millis"),
+								DateTimeUtils.getDateTimeZoneFromString(rs.getString("phone_timezone")),
+								new JSONObject(rs.getString("launch_context")),
+								rs.getString("location_status"),
+								locationJson,
+								SurveyResponse.PrivacyState.getValue(rs.getString("privacy_state")));
+					
+					if(aggregated) {
+						surveyResponse.setCount(rs.getLong("count"));
+					}
+				}
+				catch(IllegalArgumentException e) {
+					throw new SQLException("The TimeZone is unknown.", e);
+				}
+				catch(JSONException e) {
+					throw new SQLException("Error creating a JSONObject.", e);
+				}
+				catch(DomainException e) {
+					throw new SQLException("Error creating the survey response information object.", e);
+				}
+				surveyResponsesProcessed++;
+				
+				// Get a string representation of the survey response's 
+				// unique identifier.
+				String surveyResponseId =
+						surveyResponse.getSurveyResponseId().toString();
+				
+				boolean processPrompts = true;
+				try {
+					String promptId = rs.getString("prompt_id");
+					// in case the survey contains no response
+					if (promptId == null) {
+					    processPrompts = false;
+					}
+				}
+				catch(SQLException e) {
+					processPrompts = false;
+				}
+				
+				if(processPrompts) {
+					// Now, process this prompt response and all subsequent
+					// prompt responses.
+					do {
+						try {
+							// Retrieve the corresponding prompt information 
+							// from the campaign.
+							Prompt prompt = 
+								campaign.getPrompt(
+										surveyResponse.getSurvey().getId(),
+										rs.getString("prompt_id")
+									);
+							
+							// Generate the prompt response and add it to the
+							// survey response. Only the rows that have not 
+							// yet been migrated may still be MIME-encoded.
+							String response = rs.getString("response");
+							if(rs.getBoolean("mime_encoded")) {
+								response = decodeLegacyValue(response);
+							}
+							surveyResponse.addPromptResponse(
+									prompt.createResponse(
+											(Integer) rs.getObject(
+													"repeatable_set_iteration", 
+													typeMapping),
+											response
+										)
+								);
+						}
+						catch(DomainException e) {
+							throw new SQLException(
+									"The prompt response value from the database is not a valid response value for this prompt.", 
+									e);
+						}
+						
+						// Get the next prompt response unless we just read 
+						// the last prompt response in the result,
+						hasRow = rs.next();
+					} while(
+							// and continue as long as that prompt response
+							// pertains to this survey response.
+							hasRow && 
+							surveyResponseId.equals(rs.getString("uuid")));
+				}
+				else {
+					hasRow = rs.next();
+				}
+				
+				// The survey response is complete, so hand it off.
+				try {
+					handler.handle(surveyResponse);
+				}
+				catch(DomainException e) {
+					throw new SQLException(
+						"The survey response could not be handled.",
+						e);
+				}
+				catch(IOException e) {
+					throw new SQLException(
+						"The survey response could not be written.",
+						e);
+				}
+			}
+			
+			// The total is the number skipped plus the number processed plus
+			// however many survey responses remain.
+			long result;
+			if(totalCount == null) {
+				result = surveyResponsesSkipped + surveyResponsesProcessed;
+				
+				if(hasRow) {
+					result++;
+					String id = rs.getString("uuid");
+					
+					while(rs.next()) {
+						if(! rs.getString("uuid").equals(id)) {
+							result++;
+							id = rs.getString("uuid");
+						}
+					}
+				}
+			}
+			else {
+				result = totalCount;
+			}
+			
+			try {
+				handler.finish(result);
+			}
+			catch(DomainException e) {
+				throw new SQLException(
+					"The survey responses could not be handled.",
+					e);
+			}
+			catch(IOException e) {
+				throw new SQLException(
+					"The survey responses could not be written.",
+					e);
+			}
+			
+			return result;
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.ISurveyResponseQueries#countSurveyResponsesByPrivacyState(org.ohmage.domain.campaign.Campaign, java.lang.String, org.joda.time.DateTime, org.joda.time.DateTime, boolean, boolean)
+	 */
+	@Override
+	public List<SurveyResponseCount> countSurveyResponsesByPrivacyState(
+			final Campaign campaign,
+			final String username,
+			final DateTime startDate,
+			final DateTime endDate,
+			final boolean groupByDate,
+			final boolean groupBySurvey)
+			throws DataAccessException {
+		
+		List<Object> parameters = new LinkedList<Object>();
+		StringBuilder sqlBuilder = 
+			buildWhereAndParameters(
+				campaign,
+				username,
+				null,
+				null, 
+				startDate,
+				endDate, 
+				null,
+				null,
+				null,
+				null,
+				null,
+				parameters);
+		sqlBuilder.insert(0, SQL_BASE_FROM);
+		
+		if(groupByDate) {
+			sqlBuilder.insert(0, SQL_COUNT_BY_WINDOW);
+			sqlBuilder.append(SQL_GROUP_BY_WINDOW);
+		}
+		else if(groupBySurvey) {
+			sqlBuilder.insert(0, SQL_COUNT_BY_PRIVACY_STATE_AND_SURVEY);
+			sqlBuilder.append(SQL_GROUP_BY_PRIVACY_STATE_AND_SURVEY);
+		}
+		else {
+			sqlBuilder.insert(0, SQL_COUNT_BY_PRIVACY_STATE);
+			sqlBuilder.append(SQL_GROUP_BY_PRIVACY_STATE);
+		}
+		
+		String sql = sqlBuilder.toString();
+		try {
+			return getJdbcTemplate().query(
+				sql,
+				parameters.toArray(),
+				new ResultSetExtractor<List<SurveyResponseCount>>() {
+					/**
+					 * Folds the rows into one count per privacy state, date,
+					 * and survey. Several windows may fall on the same date.
+					 */
+					@Override
+					public List<SurveyResponseCount> extractData(
+							final ResultSet rs)
+							throws SQLException {
+						
+						Map<String, SurveyResponseCount> counts =
+							new LinkedHashMap<String, SurveyResponseCount>();
+						
+						while(rs.next()) {
+							try {
+								PrivacyState privacyState =
+									PrivacyState.getValue(
+										rs.getString("privacy_state"));
+								
+								String date = null;
+								if(groupByDate) {
+									DateTime time =
+										new DateTime(
+											rs.getLong("epoch_millis"),
+											DateTimeUtils
+												.getDateTimeZoneFromString(
+													rs.getString(
+														"phone_timezone")));
+									
+									date = 
+										time.getYear() + 
+										"-" + 
+										time.getMonthOfYear() + 
+										"-" + 
+										time.getDayOfMonth();
+								}
+								
+								String surveyId = null;
+								if(groupBySurvey) {
+									surveyId = rs.getString("survey_id");
+								}
+								
+								String key = 
+									privacyState + 
+									"\0" + 
+									date + 
+									"\0" + 
+									surveyId;
+								SurveyResponseCount count = counts.get(key);
+								if(count == null) {
+									count = 
+										new SurveyResponseCount(
+											privacyState, 
+											date, 
+											surveyId);
+									counts.put(key, count);
+								}
+								count.add(rs.getLong("count"));
+							}
+							catch(IllegalArgumentException e) {
+								throw new SQLException(
+									"The privacy state or time zone is unknown.",
+									e);
+							}
+							catch(DomainException e) {
+								throw new SQLException(
+									"Error creating the count.", 
+									e);
+							}
+						}
+						
+						return 
+							new ArrayList<SurveyResponseCount>(
+								counts.values());
+					}
+				});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					sql + 
+					"' with parameters: " + 
+					parameters, 
+				e);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.ohmage.query.impl.ISurveyResponseQueries#updateSurveyResponsePrivacyState(java.lang.Long, org.ohmage.domain.campaign.SurveyResponse.PrivacyState)
+	 */
+	public void updateSurveyResponsesPrivacyState(
+			final Set<UUID> surveyResponseIds, 
+			final SurveyResponse.PrivacyState newPrivacyState)
+			throws DataAccessException {
+		
+		StringBuilder sqlBuilder = 
+				new StringBuilder(SQL_UPDATE_SURVEY_RESPONSES_PRIVACY_STATE);
+		sqlBuilder.append(
+				StringUtils.generateStatementPList(surveyResponseIds.size()));
+
+		List<Object> parameters = 
+				new ArrayList<Object>(surveyResponseIds.size() + 1);
+		parameters.add(newPrivacyState.toString());
+		for(UUID surveyResponseId : surveyResponseIds) {
+			parameters.add(surveyResponseId.toString());
+		}
+		
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Updating a survey response.");
+		
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager = 
+					new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+			
+			try {
+				getJdbcTemplate().update(
+						sqlBuilder.toString(), 
+						parameters.toArray());
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+						"Error executing SQL '" + 
+								sqlBuilder.toString() + 
+							"' with parameters: " + 
+								parameters.toArray(), 
+						e);
+			}
+			
+			// Commit the transaction.
+			try {
+				transactionManager.commit(status);
+			}
+			catch(TransactionException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException("Error while committing the transaction.", e);
+			}
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.ohmage.query.impl.ISurveyResponseQueries#deleteSurveyResponse(java.lang.Long)
+	 */
+	public void deleteSurveyResponse(
+			final UUID surveyResponseId) 
+			throws DataAccessException {
+		
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Deleting a survey response.");
+		
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager = 
+					new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+			
+			try {
+				getJdbcTemplate().update(
+						SQL_DELETE_SURVEY_RESPONSE, 
+						new Object[] { surveyResponseId.toString() });
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+						"Error executing SQL '" + 
+								SQL_DELETE_SURVEY_RESPONSE + 
+								"' with parameter: " + 
+								surveyResponseId.toString(), 
 						e);
 			}
 			
@@ -747,67 +1568,439 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 				throw new DataAccessException("Error while committing the transaction.", e);
 			}
 		}
-		catch(TransactionException e) {
-			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
+		catch(TransactionException e) {
+			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.ISurveyResponseQueries#decodeLegacyPromptResponses(long, int)
+	 */
+	@Override
+	public long decodeLegacyPromptResponses(
+			final long afterId,
+			final int batchSize)
+			throws DataAccessException {
+		
+		final List<Object[]> rows = new ArrayList<Object[]>(batchSize);
+		try {
+			getJdbcTemplate().query(
+				SQL_GET_LEGACY_PROMPT_RESPONSES, 
+				new Object[] { afterId, batchSize }, 
+				new RowMapper<Object>() {
+					/**
+					 * Decodes each prompt response's value.
+					 */
+					@Override
+					public Object mapRow(
+							final ResultSet rs, 
+							final int rowNum)
+							throws SQLException {
+						
+						rows.add(
+							new Object[] { 
+								decodeLegacyValue(rs.getString("response")), 
+								rs.getLong("id") 
+							});
+						
+						return null;
+					}
+				});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					SQL_GET_LEGACY_PROMPT_RESPONSES + 
+					"' with parameters: " + 
+					afterId + ", " + 
+					batchSize,
+				e);
+		}
+		
+		return updateLegacyRows(SQL_UPDATE_LEGACY_PROMPT_RESPONSE, rows);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.ISurveyResponseQueries#decodeLegacySurveyResponses(long, int)
+	 */
+	@Override
+	public long decodeLegacySurveyResponses(
+			final long afterId,
+			final int batchSize)
+			throws DataAccessException {
+		
+		final List<Object[]> rows = new ArrayList<Object[]>(batchSize);
+		try {
+			getJdbcTemplate().query(
+				SQL_GET_LEGACY_SURVEY_RESPONSES, 
+				new Object[] { afterId, batchSize }, 
+				new RowMapper<Object>() {
+					/**
+					 * Decodes the response values in each survey response's
+					 * JSON.
+					 */
+					@Override
+					public Object mapRow(
+							final ResultSet rs, 
+							final int rowNum)
+							throws SQLException {
+						
+						rows.add(
+							new Object[] { 
+								decodeLegacySurveyJson(rs.getString("survey")), 
+								rs.getLong("id") 
+							});
+						
+						return null;
+					}
+				});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					SQL_GET_LEGACY_SURVEY_RESPONSES + 
+					"' with parameters: " + 
+					afterId + ", " + 
+					batchSize,
+				e);
+		}
+		
+		return updateLegacyRows(SQL_UPDATE_LEGACY_SURVEY_RESPONSE, rows);
+	}
+	
+	/**
+	 * Stores a batch of decoded values and clears their marker.
+	 * 
+	 * @param sql The UPDATE SQL whose parameters are the decoded value and
+	 * 			  the row's database ID.
+	 * 
+	 * @param rows The parameters for each row, in ascending order by ID.
+	 * 
+	 * @return The largest database ID in the batch or -1 if it was empty.
+	 * 
+	 * @throws DataAccessException Thrown if there is an error.
+	 */
+	private long updateLegacyRows(
+			final String sql, 
+			final List<Object[]> rows)
+			throws DataAccessException {
+		
+		if(rows.isEmpty()) {
+			return -1;
+		}
+		
+		try {
+			getJdbcTemplate().batchUpdate(sql, rows);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + sql + "' for a batch of " + 
+					rows.size() + " rows.", 
+				e);
+		}
+		
+		return (Long) rows.get(rows.size() - 1)[1];
+	}
+	
+	/**
+	 * Decodes a value that may have been MIME-encoded when it was uploaded.
+	 * If it cannot be decoded, it is returned as-is.
+	 * 
+	 * @param value The stored value.
+	 * 
+	 * @return The decoded value.
+	 */
+	private static String decodeLegacyValue(final String value) {
+		if(value == null) {
+			return null;
+		}
+		
+		try {
+			return MimeUtility.decodeText(value);
+		}
+		catch(java.io.UnsupportedEncodingException e) {
+			LOGGER.warn("Could not decode a stored response value: " + value);
+			return value;
+		}
+	}
+	
+	/**
+	 * Decodes each response value in a survey response's stored JSON that may
+	 * have been MIME-encoded when it was uploaded. If the JSON cannot be
+	 * parsed, it is returned as-is.
+	 * 
+	 * @param survey The stored JSON.
+	 * 
+	 * @return The JSON with its response values decoded.
+	 */
+	private static String decodeLegacySurveyJson(final String survey) {
+		if(survey == null) {
+			return null;
+		}
+		
+		try {
+			JSONObject surveyJson = new JSONObject(survey);
+			JSONArray responses = surveyJson.optJSONArray("responses");
+			if(responses == null) {
+				return survey;
+			}
+			
+			for(int i = 0; i < responses.length(); i++) {
+				JSONObject response = responses.optJSONObject(i);
+				if(response == null) {
+					continue;
+				}
+				
+				Object value = response.opt("value");
+				if(value instanceof String) {
+					response.put("value", decodeLegacyValue((String) value));
+				}
+			}
+			
+			return surveyJson.toString();
+		}
+		catch(JSONException e) {
+			LOGGER.warn("Could not parse a stored survey response.", e);
+			return survey;
+		}
+	}
+	
+	/**
+	 * Builds the SQL for the survey response SELECT and generates a parameter
+	 * list that corresponds to that SQL. The parameter list is returned and
+	 * the SQL is set as the final parameter.
+	 * 
+	 * @param campaign The campaign to which the survey responses must belong.
+	 * 
+	 * @param username The username of the user that is making this request.
+	 * 				   This is used by the ACLs to limit who sees what.
+	 * 
+	 * @param usernames Limits the results to only those submitted by any one 
+	 * 					of the users in the list.
+	 * 
+	 * @param startDate Limits the results to only those survey responses that
+	 * 					occurred on or after this date.
+	 * 
+	 * @param endDate Limits the results to only those survey responses that
+	 * 				  occurred on or before this date.
+	 * 
+	 * @param privacyState Limits the results to only those survey responses
+	 * 					   with this privacy state.
+	 * 
+	 * @param surveyIds Limits the results to only those survey responses that 
+	 * 					were derived from a survey in this collection.
+	 * 
+	 * @param promptIds Limits the results to only those survey responses that 
+	 * 					were derived from a prompt in this collection.
+	 * 
+	 * @param promptType Limits the results to only those survey responses that
+	 * 					 are of the given prompt type.
+	 * 
+	 * @param columns Aggregates the data based on the column keys. If this is
+	 * 				  null, no aggregation is performed. If the list is empty,
+	 * 				  an empty list is returned.
+	 * 
+	 * @param parameters This is a list created by the caller to be populated
+	 * 					 with the parameters aggregated while generating this
+	 * 					 SQL.
+	 * 
+	 * @return The list of parameters that corresponds with the generated SQL.
+	 */
+	private String buildSqlAndParameters(
+		final Campaign campaign,
+		final String username,
+		final Set<UUID> surveyResponseIds,
+		final Collection<String> usernames, 
+		final DateTime startDate,
+		final DateTime endDate, 
+		final SurveyResponse.PrivacyState privacyState,
+		final Collection<String> surveyIds,
+		final Collection<String> promptIds,
+		final String promptType,
+		final Set<String> promptResponseSearchTokens,
+		final Collection<ColumnKey> columns,
+		final List<SortParameter> sortOrder,
+		final Collection<Object> parameters) 
+		throws DataAccessException {
+		
+		// Begin with the WHERE clause that limits the results to only those
+		// that match the criteria.
+		StringBuilder sqlBuilder =
+			buildWhereAndParameters(
+				campaign,
+				username,
+				surveyResponseIds,
+				usernames,
+				startDate,
+				endDate,
+				privacyState,
+				surveyIds,
+				promptIds,
+				promptType,
+				promptResponseSearchTokens,
+				parameters);
+		
+		// Now, collapse the columns if columns is non-null.
+		boolean onSurveyResponse = true;
+		if(columns != null) {
+			sqlBuilder.append(" GROUP BY ");
+			
+			boolean firstPass = true;
+			for(ColumnKey columnKey : columns) {
+				if(firstPass) {
+					firstPass = false;
+				}
+				else {
+					sqlBuilder.append(", ");
+				}
+				
+				switch(columnKey) {
+				case CONTEXT_CLIENT:
+					sqlBuilder.append("sr.client");
+					break;
+					
+				case CONTEXT_DATE:
+					sqlBuilder.append("DATE(CONVERT_TZ(FROM_UNIXTIME(epoch_millis / 1000), 'UTC', phone_timezone))");
+					break;
+					
+				case CONTEXT_TIMESTAMP:
+				case CONTEXT_UTC_TIMESTAMP:
+					sqlBuilder.append("(sr.epoch_millis / 1000)");
+					break;
+					
+				case CONTEXT_EPOCH_MILLIS:
+					sqlBuilder.append("sr.epoch_millis");
+					break;
+					
+				case CONTEXT_TIMEZONE:
+					sqlBuilder.append("sr.phone_timezone");
+					break;
+					
+				case CONTEXT_LAUNCH_CONTEXT_LONG:
+				case CONTEXT_LAUNCH_CONTEXT_SHORT:
+					sqlBuilder.append("sr.launch_context");
+					break;
+					
+				case CONTEXT_LOCATION_STATUS:
+					sqlBuilder.append("sr.location_status");
+					break;
+					
+				case USER_ID:
+					sqlBuilder.append("u.username");
+					break;
+					
+				case SURVEY_ID:
+					sqlBuilder.append("sr.survey_id");
+					break;
+					
+				case SURVEY_RESPONSE_ID:
+					sqlBuilder.append("sr.uuid");
+					break;
+					
+				case SURVEY_PRIVACY_STATE:
+					sqlBuilder.append("srps.privacy_state");
+					break;
+					
+				case REPEATABLE_SET_ID:
+					onSurveyResponse = false;
+					sqlBuilder.append("pr.repeatable_set_id");
+					break;
+					
+				case REPEATABLE_SET_ITERATION:
+					onSurveyResponse = false;
+					sqlBuilder.append("pr.repeatable_set_iteration");
+					break;
+					
+				case PROMPT_RESPONSE:
+					onSurveyResponse = false;
+					sqlBuilder.append("pr.response");
+					break;
+					
+				// This is inaccurate and will only work if the entire 
+				// JSONObject is the same. We cannot do this without JSONObject
+				// dissection in SQL.
+				case CONTEXT_LOCATION_LATITUDE:
+				case CONTEXT_LOCATION_LONGITUDE:
+				case CONTEXT_LOCATION_TIMESTAMP:
+				case CONTEXT_LOCATION_TIMEZONE:
+				case CONTEXT_LOCATION_ACCURACY:
+				case CONTEXT_LOCATION_PROVIDER:
+					sqlBuilder.append("sr.location");
+					break;
+					
+				// This cannot be done without XML manipulation in the SQL. 
+				// Instead, we shouldn't dump the XML in the database and 
+				// should explode it into its own series of columns and, if
+				// necessary, additional tables.
+				case SURVEY_TITLE:
+					
+				case SURVEY_DESCRIPTION:
+					
+				default:
+					int length = sqlBuilder.length();
+					sqlBuilder.delete(length - 2, length);
+				}
+			}
+		}
+		// Now, go back and insert the correct SELECT clause based on if we are
+		// grouping or not and, if so, if we are doing it at the survey level
+		// or the prompt level.
+		if(columns == null) { 
+			sqlBuilder.insert(0, SQL_GET_SURVEY_RESPONSES_INDIVIDUAL);
+		}
+		else if(onSurveyResponse) {
+			sqlBuilder.insert(0, SQL_GET_SURVEY_RESPONSES_AGGREGATED_SURVEY);
+		}
+		else {
+			sqlBuilder.insert(0, SQL_GET_SURVEY_RESPONSES_AGGREGATED_PROMPT);
 		}
-	}
-	
-	/* (non-Javadoc)
-	 * @see org.ohmage.query.impl.ISurveyResponseQueries#deleteSurveyResponse(java.lang.Long)
-	 */
-	public void deleteSurveyResponse(
-			final UUID surveyResponseId) 
-			throws DataAccessException {
-		
-		// Create the transaction.
-		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
-		def.setName("Deleting a survey response.");
 		
-		try {
-			// Begin the transaction.
-			PlatformTransactionManager transactionManager = 
-					new DataSourceTransactionManager(getDataSource());
-			TransactionStatus status = transactionManager.getTransaction(def);
-			
-			try {
-				getJdbcTemplate().update(
-						SQL_DELETE_SURVEY_RESPONSE, 
-						new Object[] { surveyResponseId.toString() });
-			}
-			catch(org.springframework.dao.DataAccessException e) {
-				transactionManager.rollback(status);
-				throw new DataAccessException(
-						"Error executing SQL '" + 
-								SQL_DELETE_SURVEY_RESPONSE + 
-								"' with parameter: " + 
-								surveyResponseId.toString(), 
-						e);
+		// Finally, add some ordering to facilitate consistent results in the
+		// paging system.
+		if(sortOrder == null) {
+			sqlBuilder.append(SQL_ORDER_BY_DEFAULT);
+		}
+		else {
+			sqlBuilder.append(" ORDER BY ");
+			boolean firstPass = true;
+			for(SortParameter sortParameter : sortOrder) {
+				if(firstPass) {
+					firstPass = false;
+				}
+				else {
+					sqlBuilder.append(", ");
+				}
+				
+				sqlBuilder.append(sortParameter.getSqlColumn());
 			}
-			
-			// Commit the transaction.
-			try {
-				transactionManager.commit(status);
+			// We must always include the UUID in the order to guarantee that 
+			// all survey responses are grouped together.
+			if(firstPass) {
+				sqlBuilder.append("uuid");
 			}
-			catch(TransactionException e) {
-				transactionManager.rollback(status);
-				throw new DataAccessException("Error while committing the transaction.", e);
+			else {
+				sqlBuilder.append(", uuid");
 			}
 		}
-		catch(TransactionException e) {
-			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
-		}
+		
+		return sqlBuilder.toString();
 	}
 	
 	/**
-	 * Builds the SQL for the survey response SELECT and generates a parameter
-	 * list that corresponds to that SQL. The parameter list is returned and
-	 * the SQL is set as the final parameter.
+	 * Builds the WHERE clause that limits the survey responses to only those
+	 * that match the criteria and that the user is allowed to see and
+	 * populates the parameter list that corresponds to that SQL.
 	 * 
 	 * @param campaign The campaign to which the survey responses must belong.
 	 * 
 	 * @param username The username of the user that is making this request.
 	 * 				   This is used by the ACLs to limit who sees what.
 	 * 
+	 * @param surveyResponseIds Limits the results to only those survey 
+	 * 							responses with one of these IDs.
+	 * 
 	 * @param usernames Limits the results to only those submitted by any one 
 	 * 					of the users in the list.
 	 * 
@@ -829,17 +2022,19 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 	 * @param promptType Limits the results to only those survey responses that
 	 * 					 are of the given prompt type.
 	 * 
-	 * @param columns Aggregates the data based on the column keys. If this is
-	 * 				  null, no aggregation is performed. If the list is empty,
-	 * 				  an empty list is returned.
+	 * @param promptResponseSearchTokens Limits the results to only those 
+	 * 									 whose prompt responses contain every
+	 * 									 one of these tokens.
 	 * 
 	 * @param parameters This is a list created by the caller to be populated
 	 * 					 with the parameters aggregated while generating this
 	 * 					 SQL.
 	 * 
-	 * @return The list of parameters that corresponds with the generated SQL.
+	 * @return The WHERE clause.
+	 * 
+	 * @throws DataAccessException There was an error reading the user's roles.
 	 */
-	private String buildSqlAndParameters(
+	private StringBuilder buildWhereAndParameters(
 		final Campaign campaign,
 		final String username,
 		final Set<UUID> surveyResponseIds,
@@ -851,13 +2046,9 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 		final Collection<String> promptIds,
 		final String promptType,
 		final Set<String> promptResponseSearchTokens,
-		final Collection<ColumnKey> columns,
-		final List<SortParameter> sortOrder,
 		final Collection<Object> parameters) 
 		throws DataAccessException {
 		
-		// Begin with the SQL string which gets all results or the one that
-		// aggregates results.
 		StringBuilder sqlBuilder = new StringBuilder(SQL_BASE_WHERE);
 		parameters.add(campaign.getId());
 		
@@ -985,150 +2176,7 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 			}
 		}
 		
-		// Now, collapse the columns if columns is non-null.
-		boolean onSurveyResponse = true;
-		if(columns != null) {
-			sqlBuilder.append(" GROUP BY ");
-			
-			boolean firstPass = true;
-			for(ColumnKey columnKey : columns) {
-				if(firstPass) {
-					firstPass = false;
-				}
-				else {
-					sqlBuilder.append(", ");
-				}
-				
-				switch(columnKey) {
-				case CONTEXT_CLIENT:
-					sqlBuilder.append("sr.client");
-					break;
-					
-				case CONTEXT_DATE:
-					sqlBuilder.append("DATE(CONVERT_TZ(FROM_UNIXTIME(epoch_millis / 1000), 'UTC', phone_timezone))");
-					break;
-					
-				case CONTEXT_TIMESTAMP:
-				case CONTEXT_UTC_TIMESTAMP:
-					sqlBuilder.append("(sr.epoch_millis / 1000)");
-					break;
-					
-				case CONTEXT_EPOCH_MILLIS:
-					sqlBuilder.append("sr.epoch_millis");
-					break;
-					
-				case CONTEXT_TIMEZONE:
-					sqlBuilder.append("sr.phone_timezone");
-					break;
-					
-				case CONTEXT_LAUNCH_CONTEXT_LONG:
-				case CONTEXT_LAUNCH_CONTEXT_SHORT:
-					sqlBuilder.append("sr.launch_context");
-					break;
-					
-				case CONTEXT_LOCATION_STATUS:
-					sqlBuilder.append("sr.location_status");
-					break;
-					
-				case USER_ID:
-					sqlBuilder.append("u.username");
-					break;
-					
-				case SURVEY_ID:
-					sqlBuilder.append("sr.survey_id");
-					break;
-					
-				case SURVEY_RESPONSE_ID:
-					sqlBuilder.append("sr.uuid");
-					break;
-					
-				case SURVEY_PRIVACY_STATE:
-					sqlBuilder.append("srps.privacy_state");
-					break;
-					
-				case REPEATABLE_SET_ID:
-					onSurveyResponse = false;
-					sqlBuilder.append("pr.repeatable_set_id");
-					break;
-					
-				case REPEATABLE_SET_ITERATION:
-					onSurveyResponse = false;
-					sqlBuilder.append("pr.repeatable_set_iteration");
-					break;
-					
-				case PROMPT_RESPONSE:
-					onSurveyResponse = false;
-					sqlBuilder.append("pr.response");
-					break;
-					
-				// This is inaccurate and will only work if the entire 
-				// JSONObject is the same. We cannot do this without JSONObject
-				// dissection in SQL.
-				case CONTEXT_LOCATION_LATITUDE:
-				case CONTEXT_LOCATION_LONGITUDE:
-				case CONTEXT_LOCATION_TIMESTAMP:
-				case CONTEXT_LOCATION_TIMEZONE:
-				case CONTEXT_LOCATION_ACCURACY:
-				case CONTEXT_LOCATION_PROVIDER:
-					sqlBuilder.append("sr.location");
-					break;
-					
-				// This cannot be done without XML manipulation in the SQL. 
-				// Instead, we shouldn't dump the XML in the database and 
-				// should explode it into its own series of columns and, if
-				// necessary, additional tables.
-				case SURVEY_TITLE:
-					
-				case SURVEY_DESCRIPTION:
-					
-				default:
-					int length = sqlBuilder.length();
-					sqlBuilder.delete(length - 2, length);
-				}
-			}
-		}
-		// Now, go back and insert the correct SELECT clause based on if we are
-		// grouping or not and, if so, if we are doing it at the survey level
-		// or the prompt level.
-		if(columns == null) { 
-			sqlBuilder.insert(0, SQL_GET_SURVEY_RESPONSES_INDIVIDUAL);
-		}
-		else if(onSurveyResponse) {
-			sqlBuilder.insert(0, SQL_GET_SURVEY_RESPONSES_AGGREGATED_SURVEY);
-		}
-		else {
-			sqlBuilder.insert(0, SQL_GET_SURVEY_RESPONSES_AGGREGATED_PROMPT);
-		}
-		
-		// Finally, add some ordering to facilitate consistent results in the
-		// paging system.
-		if(sortOrder == null) {
-			sqlBuilder.append(" ORDER BY epoch_millis DESC, uuid");
-		}
-		else {
-			sqlBuilder.append(" ORDER BY ");
-			boolean firstPass = true;
-			for(SortParameter sortParameter : sortOrder) {
-				if(firstPass) {
-					firstPass = false;
-				}
-				else {
-					sqlBuilder.append(", ");
-				}
-				
-				sqlBuilder.append(sortParameter.getSqlColumn());
-			}
-			// We must always include the UUID in the order to guarantee that 
-			// all survey responses are grouped together.
-			if(firstPass) {
-				sqlBuilder.append("uuid");
-			}
-			else {
-				sqlBuilder.append(", uuid");
-			}
-		}
-		
-		return sqlBuilder.toString();
+		return sqlBuilder;
 	}
 	
 }
@@ -19,11 +19,13 @@ import java.io.File;
 import java.net.URL;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -41,6 +43,7 @@ import org.json.JSONException;
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.cache.MediaDirectoryCache;
 import org.ohmage.cache.PreferenceCache;
+import org.ohmage.domain.ActivityCounts;
 import org.ohmage.domain.Audio;
 import org.ohmage.domain.IMedia;
 import org.ohmage.domain.Image;
@@ -65,19 +68,19 @@ import org.ohmage.exception.DomainException;
 import org.ohmage.exception.ServiceException;
 import org.ohmage.query.IMediaQueries;
 import org.ohmage.query.ISurveyUploadQuery;
+import org.ohmage.query.IUserStatsQueries;
 import org.ohmage.service.MediaServices;
 import org.ohmage.util.DateTimeUtils;
+import org.ohmage.util.StringUtils;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
 
-import javax.mail.internet.*;
 import org.json.*;
 
 /**
@@ -88,6 +91,7 @@ import org.json.*;
  */
 public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUploadQuery {
 	private IMediaQueries mediaQueries;
+	private IUserStatsQueries userStatsQueries;
 
 	public static final String IMAGE_STORE_FORMAT = "jpg";
 	public static final String IMAGE_SCALED_EXTENSION = "-s";
@@ -95,27 +99,56 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 	private static final Logger LOGGER = 
 		Logger.getLogger(SurveyUploadQuery.class);
 	
-	private static final String SQL_INSERT_SURVEY_RESPONSE =
-		"INSERT into survey_response " +
-		"SET uuid = ?, " +
-		"user_id = (SELECT id from user where username = ?), " +
-		"campaign_id = (SELECT id from campaign where urn = ?), " +
-		"epoch_millis = ?, " +
-		"phone_timezone = ?, " +
-		"location_status = ?, " +
-		"location = ?, " +
-		"survey_id = ?, " +
-		"survey = ?, " +
-		"client = ?, " +
-		"upload_timestamp = ?, " +
-		"launch_context = ?, " +
-		"privacy_state_id = (SELECT id FROM survey_response_privacy_state WHERE privacy_state = ?)";
-		
+	// Retrieves a user's database ID.
+	private static final String SQL_GET_USER_ID =
+		"SELECT id FROM user WHERE username = ?";
+	
+	// Retrieves a campaign's database ID.
+	private static final String SQL_GET_CAMPAIGN_ID =
+		"SELECT id FROM campaign WHERE urn = ?";
+	
+	// Retrieves the database IDs of the survey responses with the given 
+	// UUIDs. The parameter list is appended.
+	private static final String SQL_GET_SURVEY_RESPONSE_IDS =
+		"SELECT id, uuid FROM survey_response WHERE uuid IN ";
+	
+	// Appended to a read so that it sees the latest committed rows instead of
+	// the transaction's snapshot.
+	private static final String SQL_LOCK_IN_SHARE_MODE =
+		" LOCK IN SHARE MODE";
+	
+	// Inserts survey responses. One row is appended for each response.
+	private static final String SQL_INSERT_SURVEY_RESPONSES =
+		"INSERT INTO survey_response " +
+		"(uuid, user_id, campaign_id, epoch_millis, phone_timezone, " +
+		"location_status, location, survey_id, survey, client, " +
+		"upload_timestamp, launch_context, privacy_state_id) " +
+		"VALUES ";
+	private static final String SQL_INSERT_SURVEY_RESPONSES_ROW =
+		"(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, " +
+		"(SELECT id FROM survey_response_privacy_state WHERE privacy_state = ?))";
+	private static final int COLUMNS_PER_SURVEY_RESPONSE = 13;
+	
 	private static final String SQL_INSERT_PROMPT_RESPONSE =
 		"INSERT into prompt_response " +
         "(survey_response_id, repeatable_set_id, repeatable_set_iteration," +
         "prompt_type, prompt_id, response) " +
         "VALUES (?,?,?,?,?,?)";
+	private static final int[] PROMPT_RESPONSE_TYPES = {
+		Types.BIGINT,
+		Types.VARCHAR,
+		Types.INTEGER,
+		Types.VARCHAR,
+		Types.VARCHAR,
+		Types.VARCHAR };
+	
+	// The most survey responses that are given to a single insert. Each row
+	// carries the survey's JSON, so this keeps each statement well within
+	// the maximum packet size.
+	private static final int MAX_SURVEYS_PER_INSERT = 100;
+	
+	// The most survey response UUIDs that are given to a single query.
+	private static final int MAX_IDS_PER_QUERY = 1000;
 		
 	// Inserts an images/media information into the url_based_resource table.
 	private static final String SQL_INSERT_MEDIA = 
@@ -138,13 +171,18 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 	 * @param dataSource The DataSource to use when querying the database.
 	 */
 	private SurveyUploadQuery(DataSource dataSource, 
-				IMediaQueries iMediaQueries) {
+				IMediaQueries iMediaQueries,
+				IUserStatsQueries iUserStatsQueries) {
 	    
 		super(dataSource);
 		if(iMediaQueries == null) {
 			throw new IllegalArgumentException("An instance of IImageQueries is a required argument.");
 		}
+		if(iUserStatsQueries == null) {
+			throw new IllegalArgumentException("An instance of IUserStatsQueries is a required argument.");
+		}
 		this.mediaQueries = iMediaQueries;
+		this.userStatsQueries = iUserStatsQueries;
 	}
 	
 	/*
@@ -163,8 +201,10 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 			final Map<UUID, IMedia> documentContentsMap)
 			throws DataAccessException {
 		
+		long start = System.currentTimeMillis();
 		List<Integer> duplicateIndexList = new ArrayList<Integer>();
 		int numberOfSurveys = surveyUploadList.size();
+		int numberOfPromptResponses = 0;
 		
 		// The following variables are used in logging messages when errors occur
 		SurveyResponse currentSurveyResponse = null;
@@ -179,156 +219,185 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(getDataSource());
 		TransactionStatus status = transactionManager.getTransaction(def); // begin transaction
 		
-		// Use a savepoint to handle nested rollbacks if duplicates are found
-		// Object savepoint = status.createSavepoint();
-		
 		try { // handle TransactionExceptions
-			
-		    for(int surveyIndex = 0; surveyIndex < numberOfSurveys; surveyIndex++) { 
-				
 			try { // handle DataAccessExceptions
+				// Resolve the user and the campaign once for the whole 
+				// upload.
+				currentSql = SQL_GET_USER_ID;
+				long userId = 
+					getJdbcTemplate().queryForObject(
+						SQL_GET_USER_ID, 
+						new Object[] { username }, 
+						Long.class);
+				currentSql = SQL_GET_CAMPAIGN_ID;
+				long campaignId = 
+					getJdbcTemplate().queryForObject(
+						SQL_GET_CAMPAIGN_ID, 
+						new Object[] { campaignUrn }, 
+						Long.class);
+				
+				// Responses that are already stored, or that were given more
+				// than once, are duplicates. They are found up front instead
+				// of by each insert failing on the unique survey response 
+				// ID.
+				currentSql = SQL_GET_SURVEY_RESPONSE_IDS;
+				List<String> uuids = new ArrayList<String>(numberOfSurveys);
+				for(SurveyResponse surveyResponse : surveyUploadList) {
+					uuids.add(surveyResponse.getSurveyResponseId().toString());
+				}
+				Set<String> seenUuids = 
+					new HashSet<String>(getSurveyResponseIds(uuids, false).keySet());
+				
+				List<Integer> newIndices = new ArrayList<Integer>(numberOfSurveys);
+				for(int surveyIndex = 0; surveyIndex < numberOfSurveys; surveyIndex++) {
+					if(seenUuids.add(uuids.get(surveyIndex))) {
+						newIndices.add(surveyIndex);
+					}
+					else {
+						LOGGER.debug("Found a duplicate survey upload message for user " + username);
+						duplicateIndexList.add(surveyIndex);  // assume successful upload
+					}
+				}
+				
+				// Insert the new responses, several to a statement.
+				currentSql = SQL_INSERT_SURVEY_RESPONSES;
+				Timestamp uploadTimestamp = new Timestamp(System.currentTimeMillis());
+				List<Integer> insertedIndices = new ArrayList<Integer>(newIndices.size());
+				for(int from = 0; from < newIndices.size(); from += MAX_SURVEYS_PER_INSERT) {
+					List<Integer> batch = 
+						newIndices.subList(
+							from, 
+							Math.min(from + MAX_SURVEYS_PER_INSERT, newIndices.size()));
 					
-			    final SurveyResponse surveyUpload = surveyUploadList.get(surveyIndex);
-			    currentSurveyResponse = surveyUpload; 
-			    currentSql = SQL_INSERT_SURVEY_RESPONSE;
-			
-			    KeyHolder idKeyHolder = new GeneratedKeyHolder();
-					
-			    // HT: Don't need this. If one fails, all fail. Rollback completely. 
-			    // savepoint = status.createSavepoint();  
-					
-			    // First, insert the survey
-			    getJdbcTemplate().update(
-				    new PreparedStatementCreator() {
-					public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
-					    PreparedStatement ps = 
-						    connection.prepareStatement(SQL_INSERT_SURVEY_RESPONSE, Statement.RETURN_GENERATED_KEYS);
-					    
-					    String locationString = null;
-					    Location location = surveyUpload.getLocation();
-					    if(location != null) {
-						try {
-						    locationString = 
-							    location.toJson(false, LocationColumnKey.ALL_COLUMNS).toString();
+					try {
+						insertSurveyResponses(
+							userId, 
+							campaignId, 
+							client, 
+							uploadTimestamp, 
+							surveyUploadList, 
+							batch);
+						insertedIndices.addAll(batch);
+					}
+					catch(DataIntegrityViolationException dive) {
+						if(! isDuplicate(dive)) {
+							throw dive;
 						}
-						catch(JSONException|DomainException e) {
-						    throw new SQLException(e);
+						
+						// Another upload stored some of these responses after
+						// they were checked. Those are duplicates, and the
+						// rest are inserted again.
+						List<String> batchUuids = new ArrayList<String>(batch.size());
+						for(Integer surveyIndex : batch) {
+							batchUuids.add(uuids.get(surveyIndex));
 						}
-					    }
-								
-					    ps.setString(1, surveyUpload.getSurveyResponseId().toString());
-					    ps.setString(2, username);
-					    ps.setString(3, campaignUrn);
-					    ps.setLong(4, surveyUpload.getTime());
-					    ps.setString(5, surveyUpload.getTimezone().getID());
-					    ps.setString(6, surveyUpload.getLocationStatus().toString());
-					    ps.setString(7, locationString);
-					    ps.setString(8, surveyUpload.getSurvey().getId());
-					    try {
-							//ps.setString(9, surveyUpload.toJson(false, false, false, false, true, true, true, true, true, false, false, true, true, true, true, false, false).toString());
-							try{
-							JSONObject obj, obj0=new JSONObject(surveyUpload.toJson(false, false, false, false, true, true, true, true, true, false, false, true, true, true, true, false, false).toString());
-							JSONArray ary = obj0.getJSONArray("responses");
-							for (int cc = 0; cc < ary.length(); cc++) {
-								obj = (JSONObject)(obj0.getJSONArray("responses").get(cc));
-								obj.put("value", MimeUtility.encodeText(obj.getString("value")));
-							}
-							ps.setString(9, obj0.toString());
+						Set<String> storedUuids = getSurveyResponseIds(batchUuids, true).keySet();
+						
+						List<Integer> remaining = new ArrayList<Integer>(batch.size());
+						for(Integer surveyIndex : batch) {
+							if(storedUuids.contains(uuids.get(surveyIndex))) {
+								LOGGER.debug("Found a duplicate survey upload message for user " + username);
+								duplicateIndexList.add(surveyIndex);
 							}
-							catch(Exception e) {
-							ps.setString(9, surveyUpload.toJson(false, false, false, false, true, true, true, true, true, false, false, true, true, true, true, false, false).toString());   
+							else {
+								remaining.add(surveyIndex);
 							}
-					    }
-					    catch(JSONException|DomainException e) {
-						throw new SQLException("Couldn't create the JSON.", e);
-					    }
-					    ps.setString(10, client);
-					    ps.setTimestamp(11, new Timestamp(System.currentTimeMillis()));
-					    try {
-						ps.setString(12, surveyUpload.getLaunchContext().toJson(true).toString());
-					    }
-					    catch(JSONException e) {
-						throw new SQLException("Couldn't create the JSON.", e);
-					    }
-					    
-					    ps.setString(13, surveyUpload.getPrivacyState().toString()); // use what's in the payload
-					    /*
-					    try {
-						ps.setString(13, PreferenceCache.instance().lookup(PreferenceCache.KEY_DEFAULT_SURVEY_RESPONSE_SHARING_STATE));
-					    } catch (CacheMissException e) {
-						throw new SQLException("Error reading from the cache.",	e);
-					    }
-					    */
-					    return ps;
+						}
+						
+						if(! remaining.isEmpty()) {
+							insertSurveyResponses(
+								userId, 
+								campaignId, 
+								client, 
+								uploadTimestamp, 
+								surveyUploadList, 
+								remaining);
+							insertedIndices.addAll(remaining);
+						}
 					}
-				    },
-				    idKeyHolder
-				    );
+				}
+				Collections.sort(duplicateIndexList);
+				
+				// Now gather every prompt response from the new surveys, 
+				// storing any media as they are found, and insert them all
+				// in one batch.
+				List<String> insertedUuids = new ArrayList<String>(insertedIndices.size());
+				for(Integer surveyIndex : insertedIndices) {
+					insertedUuids.add(uuids.get(surveyIndex));
+				}
+				currentSql = SQL_GET_SURVEY_RESPONSE_IDS;
+				Map<String, Long> surveyResponseIds = getSurveyResponseIds(insertedUuids, false);
+				
+				// The new prompt responses are added to the user's statistics
+				// in the same transaction, so that a rebuild of the statistics
+				// either counts all of them or none of them.
+				ActivityCounts counts = new ActivityCounts();
+				long uploadHour = ActivityCounts.getHour(uploadTimestamp.getTime());
+				
+				currentSql = SQL_INSERT_PROMPT_RESPONSE;
+				List<Object[]> promptResponseRows = new ArrayList<Object[]>();
+				for(Integer surveyIndex : insertedIndices) {
+					SurveyResponse surveyUpload = surveyUploadList.get(surveyIndex);
+					currentSurveyResponse = surveyUpload;
+					long surveyResponseId = surveyResponseIds.get(uuids.get(surveyIndex));
+					int firstRow = promptResponseRows.size();
 					
+					for(Response uploadPromptResponse : surveyUpload.getResponses().values()) {
+						currentPromptResponse = uploadPromptResponse;
+						addPromptResponse(
+							username,
+							client,
+							surveyResponseId,
+							fileList,
+							uploadPromptResponse,
+							null,
+							bufferedImageMap,
+							videoContentsMap,
+							audioContentsMap,
+							documentContentsMap,
+							promptResponseRows);
+					}
 					
-			    final Number surveyResponseId = idKeyHolder.getKey(); // the primary key on the survey_response table for the 
-			    // just-inserted survey
-			    currentSql = SQL_INSERT_PROMPT_RESPONSE;
-			    
-			    // Now insert each prompt response from the survey
-			    Collection<Response> promptUploadList = surveyUpload.getResponses().values();
-
-			    for(Response uploadPromptResponse : promptUploadList) {
-				currentPromptResponse = uploadPromptResponse;
-				createPromptResponse(
-					username,
-					client,
-					surveyResponseId,
-					fileList,
-					uploadPromptResponse,
-					null,
-					bufferedImageMap,
-					videoContentsMap,
-					audioContentsMap,
-					documentContentsMap,
-					transactionManager,
-				    	status);
-			    }
-			    
-			} catch (DataIntegrityViolationException dive) { // a unique index exists only on the survey_response table
-			    if(isDuplicate(dive)) {
-				LOGGER.debug("Found a duplicate survey upload message for user " + username);				
-				duplicateIndexList.add(surveyIndex);  // assume successful upload
-				// status.rollbackToSavepoint(savepoint);
-			    } 
-			    else {
-				// Some other integrity violation occurred - bad!! All 
-				// of the data to be inserted must be validated before 
-				// this query runs so there is either missing validation 
-				// or somehow an auto_incremented key has been duplicated.
+					long numberOfRows = promptResponseRows.size() - firstRow;
+					counts.addLastTaken(surveyUpload.getTime());
+					counts.addHour(
+						uploadHour,
+						numberOfRows,
+						(surveyUpload.getLocation() == null) ? 0 : numberOfRows);
+				}
+				currentPromptResponse = null;
 				
-				LOGGER.error("Caught DataAccessException", dive);
+				if(! promptResponseRows.isEmpty()) {
+					getJdbcTemplate().batchUpdate(
+						SQL_INSERT_PROMPT_RESPONSE, 
+						promptResponseRows, 
+						PROMPT_RESPONSE_TYPES);
+				}
+				numberOfPromptResponses = promptResponseRows.size();
+				
+				if(! counts.isEmpty()) {
+					userStatsQueries.addSurveyActivity(username, campaignUrn, counts);
+				}
+				
+				// Finally, commit the transaction
+				transactionManager.commit(status);
+				LOGGER.info("Completed survey message persistence");
+			}
+			catch(org.springframework.dao.DataAccessException|
+				DataAccessException dae) { 
+				// Some database problem happened that prevented the SQL
+				// from completing normally. All of the data to be inserted
+				// must be validated before this query runs, so either there
+				// is missing validation or something is wrong with the 
+				// prompt responses or media, e.g. a duplicate media UUID.
+				LOGGER.error("caught DataAccessException", dae);
 				logErrorDetails(currentSurveyResponse, currentPromptResponse, currentSql, username, campaignUrn);
 				for(File f : fileList) {
-				    f.delete();
+					f.delete();
 				}
 				rollback(transactionManager, status);
-				throw new DataAccessException(dive);
-			    }
-			} catch (org.springframework.dao.DataAccessException|
-				DataAccessException dae) { 
-			    // Some other database problem happened that prevented
-			    // the SQL from completing normally. 
-			    // Or something is wrong with createPromptResponse e.g. duplicate UUID	
-			    LOGGER.error("caught DataAccessException", dae);
-			    logErrorDetails(currentSurveyResponse, currentPromptResponse, currentSql, username, campaignUrn);
-			    for(File f : fileList) {
-				f.delete();
-			    }
-			    rollback(transactionManager, status);
-			    throw new DataAccessException(dae);
+				throw new DataAccessException(dae);
 			}
-				
-		    } // for surveyIndex
-			
-		    // Finally, commit the transaction
-		    transactionManager.commit(status);
-		    LOGGER.info("Completed survey message persistence");
 		} 		
 		catch (TransactionException te) { 	
 		    LOGGER.error("failed to commit survey upload transaction, attempting to rollback", te);
@@ -340,10 +409,169 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 		    throw new DataAccessException(te);
 		}
 		
+		int numberOfRows = numberOfSurveys - duplicateIndexList.size() + numberOfPromptResponses;
+		long elapsed = System.currentTimeMillis() - start;
+		LOGGER.info(
+			"Inserted " + 
+				(numberOfSurveys - duplicateIndexList.size()) + 
+				" survey response(s) with " + 
+				numberOfPromptResponses + 
+				" prompt response(s), skipping " + 
+				duplicateIndexList.size() + 
+				" duplicate(s), in " + 
+				elapsed + 
+				" ms (" +
+				((elapsed == 0) ? 
+					"-" : 
+					Long.toString((numberOfRows * 1000L) / elapsed)) +
+				" rows/second).");
+		
 		LOGGER.info("Finished inserting survey responses and any associated images into the database and the filesystem.");
 		return duplicateIndexList;
 	}
 	
+	/**
+	 * Inserts survey responses with one statement.
+	 * 
+	 * @param userId The database ID of the user that owns the responses.
+	 * 
+	 * @param campaignId The database ID of the campaign.
+	 * 
+	 * @param client The software client that performed the upload.
+	 * 
+	 * @param uploadTimestamp The time of the upload.
+	 * 
+	 * @param surveyUploadList All of the uploaded survey responses.
+	 * 
+	 * @param indices The indices of the survey responses to insert.
+	 * 
+	 * @throws DataAccessException The JSON for a survey response could not be
+	 * 							   created.
+	 * 
+	 * @throws org.springframework.dao.DataAccessException The insert failed,
+	 * 		   e.g. because a response already exists.
+	 */
+	private void insertSurveyResponses(
+			final long userId,
+			final long campaignId,
+			final String client,
+			final Timestamp uploadTimestamp,
+			final List<SurveyResponse> surveyUploadList,
+			final List<Integer> indices)
+			throws DataAccessException {
+		
+		StringBuilder sql = new StringBuilder(SQL_INSERT_SURVEY_RESPONSES);
+		List<Object> args = new ArrayList<Object>(indices.size() * COLUMNS_PER_SURVEY_RESPONSE);
+		boolean firstRow = true;
+		for(Integer surveyIndex : indices) {
+			SurveyResponse surveyUpload = surveyUploadList.get(surveyIndex);
+			
+			if(firstRow) {
+				firstRow = false;
+			}
+			else {
+				sql.append(", ");
+			}
+			sql.append(SQL_INSERT_SURVEY_RESPONSES_ROW);
+			
+			String locationString = null;
+			Location location = surveyUpload.getLocation();
+			if(location != null) {
+				try {
+					locationString = 
+						location.toJson(false, LocationColumnKey.ALL_COLUMNS).toString();
+				}
+				catch(JSONException|DomainException e) {
+					throw new DataAccessException("Couldn't create the location JSON.", e);
+				}
+			}
+			
+			String launchContext;
+			try {
+				launchContext = surveyUpload.getLaunchContext().toJson(true).toString();
+			}
+			catch(JSONException e) {
+				throw new DataAccessException("Couldn't create the JSON.", e);
+			}
+			
+			args.add(surveyUpload.getSurveyResponseId().toString());
+			args.add(userId);
+			args.add(campaignId);
+			args.add(surveyUpload.getTime());
+			args.add(surveyUpload.getTimezone().getID());
+			args.add(surveyUpload.getLocationStatus().toString());
+			args.add(locationString);
+			args.add(surveyUpload.getSurvey().getId());
+			args.add(getSurveyJson(surveyUpload));
+			args.add(client);
+			args.add(uploadTimestamp);
+			args.add(launchContext);
+			args.add(surveyUpload.getPrivacyState().toString()); // use what's in the payload
+		}
+		
+		getJdbcTemplate().update(sql.toString(), args.toArray());
+	}
+	
+	/**
+	 * Returns the database IDs of the survey responses that exist among some
+	 * survey response IDs.
+	 * 
+	 * @param uuids The survey response IDs.
+	 * 
+	 * @param current Whether to read the latest committed survey responses,
+	 * 				  including those stored by other uploads since this 
+	 * 				  transaction began, instead of the transaction's 
+	 * 				  snapshot.
+	 * 
+	 * @return A map of each existing survey response ID to its database ID.
+	 */
+	private Map<String, Long> getSurveyResponseIds(
+			final List<String> uuids,
+			final boolean current) {
+		
+		final Map<String, Long> result = new HashMap<String, Long>();
+		
+		for(int from = 0; from < uuids.size(); from += MAX_IDS_PER_QUERY) {
+			List<String> chunk = 
+				uuids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, uuids.size()));
+			
+			getJdbcTemplate().query(
+				SQL_GET_SURVEY_RESPONSE_IDS + 
+					StringUtils.generateStatementPList(chunk.size()) +
+					(current ? SQL_LOCK_IN_SHARE_MODE : ""),
+				chunk.toArray(),
+				new RowCallbackHandler() {
+					@Override
+					public void processRow(ResultSet rs) throws SQLException {
+						result.put(rs.getString("uuid"), rs.getLong("id"));
+					}
+				});
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Creates the JSON that is stored with a survey response.
+	 * 
+	 * @param surveyUpload The survey response.
+	 * 
+	 * @return The JSON as a string.
+	 * 
+	 * @throws DataAccessException The JSON could not be created.
+	 */
+	private static String getSurveyJson(
+			final SurveyResponse surveyUpload) 
+			throws DataAccessException {
+		
+		try {
+			return surveyUpload.toJson(false, false, false, false, true, true, true, true, true, false, false, true, true, true, true, false, false).toString();
+		}
+		catch(JSONException|DomainException e) {
+			throw new DataAccessException("Couldn't create the JSON.", e);
+		}
+	}
+	
 	/**
 	 * Attempts to rollback a transaction. 
 	 */
@@ -375,15 +603,17 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 		error.append(sql);
 		error.append("\n The survey response at hand was ");
 		error.append(surveyResponse);
-		error.append("\n The prompt response at hand was ");
-		error.append(promptResponse.getId());
+		if(promptResponse != null) {
+			error.append("\n The prompt response at hand was ");
+			error.append(promptResponse.getId());
+		}
 		
 		LOGGER.error(error.toString());
 	}
 	
 	/**
-	 * Creates the prompt response entry in the corresponding table and saves
-	 * any attached files, images, videos, etc..
+	 * Gathers the prompt response rows for a response, which may be a 
+	 * repeatable set, and saves any attached files, images, videos, etc..
 	 * 
 	 * @param username
 	 *        The username of the user saving this prompt response.
@@ -392,14 +622,14 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 	 *        The name of the device used to generate the response.
 	 * 
 	 * @param surveyResponseId
-	 *        The unique identifier for this survey response.
+	 *        The database ID of the survey response.
 	 * 
 	 * @param fileList
 	 *        The list of files saved to the disk, which should be a reference
 	 *        to a list that will be populated by this function.
 	 * 
-	 * @param promptUploadList
-	 *        The collection of prompt responses to store.
+	 * @param uploadPromptResponse
+	 *        The response to store.
 	 * 
 	 * @param repeatableSetIteration
 	 *        If these prompt responses were part of a repeatable set, this is
@@ -411,18 +641,16 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 	 * @param videoContentsMap
 	 *        The map of video IDs to their contents.
 	 * 
-	 * @param transactionManager
-	 *        The manager for this transaction.
-	 * 
-	 * @param status
-	 *        The status of this transaction.
+	 * @param promptResponseRows
+	 *        The parameters for each prompt_response row, which this function
+	 *        adds to.
 	 * 
 	 * @throws DataAccessException
 	 *         There was an error saving the information.
 	 */
-	private void createPromptResponse(
+	private void addPromptResponse(
 		final String username, final String client,
-		final Number surveyResponseId,
+		final long surveyResponseId,
 		final List<File> fileList,
 		final Response uploadPromptResponse, 
 		final Integer repeatableSetIteration,
@@ -430,8 +658,7 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 		final Map<UUID, Video> videoContentsMap, 
 		final Map<UUID, Audio> audioContentsMap, 
 		final Map<UUID, IMedia> documentContentsMap,
-		final DataSourceTransactionManager transactionManager,
-		final TransactionStatus status) 
+		final List<Object[]> promptResponseRows) 
 			throws DataAccessException {
 		
 	    if(uploadPromptResponse instanceof RepeatableSetResponse) {
@@ -440,7 +667,7 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 				
 		for(Integer iteration : iterationToResponse.keySet()) {
 		    for (Response response : iterationToResponse.get(iteration).values()) {
-			createPromptResponse(
+			addPromptResponse(
 			    username,
 			    client,
 			    surveyResponseId,
@@ -451,60 +678,52 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 			    videoContentsMap,
 			    audioContentsMap,
 			    documentContentsMap,
-			    transactionManager,
-			    status);
+			    promptResponseRows);
 		    }
 		}	
 		return;
 	    }
 	    
 	    final PromptResponse promptResponse = (PromptResponse) uploadPromptResponse;
-			
-	    getJdbcTemplate().update(
-		    new PreparedStatementCreator() {
-			public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
-			    PreparedStatement ps = connection.prepareStatement(SQL_INSERT_PROMPT_RESPONSE);
-			    ps.setLong(1, surveyResponseId.longValue());
-						
-			    RepeatableSet parent = promptResponse.getPrompt().getParent();
-			    if(parent == null) {
-				ps.setNull(2, java.sql.Types.NULL);
-				ps.setNull(3, java.sql.Types.NULL);
-			    }
-			    else {
-				ps.setString(2, parent.getId());
-				ps.setInt(3, repeatableSetIteration);
-			    }
-			    ps.setString(4, promptResponse.getPrompt().getType().toString());
-			    ps.setString(5, promptResponse.getPrompt().getId());
-			    
-			    Object response = promptResponse.getResponse();
-			    if(response instanceof DateTime) {
-				ps.setString(
-					6,
-					DateTimeUtils
-					.getW3cIso8601DateString(
-						(DateTime) response,
-						true));
-			    }
-			    else if((promptResponse instanceof MultiChoiceCustomPromptResponse) && (response instanceof Collection)) {
-				JSONArray json = new JSONArray();
-				
-				for(Object currResponse : (Collection<?>) response) {
-				    json.put(currResponse);
-				}
-				
-				ps.setString(6, json.toString());
-			    }
-			    else {
-				//ps.setString(6, response.toString());
-				try{ps.setString(6, MimeUtility.encodeText(response.toString()));}catch(Exception e){ps.setString(6, response.toString());};
-			    }
-			    
-			    return ps;
-			}
-		    }
-		    );
+	    
+	    String repeatableSetId = null;
+	    Integer iteration = null;
+	    RepeatableSet parent = promptResponse.getPrompt().getParent();
+	    if(parent != null) {
+		repeatableSetId = parent.getId();
+		iteration = repeatableSetIteration;
+	    }
+	    
+	    String responseValue;
+	    Object response = promptResponse.getResponse();
+	    if(response instanceof DateTime) {
+		responseValue = 
+			DateTimeUtils
+			.getW3cIso8601DateString(
+				(DateTime) response,
+				true);
+	    }
+	    else if((promptResponse instanceof MultiChoiceCustomPromptResponse) && (response instanceof Collection)) {
+		JSONArray json = new JSONArray();
+		
+		for(Object currResponse : (Collection<?>) response) {
+		    json.put(currResponse);
+		}
+		
+		responseValue = json.toString();
+	    }
+	    else {
+		responseValue = response.toString();
+	    }
+	    
+	    promptResponseRows.add(
+		    new Object[] {
+			    surveyResponseId,
+			    repeatableSetId,
+			    iteration,
+			    promptResponse.getPrompt().getType().toString(),
+			    promptResponse.getPrompt().getId(),
+			    responseValue });
 			
 	    // Save other media files.
 	    if( (promptResponse instanceof MediaPromptResponse)	) {
@@ -757,7 +976,8 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 		    "client = ?, " +
 		    "upload_timestamp = ?, " +
 		    "launch_context = ?, " +
-		    "privacy_state_id = (SELECT id FROM survey_response_privacy_state WHERE privacy_state = ?) " + 
+		    "privacy_state_id = (SELECT id FROM survey_response_privacy_state WHERE privacy_state = ?), " + 
+		    "mime_encoded = 0 " +
 		    "WHERE uuid = ? ";
 	    
 	    // The following variables are used in logging messages when errors occur
@@ -1006,7 +1226,7 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 	    }
 	    
 	    final PromptResponse promptResponse = (PromptResponse) uploadPromptResponse;
-	    final String sqlUpdateResponse = "UPDATE prompt_response SET response = ? WHERE survey_response_id = ? AND prompt_id = ?";
+	    final String sqlUpdateResponse = "UPDATE prompt_response SET response = ?, mime_encoded = 0 WHERE survey_response_id = ? AND prompt_id = ?";
 			
 	    // In case of media prompts, extract the existing UUID to access the url_based_resource	
 	    getJdbcTemplate().update(
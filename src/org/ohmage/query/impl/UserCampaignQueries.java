@@ -28,6 +28,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import javax.sql.DataSource;
 
@@ -36,12 +37,14 @@ import org.ohmage.domain.campaign.Campaign;
 import org.ohmage.domain.campaign.Campaign.Role;
 import org.ohmage.domain.campaign.CampaignMask;
 import org.ohmage.domain.campaign.CampaignMask.MaskId;
+import org.ohmage.domain.campaign.PermissionSnapshot;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.query.IUserCampaignQueries;
 import org.ohmage.util.StringUtils;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
@@ -80,6 +83,29 @@ public final class UserCampaignQueries extends Query implements IUserCampaignQue
 		"AND urc.campaign_id = c.id " +
 		"AND urc.user_id = u.id";
 	
+	// Retrieves the distinct users in a list of campaigns. The parameter list
+	// for the campaign IDs must be appended.
+	private static final String SQL_GET_USERS_IN_CAMPAIGNS =
+		"SELECT DISTINCT(u.username) " +
+		"FROM user u, campaign c, user_role_campaign urc " +
+		"WHERE urc.campaign_id = c.id " +
+		"AND urc.user_id = u.id " +
+		"AND c.urn IN ";
+	
+	// Retrieves the roles in a campaign for each of a list of users. The
+	// parameter list for the usernames must be appended.
+	private static final String SQL_GET_USERS_CAMPAIGN_ROLES =
+		"SELECT u.username, ur.role " +
+		"FROM user u, campaign c, user_role ur, user_role_campaign urc " +
+		"WHERE c.urn = ? " +
+		"AND c.id = urc.campaign_id " +
+		"AND u.id = urc.user_id " +
+		"AND urc.user_role_id = ur.id " +
+		"AND u.username IN ";
+	
+	// The most IDs that are given to a single query.
+	private static final int MAX_IDS_PER_QUERY = 1000;
+	
 	// Retrieves the roles for a user in a campaign.
 	private static final String SQL_GET_USER_CAMPAIGN_ROLES =
 		"SELECT ur.role " +
@@ -90,6 +116,27 @@ public final class UserCampaignQueries extends Query implements IUserCampaignQue
 		"AND c.id = urc.campaign_id " +
 		"AND urc.user_role_id = ur.id";
 	
+	// Retrieves whether or not a user is an admin, the campaign's states, and
+	// the user's roles in the campaign. There is one row for each role or one
+	// row without a role if the user has none. The states are null if the
+	// campaign does not exist.
+	private static final String SQL_GET_PERMISSION_SNAPSHOT =
+		"SELECT u.admin, crs.running_state, cps.privacy_state, c.editable, " +
+			"ur.role " +
+		"FROM user u " +
+		"LEFT JOIN campaign c " +
+			"ON c.urn = ? " +
+		"LEFT JOIN campaign_running_state crs " +
+			"ON c.running_state_id = crs.id " +
+		"LEFT JOIN campaign_privacy_state cps " +
+			"ON c.privacy_state_id = cps.id " +
+		"LEFT JOIN user_role_campaign urc " +
+			"ON u.id = urc.user_id " +
+			"AND c.id = urc.campaign_id " +
+		"LEFT JOIN user_role ur " +
+			"ON urc.user_role_id = ur.id " +
+		"WHERE u.username = ?";
+	
 	// Retrieves all of the campaigns and respective roles for a user. Each row
 	// is a unique campaign-role combination.
 	private static final String SQL_GET_CAMPAIGNS_AND_ROLES_FOR_USER =
@@ -308,6 +355,199 @@ public final class UserCampaignQueries extends Query implements IUserCampaignQue
 		}
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserCampaignQueries#getUsersInCampaigns(java.util.Collection)
+	 */
+	@Override
+	public Set<String> getUsersInCampaigns(
+			final Collection<String> campaignIds)
+			throws DataAccessException {
+		
+		Set<String> result = new HashSet<String>();
+		
+		List<String> allIds = new ArrayList<String>(new HashSet<String>(campaignIds));
+		for(int i = 0; i < allIds.size(); i += MAX_IDS_PER_QUERY) {
+			List<String> chunk =
+				allIds.subList(i, Math.min(i + MAX_IDS_PER_QUERY, allIds.size()));
+			
+			String sql =
+				SQL_GET_USERS_IN_CAMPAIGNS +
+					StringUtils.generateStatementPList(chunk.size());
+			
+			try {
+				result.addAll(
+					getJdbcTemplate().query(
+						sql,
+						chunk.toArray(),
+						new SingleColumnRowMapper<String>()));
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						sql + 
+						"' with parameters: " + 
+						chunk, 
+					e);
+			}
+		}
+		
+		return result;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserCampaignQueries#getUsersCampaignRoles(java.lang.String, java.util.Collection)
+	 */
+	@Override
+	public Map<String, Set<Campaign.Role>> getUsersCampaignRoles(
+			final String campaignId,
+			final Collection<String> usernames)
+			throws DataAccessException {
+		
+		// The database compares usernames without regard to case, so the
+		// usernames that it returns may differ from the given ones.
+		final Map<String, Set<Campaign.Role>> result =
+			new TreeMap<String, Set<Campaign.Role>>(
+				String.CASE_INSENSITIVE_ORDER);
+		
+		List<String> allUsernames = 
+			new ArrayList<String>(new HashSet<String>(usernames));
+		for(int i = 0; i < allUsernames.size(); i += MAX_IDS_PER_QUERY) {
+			List<String> chunk =
+				allUsernames.subList(
+					i,
+					Math.min(i + MAX_IDS_PER_QUERY, allUsernames.size()));
+			
+			String sql =
+				SQL_GET_USERS_CAMPAIGN_ROLES +
+					StringUtils.generateStatementPList(chunk.size());
+			
+			List<Object> parameters = new ArrayList<Object>(chunk.size() + 1);
+			parameters.add(campaignId);
+			parameters.addAll(chunk);
+			
+			try {
+				getJdbcTemplate().query(
+					sql,
+					parameters.toArray(),
+					new RowCallbackHandler() {
+						/*
+						 * (non-Javadoc)
+						 * @see org.springframework.jdbc.core.RowCallbackHandler#processRow(java.sql.ResultSet)
+						 */
+						@Override
+						public void processRow(
+								final ResultSet rs)
+								throws SQLException {
+							
+							Campaign.Role role;
+							try {
+								role = Campaign.Role.getValue(rs.getString("role"));
+							}
+							catch(IllegalArgumentException e) {
+								throw new SQLException(
+									"Unknown role in the database.",
+									e);
+							}
+							
+							String username = rs.getString("username");
+							Set<Campaign.Role> roles = result.get(username);
+							if(roles == null) {
+								roles = new HashSet<Campaign.Role>();
+								result.put(username, roles);
+							}
+							roles.add(role);
+						}
+					});
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						sql + 
+						"' with parameters: " + 
+						parameters, 
+					e);
+			}
+		}
+		
+		return result;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserCampaignQueries#getPermissionSnapshot(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public PermissionSnapshot getPermissionSnapshot(
+			final String username, 
+			final String campaignId) 
+			throws DataAccessException {
+		
+		try {
+			return getJdbcTemplate().query(
+					SQL_GET_PERMISSION_SNAPSHOT, 
+					new Object[] { campaignId, username }, 
+					new ResultSetExtractor<PermissionSnapshot>() {
+						/**
+						 * Combines the rows, one per role, into a single
+						 * snapshot.
+						 */
+						@Override
+						public PermissionSnapshot extractData(ResultSet rs)
+								throws SQLException {
+							
+							boolean admin = false;
+							Campaign.RunningState runningState = null;
+							Campaign.PrivacyState privacyState = null;
+							boolean editable = false;
+							List<Campaign.Role> roles = 
+								new LinkedList<Campaign.Role>();
+							
+							while(rs.next()) {
+								admin = rs.getBoolean("admin");
+								editable = rs.getBoolean("editable");
+								
+								String runningStateString = 
+									rs.getString("running_state");
+								if(runningStateString != null) {
+									runningState = 
+										Campaign.RunningState.getValue(
+											runningStateString);
+								}
+								
+								String privacyStateString = 
+									rs.getString("privacy_state");
+								if(privacyStateString != null) {
+									privacyState = 
+										Campaign.PrivacyState.getValue(
+											privacyStateString);
+								}
+								
+								String role = rs.getString("role");
+								if(role != null) {
+									roles.add(Campaign.Role.getValue(role));
+								}
+							}
+							
+							return new PermissionSnapshot(
+									username, 
+									campaignId, 
+									admin, 
+									roles, 
+									runningState, 
+									privacyState, 
+									editable);
+						}
+					}
+				);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException("Error executing SQL '" + SQL_GET_PERMISSION_SNAPSHOT + "' with parameters: " + 
+					campaignId + ", " + username, e);
+		}
+	}
+	
 	/**
 	 * Returns a List of roles for this user in this campaign.
 	 * 
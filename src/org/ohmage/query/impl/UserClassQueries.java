@@ -76,6 +76,18 @@ public final class UserClassQueries extends Query implements IUserClassQueries {
 		"AND c.id = uc.class_id " +
 		"AND u.id = uc.user_id";
 	
+	// Returns the distinct users in a list of classes. The parameter list for
+	// the class IDs must be appended.
+	private static final String SQL_GET_USERS_IN_CLASSES =
+		"SELECT DISTINCT(u.username) " +
+		"FROM user u, class c, user_class uc " +
+		"WHERE c.id = uc.class_id " +
+		"AND u.id = uc.user_id " +
+		"AND c.urn IN ";
+	
+	// The most class IDs that are given to a single query.
+	private static final int MAX_CLASS_IDS_PER_QUERY = 1000;
+	
 	// Returns the user's role in a class.
 	private static final String SQL_GET_USER_ROLE = 
 		"SELECT ucr.role " +
@@ -199,6 +211,47 @@ public final class UserClassQueries extends Query implements IUserClassQueries {
 		}
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserClassQueries#getUsersInClasses(java.util.Collection)
+	 */
+	@Override
+	public Set<String> getUsersInClasses(final Collection<String> classIds)
+			throws DataAccessException {
+		
+		Set<String> result = new HashSet<String>();
+		
+		List<String> allIds = new ArrayList<String>(new HashSet<String>(classIds));
+		for(int i = 0; i < allIds.size(); i += MAX_CLASS_IDS_PER_QUERY) {
+			List<String> chunk =
+				allIds.subList(
+					i, 
+					Math.min(i + MAX_CLASS_IDS_PER_QUERY, allIds.size()));
+			
+			String sql =
+				SQL_GET_USERS_IN_CLASSES +
+					StringUtils.generateStatementPList(chunk.size());
+			
+			try {
+				result.addAll(
+					getJdbcTemplate().query(
+						sql,
+						chunk.toArray(),
+						new SingleColumnRowMapper<String>()));
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						sql + 
+						"' with parameters: " + 
+						chunk, 
+					e);
+			}
+		}
+		
+		return result;
+	}
+	
 	/**
 	 * Retrieves all users and their roles in a class.
 	 * @param classId
@@ -21,16 +21,21 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
 import javax.sql.DataSource;
 
+import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.json.JSONException;
@@ -49,8 +54,10 @@ import org.ohmage.domain.MobilityPoint.SubType;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.query.IUserMobilityQueries;
+import org.ohmage.util.StringUtils;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
@@ -72,6 +79,9 @@ import edu.ucla.cens.mobilityclassifier.MobilityClassifier;
  * @author John Jenkins
  */
 public final class UserMobilityQueries extends AbstractUploadQuery implements IUserMobilityQueries {
+	private static final Logger LOGGER = 
+		Logger.getLogger(UserMobilityQueries.class);
+	
 	private static final long MILLIS_PER_DAY = 1000 * 60 * 60 * 24;
 	
 	// Retrieves the ID for all of the Mobility points that belong to a user.
@@ -176,6 +186,74 @@ public final class UserMobilityQueries extends AbstractUploadQuery implements IU
 			"?" +		// classifier_version
 		")";
 	
+	// The beginning of a multi-row insert of Mobility points. One
+	// SQL_INSERT_MANY_ROW must be appended for each point, separated by
+	// commas.
+	private static final String SQL_INSERT_MANY =
+		"INSERT INTO mobility(uuid, user_id, client, epoch_millis, phone_timezone, location_status, location, mode, upload_timestamp, privacy_state_id) " +
+		"VALUES ";
+	private static final String SQL_INSERT_MANY_ROW =
+		"(?, ?, ?, ?, ?, ?, ?, ?, now(), ?)";
+	
+	// The beginning of a multi-row insert of extended entries. One
+	// SQL_INSERT_EXTENDED_MANY_ROW must be appended for each entry, 
+	// separated by commas.
+	private static final String SQL_INSERT_EXTENDED_MANY =
+		"INSERT INTO mobility_extended(mobility_id, sensor_data, features, classifier_version) " +
+		"VALUES ";
+	private static final String SQL_INSERT_EXTENDED_MANY_ROW =
+		"(?, ?, ?, ?)";
+	
+	// Retrieves a user's database ID.
+	private static final String SQL_GET_USER_ID =
+		"SELECT id FROM user WHERE username = ?";
+	
+	// Retrieves the database IDs of all of the privacy states.
+	private static final String SQL_GET_PRIVACY_STATE_IDS =
+		"SELECT id, privacy_state FROM mobility_privacy_state";
+	
+	// Retrieves the database IDs of Mobility points. The parameter list for
+	// the UUIDs must be appended.
+	private static final String SQL_GET_IDS_FOR_UUIDS =
+		"SELECT id, uuid FROM mobility WHERE uuid IN ";
+	
+	// Appended to a read so that it sees the latest committed rows instead of
+	// the transaction's snapshot.
+	private static final String SQL_LOCK_IN_SHARE_MODE =
+		" LOCK IN SHARE MODE";
+	
+	// The most points that are inserted with a single statement.
+	private static final int MAX_POINTS_PER_INSERT = 500;
+	
+	// Inserts or replaces the classification of a Mobility point.
+	private static final String SQL_INSERT_CLASSIFICATION =
+		"INSERT INTO mobility_classification(" +
+			"user_id, " +
+			"uid, " +
+			"features, " +
+			"classifier_version) " +
+		"VALUES (" +
+			"(SELECT id FROM user WHERE username = ?), " +
+			"?, " +
+			"?, " +
+			"?) " +
+		"ON DUPLICATE KEY UPDATE " +
+			"features = VALUES(features), " +
+			"classifier_version = VALUES(classifier_version)";
+	
+	// Retrieves the classifications made by some classifier version for some
+	// of a user's points. The parameter list for the UUIDs must be appended.
+	private static final String SQL_GET_CLASSIFICATIONS =
+		"SELECT mc.uid, mc.features " +
+		"FROM user u, mobility_classification mc " +
+		"WHERE u.username = ? " +
+		"AND u.id = mc.user_id " +
+		"AND mc.classifier_version = ? " +
+		"AND mc.uid IN ";
+	
+	// The most point UUIDs that are given to a single query.
+	private static final int MAX_IDS_PER_QUERY = 1000;
+	
 	/**
 	 * Creates this object.
 	 * 
@@ -380,6 +458,321 @@ public final class UserMobilityQueries extends AbstractUploadQuery implements IU
 		}
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserMobilityQueries#createMobilityPoints(java.lang.String, java.lang.String, java.util.List)
+	 */
+	@Override
+	public int createMobilityPoints(
+			final String username,
+			final String client,
+			final List<MobilityPoint> mobilityPoints)
+			throws DataAccessException {
+		
+		if((mobilityPoints == null) || mobilityPoints.isEmpty()) {
+			return 0;
+		}
+		
+		// Remove any points that were given more than once.
+		Map<String, MobilityPoint> pointsById = 
+			new LinkedHashMap<String, MobilityPoint>();
+		for(MobilityPoint mobilityPoint : mobilityPoints) {
+			pointsById.put(mobilityPoint.getId().toString(), mobilityPoint);
+		}
+		
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Creating Mobility data points.");
+		
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager = new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+			
+			try {
+				// Resolve the user and the privacy states once for the whole
+				// upload.
+				long userId;
+				try {
+					userId = 
+						getJdbcTemplate().queryForObject(
+							SQL_GET_USER_ID, 
+							new Object[] { username }, 
+							Long.class);
+				}
+				catch(org.springframework.dao.DataAccessException e) {
+					throw new DataAccessException(
+						"Error executing SQL '" + 
+							SQL_GET_USER_ID + 
+							"' with parameter: " + 
+							username,
+						e);
+				}
+				
+				final Map<String, Long> privacyStateIds = 
+					new HashMap<String, Long>();
+				try {
+					getJdbcTemplate().query(
+						SQL_GET_PRIVACY_STATE_IDS,
+						new RowCallbackHandler() {
+							/*
+							 * (non-Javadoc)
+							 * @see org.springframework.jdbc.core.RowCallbackHandler#processRow(java.sql.ResultSet)
+							 */
+							@Override
+							public void processRow(
+									final ResultSet rs)
+									throws SQLException {
+								
+								privacyStateIds.put(
+									rs.getString("privacy_state"), 
+									rs.getLong("id"));
+							}
+						});
+				}
+				catch(org.springframework.dao.DataAccessException e) {
+					throw new DataAccessException(
+						"Error executing SQL '" + 
+							SQL_GET_PRIVACY_STATE_IDS + 
+							"'.",
+						e);
+				}
+				
+				// Duplicate uploads are ignored, so remove any points that 
+				// already exist.
+				pointsById.keySet().removeAll(
+					getMobilityIds(pointsById.keySet(), false).keySet());
+				
+				int numCreated = 0;
+				List<MobilityPoint> remaining = 
+					new ArrayList<MobilityPoint>(pointsById.values());
+				for(int i = 0; i < remaining.size(); i += MAX_POINTS_PER_INSERT) {
+					long start = System.currentTimeMillis();
+					
+					List<MobilityPoint> batch = 
+						remaining.subList(
+							i, 
+							Math.min(
+								i + MAX_POINTS_PER_INSERT, 
+								remaining.size()));
+					
+					try {
+						insertMobilityPoints(
+							userId, 
+							client, 
+							privacyStateIds, 
+							batch);
+					}
+					catch(DataAccessException e) {
+						if((e.getCause() == null) || (! isDuplicate(e.getCause()))) {
+							throw e;
+						}
+						
+						// Another upload stored some of these points after
+						// they were checked. Those are ignored, and the rest
+						// are inserted again.
+						List<String> batchUuids = 
+							new ArrayList<String>(batch.size());
+						for(MobilityPoint mobilityPoint : batch) {
+							batchUuids.add(mobilityPoint.getId().toString());
+						}
+						Set<String> storedUuids = 
+							getMobilityIds(batchUuids, true).keySet();
+						
+						List<MobilityPoint> missing = 
+							new ArrayList<MobilityPoint>(batch.size());
+						for(MobilityPoint mobilityPoint : batch) {
+							if(! storedUuids.contains(mobilityPoint.getId().toString())) {
+								missing.add(mobilityPoint);
+							}
+						}
+						
+						batch = missing;
+						if(! batch.isEmpty()) {
+							insertMobilityPoints(
+								userId, 
+								client, 
+								privacyStateIds, 
+								batch);
+						}
+					}
+					insertExtendedPoints(batch);
+					numCreated += batch.size();
+					
+					long elapsed = System.currentTimeMillis() - start;
+					LOGGER.info(
+						"Inserted a batch of " + 
+							batch.size() + 
+							" Mobility point(s) in " + 
+							elapsed + 
+							" ms (" +
+							((elapsed == 0) ? 
+								"-" : 
+								Long.toString((batch.size() * 1000L) / elapsed)) +
+							" points/second).");
+				}
+				
+				// Commit the transaction.
+				try {
+					transactionManager.commit(status);
+				}
+				catch(TransactionException e) {
+					transactionManager.rollback(status);
+					throw new DataAccessException("Error while committing the transaction.", e);
+				}
+				
+				return numCreated;
+			}
+			catch(DataAccessException e) {
+				transactionManager.rollback(status);
+				throw e;
+			}
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserMobilityQueries#createMobilityClassifications(java.lang.String, java.util.Collection)
+	 */
+	@Override
+	public void createMobilityClassifications(
+			final String username,
+			final Collection<MobilityPoint> mobilityPoints)
+			throws DataAccessException {
+		
+		String classifierVersion = MobilityClassifier.getVersion();
+		
+		List<Object[]> parameters = 
+			new ArrayList<Object[]>(mobilityPoints.size());
+		for(MobilityPoint mobilityPoint : mobilityPoints) {
+			ClassifierData classifierData = mobilityPoint.getClassifierData();
+			if(classifierData == null) {
+				continue;
+			}
+			
+			JSONObject features;
+			try {
+				features = 
+					classifierData.toJson(
+						false, 
+						ClassifierDataColumnKey.ALL_COLUMNS);
+			}
+			catch(JSONException e) {
+				throw new DataAccessException(e);
+			}
+			catch(DomainException e) {
+				throw new DataAccessException(e);
+			}
+			
+			parameters.add(
+				new Object[] {
+					username,
+					mobilityPoint.getId().toString(),
+					features.toString(),
+					classifierVersion });
+		}
+		if(parameters.isEmpty()) {
+			return;
+		}
+		
+		try {
+			getJdbcTemplate()
+				.batchUpdate(SQL_INSERT_CLASSIFICATION, parameters);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					SQL_INSERT_CLASSIFICATION + 
+					"' for " +
+					parameters.size() +
+					" points for user: " +
+					username,
+				e);
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserMobilityQueries#getMobilityClassifications(java.lang.String, java.util.Collection)
+	 */
+	@Override
+	public Map<UUID, JSONObject> getMobilityClassifications(
+			final String username,
+			final Collection<UUID> mobilityIds)
+			throws DataAccessException {
+		
+		final Map<UUID, JSONObject> result = new HashMap<UUID, JSONObject>();
+		if((mobilityIds == null) || mobilityIds.isEmpty()) {
+			return result;
+		}
+		
+		// Split the UUIDs into chunks so that no single statement has too
+		// many parameters.
+		List<UUID> allIds = new ArrayList<UUID>(mobilityIds);
+		for(int i = 0; i < allIds.size(); i += MAX_IDS_PER_QUERY) {
+			List<UUID> chunk = 
+				allIds.subList(
+					i, 
+					Math.min(i + MAX_IDS_PER_QUERY, allIds.size()));
+			
+			String sql = 
+				SQL_GET_CLASSIFICATIONS + 
+					StringUtils.generateStatementPList(chunk.size());
+			List<Object> parameters = new ArrayList<Object>(chunk.size() + 2);
+			parameters.add(username);
+			parameters.add(MobilityClassifier.getVersion());
+			for(UUID mobilityId : chunk) {
+				parameters.add(mobilityId.toString());
+			}
+			
+			try {
+				getJdbcTemplate().query(
+					sql,
+					parameters.toArray(),
+					new RowCallbackHandler() {
+						/*
+						 * (non-Javadoc)
+						 * @see org.springframework.jdbc.core.RowCallbackHandler#processRow(java.sql.ResultSet)
+						 */
+						@Override
+						public void processRow(
+								final ResultSet rs)
+								throws SQLException {
+							
+							try {
+								result.put(
+									UUID.fromString(rs.getString("uid")),
+									new JSONObject(rs.getString("features")));
+							}
+							catch(JSONException e) {
+								throw new SQLException(
+									"The stored features are not valid JSON.",
+									e);
+							}
+							catch(IllegalArgumentException e) {
+								throw new SQLException(
+									"The stored point ID is not a UUID.",
+									e);
+							}
+						}
+					});
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						sql + 
+						"' with parameters: " + 
+						parameters,
+					e);
+			}
+		}
+		
+		return result;
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see org.ohmage.query.IUserMobilityQueries#getUserForId(java.util.UUID)
@@ -844,4 +1237,245 @@ public final class UserMobilityQueries extends AbstractUploadQuery implements IU
 				e);
 		}
 	}
+	
+	/**
+	 * Retrieves the database IDs of the Mobility points that exist.
+	 * 
+	 * @param uuids The points' unique identifiers.
+	 * 
+	 * @param current Whether to read the latest committed points, including
+	 * 				  those stored by other uploads since this transaction 
+	 * 				  began, instead of the transaction's snapshot.
+	 * 
+	 * @return A map of the unique identifier of each point that exists to its
+	 * 		   database ID.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private Map<String, Long> getMobilityIds(
+			final Collection<String> uuids,
+			final boolean current)
+			throws DataAccessException {
+		
+		final Map<String, Long> result = new HashMap<String, Long>();
+		
+		List<String> allUuids = new ArrayList<String>(uuids);
+		for(int i = 0; i < allUuids.size(); i += MAX_IDS_PER_QUERY) {
+			List<String> chunk = 
+				allUuids.subList(
+					i, 
+					Math.min(i + MAX_IDS_PER_QUERY, allUuids.size()));
+			
+			String sql = 
+				SQL_GET_IDS_FOR_UUIDS + 
+					StringUtils.generateStatementPList(chunk.size()) +
+					(current ? SQL_LOCK_IN_SHARE_MODE : "");
+			try {
+				getJdbcTemplate().query(
+					sql,
+					chunk.toArray(),
+					new RowCallbackHandler() {
+						/*
+						 * (non-Javadoc)
+						 * @see org.springframework.jdbc.core.RowCallbackHandler#processRow(java.sql.ResultSet)
+						 */
+						@Override
+						public void processRow(
+								final ResultSet rs)
+								throws SQLException {
+							
+							result.put(rs.getString("uuid"), rs.getLong("id"));
+						}
+					});
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						sql + 
+						"' with parameters: " + 
+						chunk,
+					e);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Inserts Mobility points with a single statement.
+	 * 
+	 * @param userId The database ID of the user to which the points belong.
+	 * 
+	 * @param client The client value given on upload.
+	 * 
+	 * @param privacyStateIds A map of privacy states to their database IDs.
+	 * 
+	 * @param mobilityPoints The points to insert.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private void insertMobilityPoints(
+			final long userId,
+			final String client,
+			final Map<String, Long> privacyStateIds,
+			final List<MobilityPoint> mobilityPoints)
+			throws DataAccessException {
+		
+		StringBuilder sql = new StringBuilder(SQL_INSERT_MANY);
+		List<Object> parameters = 
+			new ArrayList<Object>(mobilityPoints.size() * 9);
+		boolean first = true;
+		for(MobilityPoint mobilityPoint : mobilityPoints) {
+			if(first) {
+				first = false;
+			}
+			else {
+				sql.append(", ");
+			}
+			sql.append(SQL_INSERT_MANY_ROW);
+			
+			String location;
+			try {
+				Location tLocation = mobilityPoint.getLocation();
+				location = 
+					(tLocation == null) ? 
+						null : 
+						tLocation
+							.toJson(false, LocationColumnKey.ALL_COLUMNS)
+							.toString();
+			}
+			catch(JSONException e) {
+				throw new DataAccessException(
+					"Could not create a JSONObject for the location.",
+					e);
+			}
+			catch(DomainException e) {
+				throw new DataAccessException(
+					"Could not create a JSONObject for the location.",
+					e);
+			}
+			
+			Long privacyStateId = 
+				privacyStateIds.get(
+					mobilityPoint.getPrivacyState().toString());
+			if(privacyStateId == null) {
+				throw new DataAccessException(
+					"The privacy state is unknown: " + 
+						mobilityPoint.getPrivacyState());
+			}
+			
+			parameters.add(mobilityPoint.getId().toString());
+			parameters.add(userId);
+			parameters.add(client);
+			parameters.add(mobilityPoint.getTime());
+			parameters.add(mobilityPoint.getTimezone().getID());
+			parameters.add(
+				mobilityPoint.getLocationStatus().toString().toLowerCase());
+			parameters.add(location);
+			parameters.add(mobilityPoint.getMode().toString().toLowerCase());
+			parameters.add(privacyStateId);
+		}
+		
+		try {
+			getJdbcTemplate().update(sql.toString(), parameters.toArray());
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					SQL_INSERT_MANY + 
+					SQL_INSERT_MANY_ROW +
+					"...' for " +
+					mobilityPoints.size() +
+					" points.",
+				e);
+		}
+	}
+	
+	/**
+	 * Inserts the extended entries for any of the Mobility points that have
+	 * sensor data with a single statement. The points must already exist.
+	 * 
+	 * @param mobilityPoints The points, some of which may not have sensor 
+	 * 						 data.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private void insertExtendedPoints(
+			final List<MobilityPoint> mobilityPoints)
+			throws DataAccessException {
+		
+		List<MobilityPoint> extendedPoints = new ArrayList<MobilityPoint>();
+		List<String> extendedUuids = new ArrayList<String>();
+		for(MobilityPoint mobilityPoint : mobilityPoints) {
+			if(SubType.SENSOR_DATA.equals(mobilityPoint.getSubType())) {
+				extendedPoints.add(mobilityPoint);
+				extendedUuids.add(mobilityPoint.getId().toString());
+			}
+		}
+		if(extendedPoints.isEmpty()) {
+			return;
+		}
+		
+		Map<String, Long> mobilityIds = getMobilityIds(extendedUuids, false);
+		String classifierVersion = MobilityClassifier.getVersion();
+		
+		StringBuilder sql = new StringBuilder(SQL_INSERT_EXTENDED_MANY);
+		List<Object> parameters = 
+			new ArrayList<Object>(extendedPoints.size() * 4);
+		boolean first = true;
+		for(MobilityPoint mobilityPoint : extendedPoints) {
+			if(first) {
+				first = false;
+			}
+			else {
+				sql.append(", ");
+			}
+			sql.append(SQL_INSERT_EXTENDED_MANY_ROW);
+			
+			String sensorData;
+			String classifierData;
+			try {
+				sensorData = 
+					mobilityPoint
+						.getSensorData()
+						.toJson(false, SensorDataColumnKey.ALL_COLUMNS)
+						.toString();
+				
+				ClassifierData tClassifierData = 
+					mobilityPoint.getClassifierData();
+				classifierData =
+					(tClassifierData == null) ?
+						(new JSONObject()).toString() :
+						tClassifierData
+							.toJson(false, ClassifierDataColumnKey.ALL_COLUMNS)
+							.toString();
+			}
+			catch(JSONException e) {
+				throw new DataAccessException(e);
+			}
+			catch(DomainException e) {
+				throw new DataAccessException(e);
+			}
+			
+			parameters.add(
+				mobilityIds.get(mobilityPoint.getId().toString()));
+			parameters.add(sensorData);
+			parameters.add(classifierData);
+			parameters.add(classifierVersion);
+		}
+		
+		try {
+			getJdbcTemplate().update(sql.toString(), parameters.toArray());
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					SQL_INSERT_EXTENDED_MANY + 
+					SQL_INSERT_EXTENDED_MANY_ROW +
+					"...' for " +
+					extendedPoints.size() +
+					" points.",
+				e);
+		}
+	}
 }
@@ -22,6 +22,8 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.sql.DataSource;
 
@@ -38,6 +40,7 @@ import org.ohmage.query.IUserQueries;
 import org.ohmage.query.impl.QueryResultsList.QueryResultListBuilder;
 import org.ohmage.util.StringUtils;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
@@ -206,6 +209,18 @@ public class UserQueries extends Query implements IUserQueries {
 		"WHERE u.username = ? " +
 		"AND u.id = up.user_id";
 	
+	// Retrieves the personal information for a list of users. The parameter
+	// list for the usernames must be appended.
+	private static final String SQL_GET_USERS_PERSONAL =
+		"SELECT u.username, " +
+			"up.first_name, up.last_name, up.organization, up.personal_id " +
+		"FROM user u, user_personal up " +
+		"WHERE u.id = up.user_id " +
+		"AND u.username IN ";
+	
+	// The most usernames that are given to a single query.
+	private static final int MAX_USERNAMES_PER_QUERY = 1000;
+	
 	// Returns the milliseconds since epoch at which time this registration was
 	// made.
 	private static final String SQL_GET_REGISTRATION_REQUEST_TIME =
@@ -1518,6 +1533,83 @@ public class UserQueries extends Query implements IUserQueries {
 		}
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserQueries#getPersonalInfoForUsers(java.util.Collection)
+	 */
+	@Override
+	public Map<String, UserPersonal> getPersonalInfoForUsers(
+			final Collection<String> usernames)
+			throws DataAccessException {
+		
+		// The database compares usernames without regard to case, so the
+		// usernames that it returns may differ from the given ones.
+		final Map<String, UserPersonal> result =
+			new TreeMap<String, UserPersonal>(String.CASE_INSENSITIVE_ORDER);
+		for(String username : usernames) {
+			result.put(username, null);
+		}
+		
+		List<String> allUsernames = new ArrayList<String>(result.keySet());
+		for(int i = 0; i < allUsernames.size(); i += MAX_USERNAMES_PER_QUERY) {
+			List<String> chunk =
+				allUsernames.subList(
+					i,
+					Math.min(i + MAX_USERNAMES_PER_QUERY, allUsernames.size()));
+			
+			String sql =
+				SQL_GET_USERS_PERSONAL +
+					StringUtils.generateStatementPList(chunk.size());
+			
+			try {
+				getJdbcTemplate().query(
+					sql,
+					chunk.toArray(),
+					new RowCallbackHandler() {
+						/*
+						 * (non-Javadoc)
+						 * @see org.springframework.jdbc.core.RowCallbackHandler#processRow(java.sql.ResultSet)
+						 */
+						@Override
+						public void processRow(
+								final ResultSet rs)
+								throws SQLException {
+							
+							String username = rs.getString("username");
+							if(! result.containsKey(username)) {
+								return;
+							}
+							
+							try {
+								result.put(
+									username,
+									new UserPersonal(
+										rs.getString("first_name"),
+										rs.getString("last_name"),
+										rs.getString("organization"),
+										rs.getString("personal_id")));
+							}
+							catch(DomainException e) {
+								throw new SQLException(
+									"Error creating the user's personal information.",
+									e);
+							}
+						}
+					});
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				throw new DataAccessException(
+					"Error executing the following SQL '" + 
+						sql + 
+						"' with parameters: " + 
+						chunk, 
+					e);
+			}
+		}
+		
+		return result;
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see org.ohmage.query.IUserQueries#getRegistrationRequestedDate(java.lang.String)
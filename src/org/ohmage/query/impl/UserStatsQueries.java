@@ -0,0 +1,1092 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.query.impl;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.log4j.Logger;
+import org.ohmage.domain.ActivityCounts;
+import org.ohmage.domain.campaign.Campaign;
+import org.ohmage.exception.DataAccessException;
+import org.ohmage.query.IUserStatsQueries;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+/**
+ * This class contains all of the functionality for reading and maintaining
+ * the per-user activity statistics that are given by user/stats/read. The
+ * statistics are added to as data are uploaded and are periodically rebuilt
+ * from the data themselves.
+ */
+public final class UserStatsQueries extends Query implements IUserStatsQueries {
+	private static final Logger LOGGER =
+		Logger.getLogger(UserStatsQueries.class);
+
+	// The observer whose stream data are Mobility points.
+	private static final String MOBILITY_OBSERVER_ID = "edu.ucla.cens.Mobility";
+
+	// The preference that records that every user's statistics have been
+	// rebuilt at least once and are complete.
+	private static final String PREFERENCE_KEY_REBUILT = "user_stats_rebuilt";
+
+	// Retrieves a user's database ID.
+	private static final String SQL_GET_USER_ID =
+		"SELECT id FROM user WHERE username = ?";
+
+	// Retrieves a campaign's database ID.
+	private static final String SQL_GET_CAMPAIGN_ID =
+		"SELECT id FROM campaign WHERE urn = ?";
+
+	// Records the time of a user's most recent Mobility point.
+	private static final String SQL_UPSERT_MOBILITY_LAST =
+		"INSERT INTO user_mobility_stats (user_id, last_taken) " +
+		"VALUES (?, ?) " +
+		"ON DUPLICATE KEY UPDATE " +
+			"last_taken = GREATEST(last_taken, VALUES(last_taken))";
+
+	// Adds to the hourly counts of a user's Mobility points. One row is
+	// appended for each hour.
+	private static final String SQL_UPSERT_MOBILITY_HOURS =
+		"INSERT INTO user_mobility_stats_hour " +
+			"(user_id, hour_start, total, with_location) " +
+		"VALUES ";
+	private static final String SQL_UPSERT_MOBILITY_HOURS_ROW =
+		"(?, ?, ?, ?)";
+
+	// Records the time of a user's most recent survey response in a campaign.
+	private static final String SQL_UPSERT_SURVEY_LAST =
+		"INSERT INTO user_survey_stats (user_id, campaign_id, last_taken) " +
+		"VALUES (?, ?, ?) " +
+		"ON DUPLICATE KEY UPDATE " +
+			"last_taken = GREATEST(last_taken, VALUES(last_taken))";
+
+	// Adds to the hourly counts of a user's survey responses in a campaign.
+	// One row is appended for each hour.
+	private static final String SQL_UPSERT_SURVEY_HOURS =
+		"INSERT INTO user_survey_stats_hour " +
+			"(user_id, campaign_id, hour_start, total, with_location) " +
+		"VALUES ";
+	private static final String SQL_UPSERT_SURVEY_HOURS_ROW =
+		"(?, ?, ?, ?, ?)";
+
+	// Completes either of the hourly count inserts by adding to existing
+	// hours.
+	private static final String SQL_ON_DUPLICATE_ADD_COUNTS =
+		" ON DUPLICATE KEY UPDATE " +
+			"total = total + VALUES(total), " +
+			"with_location = with_location + VALUES(with_location)";
+
+	// Retrieves the time of a user's most recent Mobility point.
+	private static final String SQL_GET_MOBILITY_LAST =
+		"SELECT MAX(ums.last_taken) AS last_taken " +
+		"FROM user u, user_mobility_stats ums " +
+		"WHERE u.username = ? " +
+		"AND u.id = ums.user_id";
+
+	// Retrieves the counts of a user's Mobility points since some hour.
+	private static final String SQL_GET_MOBILITY_COUNTS =
+		"SELECT SUM(umsh.total) AS total, " +
+			"SUM(umsh.with_location) AS with_location " +
+		"FROM user u, user_mobility_stats_hour umsh " +
+		"WHERE u.username = ? " +
+		"AND u.id = umsh.user_id " +
+		"AND umsh.hour_start >= ?";
+
+	// Retrieves the counts of a user's Mobility points taken in some span of
+	// time from the Mobility observer's stream data and from the older
+	// Mobility table.
+	private static final String SQL_GET_MOBILITY_COUNTS_FROM_STREAMS =
+		"SELECT COUNT(*) AS total, " +
+			"SUM(osd.location_latitude IS NOT NULL) AS with_location " +
+		"FROM user u, observer o, observer_stream_link osl, " +
+			"observer_stream_data osd " +
+		"WHERE u.username = ? " +
+		"AND o.observer_id = ? " +
+		"AND o.id = osl.observer_id " +
+		"AND osl.id = osd.observer_stream_link_id " +
+		"AND u.id = osd.user_id " +
+		"AND osd.time >= ? " +
+		"AND osd.time < ?";
+	private static final String SQL_GET_MOBILITY_COUNTS_FROM_MOBILITY =
+		"SELECT COUNT(*) AS total, " +
+			"SUM(m.location IS NOT NULL) AS with_location " +
+		"FROM user u, mobility m " +
+		"WHERE u.username = ? " +
+		"AND u.id = m.user_id " +
+		"AND m.epoch_millis >= ? " +
+		"AND m.epoch_millis < ?";
+
+	// Checks whether or not the user has survey statistics in any campaign in
+	// which the requester is not a supervisor.
+	private static final String SQL_EXISTS_UNSUPERVISED_SURVEY_STATS =
+		"SELECT EXISTS(" +
+			"SELECT uss.campaign_id " +
+			"FROM user u, user_survey_stats uss " +
+			"WHERE u.username = ? " +
+			"AND u.id = uss.user_id " +
+			"AND uss.campaign_id NOT IN (" +
+				"SELECT urc.campaign_id " +
+				"FROM user ru, user_role ur, user_role_campaign urc " +
+				"WHERE ru.username = ? " +
+				"AND ru.id = urc.user_id " +
+				"AND ur.id = urc.user_role_id " +
+				"AND ur.role = '" + Campaign.Role.SUPERVISOR + "'" +
+			")" +
+		")";
+
+	// Retrieves the time of a user's most recent survey response.
+	private static final String SQL_GET_SURVEY_LAST =
+		"SELECT MAX(uss.last_taken) AS last_taken " +
+		"FROM user u, user_survey_stats uss " +
+		"WHERE u.username = ? " +
+		"AND u.id = uss.user_id";
+
+	// Retrieves the counts of a user's prompt responses since some hour.
+	private static final String SQL_GET_SURVEY_COUNTS =
+		"SELECT SUM(ussh.total) AS total, " +
+			"SUM(ussh.with_location) AS with_location " +
+		"FROM user u, user_survey_stats_hour ussh " +
+		"WHERE u.username = ? " +
+		"AND u.id = ussh.user_id " +
+		"AND ussh.hour_start >= ?";
+
+	// Retrieves the counts of a user's prompt responses uploaded in some span
+	// of time, where each prompt response has its survey response's location.
+	private static final String SQL_GET_SURVEY_COUNTS_FROM_RESPONSES =
+		"SELECT COUNT(*) AS total, " +
+			"SUM(sr.location IS NOT NULL) AS with_location " +
+		"FROM user u, survey_response sr, prompt_response pr " +
+		"WHERE u.username = ? " +
+		"AND u.id = sr.user_id " +
+		"AND sr.id = pr.survey_response_id " +
+		"AND sr.upload_timestamp >= ? " +
+		"AND sr.upload_timestamp < ?";
+
+	// Checks whether or not every user's statistics have been rebuilt.
+	private static final String SQL_EXISTS_REBUILT =
+		"SELECT EXISTS(" +
+			"SELECT p_key " +
+			"FROM preference " +
+			"WHERE p_key = '" + PREFERENCE_KEY_REBUILT + "'" +
+		")";
+
+	// Records that every user's statistics have been rebuilt.
+	private static final String SQL_UPSERT_REBUILT =
+		"INSERT INTO preference (p_key, p_value) " +
+		"VALUES ('" + PREFERENCE_KEY_REBUILT + "', 'true') " +
+		"ON DUPLICATE KEY UPDATE p_value = VALUES(p_value)";
+
+	// Retrieves the database ID of every user.
+	private static final String SQL_GET_USER_IDS =
+		"SELECT id FROM user";
+
+	// Locks a user's statistics, so that an upload's additions to them wait
+	// until the user's statistics have been rebuilt. Uploads always add to
+	// these tables before the hourly ones.
+	private static final String SQL_LOCK_MOBILITY_STATS =
+		"SELECT user_id FROM user_mobility_stats WHERE user_id = ? FOR UPDATE";
+	private static final String SQL_LOCK_SURVEY_STATS =
+		"SELECT user_id FROM user_survey_stats WHERE user_id = ? FOR UPDATE";
+
+	// Retrieves the time of a user's most recent Mobility point from the
+	// Mobility observer's stream data and from the older Mobility table.
+	private static final String SQL_GET_MOBILITY_LAST_FROM_STREAMS =
+		"SELECT MAX(osd.time) AS last_taken " +
+		"FROM observer o, observer_stream_link osl, observer_stream_data osd " +
+		"WHERE o.observer_id = ? " +
+		"AND o.id = osl.observer_id " +
+		"AND osl.id = osd.observer_stream_link_id " +
+		"AND osd.user_id = ?";
+	private static final String SQL_GET_MOBILITY_LAST_FROM_MOBILITY =
+		"SELECT MAX(m.epoch_millis) AS last_taken " +
+		"FROM mobility m " +
+		"WHERE m.user_id = ?";
+
+	// Retrieves the hourly counts of a user's Mobility points since some hour
+	// from the Mobility observer's stream data and from the older Mobility
+	// table.
+	private static final String SQL_GET_MOBILITY_HOURS_FROM_STREAMS =
+		"SELECT (osd.time DIV " + ActivityCounts.MILLIS_PER_HOUR + ") * " +
+				ActivityCounts.MILLIS_PER_HOUR + " AS hour_start, " +
+			"COUNT(*) AS total, " +
+			"SUM(osd.location_latitude IS NOT NULL) AS with_location " +
+		"FROM observer o, observer_stream_link osl, observer_stream_data osd " +
+		"WHERE o.observer_id = ? " +
+		"AND o.id = osl.observer_id " +
+		"AND osl.id = osd.observer_stream_link_id " +
+		"AND osd.user_id = ? " +
+		"AND osd.time >= ? " +
+		"GROUP BY hour_start";
+	private static final String SQL_GET_MOBILITY_HOURS_FROM_MOBILITY =
+		"SELECT (m.epoch_millis DIV " + ActivityCounts.MILLIS_PER_HOUR + ") * " +
+				ActivityCounts.MILLIS_PER_HOUR + " AS hour_start, " +
+			"COUNT(*) AS total, " +
+			"SUM(m.location IS NOT NULL) AS with_location " +
+		"FROM mobility m " +
+		"WHERE m.user_id = ? " +
+		"AND m.epoch_millis >= ? " +
+		"GROUP BY hour_start";
+
+	// Retrieves the time of a user's most recent survey response in each
+	// campaign.
+	private static final String SQL_GET_SURVEY_LAST_BY_CAMPAIGN =
+		"SELECT sr.campaign_id, MAX(sr.epoch_millis) AS last_taken " +
+		"FROM survey_response sr " +
+		"WHERE sr.user_id = ? " +
+		"GROUP BY sr.campaign_id";
+
+	// Retrieves the hourly counts of a user's prompt responses in each
+	// campaign since some hour, where each prompt response has its survey
+	// response's location.
+	private static final String SQL_GET_SURVEY_HOURS_BY_CAMPAIGN =
+		"SELECT sr.campaign_id, " +
+			"(UNIX_TIMESTAMP(sr.upload_timestamp) DIV 3600) * " +
+				ActivityCounts.MILLIS_PER_HOUR + " AS hour_start, " +
+			"COUNT(*) AS total, " +
+			"SUM(sr.location IS NOT NULL) AS with_location " +
+		"FROM survey_response sr, prompt_response pr " +
+		"WHERE sr.user_id = ? " +
+		"AND sr.id = pr.survey_response_id " +
+		"AND sr.upload_timestamp >= ? " +
+		"GROUP BY sr.campaign_id, hour_start";
+
+	// Removes a user's statistics before they are rebuilt.
+	private static final String SQL_DELETE_MOBILITY_LAST =
+		"DELETE FROM user_mobility_stats WHERE user_id = ?";
+	private static final String SQL_DELETE_MOBILITY_HOURS =
+		"DELETE FROM user_mobility_stats_hour WHERE user_id = ?";
+	private static final String SQL_DELETE_SURVEY_LAST =
+		"DELETE FROM user_survey_stats WHERE user_id = ?";
+	private static final String SQL_DELETE_SURVEY_HOURS =
+		"DELETE FROM user_survey_stats_hour WHERE user_id = ?";
+
+	/**
+	 * Creates this object.
+	 *
+	 * @param dataSource The DataSource to use when accessing the database.
+	 */
+	private UserStatsQueries(DataSource dataSource) {
+		super(dataSource);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserStatsQueries#addMobilityActivity(java.lang.String, org.ohmage.domain.ActivityCounts)
+	 */
+	@Override
+	public void addMobilityActivity(
+			final String username,
+			final ActivityCounts counts)
+			throws DataAccessException {
+
+		if((counts == null) || counts.isEmpty()) {
+			return;
+		}
+
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Adding to a user's Mobility statistics.");
+
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager = new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+
+			try {
+				Long userId = getId(SQL_GET_USER_ID, username);
+				if(userId == null) {
+					throw new DataAccessException(
+						"The user does not exist: " + username);
+				}
+
+				addMobilityActivity(userId, counts);
+
+				// Commit the transaction.
+				try {
+					transactionManager.commit(status);
+				}
+				catch(TransactionException e) {
+					transactionManager.rollback(status);
+					throw new DataAccessException("Error while committing the transaction.", e);
+				}
+			}
+			catch(DataAccessException e) {
+				transactionManager.rollback(status);
+				throw e;
+			}
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserStatsQueries#addSurveyActivity(java.lang.String, java.lang.String, org.ohmage.domain.ActivityCounts)
+	 */
+	@Override
+	public void addSurveyActivity(
+			final String username,
+			final String campaignId,
+			final ActivityCounts counts)
+			throws DataAccessException {
+
+		if((counts == null) || counts.isEmpty()) {
+			return;
+		}
+
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Adding to a user's survey statistics.");
+
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager = new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+
+			try {
+				Long userId = getId(SQL_GET_USER_ID, username);
+				if(userId == null) {
+					throw new DataAccessException(
+						"The user does not exist: " + username);
+				}
+				Long campaignDbId = getId(SQL_GET_CAMPAIGN_ID, campaignId);
+				if(campaignDbId == null) {
+					throw new DataAccessException(
+						"The campaign does not exist: " + campaignId);
+				}
+
+				addSurveyActivity(userId, campaignDbId, counts);
+
+				// Commit the transaction.
+				try {
+					transactionManager.commit(status);
+				}
+				catch(TransactionException e) {
+					transactionManager.rollback(status);
+					throw new DataAccessException("Error while committing the transaction.", e);
+				}
+			}
+			catch(DataAccessException e) {
+				transactionManager.rollback(status);
+				throw e;
+			}
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserStatsQueries#getLastMobilityTime(java.lang.String)
+	 */
+	@Override
+	public Long getLastMobilityTime(
+			final String username)
+			throws DataAccessException {
+
+		return getLastTaken(SQL_GET_MOBILITY_LAST, username);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserStatsQueries#getMobilityLocationPercentage(java.lang.String, long)
+	 */
+	@Override
+	public Double getMobilityLocationPercentage(
+			final String username,
+			final long since)
+			throws DataAccessException {
+
+		// The statistics give the hours after the one that contains the start
+		// and the data themselves give the rest of that hour.
+		long nextHour = ActivityCounts.getHour(since) + ActivityCounts.MILLIS_PER_HOUR;
+
+		long[] counts = getCounts(SQL_GET_MOBILITY_COUNTS, username, nextHour);
+		addCounts(
+			counts,
+			getCounts(
+				SQL_GET_MOBILITY_COUNTS_FROM_STREAMS,
+				username, MOBILITY_OBSERVER_ID, since, nextHour));
+		addCounts(
+			counts,
+			getCounts(
+				SQL_GET_MOBILITY_COUNTS_FROM_MOBILITY,
+				username, since, nextHour));
+
+		return getLocationPercentage(counts);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserStatsQueries#isSupervisorForAllSurveyStats(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public boolean isSupervisorForAllSurveyStats(
+			final String requestersUsername,
+			final String usersUsername)
+			throws DataAccessException {
+
+		try {
+			return ! getJdbcTemplate().queryForObject(
+					SQL_EXISTS_UNSUPERVISED_SURVEY_STATS,
+					new Object[] { usersUsername, requestersUsername },
+					Boolean.class);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_EXISTS_UNSUPERVISED_SURVEY_STATS +
+					"' with parameters: " +
+					usersUsername + ", " +
+					requestersUsername,
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserStatsQueries#getLastSurveyTime(java.lang.String)
+	 */
+	@Override
+	public Long getLastSurveyTime(
+			final String username)
+			throws DataAccessException {
+
+		return getLastTaken(SQL_GET_SURVEY_LAST, username);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserStatsQueries#getSurveyLocationPercentage(java.lang.String, long)
+	 */
+	@Override
+	public Double getSurveyLocationPercentage(
+			final String username,
+			final long since)
+			throws DataAccessException {
+
+		// The statistics give the hours after the one that contains the start
+		// and the data themselves give the rest of that hour.
+		long nextHour = ActivityCounts.getHour(since) + ActivityCounts.MILLIS_PER_HOUR;
+
+		long[] counts = getCounts(SQL_GET_SURVEY_COUNTS, username, nextHour);
+		addCounts(
+			counts,
+			getCounts(
+				SQL_GET_SURVEY_COUNTS_FROM_RESPONSES,
+				username, new Timestamp(since), new Timestamp(nextHour)));
+
+		return getLocationPercentage(counts);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserStatsQueries#isRebuilt()
+	 */
+	@Override
+	public boolean isRebuilt() throws DataAccessException {
+		try {
+			return getJdbcTemplate().queryForObject(
+					SQL_EXISTS_REBUILT,
+					Boolean.class);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + SQL_EXISTS_REBUILT + "'.",
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserStatsQueries#rebuildStats(long)
+	 */
+	@Override
+	public void rebuildStats(final long sinceHour) throws DataAccessException {
+		long start = System.currentTimeMillis();
+
+		List<Long> userIds;
+		try {
+			userIds =
+				getJdbcTemplate().query(
+					SQL_GET_USER_IDS,
+					new RowMapper<Long>() {
+						@Override
+						public Long mapRow(
+								final ResultSet rs,
+								final int rowNum)
+								throws SQLException {
+
+							return rs.getLong("id");
+						}
+					});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + SQL_GET_USER_IDS + "'.",
+				e);
+		}
+
+		// Each user is rebuilt in their own short transaction, so uploads
+		// only ever wait for one user's statistics to be rebuilt, and readers
+		// see either the old or the new statistics.
+		for(Long userId : userIds) {
+			rebuildStats(userId, sinceHour);
+		}
+
+		// Remember that the statistics are complete, so that they may be read
+		// as soon as the server restarts.
+		update(SQL_UPSERT_REBUILT);
+
+		LOGGER.info(
+			"Rebuilt the statistics of " +
+				userIds.size() +
+				" user(s) in " +
+				(System.currentTimeMillis() - start) +
+				" ms.");
+	}
+
+	/**
+	 * Rebuilds one user's statistics from their survey responses and Mobility
+	 * points. Uploads add to the statistics in the same transaction in which
+	 * they store their data, so, while the user's statistics are locked,
+	 * every upload's data are either already committed and counted here or
+	 * are added to the statistics once they have been rebuilt.
+	 *
+	 * @param userId The user's database ID.
+	 *
+	 * @param sinceHour The start of the earliest hour to keep.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	private void rebuildStats(
+			final long userId,
+			final long sinceHour)
+			throws DataAccessException {
+
+		// Create the transaction. The aggregates are plain reads, so they 
+		// do not lock the data, and they must see every upload that was 
+		// committed while waiting for the locks.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Rebuilding a user's statistics.");
+		def.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager = new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+
+			try {
+				lock(SQL_LOCK_MOBILITY_STATS, userId);
+				lock(SQL_LOCK_SURVEY_STATS, userId);
+
+				// Compute the statistics.
+				final ActivityCounts mobilityCounts = new ActivityCounts();
+				Long lastTaken =
+					getLastTaken(
+						SQL_GET_MOBILITY_LAST_FROM_STREAMS,
+						MOBILITY_OBSERVER_ID, userId);
+				if(lastTaken != null) {
+					mobilityCounts.addLastTaken(lastTaken);
+				}
+				lastTaken =
+					getLastTaken(SQL_GET_MOBILITY_LAST_FROM_MOBILITY, userId);
+				if(lastTaken != null) {
+					mobilityCounts.addLastTaken(lastTaken);
+				}
+				addHours(
+					mobilityCounts,
+					SQL_GET_MOBILITY_HOURS_FROM_STREAMS,
+					MOBILITY_OBSERVER_ID, userId, sinceHour);
+				addHours(
+					mobilityCounts,
+					SQL_GET_MOBILITY_HOURS_FROM_MOBILITY,
+					userId, sinceHour);
+
+				final Map<Long, ActivityCounts> surveyCounts =
+					new HashMap<Long, ActivityCounts>();
+				try {
+					getJdbcTemplate().query(
+						SQL_GET_SURVEY_LAST_BY_CAMPAIGN,
+						new Object[] { userId },
+						new RowCallbackHandler() {
+							@Override
+							public void processRow(
+									final ResultSet rs)
+									throws SQLException {
+
+								getCounts(surveyCounts, rs.getLong("campaign_id"))
+									.addLastTaken(rs.getLong("last_taken"));
+							}
+						});
+				}
+				catch(org.springframework.dao.DataAccessException e) {
+					throw new DataAccessException(
+						"Error executing SQL '" +
+							SQL_GET_SURVEY_LAST_BY_CAMPAIGN +
+							"' with parameter: " +
+							userId,
+						e);
+				}
+				try {
+					getJdbcTemplate().query(
+						SQL_GET_SURVEY_HOURS_BY_CAMPAIGN,
+						new Object[] { userId, new Timestamp(sinceHour) },
+						new RowCallbackHandler() {
+							@Override
+							public void processRow(
+									final ResultSet rs)
+									throws SQLException {
+
+								getCounts(surveyCounts, rs.getLong("campaign_id"))
+									.addHour(
+										rs.getLong("hour_start"),
+										rs.getLong("total"),
+										rs.getLong("with_location"));
+							}
+						});
+				}
+				catch(org.springframework.dao.DataAccessException e) {
+					throw new DataAccessException(
+						"Error executing SQL '" +
+							SQL_GET_SURVEY_HOURS_BY_CAMPAIGN +
+							"' with parameters: " +
+							userId + ", " +
+							sinceHour,
+						e);
+				}
+
+				// Replace the statistics.
+				update(SQL_DELETE_MOBILITY_HOURS, userId);
+				update(SQL_DELETE_MOBILITY_LAST, userId);
+				update(SQL_DELETE_SURVEY_HOURS, userId);
+				update(SQL_DELETE_SURVEY_LAST, userId);
+
+				if(! mobilityCounts.isEmpty()) {
+					addMobilityActivity(userId, mobilityCounts);
+				}
+				for(Map.Entry<Long, ActivityCounts> entry : surveyCounts.entrySet()) {
+					if(! entry.getValue().isEmpty()) {
+						addSurveyActivity(userId, entry.getKey(), entry.getValue());
+					}
+				}
+
+				// Commit the transaction.
+				try {
+					transactionManager.commit(status);
+				}
+				catch(TransactionException e) {
+					transactionManager.rollback(status);
+					throw new DataAccessException("Error while committing the transaction.", e);
+				}
+			}
+			catch(DataAccessException e) {
+				transactionManager.rollback(status);
+				throw e;
+			}
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
+		}
+	}
+
+	/**
+	 * Adds to a user's Mobility statistics in the current transaction.
+	 *
+	 * @param userId The user's database ID.
+	 *
+	 * @param counts The counts to add, which must not be empty.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	private void addMobilityActivity(
+			final long userId,
+			final ActivityCounts counts)
+			throws DataAccessException {
+
+		update(
+			SQL_UPSERT_MOBILITY_LAST,
+			userId,
+			counts.getLastTaken());
+
+		if(counts.getHours().isEmpty()) {
+			return;
+		}
+
+		StringBuilder sql = new StringBuilder(SQL_UPSERT_MOBILITY_HOURS);
+		List<Object> args = new ArrayList<Object>();
+		boolean firstRow = true;
+		for(Long hour : counts.getHours()) {
+			if(firstRow) {
+				firstRow = false;
+			}
+			else {
+				sql.append(", ");
+			}
+			sql.append(SQL_UPSERT_MOBILITY_HOURS_ROW);
+
+			args.add(userId);
+			args.add(hour);
+			args.add(counts.getTotal(hour));
+			args.add(counts.getWithLocation(hour));
+		}
+		sql.append(SQL_ON_DUPLICATE_ADD_COUNTS);
+		update(sql.toString(), args.toArray());
+	}
+
+	/**
+	 * Adds to a user's survey statistics in a campaign in the current
+	 * transaction.
+	 *
+	 * @param userId The user's database ID.
+	 *
+	 * @param campaignDbId The campaign's database ID.
+	 *
+	 * @param counts The counts to add, which must not be empty.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	private void addSurveyActivity(
+			final long userId,
+			final long campaignDbId,
+			final ActivityCounts counts)
+			throws DataAccessException {
+
+		update(
+			SQL_UPSERT_SURVEY_LAST,
+			userId,
+			campaignDbId,
+			counts.getLastTaken());
+
+		if(counts.getHours().isEmpty()) {
+			return;
+		}
+
+		StringBuilder sql = new StringBuilder(SQL_UPSERT_SURVEY_HOURS);
+		List<Object> args = new ArrayList<Object>();
+		boolean firstRow = true;
+		for(Long hour : counts.getHours()) {
+			if(firstRow) {
+				firstRow = false;
+			}
+			else {
+				sql.append(", ");
+			}
+			sql.append(SQL_UPSERT_SURVEY_HOURS_ROW);
+
+			args.add(userId);
+			args.add(campaignDbId);
+			args.add(hour);
+			args.add(counts.getTotal(hour));
+			args.add(counts.getWithLocation(hour));
+		}
+		sql.append(SQL_ON_DUPLICATE_ADD_COUNTS);
+		update(sql.toString(), args.toArray());
+	}
+
+	/**
+	 * Returns the counts for a campaign, creating them if necessary.
+	 *
+	 * @param counts The counts of each campaign.
+	 *
+	 * @param campaignDbId The campaign's database ID.
+	 *
+	 * @return The campaign's counts.
+	 */
+	private static ActivityCounts getCounts(
+			final Map<Long, ActivityCounts> counts,
+			final long campaignDbId) {
+
+		ActivityCounts result = counts.get(campaignDbId);
+		if(result == null) {
+			result = new ActivityCounts();
+			counts.put(campaignDbId, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the hourly counts selected by some SQL to a set of counts.
+	 *
+	 * @param counts The counts to add to.
+	 *
+	 * @param sql The SQL that selects "hour_start", "total", and
+	 * 			  "with_location".
+	 *
+	 * @param args The parameters to the SQL.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	private void addHours(
+			final ActivityCounts counts,
+			final String sql,
+			final Object... args)
+			throws DataAccessException {
+
+		try {
+			getJdbcTemplate().query(
+				sql,
+				args,
+				new RowCallbackHandler() {
+					@Override
+					public void processRow(
+							final ResultSet rs)
+							throws SQLException {
+
+						counts.addHour(
+							rs.getLong("hour_start"),
+							rs.getLong("total"),
+							rs.getLong("with_location"));
+					}
+				});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					sql +
+					"' with parameters: " +
+					Arrays.toString(args),
+				e);
+		}
+	}
+
+	/**
+	 * Returns the database ID of an entity.
+	 *
+	 * @param sql The SQL that selects the ID given one parameter.
+	 *
+	 * @param parameter The parameter, e.g. a username.
+	 *
+	 * @return The database ID or null if there is no such entity.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	private Long getId(
+			final String sql,
+			final String parameter)
+			throws DataAccessException {
+
+		try {
+			List<Long> ids =
+				getJdbcTemplate().query(
+					sql,
+					new Object[] { parameter },
+					new RowMapper<Long>() {
+						@Override
+						public Long mapRow(
+								final ResultSet rs,
+								final int rowNum)
+								throws SQLException {
+
+							return rs.getLong("id");
+						}
+					});
+
+			return ids.isEmpty() ? null : ids.get(0);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					sql +
+					"' with parameter: " +
+					parameter,
+				e);
+		}
+	}
+
+	/**
+	 * Returns the most recent time from one of the statistics tables.
+	 *
+	 * @param sql The SQL that selects "last_taken".
+	 *
+	 * @param args The parameters to the SQL, e.g. the user's username.
+	 *
+	 * @return The time or null if the user has no statistics.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	private Long getLastTaken(
+			final String sql,
+			final Object... args)
+			throws DataAccessException {
+
+		try {
+			return getJdbcTemplate().queryForObject(
+				sql,
+				args,
+				new RowMapper<Long>() {
+					@Override
+					public Long mapRow(
+							final ResultSet rs,
+							final int rowNum)
+							throws SQLException {
+
+						long lastTaken = rs.getLong("last_taken");
+						return rs.wasNull() ? null : lastTaken;
+					}
+				});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					sql +
+					"' with parameters: " +
+					Arrays.toString(args),
+				e);
+		}
+	}
+
+	/**
+	 * Returns the counts selected by some SQL.
+	 *
+	 * @param sql The SQL that selects the summed "total" and "with_location".
+	 *
+	 * @param args The parameters to the SQL, e.g. the user's username.
+	 *
+	 * @return The total and the number with a location, in that order.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	private long[] getCounts(
+			final String sql,
+			final Object... args)
+			throws DataAccessException {
+
+		try {
+			return getJdbcTemplate().queryForObject(
+				sql,
+				args,
+				new RowMapper<long[]>() {
+					@Override
+					public long[] mapRow(
+							final ResultSet rs,
+							final int rowNum)
+							throws SQLException {
+
+						return new long[] {
+							rs.getLong("total"),
+							rs.getLong("with_location") };
+					}
+				});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					sql +
+					"' with parameters: " +
+					Arrays.toString(args),
+				e);
+		}
+	}
+
+	/**
+	 * Adds one set of counts to another.
+	 *
+	 * @param counts The total and the number with a location to add to.
+	 *
+	 * @param more The total and the number with a location to add.
+	 */
+	private static void addCounts(final long[] counts, final long[] more) {
+		counts[0] += more[0];
+		counts[1] += more[1];
+	}
+
+	/**
+	 * Returns the fraction of the counted points that had a location.
+	 *
+	 * @param counts The total and the number with a location.
+	 *
+	 * @return The fraction or null if there were no points.
+	 */
+	private static Double getLocationPercentage(final long[] counts) {
+		if(counts[0] == 0) {
+			return null;
+		}
+
+		return new Double(counts[1]) / new Double(counts[0]);
+	}
+
+	/**
+	 * Locks the rows selected by some SQL until the end of the transaction.
+	 *
+	 * @param sql The SQL, which must end with "FOR UPDATE".
+	 *
+	 * @param args The parameters.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	private void lock(
+			final String sql,
+			final Object... args)
+			throws DataAccessException {
+
+		try {
+			getJdbcTemplate().queryForList(sql, args);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					sql +
+					"' with parameters: " +
+					Arrays.toString(args),
+				e);
+		}
+	}
+
+	/**
+	 * Executes an update.
+	 *
+	 * @param sql The SQL.
+	 *
+	 * @param args The parameters.
+	 *
+	 * @throws DataAccessException There was an error.
+	 */
+	private void update(
+			final String sql,
+			final Object... args)
+			throws DataAccessException {
+
+		try {
+			getJdbcTemplate().update(sql, args);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					sql +
+					"' with parameters: " +
+					Arrays.toString(args),
+				e);
+		}
+	}
+}
@@ -187,6 +187,8 @@ public final class InputKeys {
 	public static final String COLUMN_LIST = "column_list";
 	public static final String RETURN_ID = "return_id";
 	public static final String COLLAPSE = "collapse";
+	public static final String SURVEY_RESPONSE_CURSOR = "cursor";
+	public static final String COUNT_TOTAL = "count_total";
 	
 	// Shared Constants
 	public static final String DESCRIPTION = "description";
@@ -236,6 +238,7 @@ public final class InputKeys {
 	public static final String STREAM_VERSION = "stream_version";
 	public static final String STREAM_IDS_WITH_VERSION = "stream_ids_with_version";
 	public static final String CHRONOLOGICAL = "chronological";
+	public static final String STREAM_CURSOR = "cursor";
 	public static final String PRESERVE_INVALID_POINTS = "preserve_invalid_points";
 	
 	// OMH Constants
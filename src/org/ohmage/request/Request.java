@@ -17,11 +17,16 @@ package org.ohmage.request;
 
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -56,6 +61,12 @@ import org.springframework.util.CollectionUtils;
 public abstract class Request {
 	private static final Logger LOGGER = Logger.getLogger(Request.class);
 	
+	/**
+	 * The number of bytes to copy at a time when a part is streamed to a 
+	 * file.
+	 */
+	private static final long CHUNK_SIZE = 1024 * 1024;
+	
 	/**
 	 * The key to use when responding with a JSONObject about whether the 
 	 * request was a success or failure.
@@ -641,6 +652,107 @@ public abstract class Request {
 		}
 	}	
 	
+	/**
+	 * Streams a "multipart/form-data" part straight to a file rather than 
+	 * reading it into memory. If the part is not GZIP'd, the servlet 
+	 * container writes it, which is usually just a rename of the file it 
+	 * already cached. Otherwise, it is decompressed while it is copied.
+	 * 
+	 * @param httpRequest A "multipart/form-data" request that contains the 
+	 * 					  parameter that has a key value 'key'.
+	 * 
+	 * @param key The key for the value we are after in the 'httpRequest'.
+	 * 
+	 * @param destination The file to which the value should be written.
+	 * 
+	 * @return Returns null if there is no such key in the request or if, 
+	 * 		   after writing the file, it has a length of 0, in which case the
+	 * 		   file is removed. Otherwise, it returns the destination.
+	 * 
+	 * @throws ValidationException The request is not a "multipart/form-data"
+	 * 							   request, the part could not be written, or
+	 * 							   the part was not valid GZIP data.
+	 */
+	protected File getMultipartFile(
+			final HttpServletRequest httpRequest,
+			final String key,
+			final File destination)
+			throws ValidationException {
+		
+		boolean gzipped = false;
+		try {
+			Part part = httpRequest.getPart(key);
+			if(part == null) {
+				return null;
+			}
+			
+			String contentType = part.getContentType();
+			if((contentType != null) && contentType.contains("gzip")) {
+				LOGGER.info("Part was GZIP'd: " + key);
+				gzipped = true;
+				
+				ReadableByteChannel input = 
+					Channels.newChannel(
+						new GZIPInputStream(part.getInputStream()));
+				FileOutputStream output = new FileOutputStream(destination);
+				try {
+					FileChannel outputChannel = output.getChannel();
+					long position = 0;
+					long amountRead;
+					while(
+						(amountRead = 
+							outputChannel.transferFrom(
+								input, 
+								position, 
+								CHUNK_SIZE)) > 0) {
+						
+						position += amountRead;
+					}
+				}
+				finally {
+					input.close();
+					output.close();
+				}
+			}
+			else {
+				part.write(destination.getAbsolutePath());
+			}
+			
+			if(destination.length() == 0) {
+				destination.delete();
+				return null;
+			}
+			else {
+				return destination;
+			}
+		}
+		catch(ServletException e) {
+			LOGGER.error("This is not a multipart/form-data POST.", e);
+			setFailed(ErrorCode.SYSTEM_GENERAL_ERROR, "This is not a multipart/form-data POST which is what we expect for the current API call.");
+			throw new ValidationException(e);
+		}
+		catch(IOException e) {
+			destination.delete();
+			
+			if(gzipped) {
+				LOGGER
+					.info("There was a problem with the zipping of the data.", e);
+				throw
+					new ValidationException(
+						ErrorCode.SERVER_INVALID_GZIP_DATA,
+						"The zipped data was not valid zip data.",
+						e);
+			}
+			
+			LOGGER.error("The part could not be written: " + key, e);
+			throw
+				new ValidationException(
+					ErrorCode.SYSTEM_GENERAL_ERROR,
+					"The part could not be written: " + key,
+					e);
+		}
+	}
+	
 	/**
 	 * Sets the response headers to disallow client caching.
 	 */
@@ -16,6 +16,11 @@
 package org.ohmage.request;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
@@ -24,6 +29,7 @@ import org.apache.log4j.Logger;
 import org.ohmage.cache.KeycloakCache;
 import org.ohmage.exception.InvalidRequestException;
 import org.ohmage.exception.ServiceException;
+import org.ohmage.jee.servlet.RequestServlet;
 import org.ohmage.request.accessrequest.AccessRequestCreationRequest;
 import org.ohmage.request.accessrequest.AccessRequestDeletionRequest;
 import org.ohmage.request.accessrequest.AccessRequestReadRequest;
@@ -125,6 +131,61 @@ public final class RequestBuilder implements ServletContextAware {
 	private static final Logger LOGGER = 
 		Logger.getLogger(RequestBuilder.class);
 	
+	/**
+	 * Builds the request for a single API.
+	 */
+	private static interface RequestFactory {
+		/**
+		 * Builds a new request.
+		 * 
+		 * @param httpRequest The incoming HTTP request.
+		 * 
+		 * @return The new request, which is never null.
+		 * 
+		 * @throws InvalidRequestException The parameters cannot be parsed.
+		 * 
+		 * @throws IOException There was an error reading from the request.
+		 */
+		Request build(
+			HttpServletRequest httpRequest)
+			throws IOException, InvalidRequestException;
+	}
+	
+	/**
+	 * An API in the dispatch table.
+	 */
+	private static final class Endpoint {
+		private final Set<RequestServlet.RequestType> methods;
+		private final RequestFactory factory;
+		
+		/**
+		 * Creates a new endpoint.
+		 * 
+		 * @param methods The HTTP methods this API allows.
+		 * 
+		 * @param factory The factory that builds this API's requests.
+		 */
+		private Endpoint(
+				final Set<RequestServlet.RequestType> methods,
+				final RequestFactory factory) {
+			
+			this.methods = methods;
+			this.factory = factory;
+		}
+	}
+	
+	// The APIs that may only be POSTed to.
+	private static final Set<RequestServlet.RequestType> POST_ONLY =
+		Collections.unmodifiableSet(
+			EnumSet.of(RequestServlet.RequestType.POST));
+	
+	// The APIs that may also be read with a GET.
+	private static final Set<RequestServlet.RequestType> ALLOW_GET =
+		Collections.unmodifiableSet(
+			EnumSet.of(
+				RequestServlet.RequestType.POST,
+				RequestServlet.RequestType.GET));
+	
 	// Root
 	private String apiRoot;
 	
@@ -258,6 +319,10 @@ public final class RequestBuilder implements ServletContextAware {
 	private String apiVisualizationSurveyResponsePrivacy;
 	private String apiVisualizationSurveyResponsePrivacyTimeseries;
 	
+	// The dispatch table from each API's URI to its endpoint.
+	private Map<String, Endpoint> endpoints = 
+		Collections.<String, Endpoint>emptyMap();
+	
 	private static RequestBuilder singleton;
 
 	/**
@@ -414,6 +479,8 @@ public final class RequestBuilder implements ServletContextAware {
 		apiVisualization2dDensity = apiVisualization + "/2d_density/read";
 		apiVisualizationSurveyResponsePrivacy = apiVisualization + "/survey_responses_privacy_state/read";
 		apiVisualizationSurveyResponsePrivacyTimeseries = apiVisualization + "/survey_responses_privacy_state_time/read";
+		
+		registerEndpoints();
 	}
 	
 	/**
@@ -438,462 +505,1294 @@ public final class RequestBuilder implements ServletContextAware {
 		
 		LOGGER.debug(requestUri);
 		
-		// Config
-		if(apiConfigRead.equals(requestUri)) {
-			return new ConfigReadRequest(httpRequest);
-		}
-		// Authentication
-		else if(apiUserAuth.equals(requestUri)) {
-			try {
-				if (ConfigServices.readServerConfiguration().getLocalAuthEnabled())
-					return new AuthRequest(httpRequest);
-				else {
-					LOGGER.info("Rejecting UserAuth request as API is disabled");
-					return new FailedRequest();
-				}
-			} catch (ServiceException e) {
-				// Better supports backwards compat by leaving enabled if we can't
-				// find the localauthenabled param
-				LOGGER.warn("Can't find local auth config. Leaving API enabled.", e);
-				return new AuthRequest(httpRequest);
-			}
-		}
-		else if(apiUserAuthToken.equals(requestUri)) {
-			try {
-				if (ConfigServices.readServerConfiguration().getLocalAuthEnabled())
-					return new AuthTokenRequest(httpRequest);
-				else {
-					LOGGER.info("Rejecting UserAuthToken request as API is disabled");
-					return new FailedRequest();
-				}
-			} catch (ServiceException e) {
-				// Better supports backwards compat by leaving enabled if we can't
-				// find the localauthenabled param
-				LOGGER.warn("Can't find local auth config. Leaving API enabled.", e);
-				return new AuthTokenRequest(httpRequest);
-			}
-		}
-		else if(apiUserLogout.equals(requestUri)) {
-			return new AuthTokenLogoutRequest(httpRequest);
+		Endpoint endpoint = endpoints.get(requestUri);
+		
+		// The URI is unknown.
+		if(endpoint == null) {
+			return new FailedRequest();
 		}
-		else if(apiUserWhoAmI.equals(requestUri)) {
-			return new AuthTokenWhoAmIRequest(httpRequest);
+		
+		return endpoint.factory.build(httpRequest);
+	}
+	
+	/**
+	 * Returns whether or not some URI is known.
+	 * 
+	 * @param uri The URI to check.
+	 * 
+	 * @return Returns true if the URI is known; false, otherwise.
+	 */
+	public boolean knownUri(String uri) {
+		return endpoints.containsKey(uri);
+	}
+	
+	/**
+	 * Returns whether or not some URI may be requested with some HTTP method.
+	 * 
+	 * @param uri The URI to check.
+	 * 
+	 * @param method The HTTP method.
+	 * 
+	 * @return Returns true if the URI is known and allows the method; false,
+	 * 		   otherwise.
+	 */
+	public boolean isAllowed(
+			final String uri,
+			final RequestServlet.RequestType method) {
+		
+		Endpoint endpoint = endpoints.get(uri);
+		
+		return (endpoint != null) && endpoint.methods.contains(method);
+	}
+	
+	/**
+	 * Adds an API to the dispatch table.
+	 * 
+	 * @param uri The API's URI.
+	 * 
+	 * @param methods The HTTP methods the API allows.
+	 * 
+	 * @param factory The factory that builds the API's requests.
+	 */
+	private void register(
+			final String uri,
+			final Set<RequestServlet.RequestType> methods,
+			final RequestFactory factory) {
+		
+		if(endpoints.put(uri, new Endpoint(methods, factory)) != null) {
+			throw new IllegalStateException(
+				"The same URI was registered twice: " + uri);
 		}
+	}
+	
+	/**
+	 * Builds the dispatch table from the API URIs. This must be called after
+	 * all of the URIs have been set.
+	 */
+	private void registerEndpoints() {
+		endpoints = new HashMap<String, Endpoint>();
+		
+		// Config
+		register(
+			apiConfigRead,
+			ALLOW_GET,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ConfigReadRequest(httpRequest);
+				}
+			});
+		
+		// Authentication
+		register(
+			apiUserAuth,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					try {
+						if (ConfigServices.readServerConfiguration().getLocalAuthEnabled())
+							return new AuthRequest(httpRequest);
+						else {
+							LOGGER.info("Rejecting UserAuth request as API is disabled");
+							return new FailedRequest();
+						}
+					} catch (ServiceException e) {
+						// Better supports backwards compat by leaving enabled if we can't
+						// find the localauthenabled param
+						LOGGER.warn("Can't find local auth config. Leaving API enabled.", e);
+						return new AuthRequest(httpRequest);
+					}
+				}
+			});
+		
+		register(
+			apiUserAuthToken,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					try {
+						if (ConfigServices.readServerConfiguration().getLocalAuthEnabled())
+							return new AuthTokenRequest(httpRequest);
+						else {
+							LOGGER.info("Rejecting UserAuthToken request as API is disabled");
+							return new FailedRequest();
+						}
+					} catch (ServiceException e) {
+						// Better supports backwards compat by leaving enabled if we can't
+						// find the localauthenabled param
+						LOGGER.warn("Can't find local auth config. Leaving API enabled.", e);
+						return new AuthTokenRequest(httpRequest);
+					}
+				}
+			});
+		
+		register(
+			apiUserLogout,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new AuthTokenLogoutRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserWhoAmI,
+			ALLOW_GET,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new AuthTokenWhoAmIRequest(httpRequest);
+				}
+			});
+		
 		// Annotation
-		else if(apiAnnotationPromptResponseCreate.equals(requestUri)) {
-			return new PromptResponseAnnotationCreationRequest(httpRequest);
-		}
-		else if(apiAnnotationPromptResponseRead.equals(requestUri)) {
-			return new PromptResponseAnnotationReadRequest(httpRequest);
-		}
-		else if(apiAnnotationSurveyResponseCreate.equals(requestUri)) {
-			return new SurveyResponseAnnotationCreationRequest(httpRequest);
-		}
-		else if(apiAnnotationSurveyResponseRead.equals(requestUri)) {
-			return new SurveyResponseAnnotationReadRequest(httpRequest);
-		}
-		else if(apiAnnotationUpdate.equals(requestUri)) {
-			return new AnnotationUpdateRequest(httpRequest);
-		}
-		else if(apiAnnotationDelete.equals(requestUri)) {
-			return new AnnotationDeleteRequest(httpRequest);
-		}
+		register(
+			apiAnnotationPromptResponseCreate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new PromptResponseAnnotationCreationRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiAnnotationPromptResponseRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new PromptResponseAnnotationReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiAnnotationSurveyResponseCreate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new SurveyResponseAnnotationCreationRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiAnnotationSurveyResponseRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new SurveyResponseAnnotationReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiAnnotationUpdate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new AnnotationUpdateRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiAnnotationDelete,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new AnnotationDeleteRequest(httpRequest);
+				}
+			});
+		
 		// Audio
-		else if(apiAudioRead.equals(requestUri)) {
-			return new AudioReadRequest(httpRequest);
-			// direct to mediaReadRequest(httpRequest);
-		}
+		register(
+			apiAudioRead,
+			ALLOW_GET,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new AudioReadRequest(httpRequest);
+					// direct to mediaReadRequest(httpRequest);
+				}
+			});
+		
 		// Audit
-		else if(apiAuditRead.equals(requestUri)) {
-			return new AuditReadRequest(httpRequest);
-		}
+		register(
+			apiAuditRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new AuditReadRequest(httpRequest);
+				}
+			});
+		
 		// Campaign
-		else if(apiCampaignAssignment.equals(requestUri)) {
-			return new CampaignAssignmentRequest(httpRequest);
-		}
-		else if(apiCampaignCreate.equals(requestUri)) {
-			return new CampaignCreationRequest(httpRequest);
-		}
-		else if(apiCampaignRead.equals(requestUri)) {
-			return new CampaignReadRequest(httpRequest);
-		}
-		else if(apiCampaignSearch.equals(requestUri)) {
-			return new CampaignSearchRequest(httpRequest);
-		}
-		else if(apiCampaignUpdate.equals(requestUri)) {
-			return new CampaignUpdateRequest(httpRequest);
-		}
-		else if(apiCampaignDelete.equals(requestUri)) {
-			return new CampaignDeletionRequest(httpRequest);
-		}
+		register(
+			apiCampaignAssignment,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new CampaignAssignmentRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiCampaignCreate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new CampaignCreationRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiCampaignRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new CampaignReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiCampaignSearch,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new CampaignSearchRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiCampaignUpdate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new CampaignUpdateRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiCampaignDelete,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new CampaignDeletionRequest(httpRequest);
+				}
+			});
+		
 		// Class
-		else if(apiClassCreate.equals(requestUri)) {
-			return new ClassCreationRequest(httpRequest);
-		}
-		else if(apiClassRead.equals(requestUri)) {
-			return new ClassReadRequest(httpRequest);
-		}
-		else if(apiClassRosterRead.equals(requestUri)) {
-			return new ClassRosterReadRequest(httpRequest);
-		}
-		else if(apiClassSearch.equals(requestUri)) {
-			return new ClassSearchRequest(httpRequest);
-		}
-		else if(apiClassUpdate.equals(requestUri)) {
-			return new ClassUpdateRequest(httpRequest);
-		}
-		else if(apiClassRosterUpdate.equals(requestUri)) {
-			return new ClassRosterUpdateRequest(httpRequest);
-		}
-		else if(apiClassDelete.equals(requestUri)) {
-			return new ClassDeletionRequest(httpRequest);
-		}
+		register(
+			apiClassCreate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ClassCreationRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiClassRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ClassReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiClassRosterRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ClassRosterReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiClassSearch,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ClassSearchRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiClassUpdate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ClassUpdateRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiClassRosterUpdate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ClassRosterUpdateRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiClassDelete,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ClassDeletionRequest(httpRequest);
+				}
+			});
+		
 		// Document
-		else if(apiDocumentCreate.equals(requestUri)) {
-			return new DocumentCreationRequest(httpRequest);
-		}
-		else if(apiDocumentRead.equals(requestUri)) {
-			return new DocumentReadRequest(httpRequest);
-		}
-		else if(apiDocumentReadContents.equals(requestUri)) {
-			return new DocumentReadContentsRequest(httpRequest);
-		}
-		else if(apiDocumentUpdate.equals(requestUri)) {
-			return new DocumentUpdateRequest(httpRequest);
-		}
-		else if(apiDocumentDelete.equals(requestUri)) {
-			return new DocumentDeletionRequest(httpRequest);
-		}
+		register(
+			apiDocumentCreate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new DocumentCreationRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiDocumentRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new DocumentReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiDocumentReadContents,
+			ALLOW_GET,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new DocumentReadContentsRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiDocumentUpdate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new DocumentUpdateRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiDocumentDelete,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new DocumentDeletionRequest(httpRequest);
+				}
+			});
+		
 		// Image
-		else if(apiImageRead.equals(requestUri)) {
-			return new ImageReadRequest(httpRequest);
-		}
-		else if(apiImageBatchZipRead.equals(requestUri)) {
-			return new ImageBatchZipReadRequest(httpRequest);
-		}
+		register(
+			apiImageRead,
+			ALLOW_GET,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ImageReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiImageBatchZipRead,
+			ALLOW_GET,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ImageBatchZipReadRequest(httpRequest);
+				}
+			});
+		
 		// apiMediaRead
-		else if(apiMediaRead.equals(requestUri)) {
-			return new MediaReadRequest(httpRequest);
-		}
+		register(
+			apiMediaRead,
+			ALLOW_GET,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new MediaReadRequest(httpRequest);
+				}
+			});
+		
 		// Mobility
-		else if(apiMobilityUpload.equals(requestUri)) {
-			return new MobilityUploadRequest(httpRequest);
-		}
-		else if(apiMobilityRead.equals(requestUri)) {
-			return new MobilityReadRequest(httpRequest);
-		}
-		else if(apiMobilityReadChunked.equals(requestUri)) {
-			return new MobilityReadChunkedRequest(httpRequest);
-		}
-		else if(apiMobilityAggregateRead.equals(requestUri)) {
-			return new MobilityAggregateReadRequest(httpRequest);
-		}
-		else if(apiMobilityDatesRead.equals(requestUri)) {
-			return new MobilityDatesReadRequest(httpRequest);
-		}
-		else if(apiMobilityReadCsv.equals(requestUri)) {
-			return new MobilityReadCsvRequest(httpRequest);
-		}
-		else if(apiMobilityUpdate.equals(requestUri)) {
-			return new MobilityUpdateRequest(httpRequest);
-		}
+		register(
+			apiMobilityUpload,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new MobilityUploadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiMobilityRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new MobilityReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiMobilityReadChunked,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new MobilityReadChunkedRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiMobilityAggregateRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new MobilityAggregateReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiMobilityDatesRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new MobilityDatesReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiMobilityReadCsv,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new MobilityReadCsvRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiMobilityUpdate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new MobilityUpdateRequest(httpRequest);
+				}
+			});
+		
 		// Observer
-		else if(apiObserverCreate.equals(requestUri)) {
-			return new ObserverCreationRequest(httpRequest);
-		}
-		else if(apiObserverRead.equals(requestUri)) {
-			return new ObserverReadRequest(httpRequest, false);
-		}
-		else if(apiObserverReadXml.equals(requestUri)) {
-			return new ObserverReadRequest(httpRequest, true);
-		}
-		else if(apiObserverUpdate.equals(requestUri)) {
-			return new ObserverUpdateRequest(httpRequest);
-		}
-		else if(apiStreamUpload.equals(requestUri)) {
-			return new StreamUploadRequest(httpRequest);
-		}
-		else if(apiStreamRead.equals(requestUri)) {
-			return new StreamReadRequest(httpRequest);
-		}
-		else if(apiStreamInvalidRead.equals(requestUri)) {
-			return new StreamReadInvalidRequest(httpRequest);
-		}
+		register(
+			apiObserverCreate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ObserverCreationRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiObserverRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ObserverReadRequest(httpRequest, false);
+				}
+			});
+		
+		register(
+			apiObserverReadXml,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ObserverReadRequest(httpRequest, true);
+				}
+			});
+		
+		register(
+			apiObserverUpdate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new ObserverUpdateRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiStreamUpload,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new StreamUploadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiStreamRead,
+			ALLOW_GET,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new StreamReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiStreamInvalidRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new StreamReadInvalidRequest(httpRequest);
+				}
+			});
+		
 		// OMH
-		else if(apiOmhAuth.equals(requestUri)) {
-			return new OmhAuthenticateRequest(httpRequest);
-		}
-		else if(apiOmhRegistryCreate.equals(requestUri)) {
-			return new OmhRegistryCreateRequest(httpRequest);
-		}
-		else if(apiOmhRegistryRead.equals(requestUri)) {
-			return new OmhRegistryReadRequest(httpRequest);
-		}
-		else if(apiOmhRegistryUpdate.equals(requestUri)) {
-			return new OmhRegistryUpdateRequest(httpRequest);
-		}
-		else if(apiOmhCatalog.equals(requestUri)) {
-			return new OmhCatalogRequest(httpRequest);
-		}
-		else if(apiOmhRead.equals(requestUri)) {
-			return new OmhReadRequest(httpRequest);
-		}
-		else if(apiOmhWrite.equals(requestUri)) {
-			return new OmhWriteRequest(httpRequest);
-		}
+		register(
+			apiOmhAuth,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new OmhAuthenticateRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiOmhRegistryCreate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new OmhRegistryCreateRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiOmhRegistryRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new OmhRegistryReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiOmhRegistryUpdate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new OmhRegistryUpdateRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiOmhCatalog,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new OmhCatalogRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiOmhRead,
+			ALLOW_GET,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new OmhReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiOmhWrite,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new OmhWriteRequest(httpRequest);
+				}
+			});
+		
 		// Survey
-		else if(apiSurveyUpload.equals(requestUri)) {
-			return new SurveyUploadRequest(httpRequest);
-		}
-		else if(apiSurveyResponseRead.equals(requestUri)) {
-			return new SurveyResponseReadRequest(httpRequest);
-		}
-		else if(apiSurveyResponseUpdate.equals(requestUri)) {
-			return new SurveyResponseUpdateRequest(httpRequest);
-		}
-		else if(apiSurveyResponseDelete.equals(requestUri)) {
-			return new SurveyResponseDeleteRequest(httpRequest);
-		}
-		else if(apiSurveyResponseFunctionRead.equals(requestUri)) {
-			return new SurveyResponseFunctionReadRequest(httpRequest);
-		}
+		register(
+			apiSurveyUpload,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new SurveyUploadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiSurveyResponseRead,
+			ALLOW_GET,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new SurveyResponseReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiSurveyResponseUpdate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new SurveyResponseUpdateRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiSurveyResponseDelete,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new SurveyResponseDeleteRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiSurveyResponseFunctionRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new SurveyResponseFunctionReadRequest(httpRequest);
+				}
+			});
+		
 		// User
-		else if(apiUserCreate.equals(requestUri)) {
-			return new UserCreationRequest(httpRequest);
-		}
-		else if(apiUserRegister.equals(requestUri)) {
-			return new UserRegistrationRequest(httpRequest);
-		}
-		else if(apiUserActivate.equals(requestUri)) {
-			return new UserActivationRequest(httpRequest);
-		}
-		else if(apiUserPasswordReset.equals(requestUri)) {
-			return new UserPasswordResetRequest(httpRequest);
-		}
-		else if(apiUserMessageReset.equals(requestUri)) {
-			return new UserMessageResetRequest(httpRequest);
-		}
-		else if(apiUserViewReset.equals(requestUri)) {
-			return new UserViewResetRequest(httpRequest);
-		}
-		else if(apiUserRead.equals(requestUri)) {
-			return new UserReadRequest(httpRequest);
-		}
-		else if(apiUserInfoRead.equals(requestUri)) {
-			return new UserInfoReadRequest(httpRequest);
-		}
-		else if(apiUserStatsRead.equals(requestUri)) {
-			return new UserStatsReadRequest(httpRequest);
-		}
-		else if(apiUserSearch.equals(requestUri)) {
-			return new UserSearchRequest(httpRequest);
-		}
-		else if(apiUserUpdate.equals(requestUri)) {
-			return new UserUpdateRequest(httpRequest);
-		}
-		else if(apiUserChangePassword.equals(requestUri)) {
-			return new UserChangePasswordRequest(httpRequest);
-		}
-		else if(apiUserDelete.equals(requestUri)) {
-			return new UserDeletionRequest(httpRequest);
-		}
-		else if(apiUserSetup.equals(requestUri)) {
-			try {
-				if (ConfigServices.readServerConfiguration().getUserSetupEnabled())
-					return new UserSetupRequest(httpRequest);
-				else {
-					LOGGER.info("Rejecting UserSetup request as API is disabled");
-					return new FailedRequest();
-				}
-			} catch (ServiceException e) {
-				LOGGER.warn("Can't find user setup config. Will disable this API.");
-				return new FailedRequest();
-			}
-		}
-		else if(apiUserSetupExternal.equals(requestUri)) {
-			try {
-				if (ConfigServices.readServerConfiguration().getUserSetupEnabled() &&
-						KeycloakCache.isEnabled())
-					return new UserSetupExternalRequest(httpRequest);
-				else {
-					LOGGER.info("Rejecting UserSetupExternal request as API is disabled");
-					return new FailedRequest();
-				}
-			} catch (ServiceException e) {
-				LOGGER.warn("Can't find user setup config. Will disable this API.");
-				return new FailedRequest();
-			}
-		}
+		register(
+			apiUserCreate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new UserCreationRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserRegister,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new UserRegistrationRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserActivate,
+			ALLOW_GET,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new UserActivationRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserPasswordReset,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new UserPasswordResetRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserMessageReset,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new UserMessageResetRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserViewReset,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new UserViewResetRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new UserReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserInfoRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new UserInfoReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserStatsRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new UserStatsReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserSearch,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new UserSearchRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserUpdate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new UserUpdateRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserChangePassword,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new UserChangePasswordRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserDelete,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new UserDeletionRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiUserSetup,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					try {
+						if (ConfigServices.readServerConfiguration().getUserSetupEnabled())
+							return new UserSetupRequest(httpRequest);
+						else {
+							LOGGER.info("Rejecting UserSetup request as API is disabled");
+							return new FailedRequest();
+						}
+					} catch (ServiceException e) {
+						LOGGER.warn("Can't find user setup config. Will disable this API.");
+						return new FailedRequest();
+					}
+				}
+			});
+		
+		register(
+			apiUserSetupExternal,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					try {
+						if (ConfigServices.readServerConfiguration().getUserSetupEnabled() &&
+								KeycloakCache.isEnabled())
+							return new UserSetupExternalRequest(httpRequest);
+						else {
+							LOGGER.info("Rejecting UserSetupExternal request as API is disabled");
+							return new FailedRequest();
+						}
+					} catch (ServiceException e) {
+						LOGGER.warn("Can't find user setup config. Will disable this API.");
+						return new FailedRequest();
+					}
+				}
+			});
+		
 		// AccessRequest
-		else if(apiAccessRequestCreate.equals(requestUri)) {
-			return new AccessRequestCreationRequest(httpRequest);
-		}
-		else if(apiAccessRequestUpdate.equals(requestUri)) {
-			return new AccessRequestUpdateRequest(httpRequest);
-		}
-		else if(apiAccessRequestRead.equals(requestUri)) {
-			return new AccessRequestReadRequest(httpRequest);
-		}
-		else if(apiAccessRequestDelete.equals(requestUri)) {
-			return new AccessRequestDeletionRequest(httpRequest);
-		}
+		register(
+			apiAccessRequestCreate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new AccessRequestCreationRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiAccessRequestUpdate,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new AccessRequestUpdateRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiAccessRequestRead,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new AccessRequestReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiAccessRequestDelete,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new AccessRequestDeletionRequest(httpRequest);
+				}
+			});
+		
 		// Registration
-		else if(apiRegistrationRead.equals(requestUri)) {
-			return new RegistrationReadRequest(httpRequest);
-		}
-		else if(apiVideoRead.equals(requestUri)) {
-			return new VideoReadRequest(httpRequest);
-			// direct to MediaReadRequest(httpRequest);
-		}
+		register(
+			apiRegistrationRead,
+			ALLOW_GET,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new RegistrationReadRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiVideoRead,
+			ALLOW_GET,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new VideoReadRequest(httpRequest);
+					// direct to MediaReadRequest(httpRequest);
+				}
+			});
+		
 		// Visualization
-		else if(apiVisualizationSurveyResponseCount.equals(requestUri)) {
-			return new VizSurveyResponseCountRequest(httpRequest);
-		}
-		else if(apiVisualizationPromptDistribution.equals(requestUri)) {
-			return new VizPromptDistributionRequest(httpRequest);
-		}
-		else if(apiVisualizationPromptTimeseries.equals(requestUri)) {
-			return new VizPromptTimeseriesRequest(httpRequest);
-		}
-		else if(apiVisualizationUserTimeseries.equals(requestUri)) {
-			return new VizUserTimeseriesRequest(httpRequest);
-		}
-		else if(apiVisualizationScatterPlot.equals(requestUri)) {
-			return new VizScatterPlotRequest(httpRequest);
-		}
-		else if(apiVisualization2dDensity.equals(requestUri)) {
-			return new VizTwoDDensityRequest(httpRequest);
-		}
-		else if(apiVisualizationSurveyResponsePrivacy.equals(requestUri)) {
-			return new VizSurveyResponsePrivacyStateRequest(httpRequest);
-		}
-		else if(apiVisualizationSurveyResponsePrivacyTimeseries.equals(requestUri)) {
-			return new VizSurveyResponsePrivacyStateTimeseriesRequest(httpRequest);
-		}
+		register(
+			apiVisualizationSurveyResponseCount,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new VizSurveyResponseCountRequest(httpRequest);
+				}
+			});
 		
-		// The URI is unknown.
-		return new FailedRequest();
-	}
-	
-	/**
-	 * Returns whether or not some URI is known.
-	 * 
-	 * @param uri The URI to check.
-	 * 
-	 * @return Returns true if the URI is known; false, otherwise.
-	 */
-	public boolean knownUri(String uri) {
-		if(
-				// Config
-				apiConfigRead.equals(uri) ||
-				// Annotation
-				apiAnnotationPromptResponseCreate.equals(uri) ||
-				apiAnnotationPromptResponseRead.equals(uri) ||
-				apiAnnotationSurveyResponseCreate.equals(uri) ||
-				apiAnnotationSurveyResponseRead.equals(uri) ||
-				// Authentication
-				apiUserAuth.equals(uri) ||
-				apiUserAuthToken.equals(uri) ||
-				apiUserLogout.equals(uri) ||
-				apiUserWhoAmI.equals(uri) ||
-				// Audio
-				apiAudioRead.equals(uri) ||
-				// Audit
-				apiAuditRead.equals(uri) ||
-				// Campaign
-				apiCampaignAssignment.equals(uri) ||
-				apiCampaignCreate.equals(uri) ||
-				apiCampaignRead.equals(uri) ||
-				apiCampaignSearch.equals(uri) ||
-				apiCampaignUpdate.equals(uri) ||
-				apiCampaignDelete.equals(uri) ||
-				// Class
-				apiClassCreate.equals(uri) ||
-				apiClassRead.equals(uri) ||
-				apiClassRosterRead.equals(uri) ||
-				apiClassSearch.equals(uri) ||
-				apiClassUpdate.equals(uri) ||
-				apiClassRosterUpdate.equals(uri) ||
-				apiClassDelete.equals(uri) ||
-				// Document
-				apiDocumentCreate.equals(uri) ||
-				apiDocumentRead.equals(uri) ||
-				apiDocumentReadContents.equals(uri) ||
-				apiDocumentUpdate.equals(uri) ||
-				apiDocumentDelete.equals(uri) ||
-				// Image
-				apiImageRead.equals(uri) ||
-				apiImageBatchZipRead.equals(uri) ||
-				// Media
-				apiMediaRead.equals(uri) ||			
-				// Mobility
-				apiMobilityUpload.equals(uri) ||
-				apiMobilityRead.equals(uri) ||
-				apiMobilityReadChunked.equals(uri) ||
-				apiMobilityAggregateRead.equals(uri) ||
-				apiMobilityDatesRead.equals(uri) ||
-				apiMobilityReadCsv.equals(uri) ||
-				apiMobilityUpdate.equals(uri) ||
-				// Observer
-				apiObserverCreate.equals(uri) ||
-				apiObserverRead.equals(uri) ||
-				apiObserverReadXml.equals(uri) ||
-				apiObserverUpdate.equals(uri) ||
-				apiStreamUpload.equals(uri) ||
-				apiStreamRead.equals(uri) ||
-				apiStreamInvalidRead.equals(uri) ||
-				// OMH
-				apiOmhAuth.equals(uri) ||
-				apiOmhRegistryCreate.equals(uri) ||
-				apiOmhRegistryRead.equals(uri) ||
-				apiOmhRegistryUpdate.equals(uri) ||
-				apiOmhCatalog.equals(uri) ||
-				apiOmhRead.equals(uri) ||
-				apiOmhWrite.equals(uri) ||
-				// Survey
-				apiSurveyUpload.equals(uri) ||
-				apiSurveyResponseRead.equals(uri) ||
-				apiSurveyResponseUpdate.equals(uri) ||
-				apiSurveyResponseDelete.equals(uri) ||
-				apiSurveyResponseFunctionRead.equals(uri) ||
-				// User
-				apiUserCreate.equals(uri) ||
-				apiUserRegister.equals(uri) ||
-				apiUserActivate.equals(uri) ||
-				apiUserPasswordReset.equals(uri) ||
-				apiUserMessageReset.equals(uri) ||
-				apiUserViewReset.equals(uri) ||
-				apiUserRead.equals(uri) ||
-				apiUserInfoRead.equals(uri) ||
-				apiUserStatsRead.equals(uri) ||
-				apiUserSearch.equals(uri) ||
-				apiUserUpdate.equals(uri) ||
-				apiUserChangePassword.equals(uri) ||
-				apiUserDelete.equals(uri) ||
-				apiUserSetup.equals(uri) ||
-				// UserSetupRequest
-				apiAccessRequestCreate.equals(uri) ||
-				apiAccessRequestUpdate.equals(uri) ||
-				apiAccessRequestRead.equals(uri) ||
-				apiAccessRequestDelete.equals(uri) ||
-				// Registration
-				apiRegistrationRead.equals(uri) ||
-				// Video
-				apiVideoRead.equals(uri) ||
-				// Visualization
-				apiVisualizationSurveyResponseCount.equals(uri) ||
-				apiVisualizationPromptDistribution.equals(uri) ||
-				apiVisualizationPromptTimeseries.equals(uri) ||
-				apiVisualizationUserTimeseries.equals(uri) ||
-				apiVisualizationScatterPlot.equals(uri) ||
-				apiVisualization2dDensity.equals(uri) ||
-				apiVisualizationSurveyResponsePrivacy.equals(uri) ||
-				apiVisualizationSurveyResponsePrivacyTimeseries.equals(uri)) {
-			return true;
-		}
+		register(
+			apiVisualizationPromptDistribution,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new VizPromptDistributionRequest(httpRequest);
+				}
+			});
 		
-		// The URI is unknown.
-		return false;
+		register(
+			apiVisualizationPromptTimeseries,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new VizPromptTimeseriesRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiVisualizationUserTimeseries,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new VizUserTimeseriesRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiVisualizationScatterPlot,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new VizScatterPlotRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiVisualization2dDensity,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new VizTwoDDensityRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiVisualizationSurveyResponsePrivacy,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new VizSurveyResponsePrivacyStateRequest(httpRequest);
+				}
+			});
+		
+		register(
+			apiVisualizationSurveyResponsePrivacyTimeseries,
+			POST_ONLY,
+			new RequestFactory() {
+				@Override
+				public Request build(
+						final HttpServletRequest httpRequest)
+						throws IOException, InvalidRequestException {
+					
+					return new VizSurveyResponsePrivacyStateTimeseriesRequest(httpRequest);
+				}
+			});
 	}
 
 	/**
@@ -1,6 +1,5 @@
 package org.ohmage.request.audio;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -22,6 +21,7 @@ import org.ohmage.request.UserRequest;
 import org.ohmage.service.MediaServices;
 import org.ohmage.service.UserMediaServices;
 import org.ohmage.util.CookieUtils;
+import org.ohmage.util.HttpContentUtils;
 import org.ohmage.validator.AudioValidators;
 
 // HT: Deprecated
@@ -31,11 +31,6 @@ public class AudioReadRequest extends UserRequest {
 	 */
 	private static final Logger LOGGER = 
 		Logger.getLogger(AudioReadRequest.class);
-
-	/**
-	 * The size of a chunk when reading the audio data.
-	 */
-	private static final int CHUNK_SIZE = 4096;
 	
 	/**
 	 * The ID of the audio file in question from the request.
@@ -134,24 +129,34 @@ public class AudioReadRequest extends UserRequest {
 
 		LOGGER.info("Responding to a video read request.");
 		
-		// Sets the HTTP headers to disable caching
-		expireResponse(httpResponse);
-				
 		InputStream audioStream = null;
 		
 		try {
 			if(isFailed()) {
+				// Sets the HTTP headers to disable caching
+				expireResponse(httpResponse);
+				
 				super.respond(httpRequest, httpResponse, (JSONObject) null);
 			}
 			else {
 				audioStream = audio.getContentStream();
 				
+				// The contents of a media ID never change, so the ID is a
+				// strong validator.
+				String entityTag = 
+					HttpContentUtils.createEntityTag(audioId.toString());
+				if(HttpContentUtils.checkNotModified(
+						httpRequest, 
+						httpResponse, 
+						entityTag, 
+						audio.getLastModified())) {
+					
+					return;
+				}
+				
 				httpResponse.setHeader(
 					"Content-Disposition", 
 					"attachment; filename=" + audio.getFileName());
-				httpResponse.setHeader(
-					"Content-Length", 
-					new Long(audio.getFileSize()).toString());
 				
 				// If available, set the token.
 				if(getUser() != null) {
@@ -177,24 +182,19 @@ public class AudioReadRequest extends UserRequest {
 					return;
 				}
 				
-				// Set the output stream to the response.
-				DataOutputStream dos = new DataOutputStream(os);
-				byte[] bytes = new byte[CHUNK_SIZE];
-				int currRead;
-				while((currRead = audioStream.read(bytes)) != -1) {
-					dos.write(bytes, 0, currRead);
-				}
+				// Write the requested bytes to the response.
+				HttpContentUtils.writeContent(
+					httpRequest, 
+					httpResponse, 
+					audioStream, 
+					audio.getFileSize(), 
+					entityTag, 
+					os);
 				
-				// Close the image's InputStream.
+				// Close the media's InputStream.
 				audioStream.close();
 				
-				// Flush and close the data output stream to which we were 
-				// writing.
-				dos.flush();
-				dos.close();
-				
-				// Flush and close the output stream that was used to generate
-				// the data output stream.
+				// Flush and close the output stream.
 				os.flush();
 				os.close();
 			}
@@ -37,6 +37,7 @@ import org.ohmage.service.DocumentServices;
 import org.ohmage.service.UserDocumentServices;
 import org.ohmage.service.UserServices;
 import org.ohmage.util.CookieUtils;
+import org.ohmage.util.HttpContentUtils;
 import org.ohmage.validator.DocumentValidators;
 import org.ohmage.validator.AuditValidators;
 
@@ -184,9 +185,17 @@ public class DocumentReadContentsRequest extends UserRequest {
 		LOGGER.info("Writing read document contents response.");
 		
 		// Creates the writer that will write the response, success or fail.
+		// A byte range refers to the uncompressed contents, so the response
+		// is only compressed if the whole document was requested.
+		boolean rangeRequest = HttpContentUtils.isRangeRequest(httpRequest);
 		OutputStream os;
 		try {
-			os = getOutputStream(httpRequest, httpResponse);
+			if(rangeRequest) {
+				os = httpResponse.getOutputStream();
+			}
+			else {
+				os = getOutputStream(httpRequest, httpResponse);
+			}
 		}
 		catch(IOException e) {
 			LOGGER.error("Unable to create writer object. Aborting.", e);
@@ -236,22 +245,36 @@ public class DocumentReadContentsRequest extends UserRequest {
 					}
 				}
 				
-				// Set the output stream to the response.
-				DataOutputStream dos = new DataOutputStream(os);
-				
-				// Read the file in chunks and write it to the output stream.
-				byte[] bytes = new byte[CHUNK_SIZE];
-				int currRead;
-				while((currRead = contentsStream.read(bytes)) != -1) {
-					dos.write(bytes, 0, currRead);
+				// Read the file and write it, or the requested range of it,
+				// to the output stream.
+				if(rangeRequest) {
+					HttpContentUtils.writeContent(
+						httpRequest, 
+						httpResponse, 
+						contentsStream, 
+						-1, 
+						null, 
+						os);
 				}
-				
-				// Close the data output stream to which we were writing.
-				try {
-					dos.close();
-				}
-				catch(IOException e) {
-					LOGGER.warn("Error closing the data output stream.", e);
+				else {
+					// Set the output stream to the response.
+					DataOutputStream dos = new DataOutputStream(os);
+					
+					// Read the file in chunks and write it to the output 
+					// stream.
+					byte[] bytes = new byte[CHUNK_SIZE];
+					int currRead;
+					while((currRead = contentsStream.read(bytes)) != -1) {
+						dos.write(bytes, 0, currRead);
+					}
+					
+					// Close the data output stream to which we were writing.
+					try {
+						dos.close();
+					}
+					catch(IOException e) {
+						LOGGER.warn("Error closing the data output stream.", e);
+					}
 				}
 			}
 		}
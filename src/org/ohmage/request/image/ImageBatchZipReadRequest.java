@@ -1,15 +1,21 @@
 package org.ohmage.request.image;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -18,6 +24,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
 import org.json.JSONObject;
+import org.ohmage.cache.ImageReadPool;
 import org.ohmage.domain.campaign.PromptResponse;
 import org.ohmage.domain.campaign.RepeatableSetResponse;
 import org.ohmage.domain.campaign.Response;
@@ -99,6 +106,89 @@ public class ImageBatchZipReadRequest extends SurveyResponseRequest {
 	private static final Logger LOGGER = 
 			Logger.getLogger(ImageBatchZipReadRequest.class);
 	
+	private static final String CONTENT_TYPE_ZIP = "application/zip";
+	
+	/**
+	 * The most images that may be read, or waiting to be written, at once.
+	 */
+	private static final int PREFETCH_DEPTH = 8;
+	
+	/**
+	 * An image that has been read into memory along with its checksum, which
+	 * must be known before an uncompressed entry can be written.
+	 */
+	private static final class LoadedImage {
+		private final UUID imageId;
+		private final byte[] contents;
+		private final long crc;
+		
+		/**
+		 * Creates a new loaded image.
+		 * 
+		 * @param imageId The image's unique identifier.
+		 * 
+		 * @param contents The image's contents.
+		 */
+		private LoadedImage(final UUID imageId, final byte[] contents) {
+			this.imageId = imageId;
+			this.contents = contents;
+			
+			CRC32 checksum = new CRC32();
+			checksum.update(contents);
+			crc = checksum.getValue();
+		}
+	}
+	
+	/**
+	 * Reads an image into memory.
+	 */
+	private static final class ImageLoader implements Callable<LoadedImage> {
+		private final UUID imageId;
+		private final URL imageUrl;
+		
+		/**
+		 * Creates a new loader for an image.
+		 * 
+		 * @param imageId The image's unique identifier.
+		 * 
+		 * @param imageUrl The image's URL.
+		 */
+		private ImageLoader(final UUID imageId, final URL imageUrl) {
+			this.imageId = imageId;
+			this.imageUrl = imageUrl;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		@Override
+		public LoadedImage call() throws IOException {
+			InputStream imageStream = imageUrl.openStream();
+			try {
+				ByteArrayOutputStream contents = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				int lengthRead;
+				while((lengthRead = imageStream.read(buffer)) != -1) {
+					contents.write(buffer, 0, lengthRead);
+				}
+				
+				return new LoadedImage(imageId, contents.toByteArray());
+			}
+			finally {
+				try {
+					imageStream.close();
+				}
+				catch(IOException e) {
+					LOGGER.error(
+							"There was a problem closing the connection to the image: " +
+								imageId.toString(),
+							e);
+				}
+			}
+		}
+	}
+	
 	private final Map<UUID, URL> imageUrls;
 	
 	/**
@@ -120,7 +210,7 @@ public class ImageBatchZipReadRequest extends SurveyResponseRequest {
 			LOGGER.info("Creating an image ZIP read request.");
 		}
 		
-		imageUrls = new HashMap<UUID, URL>();
+		imageUrls = new LinkedHashMap<UUID, URL>();
 	}
 	
 	/**
@@ -147,22 +237,22 @@ public class ImageBatchZipReadRequest extends SurveyResponseRequest {
 		}
 		
 		LOGGER.info("Gathering the UUIDs from the survey responses.");
-		Collection<UUID> imageIds = new HashSet<UUID>();
+		Collection<UUID> imageIds = new LinkedHashSet<UUID>();
 		for(SurveyResponse surveyResponse : getSurveyResponses()) {
 			imageIds.addAll(getImageIds(surveyResponse.getResponses().values()));
 		}
 		
 		LOGGER.info("Getting the URL for each UUID.");
 		try {
-			for(UUID imageId : imageIds) {
-				URL imageUrl = ImageServices.instance().getImageUrl(imageId);
-				if(imageUrl == null) {
-					LOGGER.debug(
-							"The image doesn't have a URL: " + 
-								imageId.toString());
-				}
-				else {
-					imageUrls.put(imageId, imageUrl);
+			imageUrls.putAll(ImageServices.instance().getImageUrls(imageIds));
+			
+			if(LOGGER.isDebugEnabled()) {
+				for(UUID imageId : imageIds) {
+					if(! imageUrls.containsKey(imageId)) {
+						LOGGER.debug(
+								"The image doesn't have a URL: " + 
+									imageId.toString());
+					}
 				}
 			}
 		}
@@ -189,105 +279,87 @@ public class ImageBatchZipReadRequest extends SurveyResponseRequest {
 		
 		// We are going to try to write the response, so we will need to set
 		// the header to indicate that this will be an attachment.
+		httpResponse.setContentType(CONTENT_TYPE_ZIP);
 		httpResponse.setHeader(
 				"Content-Disposition", 
 				"attachment; filename=images.zip");
 		
-		// Create the zip stream to the outside world.
+		// Create the zip stream to the outside world. The images are already
+		// compressed, so neither the entries nor the response itself are
+		// compressed again.
 		ZipOutputStream zipStream = null;
 		try {
-			zipStream = 
-					new ZipOutputStream(
-						getOutputStream(httpRequest, httpResponse));
+			zipStream = new ZipOutputStream(httpResponse.getOutputStream());
 		}
 		catch(IOException e) {
 			LOGGER.error("Unable to write response message. Aborting.", e);
 			return;
 		}
+		zipStream.setMethod(ZipOutputStream.STORED);
 		
-		// Stream each image into the input of the ZIP stream.
-		int lengthRead;
-		byte[] buffer = new byte[4096];
-		for(UUID imageId : imageUrls.keySet()) {
-			// First, attempt to connect to the image. If this cannot be done,
-			// we will simply skip this image and not return it in the ZIP 
-			// file.
-			InputStream imageStream;
-			try {
-				URL imageUrl = imageUrls.get(imageId);
-				imageStream = imageUrl.openStream();
-			}
-			catch(IOException e) {
-				LOGGER.info(
-						"The image does not exist, so it will not be added to the ZIP file: " +
-							imageId.toString(),
-						e);
-				continue;
-			}
-			
-			// Next, we create a new entry in the ZIP file for this image.
-			try {
-				zipStream.putNextEntry(new ZipEntry(imageId.toString() + ".png"));
-			}
-			catch(IOException e) {
-				LOGGER.error(
-						"Unable to add an entry to the stream: " +
-							imageId.toString(),
-						e);
-				break;
-			}
+		// Read the upcoming images in the background while the current one is
+		// being written, keeping only a few of them in memory at a time.
+		ImageReadPool prefetcher = ImageReadPool.instance();
+		LinkedList<Future<LoadedImage>> pending = 
+				new LinkedList<Future<LoadedImage>>();
+		try {
+			Iterator<Map.Entry<UUID, URL>> images = 
+					imageUrls.entrySet().iterator();
 			
-			// Attempt to read from the image buffer and shuffle it into the 
-			// ZIP file buffer.
-			try {
-				while((lengthRead = imageStream.read(buffer)) != -1) {
-					try {
-						zipStream.write(buffer, 0, lengthRead);
-					}
-					catch(IOException e) {
-						LOGGER.error(
-								"There was a problem writing the response: " +
-									imageId.toString(),
-								e);
-						break;
-					}
+			while(images.hasNext() || (! pending.isEmpty())) {
+				while(images.hasNext() && (pending.size() < PREFETCH_DEPTH)) {
+					Map.Entry<UUID, URL> image = images.next();
+					pending.add(
+							prefetcher.submit(
+									new ImageLoader(
+											image.getKey(), 
+											image.getValue())));
 				}
-			}
-			catch(IOException e) {
-				LOGGER.error(
-						"There was a problem reading the image's contents: " +
-							imageId.toString(),
-						e);
-				break;
-			}
-			
-			// Once we have copied the entire image into the buffer, we can 
-			// close it. If it fails to close, we don't really care because we
-			// have supposedly read everything we need.
-			try {
-				imageStream.close();	
-			}
-			catch(IOException e) {
-				LOGGER.error(
-						"There was a problem closing the connection to the image: " +
-							imageId.toString(),
-						e);
 				
-				// We don't abort here, because everything should have been
-				// successfully written to to the stream. Therefore, we should
-				// log that it happened, but we can safely continue.
-			}
-			
-			// Finally, close this entry in the ZIP file.
-			try {
-				zipStream.closeEntry();
+				// Wait for the next image. If it could not be read, it is
+				// simply not returned in the ZIP file.
+				LoadedImage image;
+				try {
+					image = pending.removeFirst().get();
+				}
+				catch(InterruptedException e) {
+					LOGGER.error("Interrupted while reading an image.", e);
+					Thread.currentThread().interrupt();
+					break;
+				}
+				catch(ExecutionException e) {
+					LOGGER.info(
+							"The image could not be read, so it will not be added to the ZIP file.",
+							e.getCause());
+					continue;
+				}
+				
+				// Write the image as an uncompressed entry in the ZIP file.
+				ZipEntry entry = 
+						new ZipEntry(image.imageId.toString() + ".png");
+				entry.setMethod(ZipEntry.STORED);
+				entry.setSize(image.contents.length);
+				entry.setCompressedSize(image.contents.length);
+				entry.setCrc(image.crc);
+				try {
+					zipStream.putNextEntry(entry);
+					zipStream.write(image.contents);
+					zipStream.closeEntry();
+				}
+				catch(IOException e) {
+					LOGGER.error(
+							"There was a problem writing the response: " +
+								image.imageId.toString(),
+							e);
+					break;
+				}
 			}
-			catch(IOException e) {
-				LOGGER.error(
-						"There was a problem closing this image's entry: " +
-							imageId.toString(),
-						e);
-				break;
+		}
+		finally {
+			// If the ZIP file was not finished, stop reading the images that
+			// will not be written.
+			for(Future<LoadedImage> image : pending) {
+				image.cancel(true);
 			}
 		}
 		
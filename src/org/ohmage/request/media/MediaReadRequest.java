@@ -1,6 +1,5 @@
 package org.ohmage.request.media;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -24,6 +23,7 @@ import org.ohmage.service.ImageServices;
 import org.ohmage.service.MediaServices;
 import org.ohmage.service.UserMediaServices;
 import org.ohmage.util.CookieUtils;
+import org.ohmage.util.HttpContentUtils;
 import org.ohmage.validator.ImageValidators;
 import org.ohmage.validator.MediaValidators;
 
@@ -34,11 +34,6 @@ public class MediaReadRequest extends UserRequest {
 	private static final Logger LOGGER = 
 		Logger.getLogger(MediaReadRequest.class);
 
-	/**
-	 * The size of a chunk when reading the media data.
-	 */
-	private static final int CHUNK_SIZE = 4096;
-	
 	/**
 	 * The ID of the media file in question from the request.
 	 */
@@ -156,22 +151,43 @@ public class MediaReadRequest extends UserRequest {
 
 		LOGGER.info("Responding to a media read request.");
 		
-		// Sets the HTTP headers to disable caching
-		expireResponse(httpResponse);
-				
 		// Open the connection to the media if it is not null.
 		InputStream mediaStream = null;
 			
 		try {
 			if(isFailed()) {
+				// Sets the HTTP headers to disable caching
+				expireResponse(httpResponse);
+				
 				httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST);
 				super.respond(httpRequest, httpResponse, (JSONObject) null);
 			}
 			else {
+				// The contents of a media ID never change, so the ID, along
+				// with the image size, is a strong validator.
+				String entityTag;
+				long length;
+				if (imageSize == null) {
+					mediaStream = media.getContentStream();
+					entityTag = 
+						HttpContentUtils.createEntityTag(mediaId.toString());
+				}
+				else {
+					entityTag = 
+						HttpContentUtils.createEntityTag(
+							mediaId.toString() + "-" + imageSize.getName());
+				}
+				if(HttpContentUtils.checkNotModified(
+						httpRequest, 
+						httpResponse, 
+						entityTag, 
+						(imageSize == null) ? media.getLastModified() : -1)) {
+					
+					return;
+				}
 				
 				if (imageSize == null) {
 					
-					mediaStream = media.getContentStream();
 					String contentType = media.getContentType();
 					
 					// set content type
@@ -182,14 +198,12 @@ public class MediaReadRequest extends UserRequest {
 						httpResponse.setHeader("Content-Disposition", 
 								"attachment; filename=" + media.getFileName());
 					
-					httpResponse.setHeader("Content-Length", 
-						new Long(media.getFileSize()).toString());
+					length = media.getFileSize();
 
 				} else { // it is an image/read request
 					mediaStream =  image.getInputStream(imageSize);
 					httpResponse.setContentType(image.getContentType(imageSize));
-					httpResponse.setHeader("Content-Length", 
-							new Long(image.getSizeBytes(imageSize)).toString());
+					length = image.getSizeBytes(imageSize);
 					
 				}
 				
@@ -217,24 +231,19 @@ public class MediaReadRequest extends UserRequest {
 					return;
 				}
 				
-				// Set the output stream to the response.
-				DataOutputStream dos = new DataOutputStream(os);
-				byte[] bytes = new byte[CHUNK_SIZE];
-				int currRead;
-				while((currRead = mediaStream.read(bytes)) != -1) {
-					dos.write(bytes, 0, currRead);
-				}
+				// Write the requested bytes to the response.
+				HttpContentUtils.writeContent(
+					httpRequest, 
+					httpResponse, 
+					mediaStream, 
+					length, 
+					entityTag, 
+					os);
 				
-				// Close the image's InputStream.
+				// Close the media's InputStream.
 				mediaStream.close();
 				
-				// Flush and close the data output stream to which we were 
-				// writing.
-				dos.flush();
-				dos.close();
-				
-				// Flush and close the output stream that was used to generate
-				// the data output stream.
+				// Flush and close the output stream.
 				os.flush();
 				os.close();
 			}
@@ -16,9 +16,12 @@
 package org.ohmage.request.mobility;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -29,6 +32,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.MobilityClassificationQueue;
 import org.ohmage.domain.ColumnKey;
 import org.ohmage.domain.Location;
 import org.ohmage.domain.Location.LocationColumnKey;
@@ -170,6 +174,7 @@ public class MobilityUploadRequest extends Request {
 	private final Collection<String> validIds;
 	private final Map<Integer, String> invalidPointsMap;
 	private final Collection<JSONObject> invalidPointsJson;
+	private final List<MobilityPoint> sensorDataPoints;
 	
 	private final StreamUploadRequest streamUploadRequest;
 	
@@ -192,6 +197,7 @@ public class MobilityUploadRequest extends Request {
 		validIds = new LinkedList<String>();
 		invalidPointsMap = new HashMap<Integer, String>();
 		invalidPointsJson = new LinkedList<JSONObject>();
+		sensorDataPoints = new ArrayList<MobilityPoint>();
 		
 		StreamUploadRequest tStreamUploadRequest = null;
 		
@@ -273,6 +279,7 @@ public class MobilityUploadRequest extends Request {
 								jsonPoint.put("stream_version", 2012050700);
 							}
 							else {
+								sensorDataPoints.add(point);
 								jsonPoint.put("stream_id", "extended");
 								
 								// Add the sensor data and rename it to "data".
@@ -362,6 +369,21 @@ public class MobilityUploadRequest extends Request {
 				
 			LOGGER.info("Delegating to the stream upload service layer.");
 			streamUploadRequest.service();
+			
+			// The points are stored, so they can be classified without the
+			// phone waiting for it.
+			MobilityClassificationQueue classificationQueue =
+				MobilityClassificationQueue.instance();
+			if((! streamUploadRequest.isFailed()) && 
+				(classificationQueue != null) &&
+				(! sensorDataPoints.isEmpty())) {
+				
+				LOGGER.info("Queueing the sensor data points for classification.");
+				Collections.sort(sensorDataPoints);
+				classificationQueue.enqueue(
+					streamUploadRequest.getUser().getUsername(), 
+					sensorDataPoints);
+			}
 		}
 	}
 
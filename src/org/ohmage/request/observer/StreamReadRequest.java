@@ -29,6 +29,7 @@ import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.cache.PreferenceCache;
 import org.ohmage.domain.DataStream;
+import org.ohmage.domain.DataStreamCursor;
 import org.ohmage.domain.Location;
 import org.ohmage.domain.Location.LocationColumnKey;
 import org.ohmage.domain.Observer;
@@ -118,6 +119,17 @@ import org.ohmage.validator.UserValidators;
  *       returned after skipping. This is used to facilitate paging.</td>
  *     <td>false</td>
  *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#STREAM_CURSOR}</td>
+ *     <td>Pages through the results by cursor instead of by
+ *       {@value org.ohmage.request.InputKeys#NUM_TO_SKIP}, which reads each
+ *       page directly no matter how deep it is. An empty value returns the
+ *       first page, and each full page's metadata contains the
+ *       {@value #JSON_KEY_NEXT_CURSOR} with which to request the next one.
+ *       Up to {@value #MAX_NUMBER_TO_RETURN_WITH_CURSOR} points may be
+ *       returned per page.</td>
+ *     <td>false</td>
+ *   </tr>
  * </table>
  * 
  * @author John Jenkins
@@ -140,6 +152,20 @@ public class StreamReadRequest
 	 */
 	public static final long MAX_NUMBER_TO_RETURN = 2000;
 	
+	/**
+	 * The maximum number of records that can be returned when paging by 
+	 * cursor. Each page is read directly, so it can be larger.
+	 */
+	public static final long MAX_NUMBER_TO_RETURN_WITH_CURSOR = 10000;
+	
+	/**
+	 * The JSON key in the metadata whose value is the cursor to use to read
+	 * the next page of data. It is only present if the request used the
+	 * {@link org.ohmage.request.InputKeys#STREAM_CURSOR cursor} parameter and
+	 * there may be more data.
+	 */
+	public static final String JSON_KEY_NEXT_CURSOR = "next_cursor";
+	
 	/**
 	 * This is being used to facilitate an n-ary tree.
 	 *
@@ -301,6 +327,10 @@ public class StreamReadRequest
 	private final long numToSkip;
 	private final long numToReturn;
 	
+	// Whether or not to page by cursor and, if so, where to begin.
+	private final boolean useCursor;
+	private final DataStreamCursor cursor;
+	
 	// The stream created during the servicing of the request.
 	private Observer.Stream stream;
 	
@@ -419,6 +449,9 @@ public class StreamReadRequest
 			this.numToReturn = numToReturn;
 		}
 		
+		useCursor = false;
+		cursor = null;
+		
 		results = new LinkedList<DataStream>();
 	}
 	
@@ -449,6 +482,8 @@ public class StreamReadRequest
 		boolean tChronological = true;
 		long tNumToSkip = 0;
 		long tNumToReturn = MAX_NUMBER_TO_RETURN;
+		boolean tUseCursor = false;
+		DataStreamCursor tCursor = null;
 		
 		if(! isFailed()) {
 			LOGGER.info("Creating a stream read request.");
@@ -588,6 +623,27 @@ public class StreamReadRequest
 					tNumToSkip = ObserverValidators.validateNumToSkip(t[0]);
 				}
 				
+				// The cursor from which to continue reading. An empty cursor
+				// begins at the first point.
+				t = getParameterValues(InputKeys.STREAM_CURSOR);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_CURSOR,
+						"Multiple cursors were given: " + 
+							InputKeys.STREAM_CURSOR);
+				}
+				else if(t.length == 1) {
+					tUseCursor = true;
+					tCursor = ObserverValidators.validateCursor(t[0]);
+					
+					if(tNumToSkip != 0) {
+						throw new ValidationException(
+							ErrorCode.OBSERVER_INVALID_CURSOR,
+							"A cursor cannot be used with a number to skip: " + 
+								InputKeys.NUM_TO_SKIP);
+					}
+				}
+				
 				t = getParameterValues(InputKeys.NUM_TO_RETURN);
 				if(t.length > 1) {
 					throw new ValidationException(
@@ -598,7 +654,11 @@ public class StreamReadRequest
 				else if(t.length == 1) {
 					tNumToReturn = 
 						ObserverValidators
-							.validateNumToReturn(t[0], MAX_NUMBER_TO_RETURN);
+							.validateNumToReturn(
+								t[0], 
+								(tUseCursor) ? 
+									MAX_NUMBER_TO_RETURN_WITH_CURSOR : 
+									MAX_NUMBER_TO_RETURN);
 				}
 			}
 			catch(ValidationException e) {
@@ -618,6 +678,8 @@ public class StreamReadRequest
 		chronological = tChronological;
 		numToSkip = tNumToSkip;
 		numToReturn = tNumToReturn;
+		useCursor = tUseCursor;
+		cursor = tCursor;
 		
 		results = new LinkedList<DataStream>();
 	}
@@ -716,6 +778,7 @@ public class StreamReadRequest
 					startDate,
 					endDate,
 					chronological,
+					cursor,
 					numToSkip,
 					numToReturn));
 			LOGGER.info("Returning " + results.size() + " points.");
@@ -820,7 +883,9 @@ public class StreamReadRequest
 			
 			// If the number of entries skipped was non-zero, add a previous
 			// pointer.
-			if((prevAndNextUrlBuilder != null) && (numToSkip != 0)) {
+			if((prevAndNextUrlBuilder != null) && 
+				(! useCursor) && 
+				(numToSkip != 0)) {
 				// Create a copy of the existing string builder.
 				StringBuilder prevUrl = 
 					new StringBuilder(prevAndNextUrlBuilder);
@@ -853,7 +918,34 @@ public class StreamReadRequest
 			// Generate and add the "next" URL if the number of results is 
 			// to the number requested. The only reason it would be less is if
 			// there weren't that many to return. If there were more than that
-			if((prevAndNextUrlBuilder != null) &&
+			if(useCursor && 
+				(! results.isEmpty()) && 
+				(numToReturn == results.size())) {
+				
+				// When paging by cursor, the next page begins after the last
+				// point on this one.
+				String nextCursor = 
+					results.get(results.size() - 1).getCursor().toString();
+				generator.writeStringField(JSON_KEY_NEXT_CURSOR, nextCursor);
+				
+				if(prevAndNextUrlBuilder != null) {
+					StringBuilder nextUrl = prevAndNextUrlBuilder;
+					nextUrl
+						.append('&')
+						.append(InputKeys.STREAM_CURSOR)
+						.append('=')
+						.append(nextCursor);
+					nextUrl
+						.append('&')
+						.append(InputKeys.NUM_TO_RETURN)
+						.append('=')
+						.append(numToReturn);
+					
+					generator.writeStringField("next", nextUrl.toString());
+				}
+			}
+			else if((prevAndNextUrlBuilder != null) &&
+				(! useCursor) &&
 				(numToReturn == results.size())) {
 				
 				StringBuilder nextUrl = prevAndNextUrlBuilder;
@@ -883,50 +975,7 @@ public class StreamReadRequest
 			
 			// Add a "data" key that is an array of the results.
 			generator.writeArrayFieldStart("data");
-			for(DataStream dataStream : results) {
-				// Begin this data stream.
-				generator.writeStartObject();
-				
-				// Write the meta-data.
-				DataStream.MetaData metaData = dataStream.getMetaData();
-				if(metaData != null) {
-					generator.writeObjectFieldStart("metadata");
-					
-					String id = metaData.getId();
-					if(id != null) {
-						generator.writeStringField("id", id);
-					}
-					
-					DateTime timestamp = metaData.getTimestamp();
-					if(timestamp != null) {
-						generator.writeStringField(
-							"timestamp",
-							ISODateTimeFormat.dateTime().print(timestamp));
-					}
-					
-					Location location = metaData.getLocation();
-					if(location != null) {
-						generator.writeObjectFieldStart("location");
-						location.streamJson(
-							generator, 
-							false, 
-							LocationColumnKey.ALL_COLUMNS);
-						generator.writeEndObject();
-					}
-					
-					generator.writeEndObject();
-				}
-				
-				// Write the data.
-				handleGeneric(
-					generator,
-					dataStream.getData(), 
-					columnsRoot, 
-					"data");
-				
-				// End this data stream.
-				generator.writeEndObject();
-			}
+			writeData(generator, columnsRoot);
 			generator.writeEndArray();
 			
 			// End the overall object.
@@ -1080,8 +1129,8 @@ public class StreamReadRequest
 	}
 	
 	/**
-	 * Writes the data points to the generator. The generator be at the point 
-	 * where it has an array open.
+	 * Writes the data points to the generator. The generator must be at the
+	 * point where it has an array open.
 	 * 
 	 * @param generator The generator to write to.
 	 * 
@@ -1135,12 +1184,20 @@ public class StreamReadRequest
 				generator.writeEndObject();
 			}
 			
-			// Write the data.
-			handleGeneric(
-				generator,
-				dataStream.getData(), 
-				columns, 
-				"data");
+			// Write the data. If all of it is requested and it was read as
+			// it was stored, it is written as-is without being parsed.
+			String rawData = dataStream.getRawData();
+			if(columns.isLeaf() && (rawData != null)) {
+				generator.writeFieldName("data");
+				generator.writeRawValue(rawData);
+			}
+			else {
+				handleGeneric(
+					generator,
+					dataStream.getData(), 
+					columns, 
+					"data");
+			}
 			
 			// End this data stream.
 			generator.writeEndObject();
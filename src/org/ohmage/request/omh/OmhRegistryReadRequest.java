@@ -29,6 +29,7 @@ import org.ohmage.domain.campaign.Message;
 import org.ohmage.domain.campaign.RepeatableSet;
 import org.ohmage.domain.campaign.Survey;
 import org.ohmage.domain.campaign.SurveyItem;
+import org.ohmage.exception.DomainException;
 import org.ohmage.exception.InvalidRequestException;
 import org.ohmage.exception.ServiceException;
 import org.ohmage.exception.ValidationException;
@@ -569,6 +570,12 @@ public class OmhRegistryReadRequest extends Request {
 				HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 			return;
 		}
+		catch(DomainException e) {
+			LOGGER.error("A campaign's surveys could not be read.", e);
+			httpResponse.setStatus(
+				HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			return;
+		}
 		finally {
 			// Flush and close the writer.
 			try {
@@ -27,6 +27,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -65,6 +66,8 @@ import org.ohmage.domain.campaign.SurveyResponse;
 import org.ohmage.domain.campaign.SurveyResponse.ColumnKey;
 import org.ohmage.domain.campaign.SurveyResponse.OutputFormat;
 import org.ohmage.domain.campaign.SurveyResponse.SortParameter;
+import org.ohmage.domain.campaign.SurveyResponseCursor;
+import org.ohmage.domain.campaign.SurveyResponseHandler;
 import org.ohmage.domain.campaign.prompt.ChoicePrompt;
 import org.ohmage.domain.campaign.prompt.CustomChoicePrompt;
 import org.ohmage.domain.campaign.response.MultiChoiceCustomPromptResponse;
@@ -74,6 +77,7 @@ import org.ohmage.domain.campaign.response.SingleChoicePromptResponse;
 import org.ohmage.exception.CacheMissException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.exception.InvalidRequestException;
+import org.ohmage.exception.ServiceException;
 import org.ohmage.exception.ValidationException;
 import org.ohmage.request.InputKeys;
 import org.ohmage.request.observer.StreamReadRequest.ColumnNode;
@@ -126,7 +130,7 @@ import org.ohmage.validator.SurveyResponseValidators;
  *     <td>{@value org.ohmage.request.InputKeys#OUTPUT_FORMAT}</td>
  *     <td>The desired output format of the results. Must be one of 
  *     {@value #OUTPUT_FORMAT_JSON_ROWS}, {@value #OUTPUT_FORMAT_JSON_COLUMNS},
- *     or, {@value #OUTPUT_FORMAT_CSV}</td>
+ *     or, {@value #OUTPUT_FORMAT_CSV}.</td>
  *     <td>true</td>
  *   </tr>   
  *   <tr>
@@ -199,6 +203,21 @@ import org.ohmage.validator.SurveyResponseValidators;
  *       </td>
  *     <td>false</td>
  *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#SURVEY_RESPONSE_CURSOR}</td>
+ *     <td>Pages through the results in the default order by cursor instead
+ *       of by {@value org.ohmage.request.InputKeys#NUM_TO_SKIP}. An empty
+ *       value returns the first page, and each page's metadata contains the
+ *       {@value #JSON_KEY_NEXT_CURSOR} with which to request the next one. 
+ *       It cannot be combined with a sort order or collapsing.</td>
+ *     <td>false</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#COUNT_TOTAL}</td>
+ *     <td>When paging by cursor, whether or not to count all of the 
+ *       matching survey responses. Defaults to true.</td>
+ *     <td>false</td>
+ *   </tr>
  * </table>
  * 
  * @author Joshua Selsky
@@ -212,6 +231,11 @@ public final class SurveyResponseReadRequest
 	
 	private static final JsonFactory JSON_FACTORY = new MappingJsonFactory();
 	
+	/**
+	 * The number of spaces by which pretty printed JSON is indented.
+	 */
+	private static final int PRETTY_PRINT_INDENT = 4;
+	
 	/**
 	 * The, optional, additional JSON key associated with a prompt responses in
 	 * the 
@@ -260,6 +284,15 @@ public final class SurveyResponseReadRequest
 	 * @see org.ohmage.request.InputKeys#COLLAPSE
 	 */
 	public static final String JSON_KEY_COUNT = "count";
+	/**
+	 * The JSON key in the metadata whose value is the cursor to use to read
+	 * the next page of survey responses. It is only present if the request 
+	 * used the {@link org.ohmage.request.InputKeys#SURVEY_RESPONSE_CURSOR cursor}
+	 * parameter and there may be more survey responses.
+	 * 
+	 * @see org.ohmage.request.InputKeys#SURVEY_RESPONSE_CURSOR
+	 */
+	public static final String JSON_KEY_NEXT_CURSOR = "next_cursor";
 	
 	final Collection<SurveyResponse.ColumnKey> columns;
 	private final SurveyResponse.OutputFormat outputFormat;
@@ -273,6 +306,10 @@ public final class SurveyResponseReadRequest
 	final long surveyResponsesToSkip;
 	final long surveyResponsesToProcess;
 	
+	private final boolean useCursor;
+	private final SurveyResponseCursor cursor;
+	private final boolean countTotal;
+	
 	/**
 	 * Creates a survey response read request. The 'httpRequest', 'parameters',
 	 * and 'campaignId' parameters are required. The rest are optional and will
@@ -411,6 +448,10 @@ public final class SurveyResponseReadRequest
 		else {
 			this.surveyResponsesToProcess = numResponsesToReturn;
 		}
+		
+		useCursor = false;
+		cursor = null;
+		countTotal = true;
 	}
 	
 	/**
@@ -437,6 +478,10 @@ public final class SurveyResponseReadRequest
 		
 		long tSurveyResponsesToSkip = 0;
 		long tSurveyResponsesToProcess = -1;
+		
+		boolean tUseCursor = false;
+		SurveyResponseCursor tCursor = null;
+		Boolean tCountTotal = null;
 		try {
 			tSurveyResponsesToProcess = 
 					Long.decode(
@@ -610,6 +655,54 @@ public final class SurveyResponseReadRequest
 										t[0], 
 										tSurveyResponsesToProcess);
 				}
+				
+				// The cursor from which to continue reading. An empty cursor
+				// begins at the first survey response.
+				t = getParameterValues(InputKeys.SURVEY_RESPONSE_CURSOR);
+				if(t.length > 1) {
+					throw new ValidationException(
+							ErrorCode.SURVEY_INVALID_CURSOR, 
+							"Multiple cursors were given: " + 
+								InputKeys.SURVEY_RESPONSE_CURSOR);
+				}
+				else if(t.length == 1) {
+					tUseCursor = true;
+					tCursor = SurveyResponseValidators.validateCursor(t[0]);
+					
+					// Cursors only apply to the default ordering of 
+					// individual survey responses.
+					if(tSortOrder != null) {
+						throw new ValidationException(
+								ErrorCode.SURVEY_INVALID_CURSOR, 
+								"A cursor cannot be used with a sort order: " + 
+									InputKeys.SORT_ORDER);
+					}
+					else if((tCollapse != null) && tCollapse) {
+						throw new ValidationException(
+								ErrorCode.SURVEY_INVALID_CURSOR, 
+								"A cursor cannot be used with collapsed results: " + 
+									InputKeys.COLLAPSE);
+					}
+					else if(tSurveyResponsesToSkip != 0) {
+						throw new ValidationException(
+								ErrorCode.SURVEY_INVALID_CURSOR, 
+								"A cursor cannot be used with a number to skip: " + 
+									InputKeys.NUM_TO_SKIP);
+					}
+				}
+				
+				// Whether or not to count all of the survey responses.
+				t = getParameterValues(InputKeys.COUNT_TOTAL);
+				if(t.length > 1) {
+					throw new ValidationException(
+							ErrorCode.SURVEY_INVALID_COUNT_TOTAL_VALUE, 
+							"Multiple count total values were given: " + 
+								InputKeys.COUNT_TOTAL);
+				}
+				else if(t.length == 1) {
+					tCountTotal = 
+							SurveyResponseValidators.validateCountTotal(t[0]);
+				}
 			}
 			catch (ValidationException e) {
 				e.failRequest(this);
@@ -628,6 +721,10 @@ public final class SurveyResponseReadRequest
 		
 		surveyResponsesToSkip = tSurveyResponsesToSkip;
 		surveyResponsesToProcess = tSurveyResponsesToProcess;
+		
+		useCursor = tUseCursor;
+		cursor = tCursor;
+		countTotal = (tCountTotal == null) || tCountTotal;
 	}
 	
 	/*
@@ -637,13 +734,26 @@ public final class SurveyResponseReadRequest
 	@Override
 	public void service() {
 		LOGGER.info("Servicing a survey response read request.");
-		super.service(
-				columns, 
-				null, 
-				sortOrder,
-				collapse, 
-				surveyResponsesToSkip, 
-				surveyResponsesToProcess);
+		
+		// These outputs are streamed, so the survey responses are read while
+		// responding.
+		if(OutputFormat.JSON_ROWS.equals(outputFormat) ||
+				OutputFormat.CSV.equals(outputFormat)) {
+			
+			super.prepare();
+		}
+		else if(useCursor) {
+			super.service(cursor, surveyResponsesToProcess, countTotal);
+		}
+		else {
+			super.service(
+					columns, 
+					null, 
+					sortOrder,
+					collapse, 
+					surveyResponsesToSkip, 
+					surveyResponsesToProcess);
+		}
 	}
 
 	/*
@@ -655,6 +765,189 @@ public final class SurveyResponseReadRequest
 		return getSurveyResponseCount();
 	}
 	
+	/**
+	 * Adds the total number of survey responses, if they were counted, and 
+	 * the cursor for the next page, if there is one, to the metadata.
+	 * 
+	 * @param metadata The metadata to add to.
+	 * 
+	 * @throws JSONException There was an error adding to the metadata.
+	 */
+	private void addPagingMetadata(
+			final JSONObject metadata)
+			throws JSONException {
+		
+		long count = getSurveyResponseCount();
+		if(count >= 0) {
+			metadata.put(JSON_KEY_TOTAL_NUM_RESULTS, count);
+		}
+		
+		SurveyResponseCursor nextCursor = getNextCursor();
+		if(nextCursor != null) {
+			metadata.put(JSON_KEY_NEXT_CURSOR, nextCursor.toString());
+		}
+	}
+	
+	/**
+	 * Builds the 
+	 * {@link org.ohmage.domain.campaign.SurveyResponse.OutputFormat#JSON_ROWS JSON_ROWS}
+	 * representation of a single survey response with only the requested 
+	 * columns.
+	 * 
+	 * @param surveyResponse The survey response.
+	 * 
+	 * @param allColumns Whether or not all columns were requested.
+	 * 
+	 * @return The survey response's row.
+	 * 
+	 * @throws JSONException There was an error building the row.
+	 * 
+	 * @throws DomainException The survey response could not be converted.
+	 */
+	private JSONObject getJsonRow(
+			final SurveyResponse surveyResponse,
+			final boolean allColumns)
+			throws JSONException, DomainException {
+		
+		JSONObject currResult;
+		currResult = surveyResponse.toJson(
+				allColumns || columns.contains(ColumnKey.USER_ID),
+				allColumns || false,
+				allColumns || columns.contains(ColumnKey.CONTEXT_CLIENT),
+				allColumns || columns.contains(ColumnKey.SURVEY_PRIVACY_STATE),
+				allColumns || columns.contains(ColumnKey.CONTEXT_EPOCH_MILLIS),
+				allColumns || columns.contains(ColumnKey.CONTEXT_TIMEZONE),
+				allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_STATUS),
+				false,
+				allColumns || columns.contains(ColumnKey.SURVEY_ID),
+				allColumns || columns.contains(ColumnKey.SURVEY_TITLE),
+				allColumns || columns.contains(ColumnKey.SURVEY_DESCRIPTION),
+				allColumns || columns.contains(ColumnKey.CONTEXT_LAUNCH_CONTEXT_SHORT),
+				allColumns || columns.contains(ColumnKey.CONTEXT_LAUNCH_CONTEXT_LONG),
+				allColumns || columns.contains(ColumnKey.PROMPT_RESPONSE),
+				false,
+				(((returnId == null) ? false : returnId) ||
+				 allColumns ||
+				 columns.contains(ColumnKey.SURVEY_RESPONSE_ID)
+				),
+				((collapse != null) && collapse)
+			);
+		
+		
+		if(allColumns || columns.contains(ColumnKey.CONTEXT_DATE)) {
+			currResult.put(
+					"date", 
+					DateTimeUtils.getIso8601DateString(
+							surveyResponse.getDate(),
+							false));
+		}
+		if(allColumns || columns.contains(ColumnKey.CONTEXT_TIMESTAMP)) {
+			currResult.put(
+					"timestamp", 
+					DateTimeUtils.getIso8601DateString(
+							surveyResponse.getDate(),
+							true));
+		}
+		if(allColumns || columns.contains(ColumnKey.CONTEXT_UTC_TIMESTAMP)) {
+			Calendar tmpCalendar = 
+					Calendar.getInstance(
+							surveyResponse.getTimezone().toTimeZone());
+			tmpCalendar.setTimeInMillis(
+					surveyResponse.getTime());
+			
+			currResult.put(
+					"utc_timestamp",
+					DateTimeUtils.getIso8601DateString(
+						new DateTime(
+							surveyResponse.getTime(), 
+							DateTimeZone.UTC),
+						true));
+		}
+		if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_ACCURACY)) {
+			Location location = surveyResponse.getLocation();
+			
+			if(location == null) {
+				currResult.put(Location.LocationColumnKey.ACCURACY.toString(false), JSONObject.NULL);
+			}
+			else {
+				double accuracy = location.getAccuracy();
+				
+				if(Double.isInfinite(accuracy) || Double.isNaN(accuracy)) {
+					currResult.put(Location.LocationColumnKey.ACCURACY.toString(false), JSONObject.NULL);
+				}
+				else {
+					currResult.put(Location.LocationColumnKey.ACCURACY.toString(false), accuracy);
+				}
+			}
+		}
+		if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_LATITUDE)) {
+			Location location = surveyResponse.getLocation();
+			
+			if(location == null) {
+				currResult.put(Location.LocationColumnKey.LATITUDE.toString(false), JSONObject.NULL);
+			}
+			else {
+				double latitude = location.getLatitude();
+				
+				if(Double.isInfinite(latitude) || Double.isNaN(latitude)) {
+					currResult.put(Location.LocationColumnKey.LATITUDE.toString(false), JSONObject.NULL);
+				}
+				else {
+					currResult.put(Location.LocationColumnKey.LATITUDE.toString(false), latitude);
+				}
+			}
+		}
+		if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_LONGITUDE)) {
+			Location location = surveyResponse.getLocation();
+			
+			if(location == null) {
+				currResult.put(Location.LocationColumnKey.LONGITUDE.toString(false), JSONObject.NULL);
+			}
+			else {
+				double longitude = location.getLongitude();
+				
+				if(Double.isInfinite(longitude) || Double.isNaN(longitude)) {
+					currResult.put(Location.LocationColumnKey.LONGITUDE.toString(false), JSONObject.NULL);
+				}
+				else {
+					currResult.put(Location.LocationColumnKey.LONGITUDE.toString(false), longitude);
+				}
+			}
+		}
+		if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_PROVIDER)) {
+			Location location = surveyResponse.getLocation();
+			
+			if(location == null) {
+				currResult.put(Location.LocationColumnKey.PROVIDER.toString(false), JSONObject.NULL);
+			}
+			else {
+				currResult.put(Location.LocationColumnKey.PROVIDER.toString(false), location.getProvider());
+			}
+		}
+		if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_TIMESTAMP)) {
+			Location location = surveyResponse.getLocation();
+			
+			if(location == null) {
+				currResult.put("location_timestamp", JSONObject.NULL);
+			}
+			else {
+				currResult.put("location_timestamp", location.getTime());
+			}
+		}
+		if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_TIMESTAMP)) {
+			Location location = surveyResponse.getLocation();
+			
+			if(location == null) {
+				currResult.put("location_timezone", JSONObject.NULL);
+			}
+			else {
+				currResult.put("location_timezone", location.getTimeZone().getID());
+			}
+		}
+		
+		return currResult;
+	}
+	
 	/**
 	 * Builds the output depending on the state of this request and whatever
 	 * output format the requester selected.
@@ -682,6 +975,7 @@ public final class SurveyResponseReadRequest
 		expireResponse(httpResponse);
 				
 		String resultString = "";
+		boolean written = false;
 		
 		if(! isFailed()) {
 			try {
@@ -693,237 +987,28 @@ public final class SurveyResponseReadRequest
 				if(OutputFormat.JSON_ROWS.equals(outputFormat)) {
 					httpResponse.setContentType("application/json");
 					
-					JSONObject result = new JSONObject();
-					result.put(JSON_KEY_RESULT, RESULT_SUCCESS);
-					
-					List<String> uniqueSurveyIds = new LinkedList<String>();
-					List<String> uniquePromptIds = new LinkedList<String>();
-					JSONArray results = new JSONArray();
-					for(SurveyResponse surveyResponse : getSurveyResponses()) {
-						uniqueSurveyIds.add(surveyResponse.getSurvey().getId());
-						uniquePromptIds.addAll(surveyResponse.getPromptIds());
-						
-						JSONObject currResult;
-						currResult = surveyResponse.toJson(
-								allColumns || columns.contains(ColumnKey.USER_ID),
-								allColumns || false,
-								allColumns || columns.contains(ColumnKey.CONTEXT_CLIENT),
-								allColumns || columns.contains(ColumnKey.SURVEY_PRIVACY_STATE),
-								allColumns || columns.contains(ColumnKey.CONTEXT_EPOCH_MILLIS),
-								allColumns || columns.contains(ColumnKey.CONTEXT_TIMEZONE),
-								allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_STATUS),
-								false,
-								allColumns || columns.contains(ColumnKey.SURVEY_ID),
-								allColumns || columns.contains(ColumnKey.SURVEY_TITLE),
-								allColumns || columns.contains(ColumnKey.SURVEY_DESCRIPTION),
-								allColumns || columns.contains(ColumnKey.CONTEXT_LAUNCH_CONTEXT_SHORT),
-								allColumns || columns.contains(ColumnKey.CONTEXT_LAUNCH_CONTEXT_LONG),
-								allColumns || columns.contains(ColumnKey.PROMPT_RESPONSE),
-								false,
-								(((returnId == null) ? false : returnId) ||
-								 allColumns ||
-								 columns.contains(ColumnKey.SURVEY_RESPONSE_ID)
-								),
-								((collapse != null) && collapse)
-							);
-						
-						
-						if(allColumns || columns.contains(ColumnKey.CONTEXT_DATE)) {
-							currResult.put(
-									"date", 
-									DateTimeUtils.getIso8601DateString(
-											surveyResponse.getDate(),
-											false));
-						}
-						if(allColumns || columns.contains(ColumnKey.CONTEXT_TIMESTAMP)) {
-							currResult.put(
-									"timestamp", 
-									DateTimeUtils.getIso8601DateString(
-											surveyResponse.getDate(),
-											true));
-						}
-						if(allColumns || columns.contains(ColumnKey.CONTEXT_UTC_TIMESTAMP)) {
-							Calendar tmpCalendar = 
-									Calendar.getInstance(
-											surveyResponse.getTimezone().toTimeZone());
-							tmpCalendar.setTimeInMillis(
-									surveyResponse.getTime());
-							
-							currResult.put(
-									"utc_timestamp",
-									DateTimeUtils.getIso8601DateString(
-										new DateTime(
-											surveyResponse.getTime(), 
-											DateTimeZone.UTC),
-										true));
-						}
-						if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_ACCURACY)) {
-							Location location = surveyResponse.getLocation();
-							
-							if(location == null) {
-								currResult.put(Location.LocationColumnKey.ACCURACY.toString(false), JSONObject.NULL);
-							}
-							else {
-								double accuracy = location.getAccuracy();
-								
-								if(Double.isInfinite(accuracy) || Double.isNaN(accuracy)) {
-									currResult.put(Location.LocationColumnKey.ACCURACY.toString(false), JSONObject.NULL);
-								}
-								else {
-									currResult.put(Location.LocationColumnKey.ACCURACY.toString(false), accuracy);
-								}
-							}
-						}
-						if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_LATITUDE)) {
-							Location location = surveyResponse.getLocation();
-							
-							if(location == null) {
-								currResult.put(Location.LocationColumnKey.LATITUDE.toString(false), JSONObject.NULL);
-							}
-							else {
-								double latitude = location.getLatitude();
-								
-								if(Double.isInfinite(latitude) || Double.isNaN(latitude)) {
-									currResult.put(Location.LocationColumnKey.LATITUDE.toString(false), JSONObject.NULL);
-								}
-								else {
-									currResult.put(Location.LocationColumnKey.LATITUDE.toString(false), latitude);
-								}
-							}
-						}
-						if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_LONGITUDE)) {
-							Location location = surveyResponse.getLocation();
-							
-							if(location == null) {
-								currResult.put(Location.LocationColumnKey.LONGITUDE.toString(false), JSONObject.NULL);
-							}
-							else {
-								double longitude = location.getLongitude();
-								
-								if(Double.isInfinite(longitude) || Double.isNaN(longitude)) {
-									currResult.put(Location.LocationColumnKey.LONGITUDE.toString(false), JSONObject.NULL);
-								}
-								else {
-									currResult.put(Location.LocationColumnKey.LONGITUDE.toString(false), longitude);
-								}
-							}
-						}
-						if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_PROVIDER)) {
-							Location location = surveyResponse.getLocation();
-							
-							if(location == null) {
-								currResult.put(Location.LocationColumnKey.PROVIDER.toString(false), JSONObject.NULL);
-							}
-							else {
-								currResult.put(Location.LocationColumnKey.PROVIDER.toString(false), location.getProvider());
-							}
-						}
-						if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_TIMESTAMP)) {
-							Location location = surveyResponse.getLocation();
-							
-							if(location == null) {
-								currResult.put("location_timestamp", JSONObject.NULL);
-							}
-							else {
-								currResult.put("location_timestamp", location.getTime());
-							}
-						}
-						if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_TIMESTAMP)) {
-							Location location = surveyResponse.getLocation();
-							
-							if(location == null) {
-								currResult.put("location_timezone", JSONObject.NULL);
-							}
-							else {
-								currResult.put("location_timezone", location.getTimeZone().getID());
-							}
-						}
-						
-						results.put(currResult);
-					}
-					result.put(JSON_KEY_DATA, results);
-					
-					
-					// Metadata
-					if((suppressMetadata == null) || (! suppressMetadata)) {
-						JSONObject metadata = new JSONObject();
-						
-						metadata.put(JSON_KEY_NUM_SURVEYS, uniqueSurveyIds.size());
-						metadata.put(JSON_KEY_NUM_PROMPTS, uniquePromptIds.size());
-						
-						Collection<String> columnsResult = 
-							new HashSet<String>(columns.size());
-						
-						// If it contains the special 'all' value, add them 
-						// all.
-						if(columns.contains(URN_SPECIAL_ALL)) {
-							ColumnKey[] values = SurveyResponse.ColumnKey.values();
-							for(int i = 0; i < values.length; i++) {
-								columnsResult.add(values[i].toString());
-							}
-						}
-						// Otherwise, add cycle through them 
-						else {
-							for(ColumnKey columnKey : columns) {
-								columnsResult.add(columnKey.toString());
-							}
-						}
-						
-						// Check if prompt responses were requested, and, if 
-						// so, add them to the list of columns.
-						if(columns.contains(SurveyResponse.ColumnKey.PROMPT_RESPONSE) ||
-								columns.contains(URN_SPECIAL_ALL)) {
-							
-							for(String promptId : uniquePromptIds) {
-								columnsResult.add(ColumnKey.URN_PROMPT_ID_PREFIX + promptId);
-							}
-						}
-						
-						// Add it to the metadata result.
-						metadata.put(JSON_KEY_ITEMS, columnsResult);
-						
-						// Add the total count to the metadata.
-						metadata.put(
-								JSON_KEY_TOTAL_NUM_RESULTS, 
-								getSurveyResponseCount());
-						
-						result.put(JSON_KEY_METADATA, metadata);
-					}
-					
-					if((prettyPrint != null) && prettyPrint) {
-						resultString = result.toString(4);
-						
+					// Each survey response is written as soon as it is read.
+					// The metadata follows the data, so it can be computed
+					// along the way.
+					JsonRowsWriter rowsWriter = 
+						new JsonRowsWriter(writer, allColumns);
+					try {
+						handleSurveyResponses(
+							Collections
+								.<SurveyResponseHandler>singletonList(
+									rowsWriter));
 					}
-					else {
-						resultString = result.toString();
+					catch(ServiceException e) {
+						e.failRequest(this);
+						e.logException(LOGGER);
 					}
-					
+					written = rowsWriter.isStarted();
 				}
 				else if(OutputFormat.JSON_COLUMNS.equals(outputFormat) || 
 						OutputFormat.CSV.equals(outputFormat)) {
 					
-					JSONArray usernames = new JSONArray();
-					JSONArray clients = new JSONArray();
-					JSONArray privacyStates = new JSONArray();
-					JSONArray dates = new JSONArray();
-					JSONArray timestamps = new JSONArray();
-					JSONArray utcTimestamps = new JSONArray();
-					JSONArray epochMillisTimestamps = new JSONArray();
-					JSONArray timezones = new JSONArray();
-					JSONArray locationStatuses = new JSONArray();
-					JSONArray locationLongitude = new JSONArray();
-					JSONArray locationLatitude = new JSONArray();
-					JSONArray locationTimestamp = new JSONArray();
-					JSONArray locationTimeZone = new JSONArray();
-					JSONArray locationAccuracy = new JSONArray();
-					JSONArray locationProvider = new JSONArray();
-					JSONArray surveyIds = new JSONArray();
-					JSONArray surveyTitles = new JSONArray();
-					JSONArray surveyDescriptions = new JSONArray();
-					JSONArray launchContexts = new JSONArray();
-					JSONArray surveyResponseIds = new JSONArray();
-					JSONArray counts = new JSONArray();
-					Map<String, JSONObject> prompts = new HashMap<String, JSONObject>();
+					ColumnValues values = new ColumnValues(allColumns);
+					Map<String, JSONObject> prompts = values.prompts;
 					
 					// If the user requested to know information about prompt
 					// responses, populate the prompt contexts with the 
@@ -996,208 +1081,44 @@ public final class SurveyResponseReadRequest
 							}
 						}
 					}
+					values.clear();
 					
-					// Process each of the survey responses and keep track of
-					// the number of prompt responses.
-					int numSurveyResponses = getSurveyResponses().size();
-					int numPromptResponses = 0;
-					for(SurveyResponse surveyResponse : getSurveyResponses()) {
-						try {
-							numPromptResponses += processResponses(allColumns, 
-									surveyResponse, 
-									surveyResponse.getResponses(), 
-									prompts, 
-									usernames, clients, privacyStates, 
-									dates, timestamps, utcTimestamps, 
-									epochMillisTimestamps, timezones, 
-									locationStatuses, locationLongitude, 
-									locationLatitude, locationTimestamp, 
-									locationTimeZone,
-									locationAccuracy, locationProvider,
-									surveyIds, surveyTitles, surveyDescriptions, 
-									launchContexts, surveyResponseIds, counts
-								);
-						} 
-						catch(DomainException e) {
-							LOGGER.error(
-									"There was a problem aggregating the responses.",
-									e);
-							setFailed();
-							super.respond(httpRequest, httpResponse, (JSONObject) null);
-						}
-					}
-					
-					// Add all of the applicable output stuff.
-					JSONObject result = new JSONObject();
-					JSONArray keysOrdered = new JSONArray();
-					
-					// For each of the requested columns, add their respective
-					// data to the result in a specific order per Hongsuda's
-					// request.
-					if(allColumns || columns.contains(ColumnKey.SURVEY_ID)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, surveyIds);
-						result.put(ColumnKey.SURVEY_ID.toString(), values);
-						keysOrdered.put(ColumnKey.SURVEY_ID.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.SURVEY_TITLE)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, surveyTitles);
-						result.put(ColumnKey.SURVEY_TITLE.toString(), values);
-						keysOrdered.put(ColumnKey.SURVEY_TITLE.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.SURVEY_DESCRIPTION)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, surveyDescriptions);
-						result.put(ColumnKey.SURVEY_DESCRIPTION.toString(), values);
-						keysOrdered.put(ColumnKey.SURVEY_DESCRIPTION.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.USER_ID)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, usernames);
-						result.put(ColumnKey.USER_ID.toString(), values);
-						keysOrdered.put(ColumnKey.USER_ID.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_CLIENT)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, clients);
-						result.put(ColumnKey.CONTEXT_CLIENT.toString(), values);
-						keysOrdered.put(ColumnKey.CONTEXT_CLIENT.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_UTC_TIMESTAMP)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, utcTimestamps);
-						result.put(ColumnKey.CONTEXT_UTC_TIMESTAMP.toString(), values);
-						keysOrdered.put(ColumnKey.CONTEXT_UTC_TIMESTAMP.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_EPOCH_MILLIS)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, epochMillisTimestamps);
-						result.put(ColumnKey.CONTEXT_EPOCH_MILLIS.toString(), values);
-						keysOrdered.put(ColumnKey.CONTEXT_EPOCH_MILLIS.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_DATE)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, timestamps);
-						result.put(ColumnKey.CONTEXT_DATE.toString(), values);
-						keysOrdered.put(ColumnKey.CONTEXT_DATE.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_TIMESTAMP)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, timestamps);
-						result.put(ColumnKey.CONTEXT_TIMESTAMP.toString(), values);
-						keysOrdered.put(ColumnKey.CONTEXT_TIMESTAMP.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_TIMEZONE)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, timezones);
-						result.put(ColumnKey.CONTEXT_TIMEZONE.toString(), values);
-						keysOrdered.put(ColumnKey.CONTEXT_TIMEZONE.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.PROMPT_RESPONSE)) {
-						List<String> unorderedList = new LinkedList<String>();
-						for(String promptId : prompts.keySet()) {
-							result.put(
-									SurveyResponse.ColumnKey.URN_PROMPT_ID_PREFIX + promptId, 
-									prompts.get(promptId));
-							unorderedList.add(SurveyResponse.ColumnKey.URN_PROMPT_ID_PREFIX + promptId);
-						}
-						Collections.sort(unorderedList);
+					if(OutputFormat.JSON_COLUMNS.equals(outputFormat)) {
+						httpResponse.setContentType("application/json");
 						
-						for(String columnId : unorderedList) {
-							keysOrdered.put(columnId);
+						// The output is column-major, so all of the survey
+						// responses must be read before any of it can be 
+						// written. This is why the page size is limited.
+						int numPromptResponses = 0;
+						for(SurveyResponse surveyResponse : getSurveyResponses()) {
+							try {
+								numPromptResponses += values.add(surveyResponse);
+							} 
+							catch(DomainException e) {
+								LOGGER.error(
+										"There was a problem aggregating the responses.",
+										e);
+								setFailed();
+								super.respond(httpRequest, httpResponse, (JSONObject) null);
+							}
 						}
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_STATUS)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, locationStatuses);
-						result.put(ColumnKey.CONTEXT_LOCATION_STATUS.toString(), values);
-						keysOrdered.put(ColumnKey.CONTEXT_LOCATION_STATUS.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_LATITUDE)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, locationLatitude);
-						result.put(ColumnKey.CONTEXT_LOCATION_LATITUDE.toString(), values);
-						keysOrdered.put(ColumnKey.CONTEXT_LOCATION_LATITUDE.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_LONGITUDE)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, locationLongitude);
-						result.put(ColumnKey.CONTEXT_LOCATION_LONGITUDE.toString(), values);
-						keysOrdered.put(ColumnKey.CONTEXT_LOCATION_LONGITUDE.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_PROVIDER)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, locationProvider);
-						result.put(ColumnKey.CONTEXT_LOCATION_PROVIDER.toString(), values);
-						keysOrdered.put(ColumnKey.CONTEXT_LOCATION_PROVIDER.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_TIMESTAMP)) {
-						JSONObject timeValues = new JSONObject();
-						timeValues.put(JSON_KEY_VALUES, locationTimestamp);
-						result.put(ColumnKey.CONTEXT_LOCATION_TIMESTAMP.toString(), timeValues);
-						keysOrdered.put(ColumnKey.CONTEXT_LOCATION_TIMESTAMP.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_TIMEZONE)) {
-						JSONObject timeZoneValues = new JSONObject();
-						timeZoneValues.put(JSON_KEY_VALUES, locationTimeZone);
-						result.put(ColumnKey.CONTEXT_LOCATION_TIMEZONE.toString(), timeZoneValues);
-						keysOrdered.put(ColumnKey.CONTEXT_LOCATION_TIMEZONE.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_ACCURACY)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, locationAccuracy);
-						result.put(ColumnKey.CONTEXT_LOCATION_ACCURACY.toString(), values);
-						keysOrdered.put(ColumnKey.CONTEXT_LOCATION_ACCURACY.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.SURVEY_PRIVACY_STATE)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, privacyStates);
-						result.put(ColumnKey.SURVEY_PRIVACY_STATE.toString(), values);
-						keysOrdered.put(ColumnKey.SURVEY_PRIVACY_STATE.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.CONTEXT_LAUNCH_CONTEXT_LONG)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, launchContexts);
-						result.put(ColumnKey.CONTEXT_LAUNCH_CONTEXT_LONG.toString(), values);
-						keysOrdered.put(ColumnKey.CONTEXT_LAUNCH_CONTEXT_LONG.toString());
-					}
-					if(columns.contains(ColumnKey.CONTEXT_LAUNCH_CONTEXT_SHORT)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, launchContexts);
-						result.put(ColumnKey.CONTEXT_LAUNCH_CONTEXT_SHORT.toString(), values);
-						keysOrdered.put(ColumnKey.CONTEXT_LAUNCH_CONTEXT_SHORT.toString());
-					}
-					if(allColumns || columns.contains(ColumnKey.SURVEY_RESPONSE_ID)) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, surveyResponseIds);
-						result.put(ColumnKey.SURVEY_RESPONSE_ID.toString(), values);
-						keysOrdered.put(ColumnKey.SURVEY_RESPONSE_ID.toString());
-					}
-					if((collapse != null) && collapse) {
-						JSONObject values = new JSONObject();
-						values.put(JSON_KEY_VALUES, counts);
-						result.put("urn:ohmage:context:count", values);
-						keysOrdered.put("urn:ohmage:context:count");
-					}
-					
-					// If metadata is not suppressed, create it.
-					JSONObject metadata = null;
-					if((suppressMetadata == null) || (! suppressMetadata)) {
-						metadata = new JSONObject();
-						
-						metadata.put(InputKeys.CAMPAIGN_URN, getCampaignId());
-						metadata.put(JSON_KEY_NUM_SURVEYS, getSurveyResponses().size());
-						metadata.put(JSON_KEY_NUM_PROMPTS, numPromptResponses);
 						
-						// Add the total count to the metadata.
-						metadata.put(
-								JSON_KEY_TOTAL_NUM_RESULTS, 
-								getSurveyResponseCount());
-					}
-					
-					if(OutputFormat.JSON_COLUMNS.equals(outputFormat)) {
-						httpResponse.setContentType("application/json");
+						JSONArray keysOrdered = new JSONArray();
+						JSONObject result = values.getColumns(keysOrdered);
+						
+						// If metadata is not suppressed, create it.
+						JSONObject metadata = null;
+						if((suppressMetadata == null) || (! suppressMetadata)) {
+							metadata = new JSONObject();
+							
+							metadata.put(InputKeys.CAMPAIGN_URN, getCampaignId());
+							metadata.put(JSON_KEY_NUM_SURVEYS, getSurveyResponses().size());
+							metadata.put(JSON_KEY_NUM_PROMPTS, numPromptResponses);
+							
+							// Add the total count and next cursor to the 
+							// metadata.
+							addPagingMetadata(metadata);
+						}
 						
 						JSONObject resultJson = new JSONObject();
 						resultJson.put(JSON_KEY_RESULT, RESULT_SUCCESS);
@@ -1237,7 +1158,7 @@ public final class SurveyResponseReadRequest
 						resultJson.put(JSON_KEY_DATA, result);
 						
 						if((prettyPrint != null) && prettyPrint) {
-							resultString = resultJson.toString(4);
+							resultString = resultJson.toString(PRETTY_PRINT_INDENT);
 						}
 						else {
 							resultString = resultJson.toString();
@@ -1252,106 +1173,27 @@ public final class SurveyResponseReadRequest
 								"attachment; filename=" + 
 									getCampaign().getName() + 
 									".csv");
-
-						StringBuilder resultBuilder = new StringBuilder();
 						
-						// If the metadata is not suppressed, add it to the
-						// output builder.
+						// The metadata precedes the data, so, unless it is
+						// suppressed, the survey responses are read twice:
+						// once to count them and once to write them.
+						CsvWriter csvWriter = 
+							new CsvWriter(writer, allColumns, values);
+						List<SurveyResponseHandler> passes = 
+							new ArrayList<SurveyResponseHandler>(2);
 						if((suppressMetadata == null) || (! suppressMetadata)) {
-							metadata.put(JSON_KEY_RESULT, RESULT_SUCCESS);
-							
-							resultBuilder.append("## begin metadata\n");
-							resultBuilder.append('#').append(metadata.toString().replace(',', ';')).append('\n');
-							resultBuilder.append("## end metadata\n");
-						
-							// Add the prompt contexts to the output builder if 
-							// prompts were desired.
-							if(allColumns || columns.contains(ColumnKey.PROMPT_RESPONSE)) {
-								resultBuilder.append("## begin prompt contexts\n");
-								for(String promptId : prompts.keySet()) {
-									JSONObject promptJson = new JSONObject();
-									
-									// Use the already-generated JSON from each of
-									// the prompts.
-									promptJson.put(
-											promptId, 
-											prompts
-												.get(promptId)
-												.get(JSON_KEY_CONTEXT));
-									
-									resultBuilder
-										.append('#')
-										.append(promptJson.toString())
-										.append('\n');
-								}
-								resultBuilder.append("## end prompt contexts\n");
-							}
-							
-							// Begin the data section of the CSV.
-							resultBuilder.append("## begin data\n");
+							passes.add(csvWriter.getCountingPass());
 						}
-
-						// Get the number of keys.
-						int keyLength = keysOrdered.length();
+						passes.add(csvWriter.getWritingPass());
 						
-						// Create a comma-separated list of the header names.
-						for(int i = 0; i < keyLength; i++) {
-							String header = keysOrdered.getString(i);
-							if(header.startsWith("urn:ohmage:")) {
-								// TODO: HT: This is where we deal with truncating the 
-								// column header for mobilize
-								
-								header = header.substring(11);
-								
-								if(header.startsWith("prompt:id:")) {
-									header = header.substring(10);
-								}
-							}
-							resultBuilder.append(header);
-							
-							if((i + 1) != keyLength) {
-								resultBuilder.append(',');
-							}
+						try {
+							handleSurveyResponses(passes);
 						}
-						resultBuilder.append('\n');
-						
-						// For each of the responses, 
-						for(int i = 0; i < numSurveyResponses; i++) {
-							for(int j = 0; j < keyLength; j++) {
-								Object currResult = 
-										result
-											.getJSONObject(keysOrdered.getString(j))
-											.getJSONArray(JSON_KEY_VALUES)
-											.get(i);
-								
-								if(JSONObject.NULL.equals(currResult)) {
-									resultBuilder.append("");
-								}
-								else {
-									resultBuilder
-										.append(
-											"\"" +
-												currResult
-													.toString()
-														.replace(
-															"\"",
-															"\"\"") +
-											"\"");
-								}
-								
-								if((j + 1) != keyLength) {
-									resultBuilder.append(',');
-								}
-							}
-
-							resultBuilder.append('\n');
+						catch(ServiceException e) {
+							e.failRequest(this);
+							e.logException(LOGGER);
 						}
-						
-						if((suppressMetadata == null) || (! suppressMetadata)) {
-							resultBuilder.append("## end data");
-						}
-						
-						resultString = resultBuilder.toString();
+						written = csvWriter.isStarted();
 					}
 				}
 			}
@@ -1369,7 +1211,9 @@ public final class SurveyResponseReadRequest
 			}
 		}
 		
-		if(isFailed()) {
+		// Once part of the result has been streamed, it is too late to
+		// replace it with an error message.
+		if(isFailed() && (! written)) {
 			httpResponse.setContentType("application/json");
 			resultString = this.getFailureMessage();
 		}
@@ -1399,7 +1243,885 @@ public final class SurveyResponseReadRequest
 			LOGGER.warn("Unable to close the writer.", e);
 		}
 	}
-
+	
+	/**
+	 * Reads the survey responses, either by cursor or by the number to skip,
+	 * and gives each one to the passes as it is read.
+	 * 
+	 * @param passes The handlers for each pass over the survey responses.
+	 * 
+	 * @throws ServiceException There was an error reading or handling the
+	 * 							survey responses.
+	 */
+	private void handleSurveyResponses(
+			final List<SurveyResponseHandler> passes)
+			throws ServiceException {
+		
+		if(useCursor) {
+			handleSurveyResponsesAfter(
+					cursor, 
+					surveyResponsesToProcess, 
+					countTotal, 
+					passes);
+		}
+		else {
+			handleSurveyResponses(
+					columns, 
+					null, 
+					sortOrder,
+					collapse, 
+					surveyResponsesToSkip, 
+					surveyResponsesToProcess,
+					passes);
+		}
+	}
+	
+	/**
+	 * Indents every line but the first of some pretty printed JSON so that it
+	 * may be nested in other pretty printed JSON.
+	 * 
+	 * @param json The pretty printed JSON.
+	 * 
+	 * @param indent The number of spaces by which to indent it.
+	 * 
+	 * @return The indented JSON.
+	 */
+	private static String indentJson(final String json, final int indent) {
+		return json.replace("\n", newLine(indent));
+	}
+	
+	/**
+	 * Returns a line break followed by some indentation.
+	 * 
+	 * @param indent The number of spaces by which to indent the new line.
+	 * 
+	 * @return The line break and indentation.
+	 */
+	private static String newLine(final int indent) {
+		StringBuilder result = new StringBuilder("\n");
+		for(int i = 0; i < indent; i++) {
+			result.append(' ');
+		}
+		
+		return result.toString();
+	}
+	
+	/**
+	 * Writes the 
+	 * {@link org.ohmage.domain.campaign.SurveyResponse.OutputFormat#JSON_ROWS JSON_ROWS}
+	 * output one survey response at a time, followed by the metadata. The 
+	 * rows and the metadata are printed by the JSON library, so the output
+	 * is the same as printing the whole result as one JSONObject.<br />
+	 * <br />
+	 * This does not use a Jackson JsonGenerator like the Observer stream 
+	 * reads do. The rows are built as JSONObjects by the survey response, 
+	 * and clients rely on the layout that the JSON library gives them: 
+	 * pretty printed output has sorted keys and a four space indent, and 
+	 * Jackson's pretty printer gives neither. Each row would have to be 
+	 * printed by the JSON library and written raw, so the generator would 
+	 * only write the few structural characters that are written here.
+	 */
+	private final class JsonRowsWriter implements SurveyResponseHandler {
+		private final Writer writer;
+		private final boolean allColumns;
+		private final boolean pretty;
+		
+		private boolean started = false;
+		
+		// When pretty printing, a lone row is printed on the same line as 
+		// the array, so each row is held until the next one is read.
+		private JSONObject pendingRow = null;
+		private long numRowsWritten = 0;
+		
+		private long numSurveys = 0;
+		private long numPrompts = 0;
+		private final Set<String> promptIds = new LinkedHashSet<String>();
+		
+		/**
+		 * Creates a writer for the rows.
+		 * 
+		 * @param writer The writer connected to the response.
+		 * 
+		 * @param allColumns Whether or not all columns were requested.
+		 */
+		private JsonRowsWriter(
+				final Writer writer,
+				final boolean allColumns) {
+			
+			this.writer = writer;
+			this.allColumns = allColumns;
+			
+			pretty = (prettyPrint != null) && prettyPrint;
+		}
+		
+		/**
+		 * Returns whether or not any of the output has been written.
+		 * 
+		 * @return Whether or not any of the output has been written.
+		 */
+		private boolean isStarted() {
+			return started;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see org.ohmage.domain.campaign.SurveyResponseHandler#handle(org.ohmage.domain.campaign.SurveyResponse)
+		 */
+		@Override
+		public void handle(
+				final SurveyResponse surveyResponse)
+				throws DomainException, IOException {
+			
+			numSurveys++;
+			Set<String> currPromptIds = surveyResponse.getPromptIds();
+			numPrompts += currPromptIds.size();
+			promptIds.addAll(currPromptIds);
+			
+			try {
+				JSONObject row = getJsonRow(surveyResponse, allColumns);
+				
+				start();
+				if(pendingRow != null) {
+					writeRow(pendingRow);
+				}
+				pendingRow = row;
+			}
+			catch(JSONException e) {
+				throw new DomainException(
+						"The survey response could not be written.", 
+						e);
+			}
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see org.ohmage.domain.campaign.SurveyResponseHandler#finish(long)
+		 */
+		@Override
+		public void finish(
+				final long totalCount)
+				throws DomainException, IOException {
+			
+			try {
+				start();
+				
+				// Close the data.
+				if(pendingRow == null) {
+					writer.write("[]");
+				}
+				else if(pretty && (numRowsWritten == 0)) {
+					writer.write('[');
+					writer.write(
+						indentJson(
+							pendingRow.toString(PRETTY_PRINT_INDENT), 
+							PRETTY_PRINT_INDENT));
+					writer.write(']');
+				}
+				else {
+					writeRow(pendingRow);
+					
+					if(pretty) {
+						writer.write(newLine(PRETTY_PRINT_INDENT));
+					}
+					writer.write(']');
+				}
+				pendingRow = null;
+				
+				// Metadata
+				if((suppressMetadata == null) || (! suppressMetadata)) {
+					JSONObject metadata = new JSONObject();
+					
+					metadata.put(JSON_KEY_NUM_SURVEYS, numSurveys);
+					metadata.put(JSON_KEY_NUM_PROMPTS, numPrompts);
+					
+					Collection<String> columnsResult = 
+						new HashSet<String>(columns.size());
+					
+					// If it contains the special 'all' value, add them all.
+					if(columns.contains(URN_SPECIAL_ALL)) {
+						ColumnKey[] values = SurveyResponse.ColumnKey.values();
+						for(int i = 0; i < values.length; i++) {
+							columnsResult.add(values[i].toString());
+						}
+					}
+					// Otherwise, add cycle through them 
+					else {
+						for(ColumnKey columnKey : columns) {
+							columnsResult.add(columnKey.toString());
+						}
+					}
+					
+					// Check if prompt responses were requested, and, if so,
+					// add them to the list of columns.
+					if(columns.contains(SurveyResponse.ColumnKey.PROMPT_RESPONSE) ||
+							columns.contains(URN_SPECIAL_ALL)) {
+						
+						for(String promptId : promptIds) {
+							columnsResult.add(ColumnKey.URN_PROMPT_ID_PREFIX + promptId);
+						}
+					}
+					
+					// Add it to the metadata result.
+					metadata.put(JSON_KEY_ITEMS, columnsResult);
+					
+					// Add the total count and next cursor to the metadata.
+					addPagingMetadata(metadata);
+					
+					if(pretty) {
+						writer.write(',');
+						writer.write(newLine(PRETTY_PRINT_INDENT));
+						writer.write(JSONObject.quote(JSON_KEY_METADATA));
+						writer.write(": ");
+						writer.write(
+							indentJson(
+								metadata.toString(PRETTY_PRINT_INDENT), 
+								PRETTY_PRINT_INDENT));
+					}
+					else {
+						writer.write(',');
+						writer.write(JSONObject.quote(JSON_KEY_METADATA));
+						writer.write(':');
+						writer.write(metadata.toString());
+					}
+				}
+				
+				// When pretty printing, the keys are sorted, so the result 
+				// is last.
+				if(pretty) {
+					writer.write(',');
+					writer.write(newLine(PRETTY_PRINT_INDENT));
+					writer.write(JSONObject.quote(JSON_KEY_RESULT));
+					writer.write(": ");
+					writer.write(JSONObject.quote(RESULT_SUCCESS));
+					writer.write('\n');
+				}
+				writer.write('}');
+				writer.flush();
+			}
+			catch(JSONException e) {
+				throw new DomainException(
+						"The metadata could not be written.", 
+						e);
+			}
+		}
+		
+		/**
+		 * Writes the beginning of the output, up to the beginning of the 
+		 * data, if it has not yet been written.
+		 * 
+		 * @throws IOException There was an error writing the output.
+		 */
+		private void start() throws IOException {
+			if(started) {
+				return;
+			}
+			started = true;
+			
+			// When pretty printing, the keys are sorted, so the data is 
+			// first.
+			if(pretty) {
+				writer.write('{');
+				writer.write(newLine(PRETTY_PRINT_INDENT));
+				writer.write(JSONObject.quote(JSON_KEY_DATA));
+				writer.write(": ");
+			}
+			else {
+				writer.write('{');
+				writer.write(JSONObject.quote(JSON_KEY_RESULT));
+				writer.write(':');
+				writer.write(JSONObject.quote(RESULT_SUCCESS));
+				writer.write(',');
+				writer.write(JSONObject.quote(JSON_KEY_DATA));
+				writer.write(':');
+			}
+		}
+		
+		/**
+		 * Writes a row that is not the only row in the data.
+		 * 
+		 * @param row The row.
+		 * 
+		 * @throws JSONException There was an error printing the row.
+		 * 
+		 * @throws IOException There was an error writing the row.
+		 */
+		private void writeRow(
+				final JSONObject row)
+				throws JSONException, IOException {
+			
+			if(pretty) {
+				writer.write((numRowsWritten == 0) ? '[' : ',');
+				writer.write(newLine(2 * PRETTY_PRINT_INDENT));
+				writer.write(
+					indentJson(
+						row.toString(PRETTY_PRINT_INDENT), 
+						2 * PRETTY_PRINT_INDENT));
+			}
+			else {
+				writer.write((numRowsWritten == 0) ? '[' : ',');
+				writer.write(row.toString());
+			}
+			
+			numRowsWritten++;
+		}
+	}
+	
+	/**
+	 * Writes the {@link org.ohmage.domain.campaign.SurveyResponse.OutputFormat#CSV CSV}
+	 * output one survey response at a time. The metadata, which precedes the
+	 * data, needs the number of survey and prompt responses, so, unless it
+	 * is suppressed, the survey responses are read in a counting pass before
+	 * they are read again in the writing pass.
+	 */
+	private final class CsvWriter {
+		private final Writer writer;
+		private final boolean allColumns;
+		private final ColumnValues values;
+		private final JSONArray keysOrdered;
+		
+		private boolean started = false;
+		
+		private long numSurveyResponses = 0;
+		private long numPromptResponses = 0;
+		
+		/**
+		 * Creates a writer for the CSV output.
+		 * 
+		 * @param writer The writer connected to the response.
+		 * 
+		 * @param allColumns Whether or not all columns were requested.
+		 * 
+		 * @param values The empty columns, including the prompts.
+		 * 
+		 * @throws JSONException There was an error building the columns.
+		 */
+		private CsvWriter(
+				final Writer writer,
+				final boolean allColumns,
+				final ColumnValues values)
+				throws JSONException {
+			
+			this.writer = writer;
+			this.allColumns = allColumns;
+			this.values = values;
+			
+			// The columns are the same for every survey response.
+			keysOrdered = new JSONArray();
+			values.getColumns(keysOrdered);
+		}
+		
+		/**
+		 * Returns whether or not any of the output has been written.
+		 * 
+		 * @return Whether or not any of the output has been written.
+		 */
+		private boolean isStarted() {
+			return started;
+		}
+		
+		/**
+		 * Returns the pass that counts the survey and prompt responses and
+		 * then writes everything that precedes the data.
+		 * 
+		 * @return The counting pass.
+		 */
+		private SurveyResponseHandler getCountingPass() {
+			return new SurveyResponseHandler() {
+				/*
+				 * (non-Javadoc)
+				 * @see org.ohmage.domain.campaign.SurveyResponseHandler#handle(org.ohmage.domain.campaign.SurveyResponse)
+				 */
+				@Override
+				public void handle(
+						final SurveyResponse surveyResponse)
+						throws DomainException {
+					
+					// This also catches any survey response that cannot be
+					// written before any of the output has been written.
+					try {
+						values.clear();
+						numPromptResponses += values.add(surveyResponse);
+					}
+					catch(JSONException e) {
+						throw new DomainException(
+								"There was a problem aggregating the responses.", 
+								e);
+					}
+					numSurveyResponses++;
+				}
+				
+				/*
+				 * (non-Javadoc)
+				 * @see org.ohmage.domain.campaign.SurveyResponseHandler#finish(long)
+				 */
+				@Override
+				public void finish(
+						final long totalCount)
+						throws DomainException, IOException {
+					
+					start();
+				}
+			};
+		}
+		
+		/**
+		 * Returns the pass that writes each survey response as a line of 
+		 * data.
+		 * 
+		 * @return The writing pass.
+		 */
+		private SurveyResponseHandler getWritingPass() {
+			return new SurveyResponseHandler() {
+				/*
+				 * (non-Javadoc)
+				 * @see org.ohmage.domain.campaign.SurveyResponseHandler#handle(org.ohmage.domain.campaign.SurveyResponse)
+				 */
+				@Override
+				public void handle(
+						final SurveyResponse surveyResponse)
+						throws DomainException, IOException {
+					
+					start();
+					
+					try {
+						values.clear();
+						values.add(surveyResponse);
+						JSONObject result = values.getColumns(new JSONArray());
+						
+						int keyLength = keysOrdered.length();
+						for(int j = 0; j < keyLength; j++) {
+							Object currResult = 
+									result
+										.getJSONObject(keysOrdered.getString(j))
+										.getJSONArray(JSON_KEY_VALUES)
+										.get(0);
+							
+							if(JSONObject.NULL.equals(currResult)) {
+								writer.append("");
+							}
+							else {
+								writer
+									.append(
+										"\"" +
+											currResult
+												.toString()
+													.replace(
+														"\"",
+														"\"\"") +
+										"\"");
+							}
+							
+							if((j + 1) != keyLength) {
+								writer.append(',');
+							}
+						}
+						
+						writer.append('\n');
+					}
+					catch(JSONException e) {
+						throw new DomainException(
+								"The survey response could not be written.", 
+								e);
+					}
+				}
+				
+				/*
+				 * (non-Javadoc)
+				 * @see org.ohmage.domain.campaign.SurveyResponseHandler#finish(long)
+				 */
+				@Override
+				public void finish(
+						final long totalCount)
+						throws DomainException, IOException {
+					
+					start();
+					
+					if((suppressMetadata == null) || (! suppressMetadata)) {
+						writer.append("## end data");
+					}
+					
+					writer.flush();
+				}
+			};
+		}
+		
+		/**
+		 * Writes the metadata, unless it is suppressed, and the header line,
+		 * if they have not yet been written.
+		 * 
+		 * @throws DomainException There was an error building the metadata.
+		 * 
+		 * @throws IOException There was an error writing the output.
+		 */
+		private void start() throws DomainException, IOException {
+			if(started) {
+				return;
+			}
+			started = true;
+			
+			try {
+				// If the metadata is not suppressed, add it to the output.
+				if((suppressMetadata == null) || (! suppressMetadata)) {
+					JSONObject metadata = new JSONObject();
+					
+					metadata.put(InputKeys.CAMPAIGN_URN, getCampaignId());
+					metadata.put(JSON_KEY_NUM_SURVEYS, numSurveyResponses);
+					metadata.put(JSON_KEY_NUM_PROMPTS, numPromptResponses);
+					
+					// Add the total count and next cursor to the metadata.
+					addPagingMetadata(metadata);
+					
+					metadata.put(JSON_KEY_RESULT, RESULT_SUCCESS);
+					
+					writer.append("## begin metadata\n");
+					writer.append('#').append(metadata.toString().replace(',', ';')).append('\n');
+					writer.append("## end metadata\n");
+				
+					// Add the prompt contexts to the output if prompts were
+					// desired.
+					if(allColumns || columns.contains(ColumnKey.PROMPT_RESPONSE)) {
+						writer.append("## begin prompt contexts\n");
+						for(String promptId : values.prompts.keySet()) {
+							JSONObject promptJson = new JSONObject();
+							
+							// Use the already-generated JSON from each of the
+							// prompts.
+							promptJson.put(
+									promptId, 
+									values.prompts
+										.get(promptId)
+										.get(JSON_KEY_CONTEXT));
+							
+							writer
+								.append('#')
+								.append(promptJson.toString())
+								.append('\n');
+						}
+						writer.append("## end prompt contexts\n");
+					}
+					
+					// Begin the data section of the CSV.
+					writer.append("## begin data\n");
+				}
+				
+				// Get the number of keys.
+				int keyLength = keysOrdered.length();
+				
+				// Create a comma-separated list of the header names.
+				for(int i = 0; i < keyLength; i++) {
+					String header = keysOrdered.getString(i);
+					if(header.startsWith("urn:ohmage:")) {
+						// TODO: HT: This is where we deal with truncating the
+						// column header for mobilize
+						
+						header = header.substring(11);
+						
+						if(header.startsWith("prompt:id:")) {
+							header = header.substring(10);
+						}
+					}
+					writer.append(header);
+					
+					if((i + 1) != keyLength) {
+						writer.append(',');
+					}
+				}
+				writer.append('\n');
+			}
+			catch(JSONException e) {
+				throw new DomainException(
+						"The metadata could not be written.", 
+						e);
+			}
+		}
+	}
+	
+	/**
+	 * The values of each column of the 
+	 * {@link org.ohmage.domain.campaign.SurveyResponse.OutputFormat#JSON_COLUMNS JSON_COLUMNS}
+	 * and {@link org.ohmage.domain.campaign.SurveyResponse.OutputFormat#CSV CSV}
+	 * output. The JSON_COLUMNS output collects every survey response's 
+	 * values, and the CSV output collects only one survey response's values 
+	 * at a time.
+	 */
+	private final class ColumnValues {
+		private final boolean allColumns;
+		
+		private JSONArray usernames;
+		private JSONArray clients;
+		private JSONArray privacyStates;
+		private JSONArray dates;
+		private JSONArray timestamps;
+		private JSONArray utcTimestamps;
+		private JSONArray epochMillisTimestamps;
+		private JSONArray timezones;
+		private JSONArray locationStatuses;
+		private JSONArray locationLongitude;
+		private JSONArray locationLatitude;
+		private JSONArray locationTimestamp;
+		private JSONArray locationTimeZone;
+		private JSONArray locationAccuracy;
+		private JSONArray locationProvider;
+		private JSONArray surveyIds;
+		private JSONArray surveyTitles;
+		private JSONArray surveyDescriptions;
+		private JSONArray launchContexts;
+		private JSONArray surveyResponseIds;
+		private JSONArray counts;
+		
+		/**
+		 * The prompts' contexts and values, keyed by prompt ID.
+		 */
+		private final Map<String, JSONObject> prompts = 
+				new HashMap<String, JSONObject>();
+		
+		/**
+		 * Creates an empty set of columns without any prompts.
+		 * 
+		 * @param allColumns Whether or not all columns were requested.
+		 * 
+		 * @throws JSONException There was an error creating the columns.
+		 */
+		private ColumnValues(final boolean allColumns) throws JSONException {
+			this.allColumns = allColumns;
+			
+			clear();
+		}
+		
+		/**
+		 * Removes all of the values, including the prompts' values.
+		 * 
+		 * @throws JSONException There was an error clearing the prompts' 
+		 * 						 values.
+		 */
+		private void clear() throws JSONException {
+			usernames = new JSONArray();
+			clients = new JSONArray();
+			privacyStates = new JSONArray();
+			dates = new JSONArray();
+			timestamps = new JSONArray();
+			utcTimestamps = new JSONArray();
+			epochMillisTimestamps = new JSONArray();
+			timezones = new JSONArray();
+			locationStatuses = new JSONArray();
+			locationLongitude = new JSONArray();
+			locationLatitude = new JSONArray();
+			locationTimestamp = new JSONArray();
+			locationTimeZone = new JSONArray();
+			locationAccuracy = new JSONArray();
+			locationProvider = new JSONArray();
+			surveyIds = new JSONArray();
+			surveyTitles = new JSONArray();
+			surveyDescriptions = new JSONArray();
+			launchContexts = new JSONArray();
+			surveyResponseIds = new JSONArray();
+			counts = new JSONArray();
+			
+			for(JSONObject prompt : prompts.values()) {
+				prompt.put(JSON_KEY_VALUES, new JSONArray());
+			}
+		}
+		
+		/**
+		 * Adds a survey response's values to the end of each column.
+		 * 
+		 * @param surveyResponse The survey response.
+		 * 
+		 * @return The number of prompt responses in the survey response.
+		 * 
+		 * @throws JSONException There was an error adding the values.
+		 * 
+		 * @throws DomainException There was a problem aggregating the data.
+		 */
+		private int add(
+				final SurveyResponse surveyResponse)
+				throws JSONException, DomainException {
+			
+			return processResponses(allColumns, 
+					surveyResponse, 
+					surveyResponse.getResponses(), 
+					prompts, 
+					usernames, clients, privacyStates, 
+					dates, timestamps, utcTimestamps, 
+					epochMillisTimestamps, timezones, 
+					locationStatuses, locationLongitude, 
+					locationLatitude, locationTimestamp, 
+					locationTimeZone,
+					locationAccuracy, locationProvider,
+					surveyIds, surveyTitles, surveyDescriptions, 
+					launchContexts, surveyResponseIds, counts
+				);
+		}
+		
+		/**
+		 * Builds the requested columns from the values.
+		 * 
+		 * @param keysOrdered The array to which the column names are added in
+		 * 					  the order in which they should be output.
+		 * 
+		 * @return The columns keyed by their names.
+		 * 
+		 * @throws JSONException There was an error building the columns.
+		 */
+		private JSONObject getColumns(
+				final JSONArray keysOrdered)
+				throws JSONException {
+			
+			JSONObject result = new JSONObject();
+			
+			// For each of the requested columns, add their respective data to
+			// the result in a specific order per Hongsuda's request.
+			if(allColumns || columns.contains(ColumnKey.SURVEY_ID)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, surveyIds);
+				result.put(ColumnKey.SURVEY_ID.toString(), values);
+				keysOrdered.put(ColumnKey.SURVEY_ID.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.SURVEY_TITLE)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, surveyTitles);
+				result.put(ColumnKey.SURVEY_TITLE.toString(), values);
+				keysOrdered.put(ColumnKey.SURVEY_TITLE.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.SURVEY_DESCRIPTION)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, surveyDescriptions);
+				result.put(ColumnKey.SURVEY_DESCRIPTION.toString(), values);
+				keysOrdered.put(ColumnKey.SURVEY_DESCRIPTION.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.USER_ID)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, usernames);
+				result.put(ColumnKey.USER_ID.toString(), values);
+				keysOrdered.put(ColumnKey.USER_ID.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_CLIENT)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, clients);
+				result.put(ColumnKey.CONTEXT_CLIENT.toString(), values);
+				keysOrdered.put(ColumnKey.CONTEXT_CLIENT.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_UTC_TIMESTAMP)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, utcTimestamps);
+				result.put(ColumnKey.CONTEXT_UTC_TIMESTAMP.toString(), values);
+				keysOrdered.put(ColumnKey.CONTEXT_UTC_TIMESTAMP.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_EPOCH_MILLIS)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, epochMillisTimestamps);
+				result.put(ColumnKey.CONTEXT_EPOCH_MILLIS.toString(), values);
+				keysOrdered.put(ColumnKey.CONTEXT_EPOCH_MILLIS.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_DATE)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, timestamps);
+				result.put(ColumnKey.CONTEXT_DATE.toString(), values);
+				keysOrdered.put(ColumnKey.CONTEXT_DATE.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_TIMESTAMP)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, timestamps);
+				result.put(ColumnKey.CONTEXT_TIMESTAMP.toString(), values);
+				keysOrdered.put(ColumnKey.CONTEXT_TIMESTAMP.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_TIMEZONE)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, timezones);
+				result.put(ColumnKey.CONTEXT_TIMEZONE.toString(), values);
+				keysOrdered.put(ColumnKey.CONTEXT_TIMEZONE.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.PROMPT_RESPONSE)) {
+				List<String> unorderedList = new LinkedList<String>();
+				for(String promptId : prompts.keySet()) {
+					result.put(
+							SurveyResponse.ColumnKey.URN_PROMPT_ID_PREFIX + promptId, 
+							prompts.get(promptId));
+					unorderedList.add(SurveyResponse.ColumnKey.URN_PROMPT_ID_PREFIX + promptId);
+				}
+				Collections.sort(unorderedList);
+				
+				for(String columnId : unorderedList) {
+					keysOrdered.put(columnId);
+				}
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_STATUS)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, locationStatuses);
+				result.put(ColumnKey.CONTEXT_LOCATION_STATUS.toString(), values);
+				keysOrdered.put(ColumnKey.CONTEXT_LOCATION_STATUS.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_LATITUDE)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, locationLatitude);
+				result.put(ColumnKey.CONTEXT_LOCATION_LATITUDE.toString(), values);
+				keysOrdered.put(ColumnKey.CONTEXT_LOCATION_LATITUDE.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_LONGITUDE)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, locationLongitude);
+				result.put(ColumnKey.CONTEXT_LOCATION_LONGITUDE.toString(), values);
+				keysOrdered.put(ColumnKey.CONTEXT_LOCATION_LONGITUDE.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_PROVIDER)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, locationProvider);
+				result.put(ColumnKey.CONTEXT_LOCATION_PROVIDER.toString(), values);
+				keysOrdered.put(ColumnKey.CONTEXT_LOCATION_PROVIDER.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_TIMESTAMP)) {
+				JSONObject timeValues = new JSONObject();
+				timeValues.put(JSON_KEY_VALUES, locationTimestamp);
+				result.put(ColumnKey.CONTEXT_LOCATION_TIMESTAMP.toString(), timeValues);
+				keysOrdered.put(ColumnKey.CONTEXT_LOCATION_TIMESTAMP.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_TIMEZONE)) {
+				JSONObject timeZoneValues = new JSONObject();
+				timeZoneValues.put(JSON_KEY_VALUES, locationTimeZone);
+				result.put(ColumnKey.CONTEXT_LOCATION_TIMEZONE.toString(), timeZoneValues);
+				keysOrdered.put(ColumnKey.CONTEXT_LOCATION_TIMEZONE.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_LOCATION_ACCURACY)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, locationAccuracy);
+				result.put(ColumnKey.CONTEXT_LOCATION_ACCURACY.toString(), values);
+				keysOrdered.put(ColumnKey.CONTEXT_LOCATION_ACCURACY.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.SURVEY_PRIVACY_STATE)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, privacyStates);
+				result.put(ColumnKey.SURVEY_PRIVACY_STATE.toString(), values);
+				keysOrdered.put(ColumnKey.SURVEY_PRIVACY_STATE.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.CONTEXT_LAUNCH_CONTEXT_LONG)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, launchContexts);
+				result.put(ColumnKey.CONTEXT_LAUNCH_CONTEXT_LONG.toString(), values);
+				keysOrdered.put(ColumnKey.CONTEXT_LAUNCH_CONTEXT_LONG.toString());
+			}
+			if(columns.contains(ColumnKey.CONTEXT_LAUNCH_CONTEXT_SHORT)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, launchContexts);
+				result.put(ColumnKey.CONTEXT_LAUNCH_CONTEXT_SHORT.toString(), values);
+				keysOrdered.put(ColumnKey.CONTEXT_LAUNCH_CONTEXT_SHORT.toString());
+			}
+			if(allColumns || columns.contains(ColumnKey.SURVEY_RESPONSE_ID)) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, surveyResponseIds);
+				result.put(ColumnKey.SURVEY_RESPONSE_ID.toString(), values);
+				keysOrdered.put(ColumnKey.SURVEY_RESPONSE_ID.toString());
+			}
+			if((collapse != null) && collapse) {
+				JSONObject values = new JSONObject();
+				values.put(JSON_KEY_VALUES, counts);
+				result.put("urn:ohmage:context:count", values);
+				keysOrdered.put("urn:ohmage:context:count");
+			}
+			
+			return result;
+		}
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see org.ohmage.request.omh.OmhReadResponder#respond(org.codehaus.jackson.JsonGenerator)
@@ -18,6 +18,9 @@ import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.domain.campaign.Campaign;
 import org.ohmage.domain.campaign.SurveyResponse;
 import org.ohmage.domain.campaign.SurveyResponse.SortParameter;
+import org.ohmage.domain.campaign.SurveyResponseCursor;
+import org.ohmage.domain.campaign.SurveyResponseHandler;
+import org.ohmage.exception.DomainException;
 import org.ohmage.exception.InvalidRequestException;
 import org.ohmage.exception.ServiceException;
 import org.ohmage.exception.ValidationException;
@@ -64,6 +67,7 @@ public abstract class SurveyResponseRequest extends UserRequest {
 	private List<SurveyResponse> surveyResponseList =
 		new ArrayList<SurveyResponse>();
 	private long surveyResponseCount = 0;
+	private SurveyResponseCursor nextCursor = null;
 	
 	/**
 	 * Creates a survey responses request. The optional parameters limit the 
@@ -415,24 +419,7 @@ public abstract class SurveyResponseRequest extends UserRequest {
 		}
 		
 		try {
-		    LOGGER.info("Retrieving campaign configuration.");
-			campaign = CampaignServices.instance().getCampaign(campaignId);
-			if(campaign == null) {
-				throw
-					new ServiceException(
-						ErrorCode.CAMPAIGN_INVALID_ID,
-						"The campaign does not exist.");
-			}
-			
-			if((promptIds != null) && (! promptIds.isEmpty()) && (! URN_SPECIAL_ALL_LIST.equals(promptIds))) {
-				LOGGER.info("Verifying that the prompt ids in the query belong to the campaign.");
-				SurveyResponseReadServices.instance().verifyPromptIdsBelongToConfiguration(promptIds, campaign);
-			}
-			
-			if((surveyIds != null) && (! surveyIds.isEmpty()) && (! URN_SPECIAL_ALL_LIST.equals(surveyIds))) {
-				LOGGER.info("Verifying that the survey ids in the query belong to the campaign.");
-				SurveyResponseReadServices.instance().verifySurveyIdsBelongToConfiguration(surveyIds, campaign);
-			}
+			loadCampaign();
 		    
 			LOGGER.info("Dispatching to the data layer.");
 			surveyResponseCount = 
@@ -455,19 +442,98 @@ public abstract class SurveyResponseRequest extends UserRequest {
 							surveyResponseList
 						);
 			
-			int numPromptResponses = 0;
-			for(SurveyResponse surveyResponse : surveyResponseList) {
-				numPromptResponses += surveyResponse.getResponses().size();
+			logResults();
+		}
+		catch(ServiceException e) {
+			e.failRequest(this);
+			e.logException(LOGGER);
+		}
+	}
+	
+	/**
+	 * Authenticates the parameters and reads one page of survey responses in
+	 * the default order, beginning after a cursor. Only the survey responses
+	 * on the page are read from the database.
+	 * 
+	 * @param cursor The last survey response of the previous page or null for
+	 * 				 the first page.
+	 * 
+	 * @param numSurveyResponsesToProcess The maximum number of survey 
+	 * 									  responses to return.
+	 * 
+	 * @param countTotal Whether or not to count all of the survey responses
+	 * 					 that match the criteria.
+	 */
+	public void service(
+			final SurveyResponseCursor cursor,
+			final long numSurveyResponsesToProcess,
+			final boolean countTotal) {
+		
+		if(! authenticate(AllowNewAccount.NEW_ACCOUNT_DISALLOWED)) {
+			return;
+		}
+		
+		try {
+			loadCampaign();
+			
+			LOGGER.info("Dispatching to the data layer.");
+			surveyResponseCount = 
+					SurveyResponseServices.instance().readSurveyResponsesAfter(
+							campaign,
+							getUser().getUsername(),
+							surveyResponseIds,
+							(URN_SPECIAL_ALL_LIST.equals(usernames) ? null : usernames), 
+							startDate, 
+							endDate, 
+							privacyState, 
+							(URN_SPECIAL_ALL_LIST.equals(surveyIds)) ? null : surveyIds, 
+							(URN_SPECIAL_ALL_LIST.equals(promptIds)) ? null : promptIds,
+							null,
+							promptResponseSearchTokens,
+							cursor,
+							numSurveyResponsesToProcess,
+							countTotal,
+							surveyResponseList
+						);
+			
+			// If the page is full, there may be more survey responses.
+			if((! surveyResponseList.isEmpty()) && 
+					(surveyResponseList.size() >= numSurveyResponsesToProcess)) {
+				
+				try {
+					nextCursor =
+						new SurveyResponseCursor(
+							surveyResponseList.get(
+								surveyResponseList.size() - 1));
+				}
+				catch(DomainException e) {
+					throw new ServiceException(e);
+				}
 			}
 			
-			LOGGER.info(
-					"Found " + 
-						surveyResponseList.size() + 
-						" results after filtering and paging a total of " + 
-						surveyResponseCount + 
-						" applicable responses, which contains " +
-						numPromptResponses +
-						" prompt responses.");
+			logResults();
+		}
+		catch(ServiceException e) {
+			e.failRequest(this);
+			e.logException(LOGGER);
+		}
+	}
+	
+	/**
+	 * Authenticates the parameters and reads the campaign, but does not read
+	 * any survey responses. They may then be handed off one at a time as 
+	 * they are read with 
+	 * {@link #handleSurveyResponses(Collection, String, List, Boolean, long, long, List)}
+	 * or 
+	 * {@link #handleSurveyResponsesAfter(SurveyResponseCursor, long, boolean, List)}.
+	 */
+	public void prepare() {
+		if(! authenticate(AllowNewAccount.NEW_ACCOUNT_DISALLOWED)) {
+			return;
+		}
+		
+		try {
+			loadCampaign();
 		}
 		catch(ServiceException e) {
 			e.failRequest(this);
@@ -475,6 +541,234 @@ public abstract class SurveyResponseRequest extends UserRequest {
 		}
 	}
 	
+	/**
+	 * Reads the same survey responses as 
+	 * {@link #service(Collection, String, List, Boolean, long, long)}, but
+	 * gives each one to the passes as it is read instead of keeping them. 
+	 * The count is available to the first pass by the time it is finished.
+	 * {@link #prepare()} must have been called first.
+	 * 
+	 * @param columns The columns to gather for each survey response.
+	 * 
+	 * @param promptType Only gather survey responses that contain prompt 
+	 * 					 responses whose prompt type is this.
+	 * 
+	 * @param sortOrder The order in which to sort the survey responses.
+	 * 
+	 * @param collapse Whether or not to collapse the results.
+	 * 
+	 * @param numSurveyResponsesToSkip The number of survey responses to skip.
+	 * 
+	 * @param numSurveyResponsesToProcess The number of survey responses to	
+	 * 									  process.
+	 * 
+	 * @param passes The handlers for each pass over the survey responses.
+	 * 
+	 * @throws ServiceException There was an error reading or handling the
+	 * 							survey responses.
+	 */
+	public void handleSurveyResponses(
+			final Collection<SurveyResponse.ColumnKey> columns,
+			final String promptType,
+			final List<SortParameter> sortOrder,
+			final Boolean collapse,
+			final long numSurveyResponsesToSkip,
+			final long numSurveyResponsesToProcess,
+			final List<SurveyResponseHandler> passes)
+			throws ServiceException {
+		
+		LOGGER.info("Dispatching to the data layer.");
+		SurveyResponseServices.instance().handleSurveyResponses(
+				campaign,
+				getUser().getUsername(),
+				surveyResponseIds,
+				(URN_SPECIAL_ALL_LIST.equals(usernames) ? null : usernames), 
+				startDate, 
+				endDate, 
+				privacyState, 
+				(URN_SPECIAL_ALL_LIST.equals(surveyIds)) ? null : surveyIds, 
+				(URN_SPECIAL_ALL_LIST.equals(promptIds)) ? null : promptIds,
+				promptType,
+				promptResponseSearchTokens,
+				((collapse != null) && collapse && (! columns.equals(URN_SPECIAL_ALL_LIST))) ? columns : null,
+				sortOrder,
+				numSurveyResponsesToSkip,
+				numSurveyResponsesToProcess,
+				trackFirstPass(passes, null));
+	}
+	
+	/**
+	 * Reads the same page of survey responses as 
+	 * {@link #service(SurveyResponseCursor, long, boolean)}, but gives each 
+	 * one to the passes as it is read instead of keeping them. The count and
+	 * the next cursor are available to the first pass by the time it is 
+	 * finished. {@link #prepare()} must have been called first.
+	 * 
+	 * @param cursor The last survey response of the previous page or null for
+	 * 				 the first page.
+	 * 
+	 * @param numSurveyResponsesToProcess The maximum number of survey 
+	 * 									  responses to read.
+	 * 
+	 * @param countTotal Whether or not to count all of the survey responses
+	 * 					 that match the criteria.
+	 * 
+	 * @param passes The handlers for each pass over the survey responses.
+	 * 
+	 * @throws ServiceException There was an error reading or handling the
+	 * 							survey responses.
+	 */
+	public void handleSurveyResponsesAfter(
+			final SurveyResponseCursor cursor,
+			final long numSurveyResponsesToProcess,
+			final boolean countTotal,
+			final List<SurveyResponseHandler> passes)
+			throws ServiceException {
+		
+		LOGGER.info("Dispatching to the data layer.");
+		SurveyResponseServices.instance().handleSurveyResponsesAfter(
+				campaign,
+				getUser().getUsername(),
+				surveyResponseIds,
+				(URN_SPECIAL_ALL_LIST.equals(usernames) ? null : usernames), 
+				startDate, 
+				endDate, 
+				privacyState, 
+				(URN_SPECIAL_ALL_LIST.equals(surveyIds)) ? null : surveyIds, 
+				(URN_SPECIAL_ALL_LIST.equals(promptIds)) ? null : promptIds,
+				null,
+				promptResponseSearchTokens,
+				cursor,
+				numSurveyResponsesToProcess,
+				countTotal,
+				trackFirstPass(passes, numSurveyResponsesToProcess));
+	}
+	
+	/**
+	 * Wraps the first pass so that, by the time it is finished, the count 
+	 * and, if the survey responses are being paged by cursor, the next 
+	 * cursor have been set.
+	 * 
+	 * @param passes The passes.
+	 * 
+	 * @param pageSize The number of survey responses on a full page when 
+	 * 				   paging by cursor or null if not paging by cursor.
+	 * 
+	 * @return The passes with the first one wrapped.
+	 */
+	private List<SurveyResponseHandler> trackFirstPass(
+			final List<SurveyResponseHandler> passes,
+			final Long pageSize) {
+		
+		List<SurveyResponseHandler> result = 
+				new ArrayList<SurveyResponseHandler>(passes);
+		
+		if(! result.isEmpty()) {
+			final SurveyResponseHandler firstPass = result.get(0);
+			result.set(
+				0, 
+				new SurveyResponseHandler() {
+					private long numSurveyResponses = 0;
+					private SurveyResponse lastSurveyResponse = null;
+					
+					/*
+					 * (non-Javadoc)
+					 * @see org.ohmage.domain.campaign.SurveyResponseHandler#handle(org.ohmage.domain.campaign.SurveyResponse)
+					 */
+					@Override
+					public void handle(
+							final SurveyResponse surveyResponse)
+							throws DomainException, IOException {
+						
+						numSurveyResponses++;
+						lastSurveyResponse = surveyResponse;
+						
+						firstPass.handle(surveyResponse);
+					}
+					
+					/*
+					 * (non-Javadoc)
+					 * @see org.ohmage.domain.campaign.SurveyResponseHandler#finish(long)
+					 */
+					@Override
+					public void finish(
+							final long totalCount)
+							throws DomainException, IOException {
+						
+						surveyResponseCount = totalCount;
+						
+						// If the page is full, there may be more survey 
+						// responses.
+						if((pageSize != null) && 
+								(lastSurveyResponse != null) && 
+								(numSurveyResponses >= pageSize)) {
+							
+							nextCursor = 
+								new SurveyResponseCursor(lastSurveyResponse);
+						}
+						
+						LOGGER.info(
+								"Found " + 
+									numSurveyResponses + 
+									" results after filtering and paging a total of " + 
+									surveyResponseCount + 
+									" applicable responses.");
+						
+						firstPass.finish(totalCount);
+					}
+				});
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Reads the campaign and verifies that the requested survey and prompt
+	 * IDs belong to it.
+	 * 
+	 * @throws ServiceException The campaign does not exist, one of the IDs
+	 * 							does not belong to it, or there was an error.
+	 */
+	private void loadCampaign() throws ServiceException {
+		LOGGER.info("Retrieving campaign configuration.");
+		campaign = CampaignServices.instance().getCampaign(campaignId);
+		if(campaign == null) {
+			throw
+				new ServiceException(
+					ErrorCode.CAMPAIGN_INVALID_ID,
+					"The campaign does not exist.");
+		}
+		
+		if((promptIds != null) && (! promptIds.isEmpty()) && (! URN_SPECIAL_ALL_LIST.equals(promptIds))) {
+			LOGGER.info("Verifying that the prompt ids in the query belong to the campaign.");
+			SurveyResponseReadServices.instance().verifyPromptIdsBelongToConfiguration(promptIds, campaign);
+		}
+		
+		if((surveyIds != null) && (! surveyIds.isEmpty()) && (! URN_SPECIAL_ALL_LIST.equals(surveyIds))) {
+			LOGGER.info("Verifying that the survey ids in the query belong to the campaign.");
+			SurveyResponseReadServices.instance().verifySurveyIdsBelongToConfiguration(surveyIds, campaign);
+		}
+	}
+	
+	/**
+	 * Logs the number of survey and prompt responses that were read.
+	 */
+	private void logResults() {
+		int numPromptResponses = 0;
+		for(SurveyResponse surveyResponse : surveyResponseList) {
+			numPromptResponses += surveyResponse.getResponses().size();
+		}
+		
+		LOGGER.info(
+				"Found " + 
+					surveyResponseList.size() + 
+					" results after filtering and paging a total of " + 
+					surveyResponseCount + 
+					" applicable responses, which contains " +
+					numPromptResponses +
+					" prompt responses.");
+	}
+	
 	/**
 	 * The campaign's unique identifier as supplied by the requester.
 	 * 
@@ -530,9 +824,20 @@ public abstract class SurveyResponseRequest extends UserRequest {
 	 * The number of survey responses that matched the query without paging.
 	 * 
 	 * @return The number of survey responses that matched the query regardless
-	 * 		   of paging.
+	 * 		   of paging or -1 if the requester asked that they not be 
+	 * 		   counted.
 	 */
 	public long getSurveyResponseCount() {
 		return surveyResponseCount;
 	}
+	
+	/**
+	 * The cursor to use to read the next page of survey responses.
+	 * 
+	 * @return The cursor for the next page or null if the survey responses 
+	 * 		   were not read by cursor or this was the last page.
+	 */
+	public SurveyResponseCursor getNextCursor() {
+		return nextCursor;
+	}
 }
\ No newline at end of file
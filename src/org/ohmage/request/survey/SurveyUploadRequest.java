@@ -15,6 +15,7 @@
  ******************************************************************************/
 package org.ohmage.request.survey;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -35,12 +36,15 @@ import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
 import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.MediaDirectoryCache;
 import org.ohmage.domain.Audio;
 import org.ohmage.domain.OFile;
 import org.ohmage.domain.IMedia;
 import org.ohmage.domain.Image;
+import org.ohmage.domain.Media;
 import org.ohmage.domain.Video;
 import org.ohmage.domain.campaign.Campaign;
+import org.ohmage.domain.campaign.PermissionSnapshot;
 import org.ohmage.domain.campaign.SurveyResponse;
 import org.ohmage.exception.DomainException;
 import org.ohmage.exception.InvalidRequestException;
@@ -117,6 +121,10 @@ public class SurveyUploadRequest extends UserRequest {
 	private static final Logger LOGGER =
 		Logger.getLogger(SurveyUploadRequest.class);
 	
+	// The suffix of media files that were streamed to disk but have not yet
+	// been moved into place.
+	private static final String STAGED_FILE_SUFFIX = ".staged";
+	
 	// The campaign creation timestamp is stored as a String because it is 
 	// never used in any kind of calculation.
 	private final String campaignUrn;
@@ -360,22 +368,24 @@ public class SurveyUploadRequest extends UserRequest {
 							tImageContentsMap.put(id, image);	
 							tFileContentsMap.put(id, image);
 						}
+						// Everything but images is streamed straight to disk
+						// and later moved to its final location.
 						else if(contentType.startsWith("video/")) {
 							Video video = new Video(id,	contentType, fileName,
-									getMultipartValue(httpRequest, name)); 
+									stageMultipartFile(httpRequest, name, id, Video.class)); 
 							tVideoContentsMap.put(id, video); 
 							tFileContentsMap.put(id, video);
 						} 
 						else if(contentType.startsWith("audio/")) {
 							Audio audio = new Audio(id, contentType, fileName,
-									getMultipartValue(httpRequest, name));
+									stageMultipartFile(httpRequest, name, id, Audio.class));
 							tAudioContentsMap.put(id, audio);
 							tFileContentsMap.put(id, audio);
 						}
 						else if(contentType.startsWith("application/") ||
 								contentType.startsWith("text/")){ // HT: check this
 							OFile doc = new OFile(id, contentType, fileName,
-									getMultipartValue(httpRequest, name));
+									stageMultipartFile(httpRequest, name, id, OFile.class));
 							tFileContentsMap.put(id, doc);
 						}
 						if(LOGGER.isDebugEnabled()) 
@@ -415,6 +425,40 @@ public class SurveyUploadRequest extends UserRequest {
 	}
 
 
+	/**
+	 * Streams a media part to a staged file in the directory where that type
+	 * of media is stored, so that it can later be moved into place instead of
+	 * copied.
+	 * 
+	 * @param httpRequest The HTTP request.
+	 * 
+	 * @param name The name of the part.
+	 * 
+	 * @param id The media's unique identifier.
+	 * 
+	 * @param mediaType The type of media.
+	 * 
+	 * @return The staged file or null if the part was empty.
+	 * 
+	 * @throws DomainException The media directory could not be found.
+	 * 
+	 * @throws ValidationException The part could not be written.
+	 */
+	private File stageMultipartFile(
+			final HttpServletRequest httpRequest,
+			final String name,
+			final UUID id,
+			final Class<? extends Media> mediaType)
+			throws DomainException, ValidationException {
+		
+		File directory = MediaDirectoryCache.getMediaDirectory(mediaType);
+		return 
+			getMultipartFile(
+				httpRequest, 
+				name, 
+				new File(directory, id.toString() + STAGED_FILE_SUFFIX));
+	}
+	
 	/**
 	 * Get filename from Part header.
 	 *  
@@ -446,14 +490,18 @@ public class SurveyUploadRequest extends UserRequest {
 		}
 		
 		try {
+			LOGGER.info("Retrieving the user's permissions in the campaign.");
+			PermissionSnapshot permissions = 
+				UserCampaignServices.instance().getPermissionSnapshot(getUser().getUsername(), campaignUrn);
+			
 			LOGGER.info("Verifying that the user is a participant in the campaign.");
-			UserCampaignServices.instance().verifyUserCanUploadSurveyResponses(getUser().getUsername(), campaignUrn);
+			UserCampaignServices.instance().verifyUserCanUploadSurveyResponses(permissions);
 			
 			LOGGER.info("Verifying that the campaign is running.");
-			CampaignServices.instance().verifyCampaignIsRunning(campaignUrn);
+			CampaignServices.instance().verifyCampaignIsRunning(permissions);
 			
 			LOGGER.info("Verifying whether the campaigns responses are editable");
-			CampaignServices.instance().verifyEditableResponse(campaignUrn, allowSurveyUpdate);
+			CampaignServices.instance().verifyEditableResponse(permissions, allowSurveyUpdate);
 
 			Collection<String> campaignIds = new ArrayList<String>(1);
 			campaignIds.add(campaignUrn);
@@ -568,6 +616,16 @@ public class SurveyUploadRequest extends UserRequest {
 		LOGGER.info("Responding to the survey upload request.");
 		
 		super.respond(httpRequest, httpResponse, (JSONObject) null);
+		
+		// Remove any staged media that was never moved into place, e.g. 
+		// because the upload failed or no prompt response referenced it.
+		if(fileContentsMap != null) {
+			for(IMedia media : fileContentsMap.values()) {
+				if(media instanceof Media) {
+					((Media) media).deleteStagedContent();
+				}
+			}
+		}
 	}
 	
 	/**
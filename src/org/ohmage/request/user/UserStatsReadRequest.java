@@ -31,6 +31,7 @@ import org.ohmage.request.InputKeys;
 import org.ohmage.request.UserRequest;
 import org.ohmage.service.UserCampaignServices;
 import org.ohmage.service.UserMobilityServices;
+import org.ohmage.service.UserStatsServices;
 import org.ohmage.service.UserSurveyResponseServices;
 import org.ohmage.validator.CampaignValidators;
 import org.ohmage.validator.UserValidators;
@@ -183,17 +184,41 @@ public class UserStatsReadRequest extends UserRequest {
 			LOGGER.info("Verifying that the requester has permissions to view the mobility information.");
 			UserMobilityServices.instance().requesterCanViewUsersMobilityData(getUser().getUsername(), username);
 			
-			LOGGER.info("Gathering the number of hours since the last survey upload.");
-			hoursSinceLastSurveyUpload = UserSurveyResponseServices.instance().getHoursSinceLastSurveyUplaod(getUser().getUsername(), username);
+			// Use the statistics that are kept as data are uploaded when
+			// they are available. The survey statistics include every
+			// response, so they are only used if the requester may see all of
+			// them.
+			UserStatsServices userStatsServices = UserStatsServices.instance();
 			
-			LOGGER.info("Gathering the number of hours since the last Mobility upload.");
-			hoursSinceLastMobilityUpload = UserMobilityServices.instance().getHoursSinceLastMobilityUpload(username);
-			
-			LOGGER.info("Gathering the percentage of successful location uploads from surveys in the last day.");
-			pastDaySuccessfulSurveyLocationUpdatesPercentage = UserSurveyResponseServices.instance().getPercentageOfNonNullLocationsOverPastDay(getUser().getUsername(), username);
+			if(userStatsServices.canReadSurveyStats(getUser().getUsername(), username)) {
+				LOGGER.info("Gathering the number of hours since the last survey upload from the statistics.");
+				hoursSinceLastSurveyUpload = userStatsServices.getHoursSinceLastSurveyUpload(username);
+				
+				LOGGER.info("Gathering the percentage of successful location uploads from surveys in the last day from the statistics.");
+				pastDaySuccessfulSurveyLocationUpdatesPercentage = userStatsServices.getPercentageOfNonNullSurveyLocationsOverPastDay(username);
+			}
+			else {
+				LOGGER.info("Gathering the number of hours since the last survey upload.");
+				hoursSinceLastSurveyUpload = UserSurveyResponseServices.instance().getHoursSinceLastSurveyUplaod(getUser().getUsername(), username);
+				
+				LOGGER.info("Gathering the percentage of successful location uploads from surveys in the last day.");
+				pastDaySuccessfulSurveyLocationUpdatesPercentage = UserSurveyResponseServices.instance().getPercentageOfNonNullLocationsOverPastDay(getUser().getUsername(), username);
+			}
 			
-			LOGGER.info("Gathering the percentage of successful location updates from Mobility in the last day.");
-			pastDatSuccessfulMobilityLocationUpdatesPercentage = UserMobilityServices.instance().getPercentageOfNonNullLocationsOverPastDay(username);
+			if(userStatsServices.isAvailable()) {
+				LOGGER.info("Gathering the number of hours since the last Mobility upload from the statistics.");
+				hoursSinceLastMobilityUpload = userStatsServices.getHoursSinceLastMobilityUpload(username);
+				
+				LOGGER.info("Gathering the percentage of successful location updates from Mobility in the last day from the statistics.");
+				pastDatSuccessfulMobilityLocationUpdatesPercentage = userStatsServices.getPercentageOfNonNullMobilityLocationsOverPastDay(username);
+			}
+			else {
+				LOGGER.info("Gathering the number of hours since the last Mobility upload.");
+				hoursSinceLastMobilityUpload = UserMobilityServices.instance().getHoursSinceLastMobilityUpload(username);
+				
+				LOGGER.info("Gathering the percentage of successful location updates from Mobility in the last day.");
+				pastDatSuccessfulMobilityLocationUpdatesPercentage = UserMobilityServices.instance().getPercentageOfNonNullLocationsOverPastDay(username);
+			}
 		}
 		catch(ServiceException e) {
 			e.failRequest(this);
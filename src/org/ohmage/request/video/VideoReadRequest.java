@@ -1,6 +1,5 @@
 package org.ohmage.request.video;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -22,6 +21,7 @@ import org.ohmage.request.UserRequest;
 import org.ohmage.service.MediaServices;
 import org.ohmage.service.UserMediaServices;
 import org.ohmage.util.CookieUtils;
+import org.ohmage.util.HttpContentUtils;
 import org.ohmage.validator.VideoValidators;
 
 // HT: Deprecated
@@ -29,8 +29,6 @@ public class VideoReadRequest extends UserRequest {
 	private static final Logger LOGGER = 
 		Logger.getLogger(VideoReadRequest.class);
 
-	private static final int CHUNK_SIZE = 4096;
-	
 	private final UUID videoId;
 	
 	private Video video = null;
@@ -121,25 +119,35 @@ public class VideoReadRequest extends UserRequest {
 
 		LOGGER.info("Responding to a video read request.");
 		
-		// Sets the HTTP headers to disable caching
-		expireResponse(httpResponse);
-				
 		// Open the connection to the image if it is not null.
 		InputStream videoStream = null;
 		
 		try {
 			if(isFailed()) {
+				// Sets the HTTP headers to disable caching
+				expireResponse(httpResponse);
+				
 				super.respond(httpRequest, httpResponse, (JSONObject) null);
 			}
 			else {
 				videoStream = video.getContentStream();
 				
+				// The contents of a media ID never change, so the ID is a
+				// strong validator.
+				String entityTag = 
+					HttpContentUtils.createEntityTag(videoId.toString());
+				if(HttpContentUtils.checkNotModified(
+						httpRequest, 
+						httpResponse, 
+						entityTag, 
+						video.getLastModified())) {
+					
+					return;
+				}
+				
 				httpResponse.setHeader(
 					"Content-Disposition", 
 					"attachment; filename=" + video.getFileName());
-				httpResponse.setHeader(
-					"Content-Length", 
-					new Long(video.getFileSize()).toString());
 				
 				// If available, set the token.
 				if(getUser() != null) {
@@ -165,24 +173,19 @@ public class VideoReadRequest extends UserRequest {
 					return;
 				}
 				
-				// Set the output stream to the response.
-				DataOutputStream dos = new DataOutputStream(os);
-				byte[] bytes = new byte[CHUNK_SIZE];
-				int currRead;
-				while((currRead = videoStream.read(bytes)) != -1) {
-					dos.write(bytes, 0, currRead);
-				}
+				// Write the requested bytes to the response.
+				HttpContentUtils.writeContent(
+					httpRequest, 
+					httpResponse, 
+					videoStream, 
+					video.getFileSize(), 
+					entityTag, 
+					os);
 				
-				// Close the image's InputStream.
+				// Close the media's InputStream.
 				videoStream.close();
 				
-				// Flush and close the data output stream to which we were 
-				// writing.
-				dos.flush();
-				dos.close();
-				
-				// Flush and close the output stream that was used to generate
-				// the data output stream.
+				// Flush and close the output stream.
 				os.flush();
 				os.close();
 			}
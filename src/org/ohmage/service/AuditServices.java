@@ -16,12 +16,14 @@
 package org.ohmage.service;
 
 import java.net.URI;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import org.joda.time.DateTime;
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.domain.Audit;
+import org.ohmage.domain.AuditEntry;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.ServiceException;
 import org.ohmage.jee.servlet.RequestServlet;
@@ -141,6 +143,26 @@ public class AuditServices {
 		}
 	}
 	
+	/**
+	 * Creates a batch of audit entries at once.
+	 * 
+	 * @param audits The audits to create.
+	 * 
+	 * @throws ServiceException Thrown if there is an error, in which case
+	 * 							none of the audits were created.
+	 */
+	public void createAudits(
+		final Collection<AuditEntry> audits)
+		throws ServiceException {
+		
+		try {
+			auditQueries.createAudits(audits);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+	
 	/**
 	 * Retrieves the information about all audits that meet the parameterized
 	 * criteria. If all of the parameters are null, except 'request' which 
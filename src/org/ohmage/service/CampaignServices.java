@@ -37,7 +37,10 @@ import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
 import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.CampaignCache;
+import org.ohmage.cache.PermissionSnapshotCache;
 import org.ohmage.domain.campaign.Campaign;
+import org.ohmage.domain.campaign.PermissionSnapshot;
 import org.ohmage.domain.campaign.SurveyResponse;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
@@ -139,6 +142,9 @@ public class CampaignServices {
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
 		}
+		
+		// The campaign may have been looked up before it existed.
+		invalidateCachedCampaign(campaign.getId());
 	}
 	
 	/**
@@ -332,6 +338,24 @@ public class CampaignServices {
 		}
 	}
 	
+	/**
+	 * Verifies that a campaign is running.
+	 * 
+	 * @param permissions A user's permissions in the campaign.
+	 * 
+	 * @throws ServiceException Thrown if the campaign is not running.
+	 */
+	public void verifyCampaignIsRunning(final PermissionSnapshot permissions) 
+			throws ServiceException {
+		
+		if(! Campaign.RunningState.RUNNING.equals(
+				permissions.getRunningState())) {
+			throw new ServiceException(
+					ErrorCode.CAMPAIGN_INVALID_RUNNING_STATE, 
+					"The campaign is not running.");
+		}
+	}
+	
 	/**
 	 * Verifies that the campaign responses are editable.
 	 * 
@@ -357,6 +381,30 @@ public class CampaignServices {
 		}
 	}
 
+	/**
+	 * Verifies that the campaign responses are editable.
+	 * 
+	 * @param permissions A user's permissions in the campaign.
+	 * 
+	 * @param allowResponseUpdate Whether or not the responses are being
+	 * 							  updated, which is only allowed if they are
+	 * 							  editable.
+	 * 
+	 * @throws ServiceException Thrown if the responses are being updated but
+	 * 							are not editable.
+	 */
+	public void verifyEditableResponse(
+			final PermissionSnapshot permissions, 
+			final Boolean allowResponseUpdate) 
+			throws ServiceException {
+		
+		if(allowResponseUpdate && (! permissions.isEditable())) {
+			throw new ServiceException(
+					ErrorCode.CAMPAIGN_INVALID_EDITABLE,
+					"The responses for this campaign are not editable.");
+		}
+	}
+
 	/**
 	 * Verifies that the given timestamp is the same as the campaign's creation
 	 * timestamp.
@@ -631,6 +679,8 @@ public class CampaignServices {
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
 		}
+		
+		invalidateCachedCampaign(campaignId);
 	}
 		
 	/**
@@ -660,6 +710,8 @@ public class CampaignServices {
 			throw new ServiceException(e);
 		}
 		
+		invalidateCachedCampaign(campaignId);
+		
 		// If the transaction succeeded, delete all of the images from the 
 		// disk.
 		for(URL imageUrl : imageUrls) {
@@ -823,4 +875,22 @@ public class CampaignServices {
 		}
 	}
 	
+	/**
+	 * Removes a campaign's parsed definition and the users' permissions in it
+	 * from their caches, if the caches are being used.
+	 * 
+	 * @param campaignId The campaign's unique identifier.
+	 */
+	private static void invalidateCachedCampaign(final String campaignId) {
+		CampaignCache cache = CampaignCache.instance();
+		if(cache != null) {
+			cache.invalidate(campaignId);
+		}
+		
+		PermissionSnapshotCache permissionCache = 
+			PermissionSnapshotCache.instance();
+		if(permissionCache != null) {
+			permissionCache.invalidateCampaign(campaignId);
+		}
+	}
 }
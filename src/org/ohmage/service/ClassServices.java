@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.PermissionSnapshotCache;
 import org.ohmage.domain.Clazz;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.ServiceException;
@@ -368,13 +369,20 @@ public final class ClassServices {
 					new HashMap<Clazz, Map<String, Clazz.Role>>(
 							classes.size());
 			
+			Map<String, Map<String, Clazz.Role>> userRolePairs = null;
+			if(withUsers) {
+				List<String> resultIds = new ArrayList<String>(classes.size());
+				for(Clazz clazz : classes) {
+					resultIds.add(clazz.getId());
+				}
+				
+				userRolePairs = 
+						classQueries.getUserRolePairs(username, resultIds);
+			}
+			
 			for(Clazz clazz : classes) {
 				if(withUsers) {
-					result.put(
-							clazz, 
-							classQueries.getUserRolePairs(
-									username, 
-									clazz.getId()));
+					result.put(clazz, userRolePairs.get(clazz.getId()));
 				}
 				else {
 					result.put(clazz, null);
@@ -406,14 +414,7 @@ public final class ClassServices {
 			throws ServiceException {
 		
 		try {
-			Map<String, Map<String, Clazz.Role>> result = 
-					new HashMap<String, Map<String, Clazz.Role>>();
-			
-			for(String classId : classIds) {
-				result.put(classId, classQueries.getUserRolePairs(username, classId));
-			}
-			
-			return result;
+			return classQueries.getUserRolePairs(username, classIds);
 		}
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
@@ -450,6 +451,8 @@ public final class ClassServices {
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
 		}
+		
+		invalidatePermissions();
 	}
 	
 	/**
@@ -475,6 +478,10 @@ public final class ClassServices {
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
 		}
+		finally {
+			// Some of the classes may have been updated before an error.
+			invalidatePermissions();
+		}
 	}
 	
 	
@@ -519,5 +526,19 @@ public final class ClassServices {
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
 		}
+		
+		invalidatePermissions();
+	}
+	
+	/**
+	 * Removes every user's cached permissions in every campaign, if the cache
+	 * is being used. A change to a class may change the roles of any of its
+	 * users in any of its campaigns.
+	 */
+	private static void invalidatePermissions() {
+		PermissionSnapshotCache cache = PermissionSnapshotCache.instance();
+		if(cache != null) {
+			cache.invalidateAll();
+		}
 	}
 }
@@ -15,6 +15,7 @@
  ******************************************************************************/
 package org.ohmage.service;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -231,7 +232,13 @@ public class DocumentServices {
 					"The document doesn't exist.");
 			}
 			
-			return (new URL(documentUrl)).openStream();
+			// Local files are opened directly so that readers can use the
+			// file's channel.
+			URL url = new URL(documentUrl);
+			if("file".equals(url.getProtocol())) {
+				return new FileInputStream(url.getPath());
+			}
+			return url.openStream();
 		}
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
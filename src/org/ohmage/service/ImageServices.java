@@ -16,7 +16,9 @@
 package org.ohmage.service;
 
 import java.net.URL;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.ohmage.annotator.Annotator.ErrorCode;
@@ -167,6 +169,29 @@ public final class ImageServices {
 		}
 	}
 	
+	/**
+	 * Retrieves the URLs of many images with as few queries as possible.
+	 * 
+	 * @param imageIds The images' unique identifiers.
+	 * 
+	 * @return A map of each existing image's unique identifier to its URL,
+	 * 		   in the order in which the identifiers were given. Images that
+	 * 		   do not exist are not included.
+	 * 
+	 * @throws ServiceException Thrown if there is an error.
+	 */
+	public Map<UUID, URL> getImageUrls(
+			final Collection<UUID> imageIds)
+			throws ServiceException {
+		
+		try {
+			return imageQueries.getImageUrls(imageIds);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+	
 	/**
 	 * Retrieves the Images that have not yet been processed.
 	 * 
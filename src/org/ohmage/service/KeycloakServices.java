@@ -15,12 +15,15 @@
  ******************************************************************************/
 package org.ohmage.service;
 
+import java.security.PublicKey;
+
 import org.ohmage.exception.ServiceException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.service.UserServices;
 import org.ohmage.domain.KeycloakUser;
 import org.ohmage.domain.UserInformation.UserPersonal;
 import org.ohmage.cache.KeycloakCache;
+import org.ohmage.cache.KeycloakTokenCache;
 import org.jose4j.jwt.consumer.JwtContext;
 import org.jose4j.jwt.consumer.JwtConsumer;
 import org.jose4j.jwt.consumer.JwtConsumerBuilder;
@@ -61,31 +64,59 @@ public final class KeycloakServices {
 			final String bearerToken) 
 					throws ServiceException {
 
-		JwtConsumer consumer = new JwtConsumerBuilder()
-				.setRequireExpirationTime()
-				.setSkipDefaultAudienceValidation()
-				.setAllowedClockSkewInSeconds(JWT_ALLOW_CLOCK_SKEW_SECONDS)
-				.setVerificationKey(KeycloakCache.getPublicKey())
-				.build(); // create the JwtConsumer instance
+		PublicKey publicKey = KeycloakCache.getPublicKey();
+		KeycloakTokenCache tokenCache = KeycloakTokenCache.instance();
+		
+		// If the token was already verified with the current key and has not
+		// expired, skip parsing and verifying it again.
+		JwtContext jwtContext = null;
+		if(tokenCache != null) {
+			jwtContext = tokenCache.get(bearerToken, publicKey);
+		}
+		
+		if(jwtContext == null) {
+			JwtConsumer consumer = new JwtConsumerBuilder()
+					.setRequireExpirationTime()
+					.setSkipDefaultAudienceValidation()
+					.setAllowedClockSkewInSeconds(JWT_ALLOW_CLOCK_SKEW_SECONDS)
+					.setVerificationKey(publicKey)
+					.build(); // create the JwtConsumer instance
 
-		try {
-			JwtContext jwtContext = consumer.process(bearerToken);
 			try {
-				String username = jwtContext.getJwtClaims().getClaimValue(KEY_CLAIM_USERNAME, String.class);
-				return new KeycloakUser(username, jwtContext);
+				jwtContext = consumer.process(bearerToken);
 			}
-			catch(MalformedClaimException e){
-				throw new ServiceException("Unabled to handle keycloak user request. "
-						+ "Bearer token has no claim for " 
-						+ KEY_CLAIM_USERNAME,
-						e);
+			catch (InvalidJwtException e) {
+				throw new ServiceException("Bearer token is invalid or expired.", e);
 			}
-			catch(DomainException e) {
-				throw new ServiceException("Unable to handle keycloak user request", e);
+			
+			if(tokenCache != null) {
+				try {
+					tokenCache.put(
+						bearerToken, 
+						jwtContext, 
+						jwtContext.getJwtClaims().getExpirationTime().getValueInMillis(),
+						publicKey);
+				}
+				catch(MalformedClaimException e) {
+					// The token was accepted, so it has an expiration time, 
+					// but if it cannot be read it simply isn't cached.
+					LOGGER.warn("The bearer token's expiration time could not be read.", e);
+				}
 			}
 		}
-		catch (InvalidJwtException e) {
-			throw new ServiceException("Bearer token is invalid or expired.", e);
+		
+		try {
+			String username = jwtContext.getJwtClaims().getClaimValue(KEY_CLAIM_USERNAME, String.class);
+			return new KeycloakUser(username, jwtContext);
+		}
+		catch(MalformedClaimException e){
+			throw new ServiceException("Unabled to handle keycloak user request. "
+					+ "Bearer token has no claim for " 
+					+ KEY_CLAIM_USERNAME,
+					e);
+		}
+		catch(DomainException e) {
+			throw new ServiceException("Unable to handle keycloak user request", e);
 		}
 	}
 
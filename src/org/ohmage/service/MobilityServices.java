@@ -16,12 +16,15 @@
 package org.ohmage.service;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
+import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.domain.MobilityAggregatePoint;
 import org.ohmage.domain.MobilityPoint;
@@ -56,6 +59,12 @@ public final class MobilityServices {
 	private IUserQueries userQueries;
 	private IUserMobilityQueries userMobilityQueries;
 	
+	/**
+	 * The classifier keeps no state between calls, so one is shared by every
+	 * request.
+	 */
+	private final MobilityClassifier classifier = new MobilityClassifier();
+	
 	/**
 	 * Default constructor. Privately instantiated via dependency injection
 	 * (reflection).
@@ -113,9 +122,8 @@ public final class MobilityServices {
 		}
 		
 		try {
-			for(MobilityPoint mobilityPoint : mobilityPoints) {
-				userMobilityQueries.createMobilityPoint(username, client, mobilityPoint);
-			}
+			userMobilityQueries
+				.createMobilityPoints(username, client, mobilityPoints);
 		}
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
@@ -123,7 +131,13 @@ public final class MobilityServices {
 	}
 	
 	/**
-	 * Runs the classifier against all of the Mobility points in the list.
+	 * Runs the classifier against all of the Mobility points in the list. 
+	 * Points that were already classified by the current version of the
+	 * classifier, e.g. after they were uploaded, are given their stored 
+	 * classification instead.
+	 * 
+	 * @param uploadersUsername The username of the user that uploaded the 
+	 * 							points.
 	 * 
 	 * @param mobilityPoints The Mobility points that are to be classified by
 	 * 						 the server.
@@ -141,9 +155,56 @@ public final class MobilityServices {
 			return;
 		}
 		
-		// Create a new classifier.
-		MobilityClassifier classifier = new MobilityClassifier();
+		// Apply any stored classifications.
+		Map<UUID, MobilityPoint> sensorDataPoints = 
+			new HashMap<UUID, MobilityPoint>();
+		for(MobilityPoint mobilityPoint : mobilityPoints) {
+			if(MobilityPoint.SubType.SENSOR_DATA.equals(mobilityPoint.getSubType()) &&
+				(! Mode.ERROR.equals(mobilityPoint.getMode())) &&
+				(mobilityPoint.getClassifierData() == null)) {
+				
+				sensorDataPoints.put(mobilityPoint.getId(), mobilityPoint);
+			}
+		}
+		if(! sensorDataPoints.isEmpty()) {
+			try {
+				Map<UUID, JSONObject> classifications = 
+					userMobilityQueries.getMobilityClassifications(
+						uploadersUsername, 
+						sensorDataPoints.keySet());
+				
+				for(Map.Entry<UUID, JSONObject> classification : 
+						classifications.entrySet()) {
+					
+					sensorDataPoints
+						.get(classification.getKey())
+						.setClassifierData(classification.getValue());
+				}
+			}
+			catch(DataAccessException e) {
+				throw new ServiceException(e);
+			}
+			catch(DomainException e) {
+				throw new ServiceException(
+					"A stored classification is invalid.",
+					e);
+			}
+		}
+		
+		// Each point's WiFi mode depends on the WiFi mode of the point before
+		// it, so the stored points before the last unclassified one are
+		// classified again for that context. Stored points after it are not.
+		int lastUnclassifiedIndex = -1;
+		for(int i = 0; i < mobilityPoints.size(); i++) {
+			MobilityPoint mobilityPoint = mobilityPoints.get(i);
+			if(MobilityPoint.SubType.SENSOR_DATA.equals(mobilityPoint.getSubType()) &&
+				(! Mode.ERROR.equals(mobilityPoint.getMode())) &&
+				(mobilityPoint.getClassifierData() == null)) {
 				
+				lastUnclassifiedIndex = i;
+			}
+		}
+		
 		// Create place holders for the previous data.
 		String previousWifiMode = null;
 		List<WifiScan> previousWifiScans = new LinkedList<WifiScan>();
@@ -187,7 +248,10 @@ public final class MobilityServices {
 		*/
 
 		// For each of the Mobility points,
+		int pointIndex = -1;
 		for(MobilityPoint mobilityPoint : mobilityPoints) {
+			pointIndex++;
+			
 			// If the data point is of type error, don't attempt to classify 
 			// it.
 			if(mobilityPoint.getMode().equals(Mode.ERROR)) {
@@ -244,6 +308,17 @@ public final class MobilityServices {
 					}
 				}
 
+				// If this point already has a stored classification and no
+				// later point needs to be classified, it only contributes its
+				// WiFi scan to the following points.
+				boolean classified = (mobilityPoint.getClassifierData() != null);
+				if(classified && (pointIndex > lastUnclassifiedIndex)) {
+					if(wifiScan != null) {
+						previousWifiScans.add(wifiScan);
+					}
+					continue;
+				}
+				
 				// Classify the data.
 				Classification classification =
 						classifier.classify(
@@ -259,6 +334,12 @@ public final class MobilityServices {
 				}
 				previousWifiMode = classification.getWifiMode();
 				
+				// A point with a stored classification was only classified
+				// for the WiFi mode, so its stored classification is kept.
+				if(classified) {
+					continue;
+				}
+				
 				// If the classification generated some results, pull them out
 				// and store them in the Mobility point.
 				if(classification.hasFeatures()) {
@@ -291,6 +372,33 @@ public final class MobilityServices {
 		}
 	}
 	
+	/**
+	 * Stores the server's classification of some Mobility points so that they
+	 * do not need to be classified again when they are read.
+	 * 
+	 * @param username The username of the user to which the points belong.
+	 * 
+	 * @param mobilityPoints The Mobility points, which should have already 
+	 * 						 been classified with 
+	 * 						 {@link #classifyData(String, List)}. Any that 
+	 * 						 were not are ignored.
+	 * 
+	 * @throws ServiceException Thrown if there is an error.
+	 */
+	public void storeClassifications(
+			final String username,
+			final List<MobilityPoint> mobilityPoints)
+			throws ServiceException {
+		
+		try {
+			userMobilityQueries
+				.createMobilityClassifications(username, mobilityPoints);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+	
 	/**
 	 * Retrieves the information about all of the Mobility points that satisfy
 	 * the parameters. The username is required as that is how Mobility points
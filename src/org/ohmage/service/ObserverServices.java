@@ -19,8 +19,13 @@ import org.codehaus.jackson.annotate.JsonProperty;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
 import org.joda.time.DateTime;
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.ObserverDefinitionCache;
+import org.ohmage.cache.StreamDuplicateFilter;
+import org.ohmage.cache.StreamDuplicateFilter.IdFilter;
+import org.ohmage.domain.ConcordiaValidator;
 import org.ohmage.domain.DataStream;
 import org.ohmage.domain.DataStream.MetaData;
+import org.ohmage.domain.DataStreamCursor;
 import org.ohmage.domain.Observer;
 import org.ohmage.domain.Observer.Stream;
 import org.ohmage.exception.DataAccessException;
@@ -733,15 +738,43 @@ public class ObserverServices {
 			}
 			
 			// Get the existing IDs for each stream that are also in this 
-			// upload's IDs.
+			// upload's IDs. If there is a duplicate filter, only the IDs it
+			// might contain need to be checked.
+			StreamDuplicateFilter duplicateFilter = 
+				StreamDuplicateFilter.instance();
 			Collection<String> duplicateIds = new HashSet<String>();
 			for(String streamId : uploadIds.keySet()) {
-				duplicateIds.addAll( 
-					observerQueries.getDuplicateIds(
-						username,
-						observerId,
-						streamId,
-						uploadIds.get(streamId)));
+				Collection<String> idsToCheck = uploadIds.get(streamId);
+				IdFilter filter = null;
+				if(duplicateFilter != null) {
+					filter = 
+						getDuplicateFilter(
+							duplicateFilter, 
+							username, 
+							observerId, 
+							streamId);
+					idsToCheck = 
+						duplicateFilter.getPossibleDuplicates(
+							filter, 
+							idsToCheck);
+				}
+				if(idsToCheck.isEmpty()) {
+					continue;
+				}
+				
+				Collection<String> streamDuplicateIds =
+					new HashSet<String>(
+						observerQueries.getDuplicateIds(
+							username,
+							observerId,
+							streamId,
+							idsToCheck));
+				if(filter != null) {
+					duplicateFilter.recordFalsePositives(
+						(new HashSet<String>(idsToCheck)).size(), 
+						streamDuplicateIds.size());
+				}
+				duplicateIds.addAll(streamDuplicateIds);
 			}
 			
 			// Remove any of this upload's IDs that already exist.
@@ -787,6 +820,90 @@ public class ObserverServices {
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
 		}
+		
+		// Add the stored IDs to the duplicate filters.
+		StreamDuplicateFilter duplicateFilter = 
+			StreamDuplicateFilter.instance();
+		if(duplicateFilter != null) {
+			Map<String, Collection<String>> storedIds =
+				new HashMap<String, Collection<String>>();
+			for(DataStream dataStream : data) {
+				MetaData metaData = dataStream.getMetaData();
+				if((metaData == null) || (metaData.getId() == null)) {
+					continue;
+				}
+				
+				String streamId = dataStream.getStream().getId();
+				Collection<String> streamIds = storedIds.get(streamId);
+				if(streamIds == null) {
+					streamIds = new LinkedList<String>();
+					storedIds.put(streamId, streamIds);
+				}
+				streamIds.add(metaData.getId());
+			}
+			
+			for(String streamId : storedIds.keySet()) {
+				duplicateFilter.add(
+					username, 
+					observer.getId(), 
+					streamId, 
+					storedIds.get(streamId));
+			}
+		}
+	}
+	
+	/**
+	 * Returns the warm duplicate filter for a user's stream, warming it from
+	 * the database first if it does not yet exist.
+	 * 
+	 * @param duplicateFilter The cache of duplicate filters.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @param observerId The observer's unique identifier.
+	 * 
+	 * @param streamId The stream's unique identifier.
+	 * 
+	 * @return The filter or null if another upload is warming it.
+	 * 
+	 * @throws DataAccessException There was an error warming the filter.
+	 */
+	private IdFilter getDuplicateFilter(
+			final StreamDuplicateFilter duplicateFilter,
+			final String username,
+			final String observerId,
+			final String streamId)
+			throws DataAccessException {
+		
+		IdFilter filter = duplicateFilter.get(username, observerId, streamId);
+		if(filter != null) {
+			return filter;
+		}
+		
+		// The filter is registered before it is warmed so that any points
+		// stored while it is warming are added to it.
+		filter = 
+			duplicateFilter.create(
+				username, 
+				observerId, 
+				streamId, 
+				observerQueries.getStreamIdCount(
+					username, 
+					observerId, 
+					streamId));
+		if(filter == null) {
+			return null;
+		}
+		
+		try {
+			observerQueries.addStreamIds(username, observerId, streamId, filter);
+		}
+		catch(DataAccessException e) {
+			duplicateFilter.remove(filter);
+			throw e;
+		}
+		duplicateFilter.setWarm(filter);
+		return filter;
 	}
 	
 	/**
@@ -839,6 +956,10 @@ public class ObserverServices {
 	 * 						If false, the values will be sorted reverse
 	 * 						chronologically. Required.
 	 * 
+	 * @param cursor The last point of the previous page, after which to
+	 * 				 continue, or null to begin with the first point. 
+	 * 				 Optional.
+	 * 
 	 * @param numToSkip The number of data points to skip. Required.
 	 * 
 	 * @param numToReturn The number of data points to return. Required.
@@ -856,6 +977,7 @@ public class ObserverServices {
 			final DateTime startDate,
 			final DateTime endDate,
 			final boolean chronological,
+			final DataStreamCursor cursor,
 			final long numToSkip,
 			final long numToReturn) 
 			throws ServiceException {
@@ -870,6 +992,7 @@ public class ObserverServices {
 					startDate,
 					endDate,
 					chronological,
+					cursor,
 					numToSkip,
 					numToReturn);
 		}
@@ -951,5 +1074,14 @@ public class ObserverServices {
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
 		}
+		
+		// Drop the definitions and compiled validators for the previous 
+		// versions.
+		ObserverDefinitionCache definitionCache = 
+			ObserverDefinitionCache.instance();
+		if(definitionCache != null) {
+			definitionCache.invalidateObserver(observer.getId());
+		}
+		ConcordiaValidator.invalidate(observer.getId());
 	}
 }
\ No newline at end of file
@@ -39,6 +39,9 @@ import org.ohmage.domain.campaign.Response;
 import org.ohmage.domain.campaign.SurveyResponse;
 import org.ohmage.domain.campaign.SurveyResponse.ColumnKey;
 import org.ohmage.domain.campaign.SurveyResponse.SortParameter;
+import org.ohmage.domain.campaign.SurveyResponseCount;
+import org.ohmage.domain.campaign.SurveyResponseCursor;
+import org.ohmage.domain.campaign.SurveyResponseHandler;
 import org.ohmage.domain.campaign.prompt.MediaPrompt;
 import org.ohmage.domain.campaign.response.AudioPromptResponse;
 import org.ohmage.domain.campaign.response.FilePromptResponse;
@@ -340,6 +343,52 @@ public final class SurveyResponseServices {
 	}
 
 	
+	/**
+	 * Counts the survey responses that a user may see in a campaign by their
+	 * privacy state and, optionally, by date and survey, without reading any
+	 * of the prompt responses.
+	 * 
+	 * @param campaign The campaign to which the survey responses belong.
+	 * 
+	 * @param username The username of the requesting user.
+	 * 
+	 * @param startDate A date which limits the responses to those generated
+	 * 					on or after. Optional.
+	 * 
+	 * @param endDate A date which limits the responses to those generated on
+	 * 				  or before. Optional.
+	 * 
+	 * @param groupByDate Whether or not to count each date separately.
+	 * 
+	 * @param groupBySurvey Whether or not to count each survey separately.
+	 * 
+	 * @return The counts, none of which are zero.
+	 * 
+	 * @throws ServiceException Thrown if there is an error.
+	 */
+	public List<SurveyResponseCount> readSurveyResponsePrivacyStateCounts(
+			final Campaign campaign,
+			final String username,
+			final DateTime startDate,
+			final DateTime endDate,
+			final boolean groupByDate,
+			final boolean groupBySurvey)
+			throws ServiceException {
+		
+		try {
+			return surveyResponseQueries.countSurveyResponsesByPrivacyState(
+					campaign, 
+					username, 
+					startDate, 
+					endDate, 
+					groupByDate, 
+					groupBySurvey);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+	
 	/**
 	 * Generates a list of SurveyResponse objects where each object
 	 * represents an individual survey response and the list is the result of
@@ -460,6 +509,215 @@ public final class SurveyResponseServices {
 		}
 	}
 	
+	/**
+	 * Reads the same survey responses as 
+	 * {@link #readSurveyResponseInformation(Campaign, String, Set, Collection, DateTime, DateTime, org.ohmage.domain.campaign.SurveyResponse.PrivacyState, Collection, Collection, String, Set, Collection, List, long, long, List)},
+	 * but gives each one to a handler as soon as it has been read instead of
+	 * collecting them. Each pass is given the same survey responses in the 
+	 * same order.
+	 * 
+	 * @param passes The handlers for each pass over the survey responses.
+	 * 
+	 * @return The total number of results that matched the given criteria.
+	 * 
+	 * @throws ServiceException Thrown if there is an error, including an 
+	 * 							error from one of the handlers.
+	 */
+	public long handleSurveyResponses(
+			final Campaign campaign,
+			final String username,
+			final Set<UUID> surveyResponseIds,
+			final Collection<String> usernames,
+			final DateTime startDate, final DateTime endDate, 
+			final SurveyResponse.PrivacyState privacyState, 
+			final Collection<String> surveyIds, 
+			final Collection<String> promptIds, 
+			final String promptType,
+			final Set<String> promptResponseSearchTokens,
+			final Collection<ColumnKey> columns, 
+			final List<SortParameter> sortOrder,
+			final long surveyResponsesToSkip,
+			final long surveyResponsesToProcess,
+			final List<SurveyResponseHandler> passes) 
+			throws ServiceException {
+		
+		try {
+			return surveyResponseQueries.handleSurveyResponses(
+					campaign, 
+					username,
+					surveyResponseIds,
+					usernames, 
+					startDate, 
+					endDate, 
+					privacyState, 
+					surveyIds, 
+					promptIds, 
+					promptType,
+					promptResponseSearchTokens,
+					columns,
+					sortOrder,
+					surveyResponsesToSkip,
+					surveyResponsesToProcess,
+					passes);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+	
+	/**
+	 * Reads one page of survey responses in the default order, beginning 
+	 * after a cursor. Only the survey responses on the page are read from the
+	 * database.
+	 * 
+	 * @param campaign The campaign to which the survey responses must belong.
+	 * 				   Required.
+	 * 
+	 * @param username The username of the user that is making this request.
+	 * 				   This is used by the ACLs to limit who sees what. 
+	 * 				   Required.
+	 * 
+	 * @param surveyResponseIds A set of survey response unique identifiers 
+	 * 							limiting the results to only those survey
+	 * 							responses whose IDs are in this list. Optional.
+	 * 
+	 * @param usernames The usernames to which the results must only pertain.
+	 * 					Optional.
+	 * 
+	 * @param startDate A date which limits the responses to those generated 
+	 * 					on or after. Optional.
+	 * 
+	 * @param endDate An date which limits the responses to those generated on
+	 * 				  or before. Optional.
+	 * 
+	 * @param privacyState A survey response privacy state that limits the 
+	 * 					   results to only those with this privacy state.
+	 * 					   Optional.
+	 * 
+	 * @param surveyIds A collection of survey IDs to which the results must
+	 * 					belong to any of them. Optional.
+	 * 
+	 * @param promptIds A collection of prompt IDs to which the results must
+	 * 					belong to any of them. Optional.
+	 * 
+	 * @param promptType A prompt type that limits all responses to those of
+	 * 					 exactly this prompt type. Optional.
+	 * 
+	 * @param promptResponseSearchTokens The set of tokens to use against the
+	 * 									 prompt response values. Optional.
+	 * 
+	 * @param cursor The last survey response of the previous page or null for
+	 * 				 the first page.
+	 * 
+	 * @param surveyResponsesToProcess The maximum number of survey responses
+	 * 								   to return.
+	 * 
+	 * @param countTotal Whether or not to count all of the survey responses
+	 * 					 that match the criteria.
+	 * 
+	 * @param result A list of SurveyResponse objects, probably empty, to add
+	 * 				 the results of this query to.
+	 * 
+	 * @return The total number of survey responses that match the criteria
+	 * 		   or -1 if they were not counted.
+	 * 
+	 * @throws ServiceException Thrown if there is an error.
+	 */
+	public long readSurveyResponsesAfter(
+			final Campaign campaign,
+			final String username,
+			final Set<UUID> surveyResponseIds,
+			final Collection<String> usernames,
+			final DateTime startDate, final DateTime endDate, 
+			final SurveyResponse.PrivacyState privacyState, 
+			final Collection<String> surveyIds, 
+			final Collection<String> promptIds, 
+			final String promptType,
+			final Set<String> promptResponseSearchTokens,
+			final SurveyResponseCursor cursor,
+			final long surveyResponsesToProcess,
+			final boolean countTotal,
+			final List<SurveyResponse> result) 
+			throws ServiceException {
+		
+		try {
+			return surveyResponseQueries.retrieveSurveyResponsesAfter(
+					campaign, 
+					username,
+					surveyResponseIds,
+					usernames, 
+					startDate, 
+					endDate, 
+					privacyState, 
+					surveyIds, 
+					promptIds, 
+					promptType,
+					promptResponseSearchTokens,
+					cursor,
+					surveyResponsesToProcess,
+					countTotal,
+					result);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+	
+	/**
+	 * Reads the same page of survey responses as 
+	 * {@link #readSurveyResponsesAfter(Campaign, String, Set, Collection, DateTime, DateTime, org.ohmage.domain.campaign.SurveyResponse.PrivacyState, Collection, Collection, String, Set, SurveyResponseCursor, long, boolean, List)},
+	 * but gives each one to a handler as soon as it has been read instead of
+	 * collecting them. Each pass is given the same survey responses in the 
+	 * same order.
+	 * 
+	 * @param passes The handlers for each pass over the survey responses.
+	 * 
+	 * @return The total number of survey responses that match the criteria
+	 * 		   or -1 if they were not counted.
+	 * 
+	 * @throws ServiceException Thrown if there is an error, including an 
+	 * 							error from one of the handlers.
+	 */
+	public long handleSurveyResponsesAfter(
+			final Campaign campaign,
+			final String username,
+			final Set<UUID> surveyResponseIds,
+			final Collection<String> usernames,
+			final DateTime startDate, final DateTime endDate, 
+			final SurveyResponse.PrivacyState privacyState, 
+			final Collection<String> surveyIds, 
+			final Collection<String> promptIds, 
+			final String promptType,
+			final Set<String> promptResponseSearchTokens,
+			final SurveyResponseCursor cursor,
+			final long surveyResponsesToProcess,
+			final boolean countTotal,
+			final List<SurveyResponseHandler> passes) 
+			throws ServiceException {
+		
+		try {
+			return surveyResponseQueries.handleSurveyResponsesAfter(
+					campaign, 
+					username,
+					surveyResponseIds,
+					usernames, 
+					startDate, 
+					endDate, 
+					privacyState, 
+					surveyIds, 
+					promptIds, 
+					promptType,
+					promptResponseSearchTokens,
+					cursor,
+					surveyResponsesToProcess,
+					countTotal,
+					passes);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+	
 	/**
 	 * Updates the privacy state on a survey.
 	 * 
@@ -542,6 +800,60 @@ public final class SurveyResponseServices {
 		}
 	}
 	
+	/**
+	 * Decodes a batch of the prompt responses that were MIME-encoded before
+	 * they were stored as 4-byte UTF-8.
+	 * 
+	 * @param afterId Only prompt responses after this database ID are 
+	 * 				  decoded.
+	 * 
+	 * @param batchSize The maximum number of prompt responses to decode.
+	 * 
+	 * @return The database ID of the last prompt response that was decoded 
+	 * 		   or -1 if there were none left.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public long decodeLegacyPromptResponses(
+			final long afterId, 
+			final int batchSize) 
+			throws ServiceException {
+		
+		try {
+			return surveyResponseQueries.decodeLegacyPromptResponses(afterId, batchSize);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+	
+	/**
+	 * Decodes the response values in a batch of survey responses whose JSON 
+	 * was MIME-encoded before it was stored as 4-byte UTF-8.
+	 * 
+	 * @param afterId Only survey responses after this database ID are 
+	 * 				  decoded.
+	 * 
+	 * @param batchSize The maximum number of survey responses to decode.
+	 * 
+	 * @return The database ID of the last survey response that was decoded 
+	 * 		   or -1 if there were none left.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public long decodeLegacySurveyResponses(
+			final long afterId, 
+			final int batchSize) 
+			throws ServiceException {
+		
+		try {
+			return surveyResponseQueries.decodeLegacySurveyResponses(afterId, batchSize);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+	
 	/**
 	 * Update existing survey responses in the database.
 	 * 
@@ -27,9 +27,11 @@ import java.util.Set;
 import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.PermissionSnapshotCache;
 import org.ohmage.domain.UserInformation.UserPersonal;
 import org.ohmage.domain.campaign.Campaign;
 import org.ohmage.domain.campaign.CampaignMask;
+import org.ohmage.domain.campaign.PermissionSnapshot;
 import org.ohmage.domain.campaign.SurveyResponse;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
@@ -112,6 +114,48 @@ public class UserCampaignServices {
 		return instance;
 	}
 	
+	/**
+	 * Returns whether or not a user is an admin, the user's roles in a 
+	 * campaign, and the campaign's states. These are shared for a short while
+	 * so that checking them several times, in one request or in several, only
+	 * reads them once.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @param campaignId The campaign's unique identifier.
+	 * 
+	 * @return The user's permissions in the campaign.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public PermissionSnapshot getPermissionSnapshot(
+			final String username, 
+			final String campaignId) 
+			throws ServiceException {
+		
+		PermissionSnapshotCache cache = PermissionSnapshotCache.instance();
+		if(cache != null) {
+			PermissionSnapshot result = cache.get(username, campaignId);
+			if(result != null) {
+				return result;
+			}
+		}
+		
+		PermissionSnapshot result;
+		try {
+			result = 
+				userCampaignQueries.getPermissionSnapshot(username, campaignId);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+		
+		if(cache != null) {
+			cache.put(result);
+		}
+		return result;
+	}
+	
 
 	/**
 	 * Creates a campaign mask for the given user. When the campaign is
@@ -149,18 +193,20 @@ public class UserCampaignServices {
 	public void campaignExistsAndUserBelongs(final String campaignId, 
 			final String username) throws ServiceException {
 		
-		CampaignServices.instance().checkCampaignExistence(campaignId, true);
+		PermissionSnapshot permissions = 
+			getPermissionSnapshot(username, campaignId);
 		
-		try {
-			if(! userCampaignQueries.userBelongsToCampaign(username, campaignId)) {
-				throw new ServiceException(
-						ErrorCode.CAMPAIGN_INSUFFICIENT_PERMISSIONS, 
-						"The user does not belong to the campaign: " + 
-							campaignId);
-			}
+		if(! permissions.campaignExists()) {
+			throw new ServiceException(
+					ErrorCode.CAMPAIGN_INVALID_ID, 
+					"The campaign does not exist.");
 		}
-		catch(DataAccessException e) {
-			throw new ServiceException(e);
+		
+		if(permissions.getRoles().isEmpty()) {
+			throw new ServiceException(
+					ErrorCode.CAMPAIGN_INSUFFICIENT_PERMISSIONS, 
+					"The user does not belong to the campaign: " + 
+						campaignId);
 		}
 	}
 		
@@ -201,15 +247,26 @@ public class UserCampaignServices {
 			final String username, final String campaignId) 
 			throws ServiceException {
 		
-		try {
-			if(! userCampaignQueries.getUserCampaignRoles(username, campaignId).contains(Campaign.Role.PARTICIPANT)) {
-				throw new ServiceException(
-						ErrorCode.SURVEY_INSUFFICIENT_PERMISSIONS, 
-						"The user is not a participant in the campaign and, therefore, cannot upload responses.");
-			}
-		}
-		catch(DataAccessException e) {
-			throw new ServiceException(e);
+		verifyUserCanUploadSurveyResponses(
+			getPermissionSnapshot(username, campaignId));
+	}
+	
+	/**
+	 * Verifies that the user is allowed to upload survey responses.
+	 * 
+	 * @param permissions The user's permissions in the campaign.
+	 * 
+	 * @throws ServiceException Thrown if the user is not allowed to upload 
+	 * 							survey responses.
+	 */
+	public void verifyUserCanUploadSurveyResponses(
+			final PermissionSnapshot permissions) 
+			throws ServiceException {
+		
+		if(! permissions.hasRole(Campaign.Role.PARTICIPANT)) {
+			throw new ServiceException(
+					ErrorCode.SURVEY_INSUFFICIENT_PERMISSIONS, 
+					"The user is not a participant in the campaign and, therefore, cannot upload responses.");
 		}
 	}
 	
@@ -229,16 +286,11 @@ public class UserCampaignServices {
 			final String username, final String campaignId) 
 			throws ServiceException  {
 		
-		try {
-			if(! userCampaignQueries.getUserCampaignRoles(username, campaignId).contains(Campaign.Role.SUPERVISOR)) {
-				throw new ServiceException(
-						ErrorCode.CAMPAIGN_INSUFFICIENT_PERMISSIONS, 
-						"The user is not allowed to read the personal information of the users in the following campaign: " + 
-							campaignId);
-			}
-		}
-		catch(DataAccessException e) {
-			throw new ServiceException(e);
+		if(! getPermissionSnapshot(username, campaignId).hasRole(Campaign.Role.SUPERVISOR)) {
+			throw new ServiceException(
+					ErrorCode.CAMPAIGN_INSUFFICIENT_PERMISSIONS, 
+					"The user is not allowed to read the personal information of the users in the following campaign: " + 
+						campaignId);
 		}
 	}
 	
@@ -477,11 +529,12 @@ public class UserCampaignServices {
 	public Set<String> getUsersInCampaigns(
 			final Collection<String> campaignIds) throws ServiceException {
 		
-		Set<String> usernames = new HashSet<String>();
-		for(String campaignId : campaignIds) {
-			usernames.addAll(getUsersInCampaign(campaignId));
+		try {
+			return userCampaignQueries.getUsersInCampaigns(campaignIds);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
 		}
-		return usernames;
 	}
 	
 	/**
@@ -498,14 +551,8 @@ public class UserCampaignServices {
 			final Collection<String> campaignIds) throws ServiceException {
 		
 		try {
-			Map<String, UserPersonal> result = new HashMap<String, UserPersonal>();
-			Collection<String> usernames = getUsersInCampaigns(campaignIds);
-			
-			for(String username : usernames) {
-				result.put(username, userQueries.getPersonalInfoForUser(username));
-			}
-			
-			return result;
+			return userQueries.getPersonalInfoForUsers(
+					getUsersInCampaigns(campaignIds));
 		}
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
@@ -543,57 +590,50 @@ public class UserCampaignServices {
 	public void requesterCanViewUsersSurveyResponses(
 			final String campaignId, final String requesterUsername, 
 			final String... userUsernames) throws ServiceException {
-		try {
-			
-			// If the requester is an admin, he/she can read it.
-			if(userQueries.userIsAdmin(requesterUsername)) {
-				return;
-			}
+		PermissionSnapshot permissions = 
+			getPermissionSnapshot(requesterUsername, campaignId);
+		
+		// If the requester is an admin, he/she can read it.
+		if(permissions.isAdmin()) {
+			return;
+		}
 						
-			// If the requester is asking about other users.
-			if(userUsernames.length != 0) {
-				// If the requester is the same as all of the users in question.
-				boolean otherUsers = false;
-				for(String username : userUsernames) {
-					if(! requesterUsername.equals(username)) {
-						otherUsers = true;
-					}
-				}
-				if(! otherUsers) {
-					return;
+		// If the requester is asking about other users.
+		if(userUsernames.length != 0) {
+			// If the requester is the same as all of the users in question.
+			boolean otherUsers = false;
+			for(String username : userUsernames) {
+				if(! requesterUsername.equals(username)) {
+					otherUsers = true;
 				}
 			}
-			
-			List<Campaign.Role> requesterRoles = 
-				userCampaignQueries.getUserCampaignRoles(requesterUsername, campaignId);
-			
-			// If the requester's role list contains supervisor, return.
-			if(requesterRoles.contains(Campaign.Role.SUPERVISOR)) {
+			if(! otherUsers) {
 				return;
 			}
-			
-			// If the requester's role list contains author, return.
-			if(requesterRoles.contains(Campaign.Role.AUTHOR)) {
-				return;
-			}
-			
-			// If the requester's role list contains analyst,
-			if(requesterRoles.contains(Campaign.Role.ANALYST)) {
-				Campaign.PrivacyState privacyState = campaignQueries.getCampaignPrivacyState(campaignId);
+		}
+		
+		// If the requester's role list contains supervisor, return.
+		if(permissions.hasRole(Campaign.Role.SUPERVISOR)) {
+			return;
+		}
+		
+		// If the requester's role list contains author, return.
+		if(permissions.hasRole(Campaign.Role.AUTHOR)) {
+			return;
+		}
+		
+		// If the requester's role list contains analyst,
+		if(permissions.hasRole(Campaign.Role.ANALYST)) {
+			if(Campaign.PrivacyState.SHARED.equals(
+					permissions.getPrivacyState())) {
 				
-				if((privacyState != null) && 
-				   (Campaign.PrivacyState.SHARED.equals(privacyState))) {
-					return;
-				}
+				return;
 			}
-				
-			throw new ServiceException(
-					ErrorCode.CAMPAIGN_INSUFFICIENT_PERMISSIONS, 
-					"The user does not have sufficient permissions to read information about other users.");
-		}
-		catch(DataAccessException e) {
-			throw new ServiceException(e);
 		}
+			
+		throw new ServiceException(
+				ErrorCode.CAMPAIGN_INSUFFICIENT_PERMISSIONS, 
+				"The user does not have sufficient permissions to read information about other users.");
 	}
 	
 	/**
@@ -1212,22 +1252,18 @@ public class UserCampaignServices {
 	public void verifyUserCanReadUsersInCampaign(final String username,
 			final String campaignId) throws ServiceException {
 		
-		try {
-			List<Campaign.Role> roles = userCampaignQueries.getUserCampaignRoles(username, campaignId);
-			
-			if(roles.contains(Campaign.Role.SUPERVISOR) || 
-					roles.contains(Campaign.Role.AUTHOR)) {
-				return;
-			}
-			
-			throw new ServiceException(
-					ErrorCode.CAMPAIGN_INSUFFICIENT_PERMISSIONS, 
-					"The user doesn't have sufficient permissions to read the users and their roles for a campaign: " + 
-						campaignId);
-		}
-		catch(DataAccessException e) {
-			throw new ServiceException(e);
+		PermissionSnapshot permissions = 
+			getPermissionSnapshot(username, campaignId);
+		
+		if(permissions.hasRole(Campaign.Role.SUPERVISOR) || 
+				permissions.hasRole(Campaign.Role.AUTHOR)) {
+			return;
 		}
+		
+		throw new ServiceException(
+				ErrorCode.CAMPAIGN_INSUFFICIENT_PERMISSIONS, 
+				"The user doesn't have sufficient permissions to read the users and their roles for a campaign: " + 
+					campaignId);
 	}
 	
 	/**
@@ -1268,22 +1304,18 @@ public class UserCampaignServices {
 			final String username, final String campaignId) 
 			throws ServiceException {
 		
-		try {
-			List<Campaign.Role> roles = userCampaignQueries.getUserCampaignRoles(username, campaignId);
-			
-			if(roles.contains(Campaign.Role.SUPERVISOR) || 
-					roles.contains(Campaign.Role.AUTHOR)) {
-				return;
-			}
-			
-			throw new ServiceException(
-					ErrorCode.CAMPAIGN_INSUFFICIENT_PERMISSIONS, 
-					"The user doesn't have sufficient permissions to read the users and their roles for a campaign: " + 
-						campaignId);
-		}
-		catch(DataAccessException e) {
-			throw new ServiceException(e);
+		PermissionSnapshot permissions = 
+			getPermissionSnapshot(username, campaignId);
+		
+		if(permissions.hasRole(Campaign.Role.SUPERVISOR) || 
+				permissions.hasRole(Campaign.Role.AUTHOR)) {
+			return;
 		}
+		
+		throw new ServiceException(
+				ErrorCode.CAMPAIGN_INSUFFICIENT_PERMISSIONS, 
+				"The user doesn't have sufficient permissions to read the users and their roles for a campaign: " + 
+					campaignId);
 	}
 	
 	/**
@@ -1329,8 +1361,13 @@ public class UserCampaignServices {
 		
 		// check each username in usernameList
 		try {
+			Map<String, Set<Campaign.Role>> usersRoles =
+					userCampaignQueries.getUsersCampaignRoles(
+							campaignId, 
+							usernameList);
+			
 			for(String username : usernameList) {
-				if(! userCampaignQueries.userBelongsToCampaign(username, campaignId)) {
+				if(! usersRoles.containsKey(username)) {
 					StringBuilder sb = new StringBuilder();
 					sb.append("User in usernameList does not belong to campaign. Username: ");
 					sb.append(username);
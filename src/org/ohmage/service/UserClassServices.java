@@ -16,11 +16,11 @@
 package org.ohmage.service;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.domain.Clazz;
@@ -92,8 +92,16 @@ public final class UserClassServices {
 			throws ServiceException {
 
 		try {
+			// Class IDs are compared without regard to case, as the database
+			// does.
+			Map<String, Clazz.Role> classRoles =
+					new TreeMap<String, Clazz.Role>(
+							String.CASE_INSENSITIVE_ORDER);
+			classRoles.putAll(
+					userClassQueries.getClassesAndRolesForUser(username));
+			
 			for(String classId : classIds) {
-				if(! userClassQueries.userBelongsToClass(classId, username)) {
+				if(! classRoles.containsKey(classId)) {
 					throw new ServiceException(
 							ErrorCode.CLASS_INSUFFICIENT_PERMISSIONS,
 							"The user does not belong to the class: " + 
@@ -261,8 +269,15 @@ public final class UserClassServices {
 			
 			// For each of the classes in the list, the user must be 
 			// privileged.
+			// Class IDs are compared without regard to case, as the database
+			// does.
+			Map<String, Clazz.Role> classRoles =
+					new TreeMap<String, Clazz.Role>(
+							String.CASE_INSENSITIVE_ORDER);
+			classRoles.putAll(
+					userClassQueries.getClassesAndRolesForUser(username));
 			for(String classId : classIds) {
-				if(! Clazz.Role.PRIVILEGED.equals(userClassQueries.getUserClassRole(classId, username))) {
+				if(! Clazz.Role.PRIVILEGED.equals(classRoles.get(classId))) {
 					throw new ServiceException(
 							ErrorCode.CLASS_INSUFFICIENT_PERMISSIONS, 
 							"The user is not and admin nor privileged in a class: " + 
@@ -341,11 +356,12 @@ public final class UserClassServices {
 	public Set<String> getUsersInClasses(
 			final Collection<String> classIds) throws ServiceException {
 		
-		Set<String> usernames = new HashSet<String>();
-		for(String classId : classIds) {
-			usernames.addAll(getUsersInClass(classId));
+		try {
+			return userClassQueries.getUsersInClasses(classIds);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
 		}
-		return usernames;
 	}
 	
 	/**
@@ -420,14 +436,8 @@ public final class UserClassServices {
 			final Collection<String> classIds) throws ServiceException {
 		
 		try {
-			Map<String, UserPersonal> result = new HashMap<String, UserPersonal>();
-			Collection<String> usernames = getUsersInClasses(classIds);
-			
-			for(String username : usernames) {
-				result.put(username, userQueries.getPersonalInfoForUser(username));
-			}
-			
-			return result;
+			return userQueries.getPersonalInfoForUsers(
+					getUsersInClasses(classIds));
 		}
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
@@ -57,6 +57,9 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.cache.PreferenceCache;
+import org.ohmage.cache.CredentialCache;
+import org.ohmage.cache.ObserverStreamLinkCache;
+import org.ohmage.cache.PermissionSnapshotCache;
 import org.ohmage.cache.UserBin;
 import org.ohmage.domain.Clazz;
 import org.ohmage.domain.KeycloakUser;
@@ -1862,14 +1865,7 @@ public final class UserServices {
 			final Collection<String> usernames) throws ServiceException {
 		
 		try {
-			Map<String, UserPersonal> result = 
-				new HashMap<String, UserPersonal>(usernames.size());
-			
-			for(String username : usernames) {
-				result.put(username, userQueries.getPersonalInfoForUser(username));
-			}
-			
-			return result;
+			return userQueries.getPersonalInfoForUsers(usernames);
 		}
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
@@ -1990,6 +1986,16 @@ public final class UserServices {
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
 		}
+		
+		// A disabled user's verified credentials may no longer be used.
+		if((enabled != null) && (! enabled)) {
+			invalidateCredentials(username);
+		}
+		
+		// The user's permissions include whether or not they are an admin.
+		if(admin != null) {
+			invalidatePermissions(username);
+		}
 	}
 	
 	//customized code
@@ -2074,6 +2080,7 @@ public final class UserServices {
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
 		}
+		invalidateCredentials(username);
 		
 		// Get the session.
 		Session smtpSession = MailUtils.getMailSession();
@@ -2295,6 +2302,7 @@ public final class UserServices {
 						BCrypt.gensalt(User.BCRYPT_COMPLEXITY));
 			
 			userQueries.updateUserPassword(username, hashedPassword, false);
+			invalidateCredentials(username);
 			
 			return hashedPassword;
 		}
@@ -2346,9 +2354,16 @@ public final class UserServices {
 			throw new ServiceException(e);
 		}
 		
-		// Remove the users' authentication tokens if any exist.
+		// Remove the users' authentication tokens, verified credentials, and
+		// cached IDs if any exist.
+		ObserverStreamLinkCache linkCache = ObserverStreamLinkCache.instance();
 		for(String username : usernames) {
 			UserBin.removeUser(username);
+			invalidateCredentials(username);
+			invalidatePermissions(username);
+			if(linkCache != null) {
+				linkCache.invalidateUser(username);
+			}
 		}
 		
 		// If the transaction succeeded, delete all of the images from the 
@@ -2358,6 +2373,33 @@ public final class UserServices {
 		}
 	}
 	
+	/**
+	 * Removes a user's recently verified credentials, if the credential cache
+	 * is configured.
+	 * 
+	 * @param username The user's username.
+	 */
+	private static void invalidateCredentials(final String username) {
+		CredentialCache credentialCache = CredentialCache.instance();
+		if(credentialCache != null) {
+			credentialCache.invalidate(username);
+		}
+	}
+	
+	/**
+	 * Removes a user's cached permissions in every campaign, if the 
+	 * permission cache is configured.
+	 * 
+	 * @param username The user's username.
+	 */
+	private static void invalidatePermissions(final String username) {
+		PermissionSnapshotCache permissionCache = 
+			PermissionSnapshotCache.instance();
+		if(permissionCache != null) {
+			permissionCache.invalidateUser(username);
+		}
+	}
+	
 	/**
 	 * Generates a plaintext temporary password based that does not observe our
 	 * rule set.
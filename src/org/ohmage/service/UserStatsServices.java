@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.service;
+
+
+import org.ohmage.domain.ActivityCounts;
+import org.ohmage.exception.DataAccessException;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.query.IUserStatsQueries;
+
+/**
+ * <p>
+ * This class contains the services for maintaining and reading the per-user
+ * activity statistics that are given by user/stats/read. The statistics are
+ * added to by the queries that store uploaded survey responses and Mobility
+ * points and are rebuilt from the data themselves by a periodic task.
+ * </p>
+ *
+ * <p>
+ * Until the statistics have been rebuilt once, they may be missing data that
+ * were uploaded before they were introduced, so callers should check
+ * {@link #isAvailable()} and otherwise read the data directly. The rebuild is
+ * recorded in the database, so the statistics remain available after the
+ * server restarts.
+ * </p>
+ */
+public class UserStatsServices {
+	private static UserStatsServices instance;
+
+	private static final long MILLIS_IN_A_HOUR = ActivityCounts.MILLIS_PER_HOUR;
+	private static final int HOURS_IN_A_DAY = 24;
+
+	/**
+	 * The number of hours of counts that are kept when the statistics are
+	 * rebuilt. This is more than a day so that the past day is always
+	 * complete between rebuilds.
+	 */
+	private static final int HOURS_KEPT = 2 * HOURS_IN_A_DAY;
+
+	private IUserStatsQueries userStatsQueries;
+
+	private volatile boolean available = false;
+
+	/**
+	 * Default constructor. Privately instantiated via dependency injection
+	 * (reflection).
+	 *
+	 * @throws IllegalStateException if an instance of this class already
+	 * exists
+	 *
+	 * @throws IllegalArgumentException if iUserStatsQueries is null
+	 */
+	private UserStatsServices(final IUserStatsQueries iUserStatsQueries) {
+		if(instance != null) {
+			throw new IllegalStateException("An instance of this class already exists.");
+		}
+
+		if(iUserStatsQueries == null) {
+			throw new IllegalArgumentException("An instance of IUserStatsQueries is required.");
+		}
+
+		userStatsQueries = iUserStatsQueries;
+
+		instance = this;
+	}
+
+	/**
+	 * @return  Returns the singleton instance of this class.
+	 */
+	public static UserStatsServices instance() {
+		return instance;
+	}
+
+	/**
+	 * Returns whether or not the statistics have ever been rebuilt and may be
+	 * read.
+	 *
+	 * @return Whether or not the statistics may be read.
+	 *
+	 * @throws ServiceException Thrown if there is an error.
+	 */
+	public boolean isAvailable() throws ServiceException {
+		// Once the statistics are complete, they stay complete.
+		if(! available) {
+			try {
+				available = userStatsQueries.isRebuilt();
+			}
+			catch(DataAccessException e) {
+				throw new ServiceException(e);
+			}
+		}
+
+		return available;
+	}
+
+	/**
+	 * Retrieves the number of hours since the last Mobility point from a user
+	 * was taken.
+	 *
+	 * @param username The username of the user in question.
+	 *
+	 * @return The number of hours since the last point was taken or null if
+	 * 		   there are none.
+	 *
+	 * @throws ServiceException Thrown if there is an error.
+	 */
+	public Double getHoursSinceLastMobilityUpload(final String username)
+			throws ServiceException {
+
+		try {
+			Long lastTaken = userStatsQueries.getLastMobilityTime(username);
+			if(lastTaken == null) {
+				return null;
+			}
+
+			long differenceInMillis = System.currentTimeMillis() - lastTaken;
+			return new Double(differenceInMillis) / new Double(MILLIS_IN_A_HOUR);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Retrieves the fraction of a user's Mobility points from the past 24
+	 * hours that had a location.
+	 *
+	 * @param username The username of the user in question.
+	 *
+	 * @return The fraction of the points with a location or null if there are
+	 * 		   none.
+	 *
+	 * @throws ServiceException Thrown if there is an error.
+	 */
+	public Double getPercentageOfNonNullMobilityLocationsOverPastDay(
+			final String username)
+			throws ServiceException {
+
+		try {
+			return userStatsQueries.getMobilityLocationPercentage(
+				username,
+				getPastDayStart());
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Returns whether or not a requester may be given a user's survey
+	 * statistics. The statistics are not broken down by privacy state, so
+	 * they are only given to a requester who may see all of the user's
+	 * survey responses.
+	 *
+	 * @param requestersUsername The username of the user that is making the
+	 * 							 request.
+	 *
+	 * @param usersUsername The username of the user to which the statistics
+	 * 						pertain.
+	 *
+	 * @return Whether or not the statistics are available and the requester
+	 * 		   is a supervisor in every campaign in which the user has
+	 * 		   uploaded survey responses.
+	 *
+	 * @throws ServiceException Thrown if there is an error.
+	 */
+	public boolean canReadSurveyStats(
+			final String requestersUsername,
+			final String usersUsername)
+			throws ServiceException {
+
+		if(! isAvailable()) {
+			return false;
+		}
+
+		try {
+			return userStatsQueries.isSupervisorForAllSurveyStats(
+				requestersUsername,
+				usersUsername);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Retrieves the number of hours since a user's last survey response was
+	 * taken.
+	 *
+	 * @param username The username of the user in question.
+	 *
+	 * @return The number of hours since the last survey response was taken
+	 * 		   or {@link Double#MAX_VALUE} if there are none.
+	 *
+	 * @throws ServiceException Thrown if there is an error.
+	 */
+	public double getHoursSinceLastSurveyUpload(final String username)
+			throws ServiceException {
+
+		try {
+			Long lastTaken = userStatsQueries.getLastSurveyTime(username);
+			if(lastTaken == null) {
+				return Double.MAX_VALUE;
+			}
+
+			long differenceInMillis = System.currentTimeMillis() - lastTaken;
+			return new Double(differenceInMillis) / new Double(MILLIS_IN_A_HOUR);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Retrieves the fraction of a user's prompt responses uploaded in the
+	 * past 24 hours whose survey response had a location.
+	 *
+	 * @param username The username of the user in question.
+	 *
+	 * @return The fraction of the prompt responses with a location or -1.0 if
+	 * 		   there are none.
+	 *
+	 * @throws ServiceException Thrown if there is an error.
+	 */
+	public double getPercentageOfNonNullSurveyLocationsOverPastDay(
+			final String username)
+			throws ServiceException {
+
+		try {
+			Double percentage =
+				userStatsQueries.getSurveyLocationPercentage(
+					username,
+					getPastDayStart());
+
+			return (percentage == null) ? -1.0 : percentage;
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Rebuilds every user's statistics from their data and makes the
+	 * statistics available to be read.
+	 *
+	 * @throws ServiceException Thrown if there is an error.
+	 */
+	public void rebuildStats() throws ServiceException {
+		long sinceHour =
+			ActivityCounts.getHour(
+				System.currentTimeMillis() - (HOURS_KEPT * MILLIS_IN_A_HOUR));
+
+		try {
+			userStatsQueries.rebuildStats(sinceHour);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+
+		available = true;
+	}
+
+	/**
+	 * Returns the time 24 hours ago.
+	 *
+	 * @return The time in milliseconds since the epoch.
+	 */
+	private static long getPastDayStart() {
+		return System.currentTimeMillis() - (HOURS_IN_A_DAY * MILLIS_IN_A_HOUR);
+	}
+}
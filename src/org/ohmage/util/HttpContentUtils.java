@@ -0,0 +1,383 @@
+/*******************************************************************************
+ * Copyright 2013 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.util;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <p>
+ * Utilities for responding with the contents of a file, such as a media file
+ * or a document, including conditional requests, via "ETag" and
+ * "Last-Modified", and single byte ranges, via "Range".
+ * </p>
+ *
+ * <p>
+ * Only single byte ranges are supported. A request for multiple ranges is
+ * answered with the entire content, which HTTP allows.
+ * </p>
+ */
+public final class HttpContentUtils {
+	private static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
+	private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+	private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+	private static final String HEADER_CONTENT_RANGE = "Content-Range";
+	private static final String HEADER_ETAG = "ETag";
+	private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+	private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+	private static final String HEADER_IF_RANGE = "If-Range";
+	private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+	private static final String HEADER_RANGE = "Range";
+
+	private static final String RANGE_UNIT = "bytes";
+
+	/**
+	 * The response may be kept by the client, but not by any shared cache,
+	 * and must always be revalidated, so that the requester's permissions
+	 * are checked every time.
+	 */
+	private static final String VALUE_CACHE_CONTROL = "private, no-cache";
+
+	/**
+	 * The size of a chunk when the content cannot be transferred directly
+	 * from a file.
+	 */
+	private static final int CHUNK_SIZE = 4096;
+
+	/**
+	 * Default constructor. Private so that it cannot be instantiated.
+	 */
+	private HttpContentUtils() {}
+
+	/**
+	 * Creates a strong entity tag from a value that uniquely identifies a
+	 * version of some content.
+	 *
+	 * @param value The value, e.g. the unique identifier of immutable media.
+	 *
+	 * @return The entity tag, which is the value in quotes.
+	 */
+	public static String createEntityTag(final String value) {
+		return '"' + value + '"';
+	}
+
+	/**
+	 * Returns whether or not the request asks for a byte range, in which case
+	 * the response should not be compressed.
+	 *
+	 * @param httpRequest The HTTP request.
+	 *
+	 * @return Whether or not the request has a "Range" header.
+	 */
+	public static boolean isRangeRequest(final HttpServletRequest httpRequest) {
+		return httpRequest.getHeader(HEADER_RANGE) != null;
+	}
+
+	/**
+	 * Sets the validators and caching headers on the response and then checks
+	 * whether the client's cached copy is still current. If it is, the
+	 * response's status is set to 304 (Not Modified) and nothing else should
+	 * be written.
+	 *
+	 * @param httpRequest The HTTP request.
+	 *
+	 * @param httpResponse The HTTP response.
+	 *
+	 * @param entityTag The content's entity tag or null if it has none.
+	 *
+	 * @param lastModified The time the content was last modified in
+	 * 					   milliseconds or a negative value if it is unknown.
+	 *
+	 * @return True if the client's copy is current and the response is
+	 * 		   complete; false, otherwise.
+	 */
+	public static boolean checkNotModified(
+			final HttpServletRequest httpRequest,
+			final HttpServletResponse httpResponse,
+			final String entityTag,
+			final long lastModified) {
+
+		httpResponse.setHeader(HEADER_CACHE_CONTROL, VALUE_CACHE_CONTROL);
+		if(entityTag != null) {
+			httpResponse.setHeader(HEADER_ETAG, entityTag);
+		}
+		if(lastModified >= 0) {
+			httpResponse.setDateHeader(HEADER_LAST_MODIFIED, lastModified);
+		}
+
+		boolean notModified;
+		String ifNoneMatch = httpRequest.getHeader(HEADER_IF_NONE_MATCH);
+		if(ifNoneMatch != null) {
+			// If "If-None-Match" is given, "If-Modified-Since" is ignored.
+			notModified = (entityTag != null) && matches(ifNoneMatch, entityTag);
+		}
+		else {
+			long ifModifiedSince = getDateHeader(httpRequest, HEADER_IF_MODIFIED_SINCE);
+			notModified =
+				(lastModified >= 0) &&
+				(ifModifiedSince >= 0) &&
+				// HTTP dates only have a resolution of seconds.
+				((lastModified / 1000) <= (ifModifiedSince / 1000));
+		}
+
+		if(notModified) {
+			httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		}
+		return notModified;
+	}
+
+	/**
+	 * Writes the content, or the one byte range of it that was requested, to
+	 * the response along with the appropriate status and headers. If the
+	 * content is read from a file, it is transferred directly from the file's
+	 * channel. The stream is not closed.
+	 *
+	 * @param httpRequest The HTTP request.
+	 *
+	 * @param httpResponse The HTTP response.
+	 *
+	 * @param content The content, positioned at its beginning.
+	 *
+	 * @param contentLength The length of the content or a negative value if
+	 * 						it is unknown. If it is unknown and the content
+	 * 						is not read from a file, ranges are not
+	 * 						supported.
+	 *
+	 * @param entityTag The content's entity tag, which an "If-Range" header
+	 * 					must match, or null if it has none.
+	 *
+	 * @param outputStream The stream to which the content should be written.
+	 * 					   This should not be compressed if ranges are to be
+	 * 					   supported.
+	 *
+	 * @throws IOException There was an error reading the content or writing
+	 * 					   it to the response.
+	 */
+	public static void writeContent(
+			final HttpServletRequest httpRequest,
+			final HttpServletResponse httpResponse,
+			final InputStream content,
+			final long contentLength,
+			final String entityTag,
+			final OutputStream outputStream)
+			throws IOException {
+
+		long length = contentLength;
+		if((length < 0) && (content instanceof FileInputStream)) {
+			length = ((FileInputStream) content).getChannel().size();
+		}
+		if(length < 0) {
+			copy(content, 0, Long.MAX_VALUE, outputStream);
+			return;
+		}
+		httpResponse.setHeader(HEADER_ACCEPT_RANGES, RANGE_UNIT);
+
+		// Determine which bytes to send.
+		long start = 0;
+		long end = length - 1;
+		String range = httpRequest.getHeader(HEADER_RANGE);
+		String ifRange = httpRequest.getHeader(HEADER_IF_RANGE);
+		if((range != null) &&
+			((ifRange == null) || ifRange.trim().equals(entityTag))) {
+
+			long[] bounds = parseRange(range, length);
+			if(bounds == null) {
+				// The range was malformed or had more than one part, so it is
+				// ignored.
+			}
+			else if(bounds.length == 0) {
+				httpResponse.setStatus(
+					HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				httpResponse.setHeader(
+					HEADER_CONTENT_RANGE,
+					RANGE_UNIT + " */" + length);
+				return;
+			}
+			else {
+				start = bounds[0];
+				end = bounds[1];
+				httpResponse.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				httpResponse.setHeader(
+					HEADER_CONTENT_RANGE,
+					RANGE_UNIT + " " + start + "-" + end + "/" + length);
+			}
+		}
+
+		long count = end - start + 1;
+		httpResponse.setHeader(HEADER_CONTENT_LENGTH, Long.toString(count));
+		copy(content, start, count, outputStream);
+		outputStream.flush();
+	}
+
+	/**
+	 * Parses a "Range" header with a single byte range.
+	 *
+	 * @param range The header's value.
+	 *
+	 * @param length The length of the content.
+	 *
+	 * @return The first and last byte positions, inclusive; an empty array if
+	 * 		   the range cannot be satisfied; or null if the header should be
+	 * 		   ignored because it is malformed or has more than one range.
+	 */
+	private static long[] parseRange(final String range, final long length) {
+		String value = range.trim();
+		if(! value.startsWith(RANGE_UNIT + "=")) {
+			return null;
+		}
+		value = value.substring(RANGE_UNIT.length() + 1).trim();
+		if(value.indexOf(',') != -1) {
+			return null;
+		}
+
+		int dash = value.indexOf('-');
+		if(dash == -1) {
+			return null;
+		}
+		String first = value.substring(0, dash).trim();
+		String last = value.substring(dash + 1).trim();
+
+		long start;
+		long end;
+		try {
+			// A suffix range, e.g. the last 500 bytes.
+			if(first.isEmpty()) {
+				if(last.isEmpty()) {
+					return null;
+				}
+				long suffix = Long.parseLong(last);
+				if(suffix <= 0) {
+					return new long[0];
+				}
+				start = Math.max(0, length - suffix);
+				end = length - 1;
+			}
+			else {
+				start = Long.parseLong(first);
+				end =
+					last.isEmpty() ?
+						length - 1 :
+						Math.min(Long.parseLong(last), length - 1);
+				if(end < start) {
+					return (last.isEmpty() || (start >= length)) ?
+						new long[0] :
+						null;
+				}
+			}
+		}
+		catch(NumberFormatException e) {
+			return null;
+		}
+
+		if((start < 0) || (start >= length)) {
+			return new long[0];
+		}
+		return new long[] { start, end };
+	}
+
+	/**
+	 * Returns whether or not an "If-None-Match" header matches an entity tag.
+	 *
+	 * @param ifNoneMatch The header's value.
+	 *
+	 * @param entityTag The entity tag.
+	 *
+	 * @return Whether or not any of the header's tags match.
+	 */
+	private static boolean matches(
+			final String ifNoneMatch,
+			final String entityTag) {
+
+		for(String tag : ifNoneMatch.split(",")) {
+			String trimmed = tag.trim();
+			if(trimmed.startsWith("W/")) {
+				trimmed = trimmed.substring(2);
+			}
+			if("*".equals(trimmed) || trimmed.equals(entityTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads a date header, treating a malformed one as absent.
+	 *
+	 * @param httpRequest The HTTP request.
+	 *
+	 * @param name The header's name.
+	 *
+	 * @return The date in milliseconds or -1 if it is absent or malformed.
+	 */
+	private static long getDateHeader(
+			final HttpServletRequest httpRequest,
+			final String name) {
+
+		try {
+			return httpRequest.getDateHeader(name);
+		}
+		catch(IllegalArgumentException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Copies part of the content to the output stream.
+	 *
+	 * @param content The content, positioned at its beginning.
+	 *
+	 * @param start The first byte to copy.
+	 *
+	 * @param count The number of bytes to copy.
+	 *
+	 * @param outputStream The stream to write to.
+	 *
+	 * @throws IOException There was an error reading or writing.
+	 */
+	private static void copy(
+			final InputStream content,
+			final long start,
+			final long count,
+			final OutputStream outputStream)
+			throws IOException {
+
+		long skipped = 0;
+		while(skipped < start) {
+			long amount = content.skip(start - skipped);
+			if(amount <= 0) {
+				return;
+			}
+			skipped += amount;
+		}
+
+		byte[] chunk = new byte[CHUNK_SIZE];
+		long remaining = count;
+		while(remaining > 0) {
+			int amountRead =
+				content.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+			if(amountRead == -1) {
+				break;
+			}
+			outputStream.write(chunk, 0, amountRead);
+			remaining -= amountRead;
+		}
+	}
+}
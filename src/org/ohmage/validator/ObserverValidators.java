@@ -12,6 +12,7 @@ import org.codehaus.jackson.map.MappingJsonFactory;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormatter;
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.domain.DataStreamCursor;
 import org.ohmage.domain.ISOW3CDateTimeFormat;
 import org.ohmage.domain.Observer;
 import org.ohmage.exception.DomainException;
@@ -400,6 +401,34 @@ public class ObserverValidators {
 		return result;
 	}
 	
+	/**
+	 * Validates a stream data cursor. An empty cursor refers to the beginning
+	 * of the results.
+	 * 
+	 * @param cursor The cursor to validate.
+	 * 
+	 * @return The decoded cursor or null if the cursor was empty.
+	 * 
+	 * @throws ValidationException The cursor is not valid.
+	 */
+	public static DataStreamCursor validateCursor(final String cursor)
+			throws ValidationException {
+		
+		if(StringUtils.isEmptyOrWhitespaceOnly(cursor)) {
+			return null;
+		}
+		
+		try {
+			return DataStreamCursor.decode(cursor.trim());
+		}
+		catch(DomainException e) {
+			throw new ValidationException(
+				ErrorCode.OBSERVER_INVALID_CURSOR,
+				"The cursor is invalid: " + cursor,
+				e);
+		}
+	}
+	
 	/**
 	 * Validates that the number to skip is positive or zero.
 	 * 
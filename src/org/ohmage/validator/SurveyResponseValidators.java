@@ -39,6 +39,8 @@ import org.ohmage.domain.campaign.SurveyResponse.Function;
 import org.ohmage.domain.campaign.SurveyResponse.FunctionPrivacyStateItem;
 import org.ohmage.domain.campaign.SurveyResponse.OutputFormat;
 import org.ohmage.domain.campaign.SurveyResponse.SortParameter;
+import org.ohmage.domain.campaign.SurveyResponseCursor;
+import org.ohmage.exception.DomainException;
 import org.ohmage.exception.ValidationException;
 import org.ohmage.request.InputKeys;
 import org.ohmage.request.survey.SurveyResponseRequest;
@@ -672,6 +674,50 @@ public final class SurveyResponseValidators {
 				"The return ID value is invalid: ");
 	}
 
+	/**
+	 * Validates the optional count total boolean.
+	 * 
+	 * @param countTotal  The value to validate.
+	 * @return  the Boolean equivalent of countTotal 
+	 * @throws ValidationException if countTotal is not null and non-boolean.
+	 */
+	public static Boolean validateCountTotal(final String countTotal) 
+			throws ValidationException {
+		
+		return validateOptionalBoolean(
+				countTotal, 
+				ErrorCode.SURVEY_INVALID_COUNT_TOTAL_VALUE, 
+				"The count total value is invalid: ");
+	}
+	
+	/**
+	 * Validates a survey response cursor. An empty cursor refers to the 
+	 * beginning of the results.
+	 * 
+	 * @param cursor The cursor to validate.
+	 * 
+	 * @return The decoded cursor or null if the cursor was empty.
+	 * 
+	 * @throws ValidationException The cursor is not valid.
+	 */
+	public static SurveyResponseCursor validateCursor(final String cursor)
+			throws ValidationException {
+		
+		if(StringUtils.isEmptyOrWhitespaceOnly(cursor)) {
+			return null;
+		}
+		
+		try {
+			return SurveyResponseCursor.decode(cursor.trim());
+		}
+		catch(DomainException e) {
+			throw new ValidationException(
+					ErrorCode.SURVEY_INVALID_CURSOR,
+					"The cursor is invalid: " + cursor,
+					e);
+		}
+	}
+
 	/**
 	 * Validates the optional prettyPrint boolean.
 	 * 
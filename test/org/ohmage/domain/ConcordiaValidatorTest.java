@@ -0,0 +1,137 @@
+package org.ohmage.domain;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+import org.ohmage.exception.DomainException;
+
+/**
+ * Tests that the compiled Concordia validators accept and reject exactly the
+ * same data as Concordia.js.
+ */
+public class ConcordiaValidatorTest extends TestCase {
+	static {
+		// Concordia.js is loaded relative to the web application's root.
+		if(System.getProperty("webapp.root") == null) {
+			System.setProperty("webapp.root", "web/");
+		}
+	}
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * The schemas for the default observers' streams along with some that
+	 * exercise the remaining parts of the specification.
+	 */
+	private static final String[] SCHEMAS = {
+		"{\"type\":\"object\",\"doc\":\"Trigger interaction.\",\"fields\":[{\"name\":\"action\",\"type\":\"string\"},{\"name\":\"type\",\"type\":\"string\"},{\"name\":\"count\",\"type\":\"number\"},{\"name\":\"campaign\",\"type\":\"string\"}]}",
+		"{\"type\":\"object\",\"doc\":\"Widget interaction.\",\"fields\":[{\"name\":\"id\",\"type\":\"number\"},{\"name\":\"name\",\"type\":\"string\"},{\"name\":\"extra\",\"optional\":true,\"type\":\"string\"}]}",
+		"{\"type\":\"object\",\"doc\":\"Contains the user's mode as well as the sensor data.\",\"fields\":[{\"name\":\"mode\",\"type\":\"string\"},{\"name\":\"speed\",\"type\":\"number\",\"optional\":true},{\"name\":\"accel_data\",\"type\":\"array\",\"constType\":{\"type\":\"object\",\"fields\":[{\"name\":\"x\",\"type\":\"number\"},{\"name\":\"y\",\"type\":\"number\"},{\"name\":\"z\",\"type\":\"number\"}]}},{\"name\":\"wifi_data\",\"type\":\"object\",\"fields\":[{\"name\":\"time\",\"type\":\"number\"},{\"name\":\"timezone\",\"type\":\"string\"},{\"name\":\"scan\",\"type\":\"array\",\"constType\":{\"type\":\"object\",\"fields\":[{\"name\":\"ssid\",\"type\":\"string\"},{\"name\":\"strength\",\"type\":\"number\"}]}}]}]}",
+		"{\"type\":\"array\",\"constType\":{\"type\":\"boolean\",\"optional\":true}}",
+		"{\"type\":\"array\",\"constLength\":[{\"type\":\"number\"},{\"type\":\"string\"}]}",
+		"{\"type\":\"object\",\"fields\":[{\"name\":\"nested\",\"type\":\"object\",\"optional\":true,\"fields\":[{\"name\":\"flag\",\"type\":\"boolean\"}]},{\"name\":\"list\",\"type\":\"array\",\"optional\":true,\"constType\":{\"type\":\"string\"}}]}"
+	};
+
+	/**
+	 * Data points to validate against every schema.
+	 */
+	private static final String[] DATA = {
+		"{}",
+		"[]",
+		"{\"action\":\"add\",\"type\":\"time\",\"count\":2,\"campaign\":\"urn:c\"}",
+		"{\"action\":\"add\",\"type\":\"time\",\"count\":\"2\",\"campaign\":\"urn:c\"}",
+		"{\"action\":\"add\",\"type\":\"time\",\"campaign\":\"urn:c\"}",
+		"{\"action\":null,\"type\":\"time\",\"count\":2.5,\"campaign\":\"urn:c\",\"extra\":1}",
+		"{\"id\":1,\"name\":\"button\"}",
+		"{\"id\":1,\"name\":\"button\",\"extra\":null}",
+		"{\"id\":1,\"name\":\"button\",\"extra\":false}",
+		"{\"mode\":\"still\",\"accel_data\":[{\"x\":1,\"y\":2,\"z\":3}],\"wifi_data\":{\"time\":1,\"timezone\":\"UTC\",\"scan\":[{\"ssid\":\"a\",\"strength\":-50}]}}",
+		"{\"mode\":\"still\",\"speed\":null,\"accel_data\":[],\"wifi_data\":{\"time\":1,\"timezone\":\"UTC\",\"scan\":[]}}",
+		"{\"mode\":\"still\",\"accel_data\":[{\"x\":1,\"y\":2}],\"wifi_data\":{\"time\":1,\"timezone\":\"UTC\",\"scan\":[]}}",
+		"{\"mode\":\"still\",\"accel_data\":{},\"wifi_data\":{\"time\":1,\"timezone\":\"UTC\",\"scan\":[]}}",
+		"{\"mode\":\"still\",\"accel_data\":[],\"wifi_data\":[]}",
+		"[true,false,null]",
+		"[true,1]",
+		"[1,\"a\"]",
+		"[\"a\",1]",
+		"[1,\"a\",2]",
+		"{\"nested\":{\"flag\":true},\"list\":[\"a\",\"b\"]}",
+		"{\"nested\":{},\"list\":[\"a\"]}",
+		"{\"nested\":null,\"list\":null}",
+		"{\"nested\":[],\"list\":[1]}"
+	};
+
+	/**
+	 * Validates every data point against every schema with both validators
+	 * and ensures that they always agree.
+	 */
+	@Test
+	public void testMatchesConcordia() throws DomainException, IOException {
+		for(int i = 0; i < SCHEMAS.length; i++) {
+			Observer.Stream stream =
+				new Observer.Stream(
+					"stream" + i,
+					1,
+					"Stream " + i,
+					"Test stream.",
+					null,
+					null,
+					null,
+					SCHEMAS[i]);
+			ConcordiaValidator validator =
+				ConcordiaValidator.compile(SCHEMAS[i]);
+
+			for(String dataString : DATA) {
+				JsonNode data = MAPPER.readTree(dataString);
+
+				boolean rhinoValid = true;
+				try {
+					stream.validateDataWithRhino(data);
+				}
+				catch(DomainException e) {
+					rhinoValid = false;
+				}
+
+				boolean compiledValid = true;
+				try {
+					validator.validateData(data);
+				}
+				catch(DomainException e) {
+					compiledValid = false;
+				}
+
+				assertEquals(
+					"The validators disagree on schema " +
+						i +
+						" for data: " +
+						dataString,
+					rhinoValid,
+					compiledValid);
+			}
+		}
+	}
+
+	/**
+	 * Ensures that the cached validators are reused and can be invalidated.
+	 */
+	@Test
+	public void testCache() throws DomainException {
+		ConcordiaValidator first =
+			ConcordiaValidator.getValidator(
+				"org.ohmage.Test", 1, "stream", 1, SCHEMAS[0]);
+		ConcordiaValidator second =
+			ConcordiaValidator.getValidator(
+				"org.ohmage.Test", 1, "stream", 1, SCHEMAS[0]);
+		assertSame(first, second);
+
+		ConcordiaValidator.invalidate("org.ohmage.Test");
+		ConcordiaValidator third =
+			ConcordiaValidator.getValidator(
+				"org.ohmage.Test", 1, "stream", 1, SCHEMAS[0]);
+		assertNotSame(first, third);
+	}
+}
@@ -30,6 +30,8 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.ohmage.domain.campaign.SurveyResponse;
 import org.ohmage.domain.campaign.SurveyResponse.SortParameter;
+import org.ohmage.domain.campaign.SurveyResponseCursor;
+import org.ohmage.exception.DomainException;
 import org.ohmage.exception.ValidationException;
 import org.ohmage.request.InputKeys;
 import org.ohmage.request.survey.SurveyResponseRequest;
@@ -565,6 +567,49 @@ public class SurveyResponseValidatorsTest extends TestCase {
 		}
 	}
 	
+	/**
+	 * Tests the cursor validator.
+	 */
+	@Test
+	public void testValidateCursor() {
+		try {
+			for(String emptyValue : ParameterSets.getEmptyValues()) {
+				Assert.assertNull(SurveyResponseValidators.validateCursor(emptyValue));
+			}
+			
+			for(String invalidValue : new String[] { "Invalid value.", "MTIz", "MTIzLGFiYw" }) {
+				try {
+					SurveyResponseValidators.validateCursor(invalidValue);
+					fail("The cursor was invalid: " + invalidValue);
+				}
+				catch(ValidationException e) {
+					// Passed.
+				}
+			}
+			
+			UUID surveyResponseId = UUID.randomUUID();
+			for(long epochMillis : new long[] { 0, 1234567890123L, -1, Long.MAX_VALUE }) {
+				SurveyResponseCursor cursor = 
+					new SurveyResponseCursor(epochMillis, surveyResponseId);
+				String token = cursor.toString();
+				Assert.assertFalse(token.contains("="));
+				Assert.assertFalse(token.contains("+"));
+				Assert.assertFalse(token.contains("/"));
+				
+				SurveyResponseCursor decoded = 
+					SurveyResponseValidators.validateCursor(token);
+				Assert.assertEquals(epochMillis, decoded.getEpochMillis());
+				Assert.assertEquals(surveyResponseId, decoded.getSurveyResponseId());
+			}
+		}
+		catch(ValidationException e) {
+			fail("A validation exception was thrown: " + e.getMessage());
+		}
+		catch(DomainException e) {
+			fail("A domain exception was thrown: " + e.getMessage());
+		}
+	}
+	
 	/**
 	 * Generates all of the permutations of the given list of SortParameter
 	 * parameters.